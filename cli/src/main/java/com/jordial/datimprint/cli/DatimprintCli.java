@@ -22,6 +22,7 @@
 import static java.nio.charset.StandardCharsets.*;
 import static java.nio.file.Files.*;
 import static java.nio.file.LinkOption.*;
+import static java.nio.file.StandardOpenOption.*;
 import static java.util.Comparator.*;
 import static java.util.Objects.*;
 import static java.util.stream.Collectors.*;
@@ -29,15 +30,17 @@
 import static org.zalando.fauxpas.FauxPas.*;
 
 import java.io.*;
+import java.nio.channels.*;
 import java.nio.charset.*;
 import java.nio.file.*;
-import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.*;
 import java.time.Duration;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import javax.annotation.*;
 
@@ -58,6 +61,9 @@
 @Command(name = "datimprint", description = "Jordial's command-line interface for data statistics, fingerprint, and verification")
 public class DatimprintCli extends BaseCliApplication {
 
+	/** The size of the buffer for reading compressed imprints files. */
+	private static final int DECOMPRESS_BUFFER_SIZE = 64 * 1024;
+
 	/**
 	 * Constructor.
 	 * @param args The command line arguments.
@@ -79,10 +85,23 @@ public static void main(@Nonnull final String[] args) {
 	 * @param argDataPaths The files or base directories of the data for which an imprint should be generated.
 	 * @param argOutput The path to a file in which to store the output.
 	 * @param argOutputCharset The charset for text encoding the output, if output is specified.
+	 * @param argCompress Whether the output should be compressed using gzip.
+	 * @param argRelativePaths Whether imprint paths should be written relative to the base path.
+	 * @param argIndex Whether an index of the imprint paths should be created for the output file.
 	 * @param argExecutorType The particular type of executor to use, if any.
+	 * @param argProduceWaitStrategy The strategy for waiting while writing imprints, if any.
+	 * @param argMaxConcurrentReads The maximum number of files to read at the same time, if any.
+	 * @param argMaxInFlightPaths The maximum number of directory listings and file reads in progress at the same time, if any.
+	 * @param argDirectorySpillThreshold The maximum number of child fingerprints of a directory to keep in memory, if any.
+	 * @param argSpillDirectory The directory for temporary run files of large directories, if any.
+	 * @param argOrdered Whether imprints should be written in deterministic tree order.
+	 * @param argReorderWindow The maximum number of imprints to keep in memory while waiting to write them in order, if any.
+	 * @param argHasherType The particular type of file hasher to use, if any.
+	 * @param argHashBufferSize The size of the buffer for reading file contents, if any.
 	 * @param argExcludePaths The literal paths to exclude, if any.
 	 * @param argExcludePathGlobs The globs of paths to exclude, if any.
 	 * @param argExcludeFilenameGlobs The globs of filenames to exclude, if any.
+	 * @param argBaselineImprintFile The file containing imprints from a previous generation, the content fingerprints of which may be reused for unmodified files.
 	 * @throws IOException If an I/O error occurs.
 	 */
 	@Command(description = "Generates a data imprint of the indicated file or directory tree. The output will use the default console/system encoding unless an output file is specified. The system line separator will be used.", mixinStandardHelpOptions = true)
@@ -91,11 +110,24 @@ public void generate(
 			@Option(names = {"--output",
 					"-o"}, description = "The path to a file in which to store the output. UTF-8 will be used as the charset unless @|bold --output-charset|@ is specified. The system line separator will be used.") final Optional<Path> argOutput,
 			@Option(names = "--output-charset", description = "The charset for text encoding the output; ignored if no output file indicated.%nDefaults to UTF-8 if an output file is specified; otherwise uses the console encoding.") final Optional<Charset> argOutputCharset,
+			@Option(names = "--compress", description = "Compresses the output file using gzip, compressing blocks of the output on multiple threads; ignored if no output file indicated.%nImplied if the output file has a `.gz` extension.") final boolean argCompress,
+			@Option(names = "--relative-paths", description = "Writes the path of each imprint relative to the base path, making the imprints file smaller. Imprints files with relative paths cannot be read by earlier versions.") final boolean argRelativePaths,
+			@Option(names = "--index", description = "Creates an index of the imprint paths alongside the output file, with an added `.idx` extension, for looking up imprints and checking subtrees. Requires an uncompressed output file encoded in UTF-8.") final boolean argIndex,
 			@Option(names = {
-					"--executor"}, description = "Specifies a particular executor to use for multithreading. Valid values: ${COMPLETION-CANDIDATES}") final Optional<PathImprintGenerator.Builder.ExecutorType> argExecutorType,
+					"--executor"}, description = "Specifies a particular executor to use for multithreading. Valid values: ${COMPLETION-CANDIDATES}%nThe `virtualthread` executor requires Java 21 or later.") final Optional<PathImprintGenerator.Builder.ExecutorType> argExecutorType,
+			@Option(names = "--produce-wait", description = "The strategy for the writing thread to wait for imprints, and for other threads to wait for the writing thread when it falls behind. Valid values: ${COMPLETION-CANDIDATES}%nDefaults to `park`; `spin` and `yield` lower latency at the cost of keeping a processor busy.") final Optional<RingBufferExecutor.WaitStrategy> argProduceWaitStrategy,
+			@Option(names = "--max-concurrent-reads", description = "The maximum number of files to read at the same time. Defaults to 128 with the `virtualthread` executor; otherwise limited only by the executor.") final Optional<Integer> argMaxConcurrentReads,
+			@Option(names = "--max-in-flight-paths", description = "The maximum number of directory listings and file reads in progress at the same time. Waiting paths are processed most recent first, so that traversal proceeds depth-first, limiting memory use for very large trees.") final Optional<Integer> argMaxInFlightPaths,
+			@Option(names = "--directory-spill-threshold", description = "The maximum number of child fingerprints of a single directory to keep in memory. The fingerprints of directories with more children are spilled in sorted runs to temporary files and merged. Defaults to 100000.") final Optional<Integer> argDirectorySpillThreshold,
+			@Option(names = "--spill-directory", description = "The directory for temporary files spilled from directories with many children. Defaults to the system temporary directory.") final Optional<Path> argSpillDirectory,
+			@Option(names = "--ordered", description = "Writes imprints in deterministic order: the children of each directory in filename order, each directory after its contents. Imprints of the same tree are then written in the same order on every run.") final boolean argOrdered,
+			@Option(names = "--reorder-window", description = "The maximum number of imprints to keep in memory while waiting to write them in order; additional imprints are spilled to temporary files. Implies `--ordered`. Defaults to 100000.") final Optional<Integer> argReorderWindow,
+			@Option(names = "--hasher", description = "Specifies a particular engine for reading and hashing file contents. Valid values: ${COMPLETION-CANDIDATES}") final Optional<FileHasher.Type> argHasherType,
+			@Option(names = "--hash-buffer-size", description = "The size in bytes of the buffer for reading file contents; only used by the `channel` hasher.") final Optional<Integer> argHashBufferSize,
 			@Option(names = "--exclude-path", description = "One or more literal paths to exclude.") final List<Path> argExcludePaths,
 			@Option(names = "--exclude-path-glob", description = "One or more matching globs of paths to exclude; e.g. `**.txt` to exclude all text files. Windows paths much escape path separators using `\\\\`.%nMust be quoted on Linux or via OpenJDK `java -jar`.") final List<String> argExcludePathGlobs,
-			@Option(names = "--exclude-filename-glob", description = "One or more matching globs of filenames to exclude; e.g. `*.t?t` to exclude all text and test files.%nMust be quoted on Linux or via OpenJDK `java -jar`.") final List<String> argExcludeFilenameGlobs)
+			@Option(names = "--exclude-filename-glob", description = "One or more matching globs of filenames to exclude; e.g. `*.t?t` to exclude all text and test files.%nMust be quoted on Linux or via OpenJDK `java -jar`.") final List<String> argExcludeFilenameGlobs,
+			@Option(names = "--baseline", description = "A file containing imprints from a previous generation. The content fingerprint of any file with the same path and modification timestamp as in the baseline will be reused rather than reading the file contents.") final Optional<Path> argBaselineImprintFile)
 			throws IOException {
 
 		final Logger logger = getLogger();
@@ -108,38 +140,88 @@ public void generate(
 		final List<Path> excludePaths = argExcludePaths != null ? argExcludePaths : List.of();
 		final List<String> excludePathGlobs = argExcludePathGlobs != null ? argExcludePathGlobs : List.of();
 		final List<String> excludeFilenameGlobs = argExcludeFilenameGlobs != null ? argExcludeFilenameGlobs : List.of();
+		if(argIndex && (argCompress || !outputCharset.equals(UTF_8) || argOutput
+				.filter(outputPath -> findFilenameExtension(outputPath).filter(ParallelGzipChannel.FILENAME_EXTENSION::equalsIgnoreCase).isEmpty()).isEmpty())) { //fail before generating the imprints
+			throw new IllegalArgumentException("An index can only be created for an uncompressed output file encoded in UTF-8.");
+		}
 		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE)
 				.a("Generating imprint for %s ...".formatted(dataPaths.stream().map(path -> "`%s`".formatted(path)).collect(joining(", ")))).reset());
 		final PathSummerizer<PathImprint> pathSummerizer = new PathSummerizer<>(PathImprint::path);
 		final Duration timeElapsed;
+		//UTF-8 file output is encoded by the generating threads and written directly to a file channel; other output goes through a writer
+		final Optional<Path> foundEncodedOutputPath = argOutput.filter(__ -> outputCharset.equals(UTF_8));
 		try (final GenerateStatus status = new GenerateStatus();
-				final Writer writer = argOutput
-						.<Writer>map(throwingFunction(outputPath -> new BufferedWriter(new OutputStreamWriter(newOutputStream(outputPath), outputCharset))))
-						.orElseGet(() -> new PrintStreamWriter(System.out, false))) {
-			final Datim.Serializer datimSerializer = new Datim.Serializer();
-			datimSerializer.appendHeader(writer);
+				final Datim.ChannelWriter channelWriter = foundEncodedOutputPath
+						.map(throwingFunction(outputPath -> new Datim.ChannelWriter(newImprintOutputChannel(outputPath, argCompress)))).orElse(null);
+				final Writer writer = foundEncodedOutputPath.isPresent() ? null
+						: argOutput.<Writer>map(throwingFunction(outputPath -> new BufferedWriter(
+								new OutputStreamWriter(Channels.newOutputStream(newImprintOutputChannel(outputPath, argCompress)), outputCharset))))
+								.orElseGet(() -> new PrintStreamWriter(System.out, false))) {
+			final Datim.Serializer datimSerializer = new Datim.Serializer(System.lineSeparator(), argRelativePaths);
 			final AtomicLong counter = new AtomicLong(0);
-			final Consumer<PathImprint> imprintConsumer = imprint -> {
-				//suspend the status while writing the imprint if we are sending to stdout
-				final Runnable appendImprint = throwingRunnable(() -> datimSerializer.appendImprint(writer, imprint, counter.incrementAndGet()));
-				argOutput.ifPresentOrElse(__ -> appendImprint.run(), () -> status.supplyWithoutStatusLineAsync(appendImprint));
-			};
-			final PathImprintGenerator.Builder imprintGeneratorBuilder = PathImprintGenerator.builder().withImprintConsumer(imprintConsumer.andThen(pathSummerizer))
+			final Consumer<PathImprint> imprintConsumer;
+			final Consumer<Path> basePathConsumer;
+			if(channelWriter != null) {
+				channelWriter.write(datimSerializer.encodeHeader());
+				imprintConsumer = PathImprintGenerator.PreparedImprintConsumer.of(datimSerializer::encodeImprint, throwingBiConsumer((imprint, encodedImprint) -> {
+					channelWriter.writeImprint(counter.incrementAndGet(), encodedImprint);
+					pathSummerizer.accept(imprint);
+				}));
+				basePathConsumer = throwingConsumer(basePath -> channelWriter.writeBasePath(datimSerializer, basePath));
+			} else {
+				datimSerializer.appendHeader(writer);
+				final AtomicReference<Optional<Path>> foundBasePathReference = new AtomicReference<>(Optional.empty()); //only accessed while writing
+				imprintConsumer = ((Consumer<PathImprint>)imprint -> {
+					//suspend the status while writing the imprint if we are sending to stdout
+					final Runnable appendImprint = throwingRunnable(
+							() -> datimSerializer.appendImprint(writer, imprint, counter.incrementAndGet(), foundBasePathReference.get()));
+					argOutput.ifPresentOrElse(__ -> appendImprint.run(), () -> status.supplyWithoutStatusLineAsync(appendImprint));
+				}).andThen(pathSummerizer);
+				basePathConsumer = basePath -> {
+					final Runnable appendBasePath = throwingRunnable(() -> {
+						datimSerializer.appendBasePath(writer, basePath);
+						foundBasePathReference.set(Optional.of(basePath));
+					});
+					argOutput.ifPresentOrElse(__ -> appendBasePath.run(), () -> status.supplyWithoutStatusLineAsync(appendBasePath));
+				};
+			}
+			final PathImprintGenerator.Builder imprintGeneratorBuilder = PathImprintGenerator.builder().withImprintConsumer(imprintConsumer)
 					.withExcludePaths(excludePaths).withExcludePathGlobs(fileSystem, excludePathGlobs).withExcludeFilenameGlobs(fileSystem, excludeFilenameGlobs);
 			if(!isQuiet()) { //if we're in quiet mode, don't even bother with listening and printing a status
 				imprintGeneratorBuilder.withListener(status);
 			}
 			argExecutorType.ifPresent(imprintGeneratorBuilder::withGenerateExecutorType);
-			try (final PathImprintGenerator imprintGenerator = imprintGeneratorBuilder.build()) {
-				for(final Path dataPath : dataPaths) {
-					datimSerializer.appendBasePath(writer, dataPath);
-					imprintGenerator.produceImprintAsync(dataPath).join(); //any errors encountered will be propagated in this synchronous call
-					//At this point the entire tree has been traversed. There may still be imprints being produced (i.e written),
-					//but starting generating and producing imprints for another tree will cause no problem—those imprints will just be added to the queue.
+			argProduceWaitStrategy.ifPresent(imprintGeneratorBuilder::withProduceWaitStrategy);
+			argMaxConcurrentReads.ifPresent(imprintGeneratorBuilder::withMaxConcurrentFileReads);
+			argMaxInFlightPaths.ifPresent(imprintGeneratorBuilder::withMaxInFlightPathTasks);
+			argDirectorySpillThreshold.ifPresent(imprintGeneratorBuilder::withDirectorySpillThreshold);
+			argSpillDirectory.ifPresent(imprintGeneratorBuilder::withSpillDirectory);
+			argReorderWindow.ifPresentOrElse(imprintGeneratorBuilder::withOrderedProduction, () -> {
+				if(argOrdered) {
+					imprintGeneratorBuilder.withOrderedProduction();
 				}
+			});
+			argHasherType.map(hasherType -> newFileHasher(hasherType, argHashBufferSize)).ifPresent(imprintGeneratorBuilder::withFileHasher);
+			if(argBaselineImprintFile.isPresent()) {
+				final Path baselineImprintFile = argBaselineImprintFile.get();
+				logger.info("Loading baseline imprint `{}` ...", baselineImprintFile);
+				try (final InputStream inputStream = newImprintInputStream(baselineImprintFile)) {
+					imprintGeneratorBuilder.withBaselineImprints(newDatimParser(inputStream, Optional.empty()));
+				}
+			}
+			try (final PathImprintGenerator imprintGenerator = imprintGeneratorBuilder.build()) {
+				//all trees are traversed at the same time, but each tree's base path and imprints are still written together as a section
+				imprintGenerator.produceImprintsAsync(dataPaths, basePathConsumer).join(); //any errors encountered will be propagated in this synchronous call
+				//At this point all the trees have been traversed. There may still be imprints being produced (i.e written),
+				//but they will be finished before the generator is closed.
 			}
 			timeElapsed = status.getElapsedTime();
 		}
+		if(argIndex) {
+			final Path outputPath = argOutput.orElseThrow(IllegalStateException::new);
+			logger.info("Indexing imprint `{}` ...", outputPath);
+			DatimIndex.build(outputPath);
+		}
 		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE)
 				.a("Done. Produced imprints for %d paths (%d files; %d directories). Elapsed time: %d:%02d:%02d.".formatted(pathSummerizer.getTotalPathCount(),
 						pathSummerizer.getFileCount(), pathSummerizer.getDirectoryCount(), timeElapsed.toHours(), timeElapsed.toMinutesPart(), timeElapsed.toSecondsPart()))
@@ -217,12 +299,22 @@ public void afterGenerateFileContentFingerprint(final Path file) {
 	/**
 	 * Checks the indicated file or files in the indicated directory tree against the data imprints in a file. The imprints will be checked even if they are for
 	 * different paths, as long as their relative paths (against the stored base paths) match those in the subtree. Any paths not in the imprints file (e.g. new
-	 * files in the data directory) will not be checked.
+	 * files in the data directory) will not be checked, but can be reported as new.
 	 * @param argDataPath The file or base directory of the file(s) to be checked.
 	 * @param argImprintFile The file containing imprints against which to check the data files.
 	 * @param argImprintCharset The charset of the imprints file.
+	 * @param argSubtree The subtree of the data to check, if any, using the index of the imprints file.
 	 * @param argOutput The path to a file in which to store the output.
 	 * @param argOutputCharset The charset for text encoding the output, if output is specified.
+	 * @param argExecutorType The particular type of executor to use, if any.
+	 * @param argProduceWaitStrategy The strategy for waiting while writing results, if any.
+	 * @param argMaxConcurrentReads The maximum number of paths to check at the same time, if any.
+	 * @param argMaxInFlightChecks The maximum number of checks scheduled but not yet finished, if any.
+	 * @param argGroupByDirectory Whether to group imprints by directory, listing each directory once instead of accessing each path individually.
+	 * @param argReportNew Whether to traverse the data after checking and report any paths not in the imprints.
+	 * @param argVerifyTree Whether to verify the fingerprints of each directory recomputed bottom-up from the check results of its children.
+	 * @param argHasherType The particular type of file hasher to use, if any.
+	 * @param argHashBufferSize The size of the buffer for reading file contents, if any.
 	 * @throws IOException If an I/O error occurs.
 	 */
 	@Command(description = "Checks the indicated file or files in the indicated directory tree against the data imprints in a file. The output will use the default console/system encoding unless an output file is specified. The system line separator will be used.", mixinStandardHelpOptions = true)
@@ -232,9 +324,20 @@ public void check(
 					"-i"}, description = "The file containing imprints against which to check the data files.", required = true) final Path argImprintFile,
 			@Option(names = {
 					"--imprint-charset"}, description = "The charset of the imprints file. If not provided, detected from the any BOM, defaulting to UTF-8.") Optional<Charset> argImprintCharset,
+			@Option(names = "--subtree", description = "Checks only the imprints of the indicated directory or file within the data, relative to the data directory, reading only those imprints using the index of the imprints file.") final Optional<Path> argSubtree,
 			@Option(names = {"--output",
 					"-o"}, description = "The path to a file in which to store the output. UTF-8 will be used as the charset unless @|bold --output-charset|@ is specified. The system line separator will be used.") final Optional<Path> argOutput,
-			@Option(names = "--output-charset", description = "The charset for text encoding the output; ignored if no output file indicated.%nDefaults to UTF-8 if an output file is specified; otherwise uses the console encoding.") final Optional<Charset> argOutputCharset)
+			@Option(names = "--output-charset", description = "The charset for text encoding the output; ignored if no output file indicated.%nDefaults to UTF-8 if an output file is specified; otherwise uses the console encoding.") final Optional<Charset> argOutputCharset,
+			@Option(names = {
+					"--executor"}, description = "Specifies a particular executor to use for multithreading. Valid values: ${COMPLETION-CANDIDATES}%nThe `virtualthread` executor requires Java 21 or later.") final Optional<PathImprintGenerator.Builder.ExecutorType> argExecutorType,
+			@Option(names = "--produce-wait", description = "The strategy for the writing thread to wait for results, and for other threads to wait for the writing thread when it falls behind. Valid values: ${COMPLETION-CANDIDATES}%nDefaults to `park`; `spin` and `yield` lower latency at the cost of keeping a processor busy.") final Optional<RingBufferExecutor.WaitStrategy> argProduceWaitStrategy,
+			@Option(names = "--max-concurrent-reads", description = "The maximum number of paths to check at the same time. Defaults to 128 with the `virtualthread` executor; otherwise limited only by the executor.") final Optional<Integer> argMaxConcurrentReads,
+			@Option(names = "--max-in-flight-checks", description = "The maximum number of checks scheduled but not yet finished. Reading imprints waits when this many checks are pending, limiting memory use for very large imprints files. Defaults to 10000.") final Optional<Integer> argMaxInFlightChecks,
+			@Option(names = "--group-by-directory", description = "Groups imprints by directory, listing each directory once instead of accessing each path individually; only files are then read. Reduces file system round trips, for example on network file systems with many small files.") final boolean argGroupByDirectory,
+			@Option(names = "--report-new", description = "After checking, traverses the data and reports any paths not in the imprints. The contents of a new directory are not reported separately.") final boolean argReportNew,
+			@Option(names = "--verify-tree", description = "Recomputes the fingerprints of each directory from the check results of its children and verifies them against the imprint, indicating whether the whole tree is intact. Requires imprints in tree order, such as those generated with @|bold --ordered|@; may not be used with @|bold --subtree|@.") final boolean argVerifyTree,
+			@Option(names = "--hasher", description = "Specifies a particular engine for reading and hashing file contents. Valid values: ${COMPLETION-CANDIDATES}") final Optional<FileHasher.Type> argHasherType,
+			@Option(names = "--hash-buffer-size", description = "The size in bytes of the buffer for reading file contents; only used by the `channel` hasher.") final Optional<Integer> argHashBufferSize)
 			throws IOException {
 
 		final Logger logger = getLogger();
@@ -242,17 +345,35 @@ public void check(
 		logAppInfo();
 
 		final Path dataPath = argDataPath.toRealPath(NOFOLLOW_LINKS);
+		final Optional<Path> foundSubtree = argSubtree.map(subtree -> dataPath.resolve(subtree).normalize());
+		foundSubtree.filter(subtree -> !subtree.startsWith(dataPath)).ifPresent(subtree -> {
+			throw new IllegalArgumentException("Subtree `%s` is not within `%s`.".formatted(subtree, dataPath));
+		});
+		if(argVerifyTree && foundSubtree.isPresent()) { //index lookups are not in tree order
+			throw new IllegalArgumentException("Directory trees cannot be verified when checking a subtree.");
+		}
 		final Charset outputCharset = argOutputCharset.orElse(UTF_8);
 		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Checking `%s` against imprint `%s` ...".formatted(dataPath, argImprintFile)).reset());
 		final Duration timeElapsed;
-		final PathSummerizer<PathChecker.Result> pathSummerizer = new PathSummerizer<>(PathChecker.Result::getPath);
-		final AtomicReference<Optional<Throwable>> foundErrorReference = new AtomicReference<>(Optional.empty());
-		try (final InputStream inputStream = new BufferedInputStream(newInputStream(argImprintFile));
-				final CheckStatus status = new CheckStatus();
+		final PathChecker.Summary summary;
+		final AtomicLong newPathCount = new AtomicLong(0);
+		final AtomicLong treeMismatchCount = new AtomicLong(0);
+		final AtomicReference<Optional<PathChecker.TreeResult>> foundRootTreeResultReference = new AtomicReference<>(Optional.empty());
+		try (final CheckStatus status = new CheckStatus();
 				final Writer writer = argOutput
 						.<Writer>map(throwingFunction(outputPath -> new BufferedWriter(new OutputStreamWriter(newOutputStream(outputPath), outputCharset))))
 						.orElseGet(() -> new PrintStreamWriter(System.out, false))) {
+			final Consumer<List<String>> reportAppender = reportLines -> {
+				//suspend the status while adding to the report if we are sending to stdout
+				final Runnable appendReport = throwingRunnable(() -> {
+					reportLines.forEach(throwingConsumer(writer::append));
+					writer.flush(); //it will be useful for the user to get the information sooner, and normally the report should be significantly smaller that the data being checked
+				});
+				argOutput.ifPresentOrElse(__ -> appendReport.run(), () -> status.supplyWithoutStatusLineAsync(appendReport));
+			};
+			final Optional<CompactPathSet> foundImprintedPaths = argReportNew ? Optional.of(new CompactPathSet()) : Optional.empty();
 			final Consumer<PathChecker.Result> resultConsumer = result -> {
+				foundImprintedPaths.ifPresent(imprintedPaths -> imprintedPaths.add(result.getPath())); //existing paths are real paths, as found when traversing
 				if(!result.isMatch()) {
 					final List<String> reportLines = new ArrayList<>();
 					//- description
@@ -274,59 +395,126 @@ public void check(
 									};
 								}).forEachOrdered(reportLines::add);
 					}
-					//suspend the status while adding to the report if we are sending to stdout
-					final Runnable appendReport = throwingRunnable(() -> {
-						reportLines.forEach(throwingConsumer(writer::append));
-						writer.flush(); //it will be useful for the user to get the information sooner, and normally the report should be significantly smaller that the data being checked
-					});
-					argOutput.ifPresentOrElse(__ -> appendReport.run(), () -> status.supplyWithoutStatusLineAsync(appendReport));
+					reportAppender.accept(reportLines);
 				}
 			};
-			final PathChecker.Builder pathCheckerBuilder = PathChecker.builder().withResultConsumer(resultConsumer.andThen(pathSummerizer));
+			final PathChecker.Builder pathCheckerBuilder = PathChecker.builder().withResultConsumer(resultConsumer);
+			if(argVerifyTree) {
+				pathCheckerBuilder.withTreeResultConsumer(treeResult -> {
+					if(treeResult.path().equals(dataPath)) {
+						foundRootTreeResultReference.set(Optional.of(treeResult));
+					}
+					if(!treeResult.isMatch()) {
+						treeMismatchCount.incrementAndGet();
+						final List<String> reportLines = new ArrayList<>();
+						reportLines.add("- Directory tree `%s` does not match imprint for path `%s`.%n".formatted(treeResult.path(), treeResult.imprint().path()));
+						if(!treeResult.isContentFingerprintMatch()) {
+							reportLines.add("  * Recomputed content fingerprint `%s` did not match `%s` of the imprint.%n".formatted(treeResult.contentFingerprint(),
+									treeResult.imprint().contentFingerprint()));
+						}
+						reportLines.add("  * Recomputed fingerprint `%s` did not match `%s` of the imprint.%n".formatted(treeResult.fingerprint(),
+								treeResult.imprint().fingerprint()));
+						reportAppender.accept(reportLines);
+					}
+				});
+			}
 			if(!isQuiet()) { //if we're in quiet mode, don't even bother with listening and printing a status
 				pathCheckerBuilder.withListener(status);
 			}
-			Optional<CompletableFuture<PathChecker.Result>> foundFutureResult = Optional.empty();
-			final AtomicLong imprintCount = new AtomicLong(0);
+			argExecutorType.ifPresent(pathCheckerBuilder::withCheckExecutorType);
+			argProduceWaitStrategy.ifPresent(pathCheckerBuilder::withProduceWaitStrategy);
+			argMaxConcurrentReads.ifPresent(pathCheckerBuilder::withMaxConcurrentChecks);
+			argHasherType.map(hasherType -> newFileHasher(hasherType, argHashBufferSize)).ifPresent(pathCheckerBuilder::withFileHasher);
+			argMaxInFlightChecks.ifPresent(pathCheckerBuilder::withMaxInFlightChecks);
+			pathCheckerBuilder.withGroupByDirectory(argGroupByDirectory);
 			try (final PathChecker pathChecker = pathCheckerBuilder.build()) {
-				final Datim.Parser parser = argImprintCharset.map(imprintCharset -> new Datim.Parser(new InputStreamReader(inputStream, imprintCharset)))
-						.orElseGet(throwingSupplier(() -> new Datim.Parser(inputStream)));
-				Optional<PathImprint> foundImprint;
-				do {
-					final Optional<CompletableFuture<PathChecker.Result>> lastFoundFutureResult = foundFutureResult;
-					foundImprint = parser.readImprint(); //read an imprint
-					foundImprint.ifPresent(__ -> status.setTotal(imprintCount.incrementAndGet())); //keep track of the total number of imprints read, updating the status
-					foundFutureResult = foundImprint.map(throwingFunction(imprint -> { //schedule a result for checking the imprint
-						final Path imprintPath = imprint.path();
-						final Path oldBasePath = parser.findCurrentBasePath()
-								.orElseThrow(() -> new IOException("Cannot relocate imprint path `%s`; base path not known.".formatted(imprintPath)));
-						final Path path = changeBase(imprintPath, oldBasePath, dataPath);
-						return pathChecker.checkPathAsync(path, imprint).exceptionally(throwable -> {
-							foundErrorReference.compareAndSet(Optional.empty(), Optional.of(throwable)); //keep track of the first error that occurs
-							return null;
-						});
-					})).map(
-							//if we have a new future result, chain it to the last found future result
-							newFutureResult -> lastFoundFutureResult.map(lastFutureResult -> lastFutureResult.thenCombine(newFutureResult, (__, result) -> result))
-									.orElse(newFutureResult)) //if there is no last found future result, use the new future result
-							//if we do not have a new future result, just stick with the one we found last (which may also be empty)
-							.map(Optional::of).orElse(lastFoundFutureResult);
-				} while(foundImprint.isPresent() && foundErrorReference.get().isEmpty());
-
-				foundFutureResult.ifPresent(CompletableFuture::join); //join the last future result we found; this will ensure the entire chain is complete
-
-				foundErrorReference.get().ifPresent(throwingConsumer(throwable -> { //propagate and let the application handle any error
-					throw throwable;
-				}));
+				if(foundSubtree.isPresent()) { //look up only the imprints in the subtree of each base path
+					final Path subtreeRelativePath = dataPath.relativize(foundSubtree.get());
+					try (final DatimIndex index = new DatimIndex(argImprintFile)) {
+						final List<Path> basePaths = index.getBasePaths();
+						final Stream<Path> subtreePaths = basePaths.isEmpty() ? Stream.of(foundSubtree.get())
+								: basePaths.stream().distinct().map(basePath -> basePath.resolve(subtreeRelativePath));
+						summary = pathChecker.checkAsync(subtreePaths.flatMap(throwingFunction(index::entries)), dataPath).join(); //any errors encountered will be propagated in this synchronous call
+					}
+				} else if(!ParallelGzipChannel.isGzip(argImprintFile) && !BinaryDatim.isBinaryDatim(argImprintFile)
+						&& argImprintCharset.map(UTF_8::equals).orElseGet(throwingSupplier(() -> MappedDatimReader.isUtf8(argImprintFile)))) { //parse UTF-8 imprints in parallel
+					try (final MappedDatimReader reader = new MappedDatimReader(argImprintFile)) {
+						summary = pathChecker.checkAsync(reader.entries(true).unordered(), dataPath).join();
+					}
+				} else {
+					try (final InputStream inputStream = newImprintInputStream(argImprintFile)) {
+						summary = pathChecker.checkAsync(newDatimParser(inputStream, argImprintCharset), dataPath).join();
+					}
+				}
+				status.setTotal(summary.pathCount()); //imprints may have been counted out of order
+			} //closing the checker ensures all results have been produced
+			if(foundImprintedPaths.isPresent()) {
+				final CompactPathSet imprintedPaths = foundImprintedPaths.get();
+				walkNewPaths(foundSubtree.orElse(dataPath), imprintedPaths, newPath -> {
+					newPathCount.incrementAndGet();
+					reportAppender.accept(List.of("- New path `%s` not in imprint.%n".formatted(newPath)));
+				});
 			}
 			timeElapsed = status.getElapsedTime();
 		}
 		logger.info("{}",
 				ansi().bold().fg(Ansi.Color.BLUE)
-						.a("Done. Checked %d paths (%d files; %d directories; %d missing). Elapsed time: %d:%02d:%02d.".formatted(pathSummerizer.getTotalPathCount(),
-								pathSummerizer.getFileCount(), pathSummerizer.getDirectoryCount(), pathSummerizer.getMissingPathCount(), timeElapsed.toHours(),
-								timeElapsed.toMinutesPart(), timeElapsed.toSecondsPart()))
+						.a("Done. Checked %d paths (%d files; %d directories; %d missing%s) and %d bytes. Elapsed time: %d:%02d:%02d.".formatted(summary.pathCount(),
+								summary.fileCount(), summary.directoryCount(), summary.missingPathCount(), argReportNew ? "; %d new".formatted(newPathCount.get()) : "",
+								summary.byteCount(), timeElapsed.toHours(), timeElapsed.toMinutesPart(), timeElapsed.toSecondsPart()))
 						.reset());
+		if(argVerifyTree) {
+			foundRootTreeResultReference.get().ifPresentOrElse(rootTreeResult -> {
+				logger.info("{}",
+						ansi().bold().fg(rootTreeResult.isMatch() ? Ansi.Color.BLUE : Ansi.Color.RED)
+								.a("Tree `%s` %s its imprint (%d directories not matching).".formatted(rootTreeResult.path(),
+										rootTreeResult.isMatch() ? "is intact, matching" : "does not match", treeMismatchCount.get()))
+								.reset());
+			}, () -> logger.warn("No imprint found for `{}` to verify its tree ({} directories not matching).", dataPath, treeMismatchCount.get()));
+		}
+	}
+
+	/**
+	 * Traverses a data tree, finding paths not in a set of paths, such as the paths of imprints that were checked. The contents of a new directory are not
+	 * traversed, as they will all be new as well.
+	 * @implSpec Symbolic links are followed, as when generating imprints, and hidden directories marked as DOS "system" directories are skipped. Paths that
+	 *           cannot be read are skipped as well.
+	 * @param root The root of the tree to traverse, which is not itself reported.
+	 * @param paths The paths known not to be new.
+	 * @param newPathConsumer The consumer to receive each new path found, in traversal order.
+	 * @throws IOException if there is an error traversing the tree.
+	 */
+	private void walkNewPaths(@Nonnull final Path root, @Nonnull final CompactPathSet paths, @Nonnull final Consumer<Path> newPathConsumer) throws IOException {
+		walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes) throws IOException {
+				if(directory.equals(root)) {
+					return FileVisitResult.CONTINUE;
+				}
+				if(attributes instanceof DosFileAttributes dosFileAttributes && dosFileAttributes.isHidden() && dosFileAttributes.isSystem()) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				if(!paths.contains(directory)) {
+					newPathConsumer.accept(directory);
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+				if(!file.equals(root) && !paths.contains(file)) {
+					newPathConsumer.accept(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(final Path file, final IOException exception) throws IOException {
+				getLogger().debug("Skipping unreadable path `{}`: {}", file, exception.getMessage());
+				return FileVisitResult.CONTINUE;
+			}
+		});
 	}
 
 	/**
@@ -340,8 +528,11 @@ public void check(
 	 */
 	private class CheckStatus extends CliStatus<Path> implements PathChecker.Listener {
 
+		private final AtomicLong checkCount = new AtomicLong(0);
+
 		@Override
 		public void onCheckPath(final Path path, final PathImprint imprint) {
+			setTotal(checkCount.incrementAndGet()); //keep track of the total number of checks scheduled, which will be ahead of those completed
 			if(isVerbose() && isDirectory(path)) {
 				printLineAsync(path.toString());
 			}
@@ -368,6 +559,397 @@ public void onResultMismatch(final PathChecker.Result result) {
 
 	}
 
+	/**
+	 * Converts an imprints file between the text and binary formats.
+	 * @apiNote As base path records are only noted as imprints are read, a base path record not followed by any imprints is not converted.
+	 * @param argImprintFile The imprints file to convert.
+	 * @param argImprintCharset The charset of the imprints file, if it is in the text format.
+	 * @param argOutput The path to a file in which to store the converted imprints.
+	 * @param argOutputFormat The format to which to convert the imprints.
+	 * @param argOutputCharset The charset for text encoding the output, if converting to the text format.
+	 * @param argCompress Whether the output should be compressed using gzip.
+	 * @param argRelativePaths Whether imprint paths should be written relative to the base path when converting to the text format.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	@Command(description = "Converts an imprints file between the text and binary formats. The format of the imprints file is detected automatically. The system line separator will be used for text output.", mixinStandardHelpOptions = true)
+	public void convert(@Parameters(paramLabel = "<imprint>", description = "The imprints file to convert.") @Nonnull final Path argImprintFile,
+			@Option(names = {
+					"--imprint-charset"}, description = "The charset of the imprints file if it is in the text format. If not provided, detected from the any BOM, defaulting to UTF-8.") Optional<Charset> argImprintCharset,
+			@Option(names = {"--output", "-o"}, description = "The path to a file in which to store the converted imprints.", required = true) final Path argOutput,
+			@Option(names = "--to", description = "The format to which to convert the imprints. Valid values: ${COMPLETION-CANDIDATES}", required = true) final Datim.Format argOutputFormat,
+			@Option(names = "--output-charset", description = "The charset for text encoding the output; ignored for binary output.%nDefaults to UTF-8.") final Optional<Charset> argOutputCharset,
+			@Option(names = "--compress", description = "Compresses the output file using gzip.%nImplied if the output file has a `.gz` extension.") final boolean argCompress,
+			@Option(names = "--relative-paths", description = "Writes the path of each imprint relative to the base path; ignored for binary output.") final boolean argRelativePaths)
+			throws IOException {
+
+		final Logger logger = getLogger();
+
+		logAppInfo();
+
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Converting imprint `%s` to %s format `%s` ...".formatted(argImprintFile, argOutputFormat, argOutput)).reset());
+		final long imprintCount;
+		try (final InputStream inputStream = newImprintInputStream(argImprintFile)) {
+			imprintCount = writeImprints(newDatimParser(inputStream, argImprintCharset), argOutput, argOutputFormat, argOutputCharset, argCompress, argRelativePaths);
+		}
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Done. Converted %d imprints.".formatted(imprintCount)).reset());
+	}
+
+	/**
+	 * Sorts the imprints in an imprints file by path or by content fingerprint, using temporary files for imprints files too large to sort in memory. The base
+	 * path in effect for each imprint is kept, with a base path record written whenever the base path changes.
+	 * @param argImprintFile The imprints file to sort.
+	 * @param argImprintCharset The charset of the imprints file, if it is in the text format.
+	 * @param argOutput The path to a file in which to store the sorted imprints.
+	 * @param argOrder The order in which to sort the imprints, if not by path.
+	 * @param argOutputFormat The format of the sorted imprints file, if not text.
+	 * @param argOutputCharset The charset for text encoding the output, if writing the text format.
+	 * @param argCompress Whether the output should be compressed using gzip.
+	 * @param argRelativePaths Whether imprint paths should be written relative to the base path when writing the text format.
+	 * @param argSortWindow The maximum number of imprints to keep in memory while sorting, if any.
+	 * @param argSpillDirectory The directory for temporary files used in sorting, if any.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	@Command(description = "Sorts the imprints in an imprints file by path or by content fingerprint. Imprints files too large to sort in memory are sorted in runs using temporary files, which are then merged. The format of the imprints file is detected automatically. The system line separator will be used for text output.", mixinStandardHelpOptions = true)
+	public void sort(@Parameters(paramLabel = "<imprint>", description = "The imprints file to sort.") @Nonnull final Path argImprintFile,
+			@Option(names = {
+					"--imprint-charset"}, description = "The charset of the imprints file if it is in the text format. If not provided, detected from the any BOM, defaulting to UTF-8.") Optional<Charset> argImprintCharset,
+			@Option(names = {"--output", "-o"}, description = "The path to a file in which to store the sorted imprints.", required = true) final Path argOutput,
+			@Option(names = "--by", description = "The order in which to sort the imprints. Valid values: ${COMPLETION-CANDIDATES}%nDefaults to `path`, in the same order as generating with `--ordered`; `content` sorts by content fingerprint, placing paths with identical content together.") final Optional<ImprintSorter.Order> argOrder,
+			@Option(names = "--to", description = "The format of the sorted imprints. Valid values: ${COMPLETION-CANDIDATES}%nDefaults to `text`.") final Optional<Datim.Format> argOutputFormat,
+			@Option(names = "--output-charset", description = "The charset for text encoding the output; ignored for binary output.%nDefaults to UTF-8.") final Optional<Charset> argOutputCharset,
+			@Option(names = "--compress", description = "Compresses the output file using gzip.%nImplied if the output file has a `.gz` extension.") final boolean argCompress,
+			@Option(names = "--relative-paths", description = "Writes the path of each imprint relative to the base path; ignored for binary output.") final boolean argRelativePaths,
+			@Option(names = "--sort-window", description = "The maximum number of imprints to keep in memory; additional imprints are sorted in temporary files. Defaults to 100000.") final Optional<Integer> argSortWindow,
+			@Option(names = "--spill-directory", description = "The directory for temporary files used in sorting. Defaults to the system temporary directory.") final Optional<Path> argSpillDirectory)
+			throws IOException {
+
+		final Logger logger = getLogger();
+
+		logAppInfo();
+
+		final ImprintSorter.Order order = argOrder.orElse(ImprintSorter.Order.path);
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Sorting imprint `%s` by %s into `%s` ...".formatted(argImprintFile, order, argOutput)).reset());
+		final long imprintCount;
+		try (final InputStream inputStream = newImprintInputStream(argImprintFile);
+				final ImprintSorter sorter = new ImprintSorter(newDatimParser(inputStream, argImprintCharset), order, PathImprintGenerator.FINGERPRINT_ALGORITHM,
+						argSortWindow.orElse(ImprintSorter.DEFAULT_WINDOW_SIZE), argSpillDirectory)) {
+			imprintCount = writeImprints(sorter, argOutput, argOutputFormat.orElse(Datim.Format.text), argOutputCharset, argCompress, argRelativePaths);
+		}
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Done. Sorted %d imprints.".formatted(imprintCount)).reset());
+	}
+
+	/**
+	 * Compares two imprints files, such as of the same tree generated at different times, using only the information in the imprints. Imprints are matched by
+	 * path. Imprints files not already in tree order, as generated using <code>--ordered</code>, are first sorted using
+	 * temporary files as needed.
+	 * @param argOldImprintFile The imprints file of the earlier state.
+	 * @param argNewImprintFile The imprints file of the later state.
+	 * @param argImprintCharset The charset of the imprints files, if they are in the text format.
+	 * @param argOutput The path to a file in which to store the output.
+	 * @param argOutputCharset The charset for text encoding the output, if output is specified.
+	 * @param argSortWindow The maximum number of imprints to keep in memory while sorting, if any.
+	 * @param argSpillDirectory The directory for temporary files used in sorting, if any.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	@Command(description = "Compares two imprints files, reporting paths added, removed, with changed content, or with only changed metadata such as modification timestamp. Data files are not read. The output will use the default console/system encoding unless an output file is specified.", mixinStandardHelpOptions = true)
+	public void diff(@Parameters(paramLabel = "<old>", description = "The imprints file of the earlier state.") @Nonnull final Path argOldImprintFile,
+			@Parameters(paramLabel = "<new>", description = "The imprints file of the later state.") @Nonnull final Path argNewImprintFile,
+			@Option(names = {
+					"--imprint-charset"}, description = "The charset of the imprints files if they are in the text format. If not provided, detected from the any BOM, defaulting to UTF-8.") Optional<Charset> argImprintCharset,
+			@Option(names = {"--output",
+					"-o"}, description = "The path to a file in which to store the output. UTF-8 will be used as the charset unless @|bold --output-charset|@ is specified. The system line separator will be used.") final Optional<Path> argOutput,
+			@Option(names = "--output-charset", description = "The charset for text encoding the output; ignored if no output file indicated.%nDefaults to UTF-8 if an output file is specified; otherwise uses the console encoding.") final Optional<Charset> argOutputCharset,
+			@Option(names = "--sort-window", description = "The maximum number of imprints to keep in memory when sorting an imprints file not in tree order; additional imprints are sorted in temporary files. Defaults to 100000.") final Optional<Integer> argSortWindow,
+			@Option(names = "--spill-directory", description = "The directory for temporary files used in sorting. Defaults to the system temporary directory.") final Optional<Path> argSpillDirectory)
+			throws IOException {
+
+		final Logger logger = getLogger();
+
+		logAppInfo();
+
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Comparing imprint `%s` with imprint `%s` ...".formatted(argOldImprintFile, argNewImprintFile)).reset());
+		final Map<DatimDiff.Difference.Type, Long> differenceCounts = new EnumMap<>(DatimDiff.Difference.Type.class);
+		try (final Writer writer = argOutput
+				.<Writer>map(throwingFunction(outputPath -> new BufferedWriter(new OutputStreamWriter(newOutputStream(outputPath), argOutputCharset.orElse(UTF_8)))))
+				.orElseGet(() -> new PrintStreamWriter(System.out, false));
+				final DatimSource oldSource = new DatimSource(argOldImprintFile, argImprintCharset, argSortWindow, argSpillDirectory);
+				final DatimSource newSource = new DatimSource(argNewImprintFile, argImprintCharset, argSortWindow, argSpillDirectory)) {
+			new DatimDiff(throwingConsumer(difference -> {
+				differenceCounts.merge(difference.type(), 1L, Long::sum);
+				final PathImprint oldImprint = difference.foundOldImprint().orElse(null);
+				final PathImprint newImprint = difference.foundNewImprint().orElse(null);
+				//- description
+				writer.append("- " + switch(difference.type()) {
+					case ADDED -> "Added path `%s`.%n".formatted(difference.path());
+					case REMOVED -> "Removed path `%s`.%n".formatted(difference.path());
+					case CONTENT_CHANGED -> "Changed content of path `%s`.%n".formatted(difference.path());
+					case METADATA_CHANGED -> "Changed metadata of path `%s`.%n".formatted(difference.path());
+				});
+				//  * detail(s)
+				if(oldImprint != null && newImprint != null) {
+					if(!oldImprint.contentFingerprint().equals(newImprint.contentFingerprint())) {
+						writer.append("  * Content fingerprint changed from `%s` to `%s`.%n".formatted(oldImprint.contentFingerprint(), newImprint.contentFingerprint()));
+					}
+					if(!oldImprint.contentModifiedAt().equals(newImprint.contentModifiedAt())) {
+						writer.append("  * Modification timestamp changed from %s to %s.%n".formatted(oldImprint.contentModifiedAt(), newImprint.contentModifiedAt()));
+					}
+				}
+			})).diff(oldSource.getParser(), newSource.getParser());
+			writer.flush();
+		}
+		logger.info("{}",
+				ansi().bold().fg(Ansi.Color.BLUE)
+						.a("Done. Found %d added, %d removed, %d content changed, and %d metadata changed paths.".formatted(
+								differenceCounts.getOrDefault(DatimDiff.Difference.Type.ADDED, 0L), differenceCounts.getOrDefault(DatimDiff.Difference.Type.REMOVED, 0L),
+								differenceCounts.getOrDefault(DatimDiff.Difference.Type.CONTENT_CHANGED, 0L),
+								differenceCounts.getOrDefault(DatimDiff.Difference.Type.METADATA_CHANGED, 0L)))
+						.reset());
+	}
+
+	/**
+	 * Source of the imprints of an imprints file in tree order for comparison. If the imprints file is not already in tree order, its imprints are sorted.
+	 * @author Garret Wilson
+	 */
+	private class DatimSource implements Closeable {
+
+		private final InputStream inputStream;
+
+		@Nullable
+		private final ImprintSorter sorter;
+
+		private final DatimParser parser;
+
+		/** @return The parser of the imprints in tree order. */
+		public DatimParser getParser() {
+			return parser;
+		}
+
+		/**
+		 * Constructor. The imprints file is read once to determine whether it is in tree order, and is then opened again for comparison.
+		 * @param imprintFile The imprints file.
+		 * @param imprintCharset The charset of the imprints file, if known.
+		 * @param foundSortWindow The maximum number of imprints to keep in memory while sorting, if any.
+		 * @param foundSpillDirectory The directory for temporary files used in sorting, if any.
+		 * @throws IOException if there was an error reading the imprints file or sorting its imprints.
+		 */
+		public DatimSource(@Nonnull final Path imprintFile, @Nonnull final Optional<Charset> imprintCharset, @Nonnull final Optional<Integer> foundSortWindow,
+				@Nonnull final Optional<Path> foundSpillDirectory) throws IOException {
+			final boolean isSorted;
+			try (final InputStream inputStream = newImprintInputStream(imprintFile)) {
+				isSorted = DatimDiff.isSorted(newDatimParser(inputStream, imprintCharset));
+			}
+			inputStream = newImprintInputStream(imprintFile);
+			try {
+				final DatimParser fileParser = newDatimParser(inputStream, imprintCharset);
+				if(isSorted) {
+					sorter = null;
+					parser = fileParser;
+				} else {
+					getLogger().info("Sorting imprint `{}` ...", imprintFile);
+					sorter = new ImprintSorter(fileParser, ImprintSorter.Order.path, PathImprintGenerator.FINGERPRINT_ALGORITHM,
+							foundSortWindow.orElse(ImprintSorter.DEFAULT_WINDOW_SIZE), foundSpillDirectory);
+					parser = sorter;
+				}
+			} catch(final IOException | RuntimeException exception) {
+				inputStream.close();
+				throw exception;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if(sorter != null) {
+					sorter.close();
+				}
+			} finally {
+				inputStream.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Creates an index of the imprint paths in an imprints file, stored alongside the imprints file with an added {@value DatimIndex#FILENAME_EXTENSION}
+	 * extension.
+	 * @param argImprintFile The imprints file to index.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	@Command(description = "Creates an index of the imprint paths in an imprints file, for looking up imprints and checking subtrees. The index is stored alongside the imprints file with an added `.idx` extension. Only uncompressed imprints files in the text format encoded in UTF-8 can be indexed.", mixinStandardHelpOptions = true)
+	public void index(@Parameters(paramLabel = "<imprint>", description = "The imprints file to index.") @Nonnull final Path argImprintFile) throws IOException {
+
+		final Logger logger = getLogger();
+
+		logAppInfo();
+
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Indexing imprint `%s` ...".formatted(argImprintFile)).reset());
+		final long imprintCount = DatimIndex.build(argImprintFile);
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Done. Indexed %d imprints.".formatted(imprintCount)).reset());
+	}
+
+	/**
+	 * Looks up the imprint of a path, or the imprints of all paths in a subtree, using the index of an imprints file. The imprints found are written to
+	 * {@link System#out} as imprints in the text format, with absolute paths.
+	 * @param argImprintFile The imprints file, which must have been indexed.
+	 * @param argPath The absolute path of the imprint to look up.
+	 * @param argSubtree Whether the imprints of all the paths within the path should be looked up as well.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	@Command(description = "Looks up the imprint of a path in an indexed imprints file, writing any imprints found in the text format using the default console/system encoding.", mixinStandardHelpOptions = true)
+	public void lookup(@Parameters(paramLabel = "<imprint>", description = "The indexed imprints file.") @Nonnull final Path argImprintFile,
+			@Parameters(paramLabel = "<path>", description = "The absolute path of the imprint to look up.") @Nonnull final Path argPath,
+			@Option(names = "--subtree", description = "Also looks up the imprints of all paths within the path.") final boolean argSubtree) throws IOException {
+
+		final Logger logger = getLogger();
+
+		logAppInfo();
+
+		final Path path = argPath.toAbsolutePath().normalize();
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Looking up `%s` in imprint `%s` ...".formatted(path, argImprintFile)).reset());
+		long imprintCount = 0;
+		try (final DatimIndex index = new DatimIndex(argImprintFile); final Writer writer = new PrintStreamWriter(System.out, false)) {
+			final Datim.Serializer serializer = new Datim.Serializer(System.lineSeparator());
+			serializer.appendHeader(writer);
+			final Iterator<MappedDatimReader.Entry> entryIterator = argSubtree ? index.entries(path).iterator()
+					: index.findEntry(path).map(List::of).orElse(List.of()).iterator();
+			Optional<Path> foundBasePath = Optional.empty();
+			while(entryIterator.hasNext()) {
+				final MappedDatimReader.Entry entry = entryIterator.next();
+				if(!entry.foundBasePath().equals(foundBasePath) && entry.foundBasePath().isPresent()) {
+					serializer.appendBasePath(writer, entry.foundBasePath().get());
+					foundBasePath = entry.foundBasePath();
+				}
+				serializer.appendImprint(writer, entry.imprint(), ++imprintCount);
+			}
+			writer.flush();
+		}
+		logger.info("{}", ansi().bold().fg(Ansi.Color.BLUE).a("Done. Found %d imprints.".formatted(imprintCount)).reset());
+	}
+
+	/**
+	 * Writes imprints read from a parser to an imprints file, writing a base path record for each new base path of the parser.
+	 * @param parser The parser of the imprints to write.
+	 * @param outputFile The imprints file to write.
+	 * @param format The format of the imprints file.
+	 * @param foundOutputCharset The charset for text encoding the output, if the format is text; defaults to UTF-8.
+	 * @param isCompress Whether the output should be compressed using gzip; also compressed if the output file has a <code>.gz</code> extension.
+	 * @param isRelativePaths Whether imprint paths should be written relative to the base path if the format is text.
+	 * @return The number of imprints written.
+	 * @throws IOException if there was an error reading or writing the imprints.
+	 */
+	static long writeImprints(@Nonnull final DatimParser parser, @Nonnull final Path outputFile, @Nonnull final Datim.Format format,
+			@Nonnull final Optional<Charset> foundOutputCharset, final boolean isCompress, final boolean isRelativePaths) throws IOException {
+		long imprintCount = 0;
+		try (final OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(newImprintOutputChannel(outputFile, isCompress)))) {
+			final BinaryDatim.Serializer binarySerializer;
+			final Writer writer;
+			final Datim.Serializer textSerializer = new Datim.Serializer(System.lineSeparator(), isRelativePaths);
+			switch(format) {
+				case text -> {
+					binarySerializer = null;
+					writer = new OutputStreamWriter(outputStream, foundOutputCharset.orElse(UTF_8));
+					textSerializer.appendHeader(writer);
+				}
+				case binary -> {
+					binarySerializer = new BinaryDatim.Serializer(outputStream, PathImprintGenerator.FINGERPRINT_ALGORITHM);
+					writer = null;
+					binarySerializer.writeHeader();
+				}
+				default -> throw new AssertionError();
+			}
+			Optional<Path> foundBasePath = Optional.empty();
+			Optional<PathImprint> foundImprint;
+			while((foundImprint = parser.readImprint()).isPresent()) {
+				final PathImprint imprint = foundImprint.get();
+				final Optional<Path> foundCurrentBasePath = parser.findCurrentBasePath();
+				if(!foundCurrentBasePath.equals(foundBasePath) && foundCurrentBasePath.isPresent()) {
+					if(binarySerializer != null) {
+						binarySerializer.writeBasePath(foundCurrentBasePath.get());
+					} else {
+						textSerializer.appendBasePath(writer, foundCurrentBasePath.get());
+					}
+					foundBasePath = foundCurrentBasePath;
+				}
+				imprintCount++;
+				if(binarySerializer != null) {
+					binarySerializer.writeImprint(imprint);
+				} else {
+					textSerializer.appendImprint(writer, imprint, imprintCount, foundBasePath);
+				}
+			}
+			if(writer != null) {
+				writer.flush();
+			}
+		}
+		return imprintCount;
+	}
+
+	/**
+	 * Opens an imprints file for reading, decompressing its contents if it is compressed using gzip.
+	 * @param imprintFile The imprints file to open.
+	 * @return A new input stream of the imprints, which supports marking.
+	 * @throws IOException if there was an error opening the file or reading its start.
+	 */
+	static InputStream newImprintInputStream(@Nonnull final Path imprintFile) throws IOException {
+		final InputStream inputStream = new BufferedInputStream(newInputStream(imprintFile));
+		try {
+			return ParallelGzipChannel.isGzip(inputStream) ? new BufferedInputStream(new GZIPInputStream(inputStream, DECOMPRESS_BUFFER_SIZE)) : inputStream;
+		} catch(final IOException ioException) {
+			inputStream.close();
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Opens an imprints file for writing, compressing its contents using gzip if requested or if the file has a <code>.gz</code> extension.
+	 * @param outputFile The imprints file to open.
+	 * @param isCompress Whether the contents should be compressed regardless of the file extension.
+	 * @return A new channel for writing the imprints.
+	 * @throws IOException if there was an error opening the file.
+	 * @see ParallelGzipChannel#FILENAME_EXTENSION
+	 */
+	static WritableByteChannel newImprintOutputChannel(@Nonnull final Path outputFile, final boolean isCompress) throws IOException {
+		final FileChannel fileChannel = FileChannel.open(outputFile, CREATE, TRUNCATE_EXISTING, WRITE);
+		if(!isCompress && findFilenameExtension(outputFile).filter(ParallelGzipChannel.FILENAME_EXTENSION::equalsIgnoreCase).isEmpty()) {
+			return fileChannel;
+		}
+		try {
+			return new ParallelGzipChannel(fileChannel);
+		} catch(final IOException ioException) {
+			fileChannel.close();
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Creates a parser for an imprints file in either the text or the binary format, detecting the format from the start of the file.
+	 * @param inputStream The input stream of the imprints file, which must support marking.
+	 * @param foundImprintCharset The charset of the imprints file if it is in the text format; if not present, the charset will be detected from any byte order
+	 *          mark.
+	 * @return A new parser of the imprints file.
+	 * @throws IOException if there was an error reading the start of the file.
+	 */
+	static DatimParser newDatimParser(@Nonnull final InputStream inputStream, @Nonnull final Optional<Charset> foundImprintCharset) throws IOException {
+		if(BinaryDatim.isBinaryDatim(inputStream)) {
+			return new BinaryDatim.Parser(inputStream, PathImprintGenerator.FINGERPRINT_ALGORITHM);
+		}
+		return foundImprintCharset.isPresent() ? new Datim.Parser(new InputStreamReader(inputStream, foundImprintCharset.get())) : new Datim.Parser(inputStream);
+	}
+
+	/**
+	 * Creates a new file hasher of the indicated type.
+	 * @param hasherType The type of file hasher to create.
+	 * @param foundBufferSize The size of the buffer for reading file contents, if specified; only used for hashers that support it.
+	 * @return A new file hasher using {@link PathImprintGenerator#FINGERPRINT_ALGORITHM}.
+	 */
+	static FileHasher newFileHasher(@Nonnull final FileHasher.Type hasherType, @Nonnull final Optional<Integer> foundBufferSize) {
+		return switch(hasherType) {
+			case stream -> FileHasher.of(PathImprintGenerator.FINGERPRINT_ALGORITHM);
+			case channel -> new ChannelFileHasher(PathImprintGenerator.FINGERPRINT_ALGORITHM, foundBufferSize.orElse(ChannelFileHasher.DEFAULT_BUFFER_SIZE),
+					ChannelFileHasher.DEFAULT_MAP_THRESHOLD, ChannelFileHasher.DEFAULT_MAP_WINDOW_SIZE);
+		};
+	}
+
 	/**
 	 * Consumer that summarizes path information of the input being consumed.
 	 * @param <T> The type the consumer accepts.
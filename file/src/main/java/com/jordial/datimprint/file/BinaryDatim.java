@@ -0,0 +1,470 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.Files.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+import com.jordial.datimprint.file.Datim.Field;
+
+/**
+ * Definition and implementation of a compact binary variant of an imprints <code>.datim</code> file.
+ * <p>
+ * A binary imprints file begins with a fixed signature, followed by a header consisting of the format version, the name of the fingerprint algorithm, the
+ * length of each fingerprint in bytes, and the header names of the fields stored for each imprint, in order. The header is followed by records, each beginning
+ * with a record type byte:
+ * </p>
+ * <dl>
+ * <dt>{@link #RECORD_TYPE_BASE_PATH}</dt>
+ * <dd>The base path string.</dd>
+ * <dt>{@link #RECORD_TYPE_IMPRINT}</dt>
+ * <dd>The path, front-coded as the number of bytes shared with the previous path (or base path) followed by the remaining bytes; the content modification
+ * timestamp as the epoch seconds (zigzag-encoded) followed by the nanoseconds; and the raw bytes of the content fingerprint and of the fingerprint.</dd>
+ * </dl>
+ * <p>
+ * Integers are encoded as unsigned variable-length integers, seven bits per byte with the least significant group first. Strings are encoded as their
+ * variable-length UTF-8 byte count followed by the UTF-8 bytes. Imprint numbers and miniprints are not stored, as they can be derived from the record order and
+ * the fingerprint, respectively.
+ * </p>
+ * @implNote Timestamps are stored with nanosecond precision rather than as milliseconds, as file systems may record modification timestamps more precisely
+ *           than milliseconds, and checking compares timestamps exactly.
+ * @author Garret Wilson
+ */
+public class BinaryDatim {
+
+	/** An extension for binary imprints file filenames. */
+	public static final String FILENAME_EXTENSION = "datimb";
+
+	/**
+	 * The bytes identifying a binary imprints file. The first byte cannot begin a UTF-8 text file, and the line separators allow detection of line separator
+	 * conversion.
+	 */
+	private static final byte[] SIGNATURE = {(byte)0x89, 'D', 'A', 'T', 'I', 'M', '\r', '\n'};
+
+	/** The version of the binary format written. */
+	public static final int VERSION = 1;
+
+	/** The fields stored for each imprint, in order. */
+	static final List<Field> FIELDS = List.of(Field.PATH, Field.CONTENT_MODIFIED_AT, Field.CONTENT_FINGERPRINT, Field.FINGERPRINT);
+
+	/** The type of a record containing an imprint. */
+	public static final int RECORD_TYPE_IMPRINT = 0;
+
+	/** The type of a record containing a base path. */
+	public static final int RECORD_TYPE_BASE_PATH = 1;
+
+	/**
+	 * Determines whether an input stream contains a binary imprints file by examining its start. The position of the input stream is not changed.
+	 * @param inputStream The input stream, which must support marking.
+	 * @return <code>true</code> if the input stream begins with the binary imprints file signature.
+	 * @throws IllegalArgumentException if the input stream does not support marking.
+	 * @throws IOException if there was an error reading from the input stream.
+	 * @see InputStream#markSupported()
+	 */
+	public static boolean isBinaryDatim(@Nonnull final InputStream inputStream) throws IOException {
+		checkArgument(inputStream.markSupported(), "Input stream must support marking.");
+		inputStream.mark(SIGNATURE.length);
+		try {
+			return Arrays.equals(inputStream.readNBytes(SIGNATURE.length), SIGNATURE);
+		} finally {
+			inputStream.reset();
+		}
+	}
+
+	/**
+	 * Determines whether a file is a binary imprints file by examining its start.
+	 * @param file The file to examine.
+	 * @return <code>true</code> if the file begins with the binary imprints file signature.
+	 * @throws IOException if there was an error reading the file.
+	 */
+	public static boolean isBinaryDatim(@Nonnull final Path file) throws IOException {
+		try (final InputStream inputStream = newInputStream(file)) {
+			return Arrays.equals(inputStream.readNBytes(SIGNATURE.length), SIGNATURE);
+		}
+	}
+
+	/**
+	 * Writes an unsigned variable-length integer.
+	 * @param outputStream The output stream to which to write.
+	 * @param value The value to write, interpreted as unsigned.
+	 * @throws IOException if there was an error writing the value.
+	 */
+	static void writeVarLong(@Nonnull final OutputStream outputStream, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			outputStream.write((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		outputStream.write((int)value);
+	}
+
+	/**
+	 * Reads an unsigned variable-length integer.
+	 * @param inputStream The input stream from which to read.
+	 * @return The value read, interpreted as unsigned.
+	 * @throws EOFException if the end of the input stream was reached before the value was complete.
+	 * @throws IOException if there was an error reading the value, or if the value is too long.
+	 */
+	static long readVarLong(@Nonnull final InputStream inputStream) throws IOException {
+		long value = 0;
+		for(int shift = 0; shift < Long.SIZE; shift += 7) {
+			final int b = inputStream.read();
+			if(b == -1) {
+				throw new EOFException("End of data reached reading variable-length integer.");
+			}
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Variable-length integer too long.");
+	}
+
+	/**
+	 * Reads a variable-length integer that must fit in a non-negative <code>int</code>, such as a length.
+	 * @param inputStream The input stream from which to read.
+	 * @return The value read.
+	 * @throws EOFException if the end of the input stream was reached before the value was complete.
+	 * @throws IOException if there was an error reading the value, or if the value is out of range.
+	 */
+	static int readVarInt(@Nonnull final InputStream inputStream) throws IOException {
+		final long value = readVarLong(inputStream);
+		if(value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("Variable-length integer %s out of range.".formatted(Long.toUnsignedString(value)));
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Encodes a signed value so that values of small magnitude have small unsigned encodings.
+	 * @param value The signed value.
+	 * @return The zigzag encoding of the value.
+	 */
+	static long zigzagEncode(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Decodes a signed value encoded using {@link #zigzagEncode(long)}.
+	 * @param value The zigzag encoding of the value.
+	 * @return The signed value.
+	 */
+	static long zigzagDecode(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Writes a string as its UTF-8 byte count followed by its UTF-8 bytes.
+	 * @param outputStream The output stream to which to write.
+	 * @param string The string to write.
+	 * @throws IOException if there was an error writing the string.
+	 */
+	static void writeString(@Nonnull final OutputStream outputStream, @Nonnull final String string) throws IOException {
+		final byte[] bytes = string.getBytes(UTF_8);
+		writeVarLong(outputStream, bytes.length);
+		outputStream.write(bytes);
+	}
+
+	/**
+	 * Reads a string stored as its UTF-8 byte count followed by its UTF-8 bytes.
+	 * @param inputStream The input stream from which to read.
+	 * @return The string read.
+	 * @throws EOFException if the end of the input stream was reached before the string was complete.
+	 * @throws IOException if there was an error reading the string.
+	 */
+	static String readString(@Nonnull final InputStream inputStream) throws IOException {
+		return new String(readFully(inputStream, new byte[readVarInt(inputStream)]), UTF_8);
+	}
+
+	/**
+	 * Reads bytes to fill an array.
+	 * @param inputStream The input stream from which to read.
+	 * @param bytes The array to fill.
+	 * @return The given array.
+	 * @throws EOFException if the end of the input stream was reached before the array was filled.
+	 * @throws IOException if there was an error reading the bytes.
+	 */
+	private static byte[] readFully(@Nonnull final InputStream inputStream, @Nonnull final byte[] bytes) throws IOException {
+		if(inputStream.readNBytes(bytes, 0, bytes.length) != bytes.length) {
+			throw new EOFException("End of data reached reading %d bytes.".formatted(bytes.length));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Implementation for parsing binary imprints files.
+	 * <p>
+	 * As with {@link Datim.Parser}, the header and base path records are read automatically as imprints are read.
+	 * </p>
+	 * @implNote A {@link BufferedInputStream} will be wrapped around the given input stream unless it is already a {@link BufferedInputStream}.
+	 * @implNote This class is not thread safe.
+	 * @author Garret Wilson
+	 */
+	public static class Parser implements DatimParser {
+
+		private final InputStream inputStream;
+
+		private final MessageDigests.Algorithm algorithm;
+
+		/** @return The algorithm the fingerprints in the file are expected to use. */
+		public MessageDigests.Algorithm getAlgorithm() {
+			return algorithm;
+		}
+
+		private final int hashLength;
+
+		private boolean isHeaderRead = false;
+
+		/** The bytes of the previous path or base path, from which the next path may share a prefix. */
+		private byte[] previousPathBytes = new byte[256];
+
+		/** The number of bytes in the previous path. */
+		private int previousPathLength = 0;
+
+		private Optional<Path> foundCurrentBasePath = Optional.empty();
+
+		@Override
+		public Optional<Path> findCurrentBasePath() {
+			return foundCurrentBasePath;
+		}
+
+		/**
+		 * Constructor.
+		 * @param inputStream The input stream from which to parse.
+		 * @param algorithm The algorithm the fingerprints in the file are expected to use; a file indicating any other algorithm or fingerprint length will be
+		 *          rejected.
+		 */
+		public Parser(@Nonnull final InputStream inputStream, @Nonnull final MessageDigests.Algorithm algorithm) {
+			this.inputStream = inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream);
+			this.algorithm = requireNonNull(algorithm);
+			this.hashLength = algorithm.newMessageDigest().getDigestLength();
+		}
+
+		/**
+		 * Reads and validates the signature and header of the file, if they have not already been read.
+		 * @throws IOException if there is an error reading the header, or the file is not a binary imprints file of a supported version and field layout, or
+		 *           its fingerprint algorithm or fingerprint length does not match that of the expected algorithm.
+		 */
+		private void readHeader() throws IOException {
+			if(isHeaderRead) {
+				return;
+			}
+			if(!Arrays.equals(inputStream.readNBytes(SIGNATURE.length), SIGNATURE)) {
+				throw new IOException("Data is not a binary imprints file.");
+			}
+			final int version = readVarInt(inputStream);
+			if(version != VERSION) {
+				throw new IOException("Unsupported binary imprints file version %d.".formatted(version));
+			}
+			final String algorithmName = readString(inputStream);
+			if(!algorithmName.equalsIgnoreCase(algorithm.getName())) { //algorithm names are not case sensitive
+				throw new IOException("Binary imprints file fingerprint algorithm `%s` does not match expected algorithm `%s`.".formatted(algorithmName,
+						algorithm.getName()));
+			}
+			final int fileHashLength = readVarInt(inputStream);
+			if(fileHashLength != hashLength) {
+				throw new IOException("Binary imprints file fingerprint length %d does not match length %d of algorithm `%s`.".formatted(fileHashLength, hashLength,
+						algorithm.getName()));
+			}
+			final int fieldCount = readVarInt(inputStream);
+			final List<String> headerNames = new ArrayList<>(fieldCount);
+			for(int i = 0; i < fieldCount; i++) {
+				headerNames.add(readString(inputStream));
+			}
+			if(!headerNames.equals(FIELDS.stream().map(Field::headerName).toList())) {
+				throw new IOException("Unsupported binary imprints field layout %s.".formatted(headerNames));
+			}
+			isHeaderRead = true;
+		}
+
+		@Override
+		public Optional<PathImprint> readImprint() throws IOException {
+			readHeader();
+			int recordType;
+			while((recordType = inputStream.read()) != -1) {
+				switch(recordType) {
+					case RECORD_TYPE_BASE_PATH -> {
+						final byte[] basePathBytes = readFully(inputStream, new byte[readVarInt(inputStream)]);
+						final Path basePath = Path.of(new String(basePathBytes, UTF_8));
+						if(!basePath.isAbsolute()) {
+							throw new IOException("Base path `%s` not absolute.".formatted(basePath));
+						}
+						setPreviousPath(basePathBytes, basePathBytes.length);
+						foundCurrentBasePath = Optional.of(basePath);
+					}
+					case RECORD_TYPE_IMPRINT -> {
+						return Optional.of(readImprintRecord());
+					}
+					default -> throw new IOException("Unknown binary imprints record type %d.".formatted(recordType));
+				}
+			}
+			return Optional.empty();
+		}
+
+		/**
+		 * Reads the contents of an imprint record following the record type.
+		 * @return The imprint read.
+		 * @throws IOException if there was an error reading the imprint, or the imprint is invalid.
+		 */
+		private PathImprint readImprintRecord() throws IOException {
+			final int sharedLength = readVarInt(inputStream);
+			if(sharedLength > previousPathLength) {
+				throw new IOException("Shared path prefix length %d longer than previous path.".formatted(sharedLength));
+			}
+			final int suffixLength = readVarInt(inputStream);
+			final int pathLength = sharedLength + suffixLength;
+			if(pathLength < 0) {
+				throw new IOException("Path length out of range.");
+			}
+			if(pathLength > previousPathBytes.length) {
+				previousPathBytes = Arrays.copyOf(previousPathBytes, Math.max(previousPathBytes.length * 2, pathLength));
+			}
+			if(inputStream.readNBytes(previousPathBytes, sharedLength, suffixLength) != suffixLength) {
+				throw new EOFException("End of data reached reading path.");
+			}
+			previousPathLength = pathLength;
+			final Path path = Path.of(new String(previousPathBytes, 0, pathLength, UTF_8));
+			final long contentModifiedAtSeconds = zigzagDecode(readVarLong(inputStream));
+			final long contentModifiedAtNanos = readVarLong(inputStream);
+			if(contentModifiedAtNanos < 0 || contentModifiedAtNanos >= 1_000_000_000) {
+				throw new IOException("Timestamp nanoseconds %d out of range.".formatted(contentModifiedAtNanos));
+			}
+			final Hash contentFingerprint = Hash.of(readFully(inputStream, new byte[hashLength]));
+			final Hash fingerprint = Hash.of(readFully(inputStream, new byte[hashLength]));
+			return new PathImprint(path, FileTime.from(Instant.ofEpochSecond(contentModifiedAtSeconds, contentModifiedAtNanos)), contentFingerprint, fingerprint);
+		}
+
+		/**
+		 * Sets the previous path from which the next path may share a prefix.
+		 * @param pathBytes The bytes of the path.
+		 * @param pathLength The number of bytes in the path.
+		 */
+		private void setPreviousPath(@Nonnull final byte[] pathBytes, final int pathLength) {
+			if(pathLength > previousPathBytes.length) {
+				previousPathBytes = Arrays.copyOf(previousPathBytes, Math.max(previousPathBytes.length * 2, pathLength));
+			}
+			System.arraycopy(pathBytes, 0, previousPathBytes, 0, pathLength);
+			previousPathLength = pathLength;
+		}
+
+	}
+
+	/**
+	 * Implementation for serializing binary imprints files to an output stream.
+	 * @apiNote The serializer does not close the output stream; it is the responsibility of the caller to close the output stream after serialization.
+	 * @implNote This class is not thread safe.
+	 * @author Garret Wilson
+	 */
+	public static class Serializer implements Flushable {
+
+		private final OutputStream outputStream;
+
+		private final MessageDigests.Algorithm algorithm;
+
+		/** @return The algorithm of the fingerprints being serialized. */
+		public MessageDigests.Algorithm getAlgorithm() {
+			return algorithm;
+		}
+
+		private final int hashLength;
+
+		/** The bytes of the previous path or base path, from which the next path may share a prefix. */
+		private byte[] previousPathBytes = new byte[0];
+
+		/**
+		 * Constructor.
+		 * @param outputStream The output stream to which to serialize.
+		 * @param algorithm The algorithm of the fingerprints being serialized.
+		 */
+		public Serializer(@Nonnull final OutputStream outputStream, @Nonnull final MessageDigests.Algorithm algorithm) {
+			this.outputStream = requireNonNull(outputStream);
+			this.algorithm = requireNonNull(algorithm);
+			this.hashLength = algorithm.newMessageDigest().getDigestLength();
+		}
+
+		/**
+		 * Writes the signature and header of a binary imprints file.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 */
+		public void writeHeader() throws IOException {
+			outputStream.write(SIGNATURE);
+			writeVarLong(outputStream, VERSION);
+			BinaryDatim.writeString(outputStream, algorithm.getName());
+			writeVarLong(outputStream, hashLength);
+			writeVarLong(outputStream, FIELDS.size());
+			for(final Field field : FIELDS) {
+				BinaryDatim.writeString(outputStream, field.headerName());
+			}
+		}
+
+		/**
+		 * Writes a base path record.
+		 * @param basePath The base path to write; will be converted to absolute.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 */
+		public void writeBasePath(@Nonnull final Path basePath) throws IOException {
+			final byte[] basePathBytes = basePath.toAbsolutePath().toString().getBytes(UTF_8);
+			outputStream.write(RECORD_TYPE_BASE_PATH);
+			writeVarLong(outputStream, basePathBytes.length);
+			outputStream.write(basePathBytes);
+			previousPathBytes = basePathBytes;
+		}
+
+		/**
+		 * Writes a single imprint record.
+		 * @param imprint The imprint to write.
+		 * @throws IllegalArgumentException if a fingerprint of the imprint does not have the length of the algorithm.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 */
+		public void writeImprint(@Nonnull final PathImprint imprint) throws IOException {
+			final byte[] contentFingerprintBytes = imprint.contentFingerprint().getBytes();
+			final byte[] fingerprintBytes = imprint.fingerprint().getBytes();
+			checkArgument(contentFingerprintBytes.length == hashLength && fingerprintBytes.length == hashLength, "Imprint fingerprints must be %d bytes long.",
+					hashLength);
+			final byte[] pathBytes = imprint.path().toString().getBytes(UTF_8); //the imprint path is already absolute
+			final int sharedLength = Arrays.mismatch(previousPathBytes, pathBytes);
+			final int prefixLength = sharedLength == -1 ? pathBytes.length : sharedLength;
+			outputStream.write(RECORD_TYPE_IMPRINT);
+			writeVarLong(outputStream, prefixLength);
+			writeVarLong(outputStream, pathBytes.length - prefixLength);
+			outputStream.write(pathBytes, prefixLength, pathBytes.length - prefixLength);
+			final Instant contentModifiedAt = imprint.contentModifiedAt().toInstant();
+			writeVarLong(outputStream, zigzagEncode(contentModifiedAt.getEpochSecond()));
+			writeVarLong(outputStream, contentModifiedAt.getNano());
+			outputStream.write(contentFingerprintBytes);
+			outputStream.write(fingerprintBytes);
+			previousPathBytes = pathBytes;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			outputStream.flush();
+		}
+
+	}
+
+}
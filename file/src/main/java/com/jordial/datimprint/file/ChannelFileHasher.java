@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.lang.Math.*;
+import static java.util.Objects.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+
+/**
+ * File hasher that feeds the message digest directly from a {@link FileChannel}, avoiding copying the file contents into a heap buffer. Files at least as large
+ * as the map threshold are hashed from successive memory-mapped windows. Smaller files, and any data appended to a file after it was mapped, are read into a
+ * direct buffer borrowed from a pool.
+ * @implNote On Windows a mapped file cannot be deleted until the mapping is garbage-collected; a map threshold of {@link Long#MAX_VALUE} disables mapping.
+ * @author Garret Wilson
+ */
+public class ChannelFileHasher implements FileHasher {
+
+	/** The default size of each pooled direct buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** The default minimum size of a file for it to be memory-mapped. */
+	public static final long DEFAULT_MAP_THRESHOLD = 1024 * 1024;
+
+	/** The default size of each memory-mapped window of a file. */
+	public static final long DEFAULT_MAP_WINDOW_SIZE = 16 * 1024 * 1024;
+
+	private final MessageDigests.Algorithm algorithm;
+
+	/** @return The algorithm for hashing the file contents. */
+	public MessageDigests.Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	private final int bufferSize;
+
+	/** @return The size of each pooled direct buffer. */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	private final long mapThreshold;
+
+	/** @return The minimum size of a file for it to be memory-mapped. */
+	public long getMapThreshold() {
+		return mapThreshold;
+	}
+
+	private final long mapWindowSize;
+
+	/** @return The size of each memory-mapped window of a file. */
+	public long getMapWindowSize() {
+		return mapWindowSize;
+	}
+
+	/** The direct buffers not currently in use. The pool only grows as large as the maximum number of files hashed at the same time. */
+	private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Algorithm constructor using default buffer sizes.
+	 * @param algorithm The algorithm for hashing the file contents.
+	 * @see #DEFAULT_BUFFER_SIZE
+	 * @see #DEFAULT_MAP_THRESHOLD
+	 * @see #DEFAULT_MAP_WINDOW_SIZE
+	 */
+	public ChannelFileHasher(@Nonnull final MessageDigests.Algorithm algorithm) {
+		this(algorithm, DEFAULT_BUFFER_SIZE, DEFAULT_MAP_THRESHOLD, DEFAULT_MAP_WINDOW_SIZE);
+	}
+
+	/**
+	 * Full constructor.
+	 * @param algorithm The algorithm for hashing the file contents.
+	 * @param bufferSize The size of each pooled direct buffer.
+	 * @param mapThreshold The minimum size of a file for it to be memory-mapped.
+	 * @param mapWindowSize The size of each memory-mapped window of a file.
+	 * @throws IllegalArgumentException if the buffer size or the map window size is not positive, or if the map threshold is negative.
+	 */
+	public ChannelFileHasher(@Nonnull final MessageDigests.Algorithm algorithm, final int bufferSize, final long mapThreshold, final long mapWindowSize) {
+		this.algorithm = requireNonNull(algorithm);
+		checkArgument(bufferSize > 0, "Buffer size %d not positive.", bufferSize);
+		this.bufferSize = bufferSize;
+		checkArgument(mapThreshold >= 0, "Map threshold %d cannot be negative.", mapThreshold);
+		this.mapThreshold = mapThreshold;
+		checkArgument(mapWindowSize > 0, "Map window size %d not positive.", mapWindowSize);
+		this.mapWindowSize = mapWindowSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec The file size is determined when the file is opened. If the file is at least as large as the map threshold, that many bytes are hashed from
+	 *           memory-mapped windows. Any remaining content until the end of the file is then read using a pooled direct buffer.
+	 */
+	@Override
+	public Hash hash(final Path file) throws IOException {
+		final MessageDigest messageDigest = getAlgorithm().newMessageDigest();
+		try (final FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = fileChannel.size();
+			if(size >= getMapThreshold() && size > 0) {
+				long position = 0;
+				while(position < size) {
+					final long windowSize = min(getMapWindowSize(), size - position);
+					messageDigest.update(fileChannel.map(FileChannel.MapMode.READ_ONLY, position, windowSize));
+					position += windowSize;
+				}
+				fileChannel.position(position);
+			}
+			final ByteBuffer buffer = borrowBuffer();
+			try {
+				while(fileChannel.read(buffer) != -1) {
+					buffer.flip();
+					messageDigest.update(buffer);
+					buffer.clear();
+				}
+			} finally {
+				returnBuffer(buffer);
+			}
+		}
+		return Hash.fromDigest(messageDigest);
+	}
+
+	/** @return A cleared direct buffer from the pool, or a new one if the pool is empty. */
+	private ByteBuffer borrowBuffer() {
+		final ByteBuffer buffer = bufferPool.poll();
+		return buffer != null ? buffer : ByteBuffer.allocateDirect(getBufferSize());
+	}
+
+	/**
+	 * Returns a buffer to the pool.
+	 * @param buffer The buffer previously borrowed.
+	 */
+	private void returnBuffer(@Nonnull final ByteBuffer buffer) {
+		buffer.clear();
+		bufferPool.offer(buffer);
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.annotation.*;
+
+/**
+ * A compact set of paths for testing membership, such as whether a path found in a data tree has an imprint. Only a 64-bit hash of each path is stored, in a
+ * primitive array, so that a hundred million paths take less than a gigabyte rather than the many gigabytes a {@link java.util.HashSet} of paths would need.
+ * <p>
+ * This class is thread safe; paths may be added from several threads.
+ * </p>
+ * @apiNote As paths are not stored, they cannot be retrieved, and two paths with the same hash cannot be distinguished. With 64-bit hashes the chance of any
+ *          two of a hundred million paths colliding is less than one in a thousand, in which case a path not added would be reported as being in the set.
+ * @implNote The hashes are added to the end of the array, which is sorted and made distinct only when membership is first tested after adding paths, so that
+ *           each test is a binary search.
+ * @author Garret Wilson
+ */
+public final class CompactPathSet {
+
+	/** The initial capacity if none is indicated. */
+	private static final int DEFAULT_INITIAL_CAPACITY = 1 << 10;
+
+	/** The maximum number of hashes an array can hold on most virtual machines. */
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private long[] hashes;
+
+	private int hashCount = 0;
+
+	/** Whether the hashes are currently sorted and distinct. */
+	private boolean isCompacted = true;
+
+	/** Constructor with a default initial capacity. */
+	public CompactPathSet() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Initial capacity constructor.
+	 * @param initialCapacity The number of paths expected to be added; the set will grow as needed.
+	 * @throws IllegalArgumentException if the initial capacity is negative.
+	 */
+	public CompactPathSet(final int initialCapacity) {
+		checkArgument(initialCapacity >= 0, "Initial capacity %d is negative.", initialCapacity);
+		this.hashes = new long[initialCapacity];
+	}
+
+	/**
+	 * Adds a path to the set.
+	 * @param path The path to add.
+	 * @throws IllegalStateException if the set cannot hold any more paths.
+	 */
+	public synchronized void add(@Nonnull final Path path) {
+		if(hashCount == hashes.length) {
+			checkState(hashCount < MAX_CAPACITY, "Path set cannot hold more than %d paths.", MAX_CAPACITY);
+			hashes = Arrays.copyOf(hashes, (int)Math.min((long)hashCount + (hashCount >> 1) + DEFAULT_INITIAL_CAPACITY, MAX_CAPACITY));
+		}
+		hashes[hashCount++] = hash(path);
+		isCompacted = false;
+	}
+
+	/**
+	 * Determines whether a path is in the set.
+	 * @param path The path to test.
+	 * @return <code>true</code> if the path, or a path with the same hash, has been added to the set.
+	 */
+	public synchronized boolean contains(@Nonnull final Path path) {
+		compact();
+		return Arrays.binarySearch(hashes, 0, hashCount, hash(path)) >= 0;
+	}
+
+	/**
+	 * Returns the number of distinct paths in the set.
+	 * @apiNote Paths with the same hash are counted only once.
+	 * @return The number of distinct paths added.
+	 */
+	public synchronized int size() {
+		compact();
+		return hashCount;
+	}
+
+	/** Sorts the hashes and removes duplicates, if paths have been added since the hashes were last compacted. */
+	private void compact() {
+		if(isCompacted) {
+			return;
+		}
+		Arrays.sort(hashes, 0, hashCount);
+		int distinctCount = 0;
+		for(int i = 0; i < hashCount; i++) {
+			if(distinctCount == 0 || hashes[i] != hashes[distinctCount - 1]) {
+				hashes[distinctCount++] = hashes[i];
+			}
+		}
+		hashCount = distinctCount;
+		isCompacted = true;
+	}
+
+	/**
+	 * Calculates a 64-bit hash of a path.
+	 * @implSpec This implementation calculates the 64-bit FNV-1a hash of the characters of the path string form, followed by the 64-bit finalizer of MurmurHash3
+	 *           to spread the bits.
+	 * @param path The path to hash.
+	 * @return The hash of the path.
+	 */
+	static long hash(@Nonnull final Path path) {
+		final String string = path.toString();
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < string.length(); i++) {
+			hash ^= string.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
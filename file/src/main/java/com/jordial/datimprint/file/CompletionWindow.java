@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+
+import java.io.*;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.annotation.*;
+
+/**
+ * Keeps a bounded number of asynchronous operations in flight, such as checks of paths against imprints. Each operation waits for room in the window before it
+ * is started, so that a fast producer of operations such as a parser cannot get arbitrarily far ahead of their completion. Operations may complete in any
+ * order. Only the number of completed operations and the first error are kept, so the memory used does not depend on the total number of operations.
+ * <p>
+ * This class is thread safe; operations may be started from several threads.
+ * </p>
+ * @implNote Each operation in flight holds one permit of a semaphore with as many permits as the window size, so waiting for all operations to complete is
+ *           simply acquiring every permit.
+ * @author Garret Wilson
+ */
+public final class CompletionWindow {
+
+	/** The default maximum number of operations in flight. */
+	public static final int DEFAULT_SIZE = 10_000;
+
+	private final int size;
+
+	/** @return The maximum number of operations in flight. */
+	public int getSize() {
+		return size;
+	}
+
+	private final Semaphore semaphore;
+
+	private final AtomicLong completedCount = new AtomicLong(0);
+
+	/** @return The number of operations that have completed, successfully or not. */
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	private final AtomicReference<Throwable> errorReference = new AtomicReference<>();
+
+	/** @return The first error with which an operation completed, if any. */
+	public Optional<Throwable> findError() {
+		return Optional.ofNullable(errorReference.get());
+	}
+
+	/**
+	 * Constructor.
+	 * @param size The maximum number of operations in flight.
+	 * @throws IllegalArgumentException if the size is not positive.
+	 */
+	public CompletionWindow(final int size) {
+		checkArgument(size > 0, "Completion window size %d not positive.", size);
+		this.size = size;
+		this.semaphore = new Semaphore(size);
+	}
+
+	/**
+	 * Starts an operation once there is room in the window. If the operation cannot be started, it is considered complete, and its error is propagated.
+	 * @param <T> The type of result of the operation.
+	 * @param operation The operation, which starts the work and returns a future of its completion.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting for room in the window; the interrupted status of the thread will be restored.
+	 * @throws IOException if the operation threw an exception when being started.
+	 */
+	public <T> void start(@Nonnull final Operation<T> operation) throws IOException {
+		start(1, operation);
+	}
+
+	/**
+	 * Starts an operation taking up several places in the window, such as an operation performing several checks, once there is room for all of them. If the
+	 * operation cannot be started, it is considered complete, and its error is propagated.
+	 * @param <T> The type of result of the operation.
+	 * @param weight The number of places in the window the operation takes up.
+	 * @param operation The operation, which starts the work and returns a future of its completion.
+	 * @throws IllegalArgumentException if the weight is not positive or is greater than the size of the window.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting for room in the window; the interrupted status of the thread will be restored.
+	 * @throws IOException if the operation threw an exception when being started.
+	 */
+	public <T> void start(final int weight, @Nonnull final Operation<T> operation) throws IOException {
+		checkArgument(weight > 0 && weight <= size, "Operation weight %d not within window size %d.", weight, size);
+		acquire(weight);
+		final CompletableFuture<T> future;
+		try {
+			future = operation.start();
+		} catch(final IOException | RuntimeException | Error throwable) {
+			onComplete(weight, throwable);
+			throw throwable;
+		}
+		future.whenComplete((__, throwable) -> onComplete(weight, throwable));
+	}
+
+	/**
+	 * Records that an operation completed, freeing its room in the window.
+	 * @param weight The number of places in the window the operation took up.
+	 * @param throwable The error with which the operation completed, or <code>null</code> if it completed successfully.
+	 */
+	private void onComplete(final int weight, @Nullable final Throwable throwable) {
+		if(throwable != null) {
+			errorReference.compareAndSet(null, throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+		}
+		completedCount.incrementAndGet();
+		semaphore.release(weight);
+	}
+
+	/**
+	 * Waits until all operations started so far have completed.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting; the interrupted status of the thread will be restored.
+	 */
+	public void await() throws InterruptedIOException {
+		acquire(size);
+		semaphore.release(size);
+	}
+
+	/**
+	 * Acquires permits from the semaphore.
+	 * @param permits The number of permits to acquire.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting; the interrupted status of the thread will be restored.
+	 */
+	private void acquire(final int permits) throws InterruptedIOException {
+		try {
+			semaphore.acquire(permits);
+		} catch(final InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException)new InterruptedIOException("Interrupted waiting for operations to complete.").initCause(interruptedException);
+		}
+	}
+
+	/**
+	 * An asynchronous operation to be started in the window.
+	 * @param <T> The type of result of the operation.
+	 * @author Garret Wilson
+	 */
+	@FunctionalInterface
+	public interface Operation<T> {
+
+		/**
+		 * Starts the operation.
+		 * @return A future that completes when the operation is finished.
+		 * @throws IOException if there was an error starting the operation.
+		 */
+		CompletableFuture<T> start() throws IOException;
+
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+
+import java.io.InterruptedIOException;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many operations such as file reads may take place at the same time. This is primarily useful with executors that have no practical limit on the
+ * number of threads, such as one using virtual threads, to keep from overwhelming the storage with simultaneous requests.
+ * @implNote This class is thread safe. Waiting threads are blocked, which is inexpensive for virtual threads.
+ * @author Garret Wilson
+ */
+final class ConcurrencyLimiter {
+
+	private final int maxConcurrency;
+
+	/** @return The maximum number of operations allowed at the same time. */
+	int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	private final Semaphore semaphore;
+
+	/**
+	 * Constructor.
+	 * @param maxConcurrency The maximum number of operations allowed at the same time.
+	 * @throws IllegalArgumentException if the maximum concurrency is not positive.
+	 */
+	ConcurrencyLimiter(final int maxConcurrency) {
+		checkArgument(maxConcurrency > 0, "Maximum concurrency %d not positive.", maxConcurrency);
+		this.maxConcurrency = maxConcurrency;
+		this.semaphore = new Semaphore(maxConcurrency, true);
+	}
+
+	/**
+	 * Waits until an operation is allowed and returns a permit, which must be released when the operation is finished.
+	 * @apiNote The permit is meant to be released in the <code>finally</code> block of a <code>try</code> statement immediately following this call.
+	 * @return A permit for performing one operation.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting; the interrupted status of the thread will be restored.
+	 */
+	Permit acquire() throws InterruptedIOException {
+		try {
+			semaphore.acquire();
+		} catch(final InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw (InterruptedIOException)new InterruptedIOException("Interrupted waiting to perform operation.").initCause(interruptedException);
+		}
+		return semaphore::release;
+	}
+
+	/**
+	 * Waits until an operation is allowed by the given limiter, if any, and returns a permit, which must be released when the operation is finished.
+	 * @param foundLimiter The limiter, if any, of the operation.
+	 * @return A permit for performing one operation; if no limiter is present, the permit does nothing when released.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting; the interrupted status of the thread will be restored.
+	 * @see #acquire()
+	 */
+	static Permit acquire(final Optional<ConcurrencyLimiter> foundLimiter) throws InterruptedIOException {
+		return foundLimiter.isPresent() ? foundLimiter.get().acquire() : () -> {};
+	}
+
+	/**
+	 * Permission to perform a single operation.
+	 * @apiNote A permit may also be closed as a resource variable of a <code>try</code>-with-resources statement, such as when it is passed to the code
+	 *          performing the operation.
+	 * @author Garret Wilson
+	 */
+	@FunctionalInterface
+	interface Permit extends AutoCloseable {
+
+		/** Releases the permission, allowing another operation to be performed. */
+		void release();
+
+		/**
+		 * {@inheritDoc}
+		 * @implSpec This implementation delegates to {@link #release()}.
+		 */
+		@Override
+		default void close() {
+			release();
+		}
+
+	}
+
+}
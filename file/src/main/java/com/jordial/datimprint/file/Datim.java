@@ -27,10 +27,13 @@
 import static org.zalando.fauxpas.FauxPas.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -106,6 +109,14 @@ public static Optional<Field> findByHeaderName(@Nonnull String headerName) {
 
 	}
 
+	/** The formats in which imprints files may be stored. */
+	public enum Format {
+		/** Indicates the tab-delimited text format implemented by {@link Datim}. */
+		text,
+		/** Indicates the compact binary format implemented by {@link BinaryDatim}. */
+		binary
+	}
+
 	/** The identification of a line containing a base path designation. */
 	public static final String RECORD_TYPE_BASE_PATH = "/";
 
@@ -115,10 +126,16 @@ public static Optional<Field> findByHeaderName(@Nonnull String headerName) {
 	 * This class keeps state about which features have been read, such as the header and base path; these features are read automatically and for the most part
 	 * implicitly from the caller's point of view.
 	 * </p>
+	 * @implNote Each line is read into a character buffer reused for every line, and the fields of imprint records are parsed directly from the buffer: the
+	 *           fingerprints are decoded from hexadecimal without creating intermediate strings, and timestamps in the fixed format produced by
+	 *           {@link Instant#toString()} are parsed without using a formatter. Only the path string is created for each record.
 	 * @implNote This class is not thread safe.
 	 * @author Garret Wilson
 	 */
-	public static class Parser {
+	public static class Parser implements DatimParser {
+
+		/** The number of characters to read from the reader at a time. */
+		private static final int READ_BUFFER_SIZE = 1 << 16;
 
 		private final BufferedReader reader;
 
@@ -127,6 +144,30 @@ protected BufferedReader getReader() {
 			return reader;
 		}
 
+		/** The characters read from the reader but not yet consumed. */
+		private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+
+		/** The position of the next unconsumed character in the read buffer. */
+		private int readPosition = 0;
+
+		/** The number of characters in the read buffer. */
+		private int readLimit = 0;
+
+		/** Whether the previous line ended with a carriage return, so that a following line feed should be skipped. */
+		private boolean skipLineFeed = false;
+
+		/** The characters of the current line, reused for each line. */
+		private char[] line = new char[256];
+
+		/** The number of characters in the current line. */
+		private int lineLength = 0;
+
+		/** The index in the current line of the end of each field, that is, of the delimiter or the end of the line. */
+		private int[] fieldEnds = new int[Field.values().length];
+
+		/** The number of fields in the current line. */
+		private int fieldCount = 0;
+
 		private int nextLineIndex = 0;
 
 		/**
@@ -146,24 +187,142 @@ protected int getNextLineIndex() {
 		 * @see #getNextLineIndex()
 		 */
 		protected Optional<String[]> readRecord() throws IOException {
-			final String line = getReader().readLine();
-			if(line == null) {
+			if(!readLine()) {
 				return Optional.empty();
 			}
+			final String[] fields = new String[fieldCount];
+			for(int i = 0; i < fieldCount; i++) {
+				fields[i] = fieldString(i);
+			}
+			return Optional.of(fields);
+		}
+
+		/**
+		 * Reads the next line into the line buffer and finds the fields it contains. Lines may be ended by a line feed, a carriage return, or a carriage return
+		 * followed by a line feed.
+		 * @implNote This method increases the line number.
+		 * @return <code>true</code> if a line was read, or <code>false</code> if the end of file was reached without reading any characters.
+		 * @throws IOException if there was an error reading the line.
+		 * @see #getNextLineIndex()
+		 */
+		private boolean readLine() throws IOException {
+			lineLength = 0;
+			boolean isLineFound = false;
+			while(true) {
+				if(readPosition == readLimit) {
+					final int readCount = getReader().read(readBuffer, 0, readBuffer.length);
+					if(readCount == -1) {
+						skipLineFeed = false;
+						if(!isLineFound) {
+							return false;
+						}
+						break;
+					}
+					readPosition = 0;
+					readLimit = readCount;
+				}
+				if(skipLineFeed) {
+					skipLineFeed = false;
+					if(readBuffer[readPosition] == '\n') {
+						readPosition++;
+						continue;
+					}
+				}
+				isLineFound = true;
+				int end = readPosition;
+				char c = 0;
+				while(end < readLimit && (c = readBuffer[end]) != '\n' && c != '\r') {
+					end++;
+				}
+				appendToLine(readPosition, end);
+				if(end < readLimit) { //if the end of the line was found
+					skipLineFeed = c == '\r';
+					readPosition = end + 1;
+					break;
+				}
+				readPosition = end;
+			}
 			nextLineIndex++;
-			return Optional.of(line.split(String.valueOf(FIELD_DELIMITER), -1)); //catch trailing delimiters
+			int count = 0;
+			for(int i = 0; i < lineLength; i++) {
+				if(line[i] == FIELD_DELIMITER) {
+					addFieldEnd(count++, i);
+				}
+			}
+			addFieldEnd(count++, lineLength); //catch trailing delimiters
+			fieldCount = count;
+			return true;
+		}
+
+		/**
+		 * Appends characters from the read buffer to the current line, growing the line buffer as needed.
+		 * @param start The index of the first character in the read buffer, inclusive.
+		 * @param end The index of the last character in the read buffer, exclusive.
+		 */
+		private void appendToLine(final int start, final int end) {
+			final int length = end - start;
+			if(lineLength + length > line.length) {
+				line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+			}
+			System.arraycopy(readBuffer, start, line, lineLength, length);
+			lineLength += length;
+		}
+
+		/**
+		 * Records the end of a field in the current line, growing the field ends buffer as needed.
+		 * @param fieldIndex The index of the field.
+		 * @param end The index in the line of the end of the field.
+		 */
+		private void addFieldEnd(final int fieldIndex, final int end) {
+			if(fieldIndex == fieldEnds.length) {
+				fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+			}
+			fieldEnds[fieldIndex] = end;
+		}
+
+		/**
+		 * Returns the index in the current line of the start of a field.
+		 * @param fieldIndex The index of the field.
+		 * @return The index of the first character of the field.
+		 */
+		private int fieldStart(final int fieldIndex) {
+			return fieldIndex == 0 ? 0 : fieldEnds[fieldIndex - 1] + 1;
+		}
+
+		/**
+		 * Returns the contents of a field in the current line as a string.
+		 * @param fieldIndex The index of the field.
+		 * @return The field contents.
+		 */
+		private String fieldString(final int fieldIndex) {
+			final int start = fieldStart(fieldIndex);
+			return new String(line, start, fieldEnds[fieldIndex] - start);
 		}
 
 		@Nullable
 		private Map<Field, Integer> fieldIndexes = null;
 
+		/** The index of each field, in the order of {@link Field#values()}, cached when the field indexes are first read. */
+		private final int[] fieldIndexArray = new int[Field.values().length];
+
+		/** The minimum number of fields each record must have to include all the defined fields. */
+		private int minRecordFieldCount = 0;
+
 		private Optional<Path> foundCurrentBasePath = Optional.empty();
 
 		/** @return The current base path, which may not be present if no base path line yet been encountered. */
+		@Override
 		public Optional<Path> findCurrentBasePath() {
 			return foundCurrentBasePath;
 		}
 
+		private Optional<Path> foundRelativePath = Optional.empty();
+
+		@Override
+		public Optional<Path> findRelativePath() {
+			return foundRelativePath;
+		}
+
 		/**
 		 * Input stream constructor. The charset is attempted to be determined from the Byte Order Mark (BOM), if any; defaulting to {@link Datim#DEFAULT_CHARSET}.
 		 * @param inputStream The input stream from which to parse.
@@ -175,13 +334,28 @@ public Parser(@Nonnull final InputStream inputStream) throws IOException {
 
 		/**
 		 * Reader parser.
-		 * @implNote A {@link BufferedReader} will be wrapped around the given reader unless the reader is already a {@link BufferedReader}.
+		 * @implNote A {@link BufferedReader} will be wrapped around the given reader unless the reader is already a {@link BufferedReader}. Characters are read in
+		 *           blocks larger than the buffer of the {@link BufferedReader}, which are therefore read directly from the underlying reader.
 		 * @param reader The reader from which to parse.
 		 */
 		public Parser(@Nonnull final Reader reader) {
 			this.reader = reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader);
 		}
 
+		/**
+		 * Constructor for parsing records that follow a header already read, such as for parsing one part of a file.
+		 * @param reader The reader from which to parse, positioned at the start of a record.
+		 * @param fieldIndexes The fields defined in the header and their indexes.
+		 * @param foundCurrentBasePath The base path in effect at the start of the records, if any.
+		 * @throws IOException if there is a required field missing.
+		 */
+		Parser(@Nonnull final Reader reader, @Nonnull final Map<Field, Integer> fieldIndexes, @Nonnull final Optional<Path> foundCurrentBasePath)
+				throws IOException {
+			this(reader);
+			setFieldIndexes(fieldIndexes);
+			this.foundCurrentBasePath = requireNonNull(foundCurrentBasePath);
+		}
+
 		/**
 		 * Returns the fields defined in the file and their indexes, reading them if necessary. When the fields are first read, they are also validated to ensure
 		 * all the required fields are present.
@@ -198,16 +372,28 @@ public Map<Field, Integer> getFieldIndexes() throws IOException {
 				for(int i = fields.size() - 1; i >= 0; i--) {
 					fieldIndexes.put(fields.get(i), i);
 				}
-				for(final Field field : Field.values()) { //validate the fields; currently all are required
-					if(!fieldIndexes.containsKey(field)) {
-						throw new IOException("Header missing required field `%s`.".formatted(field.headerName));
-					}
-				}
-				this.fieldIndexes = unmodifiableMap(fieldIndexes);
+				setFieldIndexes(fieldIndexes);
 			}
 			return this.fieldIndexes;
 		}
 
+		/**
+		 * Validates and sets the fields defined in the file and their indexes, ensuring all the required fields are present.
+		 * @param fieldIndexes The fields defined in the file and their indexes.
+		 * @throws IOException if there is a required field missing.
+		 */
+		private void setFieldIndexes(@Nonnull final Map<Field, Integer> fieldIndexes) throws IOException {
+			for(final Field field : Field.values()) { //validate the fields; currently all are required
+				final Integer fieldIndex = fieldIndexes.get(field);
+				if(fieldIndex == null) {
+					throw new IOException("Header missing required field `%s`.".formatted(field.headerName));
+				}
+				fieldIndexArray[field.ordinal()] = fieldIndex;
+				minRecordFieldCount = Math.max(minRecordFieldCount, fieldIndex + 1);
+			}
+			this.fieldIndexes = unmodifiableMap(new EnumMap<>(fieldIndexes));
+		}
+
 		/**
 		 * Reads the field definition line in the file from the header at the current position.
 		 * @implSpec This method returns an unmodifiable list.
@@ -225,39 +411,171 @@ List<Field> readHeader() throws IOException {
 
 		/**
 		 * Reads the next imprint from the input. For each base path record, if any, the current base path returned by {@link #findCurrentBasePath()} will be
-		 * updated and the record will be skipped.
+		 * updated and the record will be skipped. An imprint path that is not absolute is resolved against the current base path, with an empty path indicating
+		 * the base path itself.
 		 * @implNote This implementation combines base path record processing/skipping in its logic. If other record types are added in the future, the reading of
 		 *           an "entity" will need to be extracted into a separate method, which this method can delegate to and check the returned entity type.
 		 * @return The imprint that was read, which will not be present if the end of the file was reached.
 		 * @throws IOException If there was an error attempting to reading the imprint or if the imprint record did not have valid information.
 		 */
+		@Override
 		public Optional<PathImprint> readImprint() throws IOException {
-			final Map<Field, Integer> fieldIndexes = getFieldIndexes();
-			Optional<String[]> record;
-			while(!(record = readRecord()).isEmpty()) { //keep reading records until there are no more
-				Optional<PathImprint> foundImprint = record.flatMap(throwingFunction(fields -> { //this lambda has side effects: it may update foundCurrentBasePath 
-					final Path path = Path.of(fields[fieldIndexes.get(Field.PATH)]);
-					final String recordType = fields[fieldIndexes.get(Field.NUMBER)];
-					if(recordType.equals(RECORD_TYPE_BASE_PATH)) { //if this is a base path record
-						if(!path.isAbsolute()) {
-							throw new IOException("Base path `%s` not absolute.".formatted(path));
-						}
-						foundCurrentBasePath = Optional.of(path); //update the base path
-						return Optional.empty(); //skip the record
+			getFieldIndexes();
+			while(readLine()) { //keep reading records until there are no more
+				if(fieldCount < minRecordFieldCount) {
+					throw new IOException("Record on line #%d has %d fields; expected at least %d.".formatted(getNextLineIndex(), fieldCount, minRecordFieldCount));
+				}
+				final Path path = Path.of(fieldString(fieldIndexArray[Field.PATH.ordinal()]));
+				final int numberFieldIndex = fieldIndexArray[Field.NUMBER.ordinal()];
+				final int numberStart = fieldStart(numberFieldIndex);
+				if(fieldEnds[numberFieldIndex] - numberStart == RECORD_TYPE_BASE_PATH.length()
+						&& RECORD_TYPE_BASE_PATH.charAt(0) == line[numberStart]) { //if this is a base path record
+					if(!path.isAbsolute()) {
+						throw new IOException("Base path `%s` not absolute.".formatted(path));
 					}
-					final FileTime contentModifiedAt = FileTime.from(Instant.parse(fields[fieldIndexes.get(Field.CONTENT_MODIFIED_AT)]));
-					final Hash contentFingerprint = Hash.fromChecksum(fields[fieldIndexes.get(Field.CONTENT_FINGERPRINT)]);
-					final Hash fingerprint = Hash.fromChecksum(fields[fieldIndexes.get(Field.FINGERPRINT)]);
-					return Optional.of(new PathImprint(path, contentModifiedAt, contentFingerprint, fingerprint));
-				}));
-				if(foundImprint.isPresent()) { //if this record was mapped to an imprint, short circuit --- we found what we were looking for
-					return foundImprint;
+					foundCurrentBasePath = Optional.of(path); //update the base path
+					continue; //skip the record
+				}
+				final Path imprintPath;
+				if(path.isAbsolute()) {
+					imprintPath = path;
+					foundRelativePath = Optional.empty();
+				} else { //resolve a relative path against the base path, which for an empty path is the base path itself
+					imprintPath = foundCurrentBasePath
+							.orElseThrow(() -> new IOException("Relative path `%s` on line #%d has no base path.".formatted(path, getNextLineIndex()))).resolve(path);
+					foundRelativePath = Optional.of(path);
 				}
+				final int contentModifiedAtFieldIndex = fieldIndexArray[Field.CONTENT_MODIFIED_AT.ordinal()];
+				final FileTime contentModifiedAt = FileTime
+						.from(parseTimestamp(line, fieldStart(contentModifiedAtFieldIndex), fieldEnds[contentModifiedAtFieldIndex]));
+				final int contentFingerprintFieldIndex = fieldIndexArray[Field.CONTENT_FINGERPRINT.ordinal()];
+				final Hash contentFingerprint = parseChecksum(line, fieldStart(contentFingerprintFieldIndex), fieldEnds[contentFingerprintFieldIndex]);
+				final int fingerprintFieldIndex = fieldIndexArray[Field.FINGERPRINT.ordinal()];
+				final Hash fingerprint = parseChecksum(line, fieldStart(fingerprintFieldIndex), fieldEnds[fingerprintFieldIndex]);
+				return Optional.of(new PathImprint(imprintPath, contentModifiedAt, contentFingerprint, fingerprint));
 			}
 			return Optional.empty(); //we ran out of records without finding an imprint line
 		}
 	}
 
+	/** The cumulative number of days in a non-leap year before the start of each month, indexed by the zero-based month. */
+	private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334, 365};
+
+	/** The number of days from <code>0000-01-01</code> to <code>1970-01-01</code>. */
+	private static final long DAYS_0000_TO_1970 = 719_528;
+
+	/**
+	 * Parses a timestamp in ISO 8601 format as produced by {@link Instant#toString()}, such as <code>2022-05-22T20:48:16.7512146Z</code>.
+	 * @implSpec Timestamps with a four-digit year, a valid date and time, and a fraction of up to nine digits are parsed directly from the characters. Any other
+	 *           timestamp is parsed using {@link Instant#parse(CharSequence)}.
+	 * @param chars The characters containing the timestamp.
+	 * @param start The index of the first character of the timestamp, inclusive.
+	 * @param end The index of the last character of the timestamp, exclusive.
+	 * @return The instant represented by the timestamp.
+	 * @throws DateTimeParseException if the characters do not represent a valid timestamp.
+	 */
+	static Instant parseTimestamp(@Nonnull final char[] chars, final int start, final int end) {
+		final int length = end - start;
+		if(length >= 20 && chars[start + 4] == '-' && chars[start + 7] == '-' && chars[start + 10] == 'T' && chars[start + 13] == ':' && chars[start + 16] == ':'
+				&& chars[end - 1] == 'Z') {
+			final int year = parseDigits(chars, start, 4);
+			final int month = parseDigits(chars, start + 5, 2);
+			final int day = parseDigits(chars, start + 8, 2);
+			final int hour = parseDigits(chars, start + 11, 2);
+			final int minute = parseDigits(chars, start + 14, 2);
+			final int second = parseDigits(chars, start + 17, 2);
+			final boolean isLeapYear = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+			if(year >= 0 && month >= 1 && month <= 12 && day >= 1 && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59
+					&& day <= DAYS_BEFORE_MONTH[month] - DAYS_BEFORE_MONTH[month - 1] + (month == 2 && isLeapYear ? 1 : 0)) {
+				final int fractionLength = length - 21;
+				int nanos = 0;
+				if(fractionLength >= 1 && fractionLength <= 9 && chars[start + 19] == '.') {
+					nanos = parseDigits(chars, start + 20, fractionLength);
+					for(int i = fractionLength; i < 9; i++) {
+						nanos *= 10;
+					}
+				} else if(length != 20) {
+					nanos = -1;
+				}
+				if(nanos >= 0) {
+					final long yearsBefore = year - 1L;
+					final long daysBeforeYear = year == 0 ? 0 : 366 + 365 * yearsBefore + yearsBefore / 4 - yearsBefore / 100 + yearsBefore / 400; //year 0 is a leap year
+					final long epochDay = daysBeforeYear + DAYS_BEFORE_MONTH[month - 1] + (month > 2 && isLeapYear ? 1 : 0) + day - 1 - DAYS_0000_TO_1970;
+					return Instant.ofEpochSecond(epochDay * 86_400 + hour * 3_600 + minute * 60 + second, nanos);
+				}
+			}
+		}
+		return Instant.parse(new String(chars, start, length));
+	}
+
+	/**
+	 * Parses a sequence of ASCII decimal digits.
+	 * @param chars The characters containing the digits.
+	 * @param start The index of the first digit.
+	 * @param count The number of digits, which must not be greater than nine.
+	 * @return The value of the digits, or <code>-1</code> if any of the characters is not an ASCII decimal digit.
+	 */
+	private static int parseDigits(@Nonnull final char[] chars, final int start, final int count) {
+		int value = 0;
+		for(int i = start, end = start + count; i < end; i++) {
+			final int digit = chars[i] - '0';
+			if(digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a hash from its checksum, a sequence of hexadecimal digits.
+	 * @implSpec Checksums consisting of an even number of ASCII hexadecimal digits are decoded directly from the characters. Any other checksum is parsed using
+	 *           {@link Hash#fromChecksum(CharSequence)}.
+	 * @param chars The characters containing the checksum.
+	 * @param start The index of the first character of the checksum, inclusive.
+	 * @param end The index of the last character of the checksum, exclusive.
+	 * @return The hash represented by the checksum.
+	 * @throws IllegalArgumentException if the characters do not represent a valid checksum.
+	 */
+	static Hash parseChecksum(@Nonnull final char[] chars, final int start, final int end) {
+		final int length = end - start;
+		if(length % 2 == 0) {
+			final byte[] bytes = new byte[length / 2];
+			boolean isValid = true;
+			for(int i = 0; i < bytes.length; i++) {
+				final int high = hexDigitValue(chars[start + i * 2]);
+				final int low = hexDigitValue(chars[start + i * 2 + 1]);
+				if(high < 0 || low < 0) {
+					isValid = false;
+					break;
+				}
+				bytes[i] = (byte)(high << 4 | low);
+			}
+			if(isValid) {
+				return Hash.of(bytes);
+			}
+		}
+		return Hash.fromChecksum(new String(chars, start, length));
+	}
+
+	/**
+	 * Determines the value of an ASCII hexadecimal digit in either case.
+	 * @param c The character.
+	 * @return The value of the digit, or <code>-1</code> if the character is not an ASCII hexadecimal digit.
+	 */
+	private static int hexDigitValue(final char c) {
+		if(c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if(c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		if(c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+
 	/**
 	 * Implementation for serializing Datim files.
 	 * @implNote This class is not thread safe.
@@ -272,8 +590,20 @@ public String getLineSeparator() {
 			return lineSeparator;
 		}
 
+		private final boolean relativePaths;
+
 		/**
-		 * Default settings constructor. The system line separator is used.
+		 * Indicates whether imprint paths within the current base path are written relative to the base path, which makes the imprints file smaller.
+		 * @return <code>true</code> if imprint paths are written relative to the base path when possible.
+		 * @see #appendImprint(Appendable, PathImprint, long, Optional)
+		 * @see ChannelWriter#writeBasePath(Serializer, Path)
+		 */
+		public boolean isRelativePaths() {
+			return relativePaths;
+		}
+
+		/**
+		 * Default settings constructor. The system line separator is used, and absolute paths are written.
 		 * @see System#lineSeparator()
 		 */
 		public Serializer() {
@@ -281,11 +611,21 @@ public Serializer() {
 		}
 
 		/**
-		 * Line separator constructor.
+		 * Line separator constructor. Absolute paths are written.
 		 * @param lineSeparator The newline character to separate each line.
 		 */
 		public Serializer(@Nonnull final String lineSeparator) {
+			this(lineSeparator, false);
+		}
+
+		/**
+		 * Line separator and relative paths constructor.
+		 * @param lineSeparator The newline character to separate each line.
+		 * @param relativePaths Whether imprint paths within the current base path should be written relative to the base path.
+		 */
+		public Serializer(@Nonnull final String lineSeparator, final boolean relativePaths) {
 			this.lineSeparator = requireNonNull(lineSeparator);
+			this.relativePaths = relativePaths;
 		}
 
 		/**
@@ -334,13 +674,395 @@ public <A extends Appendable> A appendBasePath(@Nonnull final A appendable, @Non
 		 */
 		public <A extends Appendable> A appendImprint(@Nonnull final A appendable, @Nonnull final PathImprint imprint, @Nonnull final long number)
 				throws IOException {
-			final String pathString = imprint.path().toString(); //the imprint path is already absolute
+			return appendImprint(appendable, imprint, number, Optional.empty());
+		}
+
+		/**
+		 * Writes a single imprint record using the configured line separator. If this serializer writes relative paths and the imprint path is within the given
+		 * base path, the path is written relative to the base path, with the base path itself written as an empty path.
+		 * @param <A> The type of appendable.
+		 * @param appendable The appendable for writing the imprint.
+		 * @param imprint The imprint to write.
+		 * @param number The number of the line being written.
+		 * @param foundBasePath The base path most recently written, if any.
+		 * @return The same appendable after appending the imprint.
+		 * @throws IllegalArgumentException if the imprint path contains {@link #FIELD_DELIMITER}.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 * @see #isRelativePaths()
+		 * @see #getLineSeparator()
+		 */
+		public <A extends Appendable> A appendImprint(@Nonnull final A appendable, @Nonnull final PathImprint imprint, @Nonnull final long number,
+				@Nonnull final Optional<Path> foundBasePath) throws IOException {
+			final String absolutePathString = imprint.path().toString(); //the imprint path is already absolute
+			final String pathString = isRelativePaths()
+					? foundBasePath.map(basePath -> relativizePathString(absolutePathString, basePath.toString(), basePath.getFileSystem().getSeparator()))
+							.orElse(absolutePathString)
+					: absolutePathString;
 			checkArgument(!contains(pathString, FIELD_DELIMITER), "Path `%s` cannot contain field delimiter %s.", pathString, Characters.getLabel(FIELD_DELIMITER));
 			appendJoined(appendable, FIELD_DELIMITER, Long.toUnsignedString(number), imprint.miniprintChecksum(), pathString, imprint.contentModifiedAt().toString(),
 					imprint.contentFingerprint().toChecksum(), imprint.fingerprint().toChecksum()).append(getLineSeparator());
 			return appendable;
 		}
 
+		/**
+		 * Encodes the header of an imprints file in UTF-8 using the configured line separator.
+		 * @return The bytes of the header.
+		 * @see #appendHeader(Appendable)
+		 */
+		public byte[] encodeHeader() {
+			try {
+				return appendHeader(new StringBuilder()).toString().getBytes(UTF_8);
+			} catch(final IOException ioException) {
+				throw new AssertionError(ioException); //a string builder throws no I/O exceptions
+			}
+		}
+
+		/**
+		 * Encodes a base path line in UTF-8 using the configured line separator.
+		 * @param basePath The base path to encode; will be converted to absolute.
+		 * @return The bytes of the base path line.
+		 * @throws IllegalArgumentException if the base path contains {@link #FIELD_DELIMITER}.
+		 * @see #appendBasePath(Appendable, Path)
+		 */
+		public byte[] encodeBasePath(@Nonnull final Path basePath) {
+			try {
+				return appendBasePath(new StringBuilder(), basePath).toString().getBytes(UTF_8);
+			} catch(final IOException ioException) {
+				throw new AssertionError(ioException); //a string builder throws no I/O exceptions
+			}
+		}
+
+		/**
+		 * Determines the form of a path string to write relative to a base path string. The strings are compared directly, so that the result is the same as
+		 * would be produced by removing the encoded base path from the encoded path.
+		 * @param pathString The absolute path string.
+		 * @param basePathString The absolute base path string.
+		 * @param separator The name separator of the file system of the paths.
+		 * @return The path string relative to the base path, which will be empty for the base path itself; or the given path string if the path is not within the
+		 *         base path.
+		 * @see ChannelWriter#writeImprint(long, byte[])
+		 */
+		static String relativizePathString(@Nonnull final String pathString, @Nonnull final String basePathString, @Nonnull final String separator) {
+			if(!pathString.startsWith(basePathString)) {
+				return pathString;
+			}
+			final int basePathLength = basePathString.length();
+			if(pathString.length() == basePathLength || basePathString.endsWith(separator)) { //the base path itself, or a path within a root base path
+				return pathString.substring(basePathLength);
+			}
+			return pathString.startsWith(separator, basePathLength) ? pathString.substring(basePathLength + separator.length()) : pathString;
+		}
+
+		/** The number of bytes in an encoded imprint record before the path, that is the delimiters surrounding the miniprint field. */
+		static final int ENCODED_PATH_OFFSET = 1 + PathImprint.MINIPRINT_CHECKSUM_LENGTH + 1;
+
+		/** The hexadecimal digits for encoding fingerprint checksums. */
+		private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(US_ASCII);
+
+		/** The buffer for encoding records, reused by each thread. */
+		private static final ThreadLocal<EncodeBuffer> ENCODE_BUFFER = ThreadLocal.withInitial(EncodeBuffer::new);
+
+		/**
+		 * Encodes in UTF-8 all of a single imprint record except for the number field, using the configured line separator. The encoded record begins with the
+		 * field delimiter that follows the number field, so that it may be written in sequence after the number is assigned, such as by
+		 * {@link ChannelWriter#writeImprint(long, byte[])}. The result is the same as would be written by {@link #appendImprint(Appendable, PathImprint, long)}
+		 * following the number. The path is always encoded in absolute form; any relative path is determined as the record is written.
+		 * @apiNote This method is thread safe, and is intended to be called by many threads at the same time so that the single thread writing the records has as
+		 *          little work as possible.
+		 * @implNote The checksums are encoded directly from the fingerprint bytes into a buffer reused by the calling thread, so that the only significant
+		 *           allocation is the returned array.
+		 * @param imprint The imprint to encode.
+		 * @return The bytes of the imprint record following the number field.
+		 * @throws IllegalArgumentException if the imprint path contains {@link #FIELD_DELIMITER}.
+		 */
+		public byte[] encodeImprint(@Nonnull final PathImprint imprint) {
+			final String pathString = imprint.path().toString(); //the imprint path is already absolute
+			checkArgument(pathString.indexOf(FIELD_DELIMITER) == -1, "Path `%s` cannot contain field delimiter %s.", pathString,
+					Characters.getLabel(FIELD_DELIMITER));
+			final byte[] fingerprintBytes = imprint.fingerprint().getBytes();
+			final EncodeBuffer buffer = ENCODE_BUFFER.get();
+			buffer.reset();
+			buffer.appendAscii(FIELD_DELIMITER);
+			buffer.appendHex(fingerprintBytes, PathImprint.MINIPRINT_CHECKSUM_LENGTH / 2);
+			buffer.appendAscii(FIELD_DELIMITER);
+			buffer.appendUtf8(pathString);
+			buffer.appendAscii(FIELD_DELIMITER);
+			buffer.appendUtf8(imprint.contentModifiedAt().toString());
+			buffer.appendAscii(FIELD_DELIMITER);
+			final byte[] contentFingerprintBytes = imprint.contentFingerprint().getBytes();
+			buffer.appendHex(contentFingerprintBytes, contentFingerprintBytes.length);
+			buffer.appendAscii(FIELD_DELIMITER);
+			buffer.appendHex(fingerprintBytes, fingerprintBytes.length);
+			buffer.appendUtf8(getLineSeparator());
+			return buffer.toByteArray();
+		}
+
+		/**
+		 * Growable buffer for encoding a record as bytes.
+		 * @implNote This class is not thread safe.
+		 * @author Garret Wilson
+		 */
+		private static final class EncodeBuffer {
+
+			private byte[] bytes = new byte[512];
+
+			private int length = 0;
+
+			/** Discards any bytes encoded so far. */
+			public void reset() {
+				length = 0;
+			}
+
+			/**
+			 * Ensures that the buffer has room for additional bytes.
+			 * @param count The number of bytes to be added.
+			 */
+			private void ensureRoom(final int count) {
+				if(length + count > bytes.length) {
+					bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+				}
+			}
+
+			/**
+			 * Appends an ASCII character.
+			 * @param c The character, which must be in the ASCII range.
+			 */
+			public void appendAscii(final char c) {
+				ensureRoom(1);
+				bytes[length++] = (byte)c;
+			}
+
+			/**
+			 * Appends the UTF-8 encoding of a string.
+			 * @param string The string to encode.
+			 */
+			public void appendUtf8(@Nonnull final String string) {
+				final int stringLength = string.length();
+				ensureRoom(stringLength);
+				for(int i = 0; i < stringLength; i++) {
+					final char c = string.charAt(i);
+					if(c >= 0x80) { //encode the rest of the string using the charset, which will correctly handle surrogate pairs
+						final byte[] remainingBytes = string.substring(i).getBytes(UTF_8);
+						ensureRoom(remainingBytes.length);
+						System.arraycopy(remainingBytes, 0, bytes, length, remainingBytes.length);
+						length += remainingBytes.length;
+						return;
+					}
+					bytes[length++] = (byte)c;
+				}
+			}
+
+			/**
+			 * Appends the lowercase hexadecimal encoding of bytes.
+			 * @param hexBytes The bytes to encode.
+			 * @param count The number of bytes from the beginning to encode.
+			 */
+			public void appendHex(@Nonnull final byte[] hexBytes, final int count) {
+				ensureRoom(count * 2);
+				for(int i = 0; i < count; i++) {
+					final int b = hexBytes[i];
+					bytes[length++] = HEX_DIGITS[(b >> 4) & 0x0F];
+					bytes[length++] = HEX_DIGITS[b & 0x0F];
+				}
+			}
+
+			/** @return A copy of the bytes encoded so far. */
+			public byte[] toByteArray() {
+				return Arrays.copyOf(bytes, length);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Writes encoded imprints file content to a byte channel, such as a {@link java.nio.channels.FileChannel}, using a large direct buffer. Records are expected
+	 * to have been encoded ahead of time by {@link Serializer}, so that writing requires little more than copying bytes.
+	 * @implNote This class is not thread safe.
+	 * @author Garret Wilson
+	 */
+	public static class ChannelWriter implements Flushable, Closeable {
+
+		/** The default size of the buffer. */
+		public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+		/** The maximum number of bytes in an unsigned decimal number. */
+		private static final int MAX_NUMBER_LENGTH = 20;
+
+		private final WritableByteChannel channel;
+
+		private final ByteBuffer buffer;
+
+		/** Scratch space for encoding numbers. */
+		private final byte[] numberBytes = new byte[MAX_NUMBER_LENGTH];
+
+		/** The UTF-8 bytes of the base path against which imprint paths are relativized, or <code>null</code> if imprint paths are written as encoded. */
+		@Nullable
+		private byte[] relativeBasePathBytes = null;
+
+		/** The UTF-8 bytes of the name separator of the base path file system, or an empty array if the base path already ends with a separator. */
+		private byte[] relativeBasePathSeparatorBytes;
+
+		/**
+		 * Channel constructor using the default buffer size.
+		 * @param channel The channel to which content will be written.
+		 * @see #DEFAULT_BUFFER_SIZE
+		 */
+		public ChannelWriter(@Nonnull final WritableByteChannel channel) {
+			this(channel, DEFAULT_BUFFER_SIZE);
+		}
+
+		/**
+		 * Channel and buffer size constructor.
+		 * @param channel The channel to which content will be written.
+		 * @param bufferSize The size of the direct buffer.
+		 * @throws IllegalArgumentException if the buffer size is too small to hold a number.
+		 */
+		public ChannelWriter(@Nonnull final WritableByteChannel channel, final int bufferSize) {
+			this.channel = requireNonNull(channel);
+			checkArgument(bufferSize >= MAX_NUMBER_LENGTH, "Buffer size %d too small.", bufferSize);
+			this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+
+		/**
+		 * Writes encoded content.
+		 * @param bytes The bytes to write.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 * @see Serializer#encodeHeader()
+		 * @see Serializer#encodeBasePath(Path)
+		 */
+		public void write(@Nonnull final byte[] bytes) throws IOException {
+			write(bytes, 0, bytes.length);
+		}
+
+		/**
+		 * Writes a portion of encoded content.
+		 * @param bytes The array containing the bytes to write.
+		 * @param offset The index of the first byte to write.
+		 * @param length The number of bytes to write.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 */
+		private void write(@Nonnull final byte[] bytes, final int offset, final int length) throws IOException {
+			if(length > buffer.remaining()) {
+				flush();
+				if(length > buffer.remaining()) { //too large to buffer; write the bytes directly
+					writeFully(ByteBuffer.wrap(bytes, offset, length));
+					return;
+				}
+			}
+			buffer.put(bytes, offset, length);
+		}
+
+		/**
+		 * Writes a base path record. If the serializer writes relative paths, the paths of imprints subsequently written that are within the base path will be
+		 * written relative to it.
+		 * @param serializer The serializer for encoding the base path record.
+		 * @param basePath The base path to write.
+		 * @throws IllegalArgumentException if the base path contains {@link #FIELD_DELIMITER}.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 * @see Serializer#encodeBasePath(Path)
+		 * @see Serializer#isRelativePaths()
+		 */
+		public void writeBasePath(@Nonnull final Serializer serializer, @Nonnull final Path basePath) throws IOException {
+			write(serializer.encodeBasePath(basePath));
+			if(serializer.isRelativePaths()) {
+				final String basePathString = basePath.toAbsolutePath().toString();
+				final String separator = basePath.getFileSystem().getSeparator();
+				relativeBasePathBytes = basePathString.getBytes(UTF_8);
+				relativeBasePathSeparatorBytes = basePathString.endsWith(separator) ? new byte[0] : separator.getBytes(UTF_8);
+			}
+		}
+
+		/**
+		 * Determines how many bytes of the encoded path of an imprint to skip so that the path is written relative to the base path. The encoded bytes are
+		 * compared directly, producing the same result as {@link Serializer#relativizePathString(String, String, String)}.
+		 * @param encodedImprint The record encoded by {@link Serializer#encodeImprint(PathImprint)}.
+		 * @return The number of bytes of the base path and following separator at the start of the encoded path, or <code>0</code> if the path is not being
+		 *         written relative to the base path.
+		 */
+		private int getRelativePathSkipLength(@Nonnull final byte[] encodedImprint) {
+			final byte[] basePathBytes = relativeBasePathBytes;
+			if(basePathBytes == null) {
+				return 0;
+			}
+			final int basePathEnd = Serializer.ENCODED_PATH_OFFSET + basePathBytes.length;
+			if(basePathEnd >= encodedImprint.length
+					|| !Arrays.equals(encodedImprint, Serializer.ENCODED_PATH_OFFSET, basePathEnd, basePathBytes, 0, basePathBytes.length)) {
+				return 0;
+			}
+			if(encodedImprint[basePathEnd] == FIELD_DELIMITER) { //the base path itself
+				return basePathBytes.length;
+			}
+			final int separatorEnd = basePathEnd + relativeBasePathSeparatorBytes.length;
+			return separatorEnd <= encodedImprint.length
+					&& Arrays.equals(encodedImprint, basePathEnd, separatorEnd, relativeBasePathSeparatorBytes, 0, relativeBasePathSeparatorBytes.length)
+							? basePathBytes.length + relativeBasePathSeparatorBytes.length
+							: 0; //a path such as `/foo/barbaz` is not within `/foo/bar`
+		}
+
+		/**
+		 * Writes a single imprint record, encoding the record number followed by the rest of the pre-encoded record. If a base path was written using a serializer
+		 * that writes relative paths, and the imprint path is within that base path, the base path is removed from the start of the encoded path.
+		 * @param number The number of the line being written.
+		 * @param encodedImprint The record encoded by {@link Serializer#encodeImprint(PathImprint)}.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 * @see #writeBasePath(Serializer, Path)
+		 */
+		public void writeImprint(final long number, @Nonnull final byte[] encodedImprint) throws IOException {
+			int numberStart = MAX_NUMBER_LENGTH;
+			long remaining = number;
+			do {
+				numberBytes[--numberStart] = (byte)('0' + Long.remainderUnsigned(remaining, 10));
+				remaining = Long.divideUnsigned(remaining, 10);
+			} while(remaining != 0);
+			if(MAX_NUMBER_LENGTH - numberStart > buffer.remaining()) {
+				flush();
+			}
+			buffer.put(numberBytes, numberStart, MAX_NUMBER_LENGTH - numberStart);
+			final int skipLength = getRelativePathSkipLength(encodedImprint);
+			if(skipLength == 0) {
+				write(encodedImprint);
+			} else {
+				write(encodedImprint, 0, Serializer.ENCODED_PATH_OFFSET);
+				write(encodedImprint, Serializer.ENCODED_PATH_OFFSET + skipLength, encodedImprint.length - Serializer.ENCODED_PATH_OFFSET - skipLength);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @implSpec This implementation writes all buffered content to the channel.
+		 */
+		@Override
+		public void flush() throws IOException {
+			buffer.flip();
+			writeFully(buffer);
+			buffer.clear();
+		}
+
+		/**
+		 * Writes all the remaining content of a buffer to the channel.
+		 * @param byteBuffer The buffer to write.
+		 * @throws IOException if an I/O error occurs writing the data.
+		 */
+		private void writeFully(@Nonnull final ByteBuffer byteBuffer) throws IOException {
+			while(byteBuffer.hasRemaining()) {
+				channel.write(byteBuffer);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @implSpec This implementation flushes any buffered content and then closes the channel.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+
 	}
 
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.Objects.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+import javax.annotation.*;
+
+/**
+ * Compares two sets of imprints, such as two imprints files of the same tree generated at different times, using only the information in the imprints. The
+ * imprints are matched by path, and each difference is passed to a consumer.
+ * <p>
+ * The imprints are compared in a single streaming pass, so both sets of imprints must be in the order of {@link TreeOrder#pathComparator()}, as produced by
+ * ordered generation. Imprints in any other order may first be sorted using {@link ImprintSorter}; {@link #isSorted(DatimParser)} determines whether this is
+ * necessary.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ * @author Garret Wilson
+ */
+public class DatimDiff {
+
+	/**
+	 * A difference between the imprints of a path.
+	 * @param type The type of difference.
+	 * @param foundOldImprint The imprint of the path in the old imprints, which will not be present if the path was added.
+	 * @param foundNewImprint The imprint of the path in the new imprints, which will not be present if the path was removed.
+	 * @author Garret Wilson
+	 */
+	public record Difference(@Nonnull Type type, @Nonnull Optional<PathImprint> foundOldImprint, @Nonnull Optional<PathImprint> foundNewImprint) {
+
+		/** The type of difference. */
+		public enum Type {
+			/** The path is only in the new imprints. */
+			ADDED,
+			/** The path is only in the old imprints. */
+			REMOVED,
+			/** The content fingerprint of the path changed. */
+			CONTENT_CHANGED,
+			/** The content fingerprint of the path is the same, but some other part of the imprint, such as the modification timestamp, changed. */
+			METADATA_CHANGED
+		}
+
+		/**
+		 * Constructor for argument validation.
+		 * @param type The type of difference.
+		 * @param foundOldImprint The imprint of the path in the old imprints, which will not be present if the path was added.
+		 * @param foundNewImprint The imprint of the path in the new imprints, which will not be present if the path was removed.
+		 * @throws IllegalArgumentException if the presence of the imprints does not agree with the type of difference.
+		 */
+		public Difference {
+			requireNonNull(type);
+			checkArgument(foundOldImprint.isPresent() == (type != Type.ADDED), "Old imprint presence does not agree with difference type %s.", type);
+			checkArgument(foundNewImprint.isPresent() == (type != Type.REMOVED), "New imprint presence does not agree with difference type %s.", type);
+		}
+
+		/** @return The path that differs. */
+		public Path path() {
+			return foundNewImprint.or(() -> foundOldImprint).orElseThrow(IllegalStateException::new).path();
+		}
+
+	}
+
+	private final Consumer<Difference> differenceConsumer;
+
+	/**
+	 * Constructor.
+	 * @param differenceConsumer The consumer of the differences found, in path order.
+	 */
+	public DatimDiff(@Nonnull final Consumer<Difference> differenceConsumer) {
+		this.differenceConsumer = requireNonNull(differenceConsumer);
+	}
+
+	/**
+	 * Compares two sets of imprints, passing each difference to the consumer. Imprints of the same path are paired in the order they appear.
+	 * @param oldParser The parser of the old imprints, which must be in the order of {@link TreeOrder#pathComparator()}.
+	 * @param newParser The parser of the new imprints, which must be in the order of {@link TreeOrder#pathComparator()}.
+	 * @return The number of differences found.
+	 * @throws IOException if there was an error reading the imprints, or if either set of imprints is found not to be in order.
+	 * @see #isSorted(DatimParser)
+	 */
+	public long diff(@Nonnull final DatimParser oldParser, @Nonnull final DatimParser newParser) throws IOException {
+		final OrderedReader oldReader = new OrderedReader(oldParser);
+		final OrderedReader newReader = new OrderedReader(newParser);
+		long differenceCount = 0;
+		Optional<PathImprint> foundOldImprint = oldReader.read();
+		Optional<PathImprint> foundNewImprint = newReader.read();
+		while(foundOldImprint.isPresent() || foundNewImprint.isPresent()) {
+			final int comparison;
+			if(foundOldImprint.isEmpty()) {
+				comparison = 1;
+			} else if(foundNewImprint.isEmpty()) {
+				comparison = -1;
+			} else {
+				comparison = TreeOrder.pathComparator().compare(foundOldImprint.get().path(), foundNewImprint.get().path());
+			}
+			final Optional<Difference.Type> foundType;
+			if(comparison < 0) {
+				foundType = Optional.of(Difference.Type.REMOVED);
+			} else if(comparison > 0) {
+				foundType = Optional.of(Difference.Type.ADDED);
+			} else {
+				final PathImprint oldImprint = foundOldImprint.get();
+				final PathImprint newImprint = foundNewImprint.get();
+				if(!oldImprint.contentFingerprint().equals(newImprint.contentFingerprint())) {
+					foundType = Optional.of(Difference.Type.CONTENT_CHANGED);
+				} else if(!oldImprint.equals(newImprint)) {
+					foundType = Optional.of(Difference.Type.METADATA_CHANGED);
+				} else {
+					foundType = Optional.empty();
+				}
+			}
+			if(foundType.isPresent()) {
+				differenceConsumer.accept(new Difference(foundType.get(), comparison <= 0 ? foundOldImprint : Optional.empty(),
+						comparison >= 0 ? foundNewImprint : Optional.empty()));
+				differenceCount++;
+			}
+			if(comparison <= 0) {
+				foundOldImprint = oldReader.read();
+			}
+			if(comparison >= 0) {
+				foundNewImprint = newReader.read();
+			}
+		}
+		return differenceCount;
+	}
+
+	/**
+	 * Determines whether imprints are in the order of {@link TreeOrder#pathComparator()}, reading all the imprints.
+	 * @param parser The parser of the imprints to examine.
+	 * @return <code>true</code> if the imprints are in order and may be compared without sorting.
+	 * @throws IOException if there was an error reading the imprints.
+	 */
+	public static boolean isSorted(@Nonnull final DatimParser parser) throws IOException {
+		Optional<PathImprint> foundImprint = parser.readImprint();
+		if(foundImprint.isEmpty()) {
+			return true;
+		}
+		Path previousPath = foundImprint.get().path();
+		while((foundImprint = parser.readImprint()).isPresent()) {
+			final Path path = foundImprint.get().path();
+			if(TreeOrder.pathComparator().compare(previousPath, path) > 0) {
+				return false;
+			}
+			previousPath = path;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads imprints from a parser, verifying that they are in order.
+	 * @author Garret Wilson
+	 */
+	private static final class OrderedReader {
+
+		private final DatimParser parser;
+
+		@Nullable
+		private Path previousPath = null;
+
+		/**
+		 * Constructor.
+		 * @param parser The parser of the imprints.
+		 */
+		public OrderedReader(@Nonnull final DatimParser parser) {
+			this.parser = requireNonNull(parser);
+		}
+
+		/**
+		 * Reads the next imprint.
+		 * @return The next imprint, which will not be present if there are no more imprints.
+		 * @throws IOException if there was an error reading the imprint, or if the imprint comes before the previous imprint.
+		 */
+		public Optional<PathImprint> read() throws IOException {
+			final Optional<PathImprint> foundImprint = parser.readImprint();
+			if(foundImprint.isPresent()) {
+				final Path path = foundImprint.get().path();
+				if(previousPath != null && TreeOrder.pathComparator().compare(previousPath, path) > 0) {
+					throw new IOException("Imprints not in tree order; path `%s` came after `%s`.".formatted(path, previousPath));
+				}
+				previousPath = path;
+			}
+			return foundImprint;
+		}
+
+	}
+
+}
@@ -0,0 +1,889 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.io.Paths.*;
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.Files.*;
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Comparator.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import javax.annotation.*;
+
+import com.jordial.datimprint.file.Datim.Field;
+
+/**
+ * Index of the imprint paths in a datim file, stored in a sidecar file, allowing the imprint of a path, or the imprints of all paths in a subtree, to be found
+ * without reading the entire datim file. The index contains the absolute path of each imprint as a key, sorted by the UTF-8 bytes of the key, along with the
+ * position of the imprint record in the datim file and the base path in effect for the record.
+ * <p>
+ * Only datim files in the text format encoded in UTF-8 and not compressed may be indexed, as the index refers to the position of each record in the file. The
+ * index records the size and modification timestamp of the datim file, and cannot be opened if the datim file has since been changed.
+ * </p>
+ * <p>
+ * This class is thread safe; the index and the datim file are accessed using positional reads.
+ * </p>
+ * @implNote The index file consists of a header; the base paths; a table with a fixed-length entry for each imprint, sorted by key; and the bytes of the keys.
+ *           Keys are found by binary search of the table, reading each entry and key from the file as needed.
+ * @author Garret Wilson
+ */
+public class DatimIndex implements Closeable {
+
+	/** The extension added to the datim filename to form the index filename. */
+	public static final String FILENAME_EXTENSION = "idx";
+
+	/** The signature at the start of every index file. */
+	private static final byte[] SIGNATURE = {(byte)0x89, 'D', 'A', 'T', 'I', 'D', 'X', '\n'};
+
+	/** The version of the index file format. */
+	private static final int VERSION = 1;
+
+	/** The length of each table entry: the key position and length, the record position, and the base path index. */
+	private static final int TABLE_ENTRY_LENGTH = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+	/** The base path index indicating no base path was in effect for a record. */
+	private static final int NO_BASE_PATH_INDEX = -1;
+
+	/** The default maximum number of index entries to keep in memory before writing them to a run file when creating an index. */
+	public static final int DEFAULT_WINDOW_SIZE = 100_000;
+
+	/** The initial size of the buffer for reading a record from the datim file. */
+	private static final int INITIAL_RECORD_BUFFER_SIZE = 512;
+
+	/**
+	 * Determines the sidecar index file for a datim file.
+	 * @param datimFile The datim file.
+	 * @return The index file, which has the same name as the datim file with {@value #FILENAME_EXTENSION} added as an extension.
+	 */
+	public static Path toIndexFile(@Nonnull final Path datimFile) {
+		return addFilenameExtension(datimFile, FILENAME_EXTENSION);
+	}
+
+	private final FileChannel datimChannel;
+
+	private final FileChannel indexChannel;
+
+	private final Map<Field, Integer> fieldIndexes;
+
+	private final List<Path> basePaths;
+
+	/** @return The base paths in the datim file, in the order they appear. */
+	public List<Path> getBasePaths() {
+		return basePaths;
+	}
+
+	private final long entryCount;
+
+	/** @return The number of imprints indexed. */
+	public long getEntryCount() {
+		return entryCount;
+	}
+
+	/** The position of the table in the index file. */
+	private final long tablePosition;
+
+	/**
+	 * Datim file constructor using the sidecar index file.
+	 * @param datimFile The datim file that was indexed.
+	 * @throws IOException if there is an error opening the files, if the index is invalid, or if the datim file has changed since it was indexed.
+	 * @see #toIndexFile(Path)
+	 */
+	public DatimIndex(@Nonnull final Path datimFile) throws IOException {
+		this(datimFile, toIndexFile(datimFile));
+	}
+
+	/**
+	 * Datim file and index file constructor.
+	 * @param datimFile The datim file that was indexed.
+	 * @param indexFile The index of the datim file.
+	 * @throws IOException if there is an error opening the files, if the index is invalid, or if the datim file has changed since it was indexed.
+	 */
+	public DatimIndex(@Nonnull final Path datimFile, @Nonnull final Path indexFile) throws IOException {
+		final List<Path> basePaths = new ArrayList<>();
+		long position = 0;
+		try (final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(newInputStream(indexFile)))) {
+			final byte[] signature = new byte[SIGNATURE.length];
+			inputStream.readFully(signature);
+			if(!Arrays.equals(signature, SIGNATURE)) {
+				throw new IOException("File `%s` is not an imprints index.".formatted(indexFile));
+			}
+			final int version = inputStream.readInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported imprints index `%s` version %d.".formatted(indexFile, version));
+			}
+			final long datimSize = inputStream.readLong();
+			final long datimModifiedAt = inputStream.readLong();
+			if(datimSize != size(datimFile) || datimModifiedAt != getLastModifiedTime(datimFile).toMillis()) {
+				throw new IOException("Imprints file `%s` has changed since it was indexed; the index must be created again.".formatted(datimFile));
+			}
+			final int basePathCount = inputStream.readInt();
+			position += SIGNATURE.length + Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+			for(int i = 0; i < basePathCount; i++) {
+				final byte[] basePathBytes = new byte[inputStream.readInt()];
+				inputStream.readFully(basePathBytes);
+				basePaths.add(Path.of(new String(basePathBytes, UTF_8)));
+				position += Integer.BYTES + basePathBytes.length;
+			}
+			entryCount = inputStream.readLong();
+			position += Long.BYTES;
+		}
+		this.basePaths = List.copyOf(basePaths);
+		this.tablePosition = position;
+		datimChannel = FileChannel.open(datimFile, StandardOpenOption.READ);
+		try {
+			indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ);
+			try {
+				String header = readLine(datimChannel, 0);
+				if(header.startsWith("\uFEFF")) { //skip any byte order mark
+					header = header.substring(1);
+				}
+				fieldIndexes = new Datim.Parser(new StringReader(header)).getFieldIndexes();
+			} catch(final IOException | RuntimeException exception) {
+				indexChannel.close();
+				throw exception;
+			}
+		} catch(final IOException | RuntimeException exception) {
+			datimChannel.close();
+			throw exception;
+		}
+	}
+
+	/**
+	 * Finds the imprint of a path.
+	 * @param path The absolute path of the imprint to find.
+	 * @return The entry of the imprint of the path, which will not be present if the path was not indexed. If there are several imprints of the path, the
+	 *         first in the datim file is returned.
+	 * @throws IOException if there is an error reading the index or the datim file.
+	 */
+	public Optional<MappedDatimReader.Entry> findEntry(@Nonnull final Path path) throws IOException {
+		final byte[] key = path.toString().getBytes(UTF_8);
+		final long index = findLowerBound(key);
+		return index < entryCount && Arrays.equals(readKey(index), key) ? Optional.of(readEntry(index)) : Optional.empty();
+	}
+
+	/**
+	 * Returns the imprints of a path and of all paths within it. The imprint of the path itself, if any, is returned first, followed by the imprints of the
+	 * paths within it in order of their keys.
+	 * @param path The absolute path of the subtree for which imprints should be returned.
+	 * @return A stream of the entries of the imprints in the subtree, which will throw {@link UncheckedIOException} if there is an error reading the index or
+	 *         the datim file.
+	 * @throws IOException if there is an error searching the index.
+	 */
+	public Stream<MappedDatimReader.Entry> entries(@Nonnull final Path path) throws IOException {
+		final String pathString = path.toString();
+		final String separator = path.getFileSystem().getSeparator();
+		final Stream<MappedDatimReader.Entry> pathEntries;
+		final String prefix;
+		if(pathString.endsWith(separator)) { //a root path is its own prefix
+			pathEntries = Stream.empty();
+			prefix = pathString;
+		} else {
+			final byte[] key = pathString.getBytes(UTF_8);
+			final byte[] keyLimit = Arrays.copyOf(key, key.length + 1); //the lowest key greater than all keys equal to the key
+			pathEntries = entries(findLowerBound(key), findLowerBound(keyLimit));
+			prefix = pathString + separator;
+		}
+		final byte[] prefixBytes = prefix.getBytes(UTF_8);
+		final byte[] prefixLimit = prefixBytes.clone(); //the lowest key greater than all keys starting with the prefix; the separator is never the highest byte
+		prefixLimit[prefixLimit.length - 1]++;
+		return Stream.concat(pathEntries, entries(findLowerBound(prefixBytes), findLowerBound(prefixLimit)));
+	}
+
+	/**
+	 * Returns the entries in a range of the table.
+	 * @param start The index of the first table entry, inclusive.
+	 * @param end The index of the last table entry, exclusive.
+	 * @return A stream of the entries in the range.
+	 * @throws UncheckedIOException if there was an error reading an imprint.
+	 */
+	private Stream<MappedDatimReader.Entry> entries(final long start, final long end) {
+		return LongStream.range(start, end).mapToObj(index -> {
+			try {
+				return readEntry(index);
+			} catch(final IOException ioException) {
+				throw new UncheckedIOException(ioException);
+			}
+		});
+	}
+
+	/**
+	 * Finds the index of the first table entry with a key not less than the given key.
+	 * @param key The key to search for.
+	 * @return The index of the first table entry with a key greater than or equal to the key, or the number of entries if all keys are less than the key.
+	 * @throws IOException if there is an error reading the index.
+	 */
+	private long findLowerBound(@Nonnull final byte[] key) throws IOException {
+		long low = 0;
+		long high = entryCount;
+		while(low < high) {
+			final long middle = (low + high) >>> 1;
+			if(Arrays.compareUnsigned(readKey(middle), key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Reads a table entry.
+	 * @param index The index of the table entry.
+	 * @return A buffer containing the table entry.
+	 * @throws IOException if there is an error reading the index.
+	 */
+	private ByteBuffer readTableEntry(final long index) throws IOException {
+		return readFully(indexChannel, ByteBuffer.allocate(TABLE_ENTRY_LENGTH), tablePosition + index * TABLE_ENTRY_LENGTH).flip();
+	}
+
+	/**
+	 * Reads the key of a table entry.
+	 * @param index The index of the table entry.
+	 * @return The bytes of the key.
+	 * @throws IOException if there is an error reading the index.
+	 */
+	private byte[] readKey(final long index) throws IOException {
+		final ByteBuffer tableEntry = readTableEntry(index);
+		final long keyPosition = tableEntry.getLong();
+		final int keyLength = tableEntry.getInt();
+		return readFully(indexChannel, ByteBuffer.allocate(keyLength), keyPosition).array();
+	}
+
+	/**
+	 * Reads the imprint of a table entry from the datim file.
+	 * @param index The index of the table entry.
+	 * @return The entry of the imprint.
+	 * @throws IOException if there is an error reading the index or the datim file, or if the datim file has no valid imprint record at the indexed position.
+	 */
+	private MappedDatimReader.Entry readEntry(final long index) throws IOException {
+		final ByteBuffer tableEntry = readTableEntry(index);
+		tableEntry.position(Long.BYTES + Integer.BYTES); //skip the key
+		final long recordPosition = tableEntry.getLong();
+		final int basePathIndex = tableEntry.getInt();
+		final Optional<Path> foundBasePath = basePathIndex != NO_BASE_PATH_INDEX ? Optional.of(basePaths.get(basePathIndex)) : Optional.empty();
+		final Datim.Parser parser = new Datim.Parser(new StringReader(readLine(datimChannel, recordPosition)), fieldIndexes, foundBasePath);
+		final PathImprint imprint = parser.readImprint()
+				.orElseThrow(() -> new IOException("No imprint record found at position %d of imprints file.".formatted(recordPosition)));
+		return new MappedDatimReader.Entry(foundBasePath, imprint, parser.findRelativePath());
+	}
+
+	/**
+	 * Reads bytes from a channel at a position until the buffer is full.
+	 * @param channel The channel from which to read.
+	 * @param buffer The buffer to fill.
+	 * @param position The position in the channel at which to start reading.
+	 * @return The buffer.
+	 * @throws EOFException if the end of the channel was reached before the buffer was filled.
+	 * @throws IOException if there is an error reading from the channel.
+	 */
+	private static ByteBuffer readFully(@Nonnull final FileChannel channel, @Nonnull final ByteBuffer buffer, final long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) == -1) {
+				throw new EOFException("Unexpected end of imprints index reached.");
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Reads a line of UTF-8 text from a channel, not including the line ending.
+	 * @param channel The channel from which to read.
+	 * @param position The position of the start of the line.
+	 * @return The text of the line, which will end at a line feed, a carriage return, or the end of the channel.
+	 * @throws IOException if there is an error reading from the channel.
+	 */
+	private static String readLine(@Nonnull final FileChannel channel, final long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(INITIAL_RECORD_BUFFER_SIZE);
+		int searchStart = 0;
+		while(true) {
+			final boolean isEnd = channel.read(buffer, position + buffer.position()) == -1;
+			final int length = buffer.position();
+			for(int i = searchStart; i < length; i++) {
+				final byte b = buffer.get(i);
+				if(b == '\n' || b == '\r') {
+					return new String(buffer.array(), 0, i, UTF_8);
+				}
+			}
+			if(isEnd) {
+				return new String(buffer.array(), 0, length, UTF_8);
+			}
+			searchStart = length;
+			if(!buffer.hasRemaining()) {
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			indexChannel.close();
+		} finally {
+			datimChannel.close();
+		}
+	}
+
+	/**
+	 * Creates the sidecar index of a datim file, using the default window size and the default temporary directory.
+	 * @param datimFile The datim file to index.
+	 * @return The number of imprints indexed.
+	 * @throws IOException if there is an error reading the datim file or writing the index, or if the datim file cannot be indexed.
+	 * @see #toIndexFile(Path)
+	 */
+	public static long build(@Nonnull final Path datimFile) throws IOException {
+		return build(datimFile, toIndexFile(datimFile));
+	}
+
+	/**
+	 * Creates an index of a datim file, using the default window size and the default temporary directory.
+	 * @param datimFile The datim file to index, which must be in the text format, encoded in UTF-8, and not compressed.
+	 * @param indexFile The index file to write.
+	 * @return The number of imprints indexed.
+	 * @throws IOException if there is an error reading the datim file or writing the index, or if the datim file cannot be indexed.
+	 */
+	public static long build(@Nonnull final Path datimFile, @Nonnull final Path indexFile) throws IOException {
+		return build(datimFile, indexFile, DEFAULT_WINDOW_SIZE, Optional.empty());
+	}
+
+	/**
+	 * Creates an index of a datim file. The imprint path of each record is made absolute by resolving it against the base path in effect, if needed. Once more
+	 * entries have been read than the window size, the entries in memory are sorted by key and written to a temporary run file, so that the memory used is
+	 * bounded; the runs are then merged as the table is written.
+	 * @param datimFile The datim file to index, which must be in the text format, encoded in UTF-8, and not compressed.
+	 * @param indexFile The index file to write.
+	 * @param windowSize The maximum number of index entries to keep in memory before writing them to a run file.
+	 * @param foundSpillDirectory The directory in which to create run files, or empty if run files should be created in the default temporary directory.
+	 * @return The number of imprints indexed.
+	 * @throws IllegalArgumentException if the window size is not positive.
+	 * @throws IOException if there is an error reading the datim file or writing the index, or if the datim file cannot be indexed.
+	 */
+	public static long build(@Nonnull final Path datimFile, @Nonnull final Path indexFile, final int windowSize, @Nonnull final Optional<Path> foundSpillDirectory)
+			throws IOException {
+		checkArgument(windowSize > 0, "Index window size %d not positive.", windowSize);
+		if(ParallelGzipChannel.isGzip(datimFile) || BinaryDatim.isBinaryDatim(datimFile) || !MappedDatimReader.isUtf8(datimFile)) {
+			throw new IOException("Imprints file `%s` cannot be indexed; only uncompressed imprints files in the text format encoded in UTF-8 are supported.".formatted(
+					datimFile));
+		}
+		final long datimSize = size(datimFile);
+		final long datimModifiedAt = getLastModifiedTime(datimFile).toMillis();
+		final List<Path> basePaths = new ArrayList<>();
+		try (final EntrySorter entrySorter = new EntrySorter(windowSize, foundSpillDirectory)) {
+			try (final LineReader lineReader = new LineReader(new BufferedInputStream(newInputStream(datimFile)))) {
+				if(!lineReader.readLine()) {
+					throw new EOFException("Imprints file `%s` has no header.".formatted(datimFile));
+				}
+				String header = new String(lineReader.line, 0, lineReader.lineLength, UTF_8);
+				if(header.startsWith("\uFEFF")) { //skip any byte order mark
+					header = header.substring(1);
+				}
+				final Map<Field, Integer> fieldIndexes = new Datim.Parser(new StringReader(header)).getFieldIndexes();
+				final int numberFieldIndex = fieldIndexes.get(Field.NUMBER);
+				final int pathFieldIndex = fieldIndexes.get(Field.PATH);
+				int basePathIndex = NO_BASE_PATH_INDEX;
+				while(lineReader.readLine()) {
+					final byte[] line = lineReader.line;
+					final int lineLength = lineReader.lineLength;
+					int numberStart = -1, numberEnd = -1, pathStart = -1, pathEnd = -1;
+					for(int fieldIndex = 0, fieldStart = 0; fieldStart <= lineLength; fieldIndex++) {
+						int fieldEnd = fieldStart;
+						while(fieldEnd < lineLength && line[fieldEnd] != Datim.FIELD_DELIMITER) {
+							fieldEnd++;
+						}
+						if(fieldIndex == numberFieldIndex) {
+							numberStart = fieldStart;
+							numberEnd = fieldEnd;
+						}
+						if(fieldIndex == pathFieldIndex) {
+							pathStart = fieldStart;
+							pathEnd = fieldEnd;
+						}
+						fieldStart = fieldEnd + 1;
+					}
+					if(numberStart < 0 || pathStart < 0) {
+						throw new IOException("Record at position %d of imprints file `%s` is missing fields.".formatted(lineReader.lineStart, datimFile));
+					}
+					final String pathString = new String(line, pathStart, pathEnd - pathStart, UTF_8);
+					if(numberEnd - numberStart == Datim.RECORD_TYPE_BASE_PATH.length() && line[numberStart] == Datim.RECORD_TYPE_BASE_PATH.charAt(0)) {
+						final Path basePath = Path.of(pathString);
+						if(!basePath.isAbsolute()) {
+							throw new IOException("Base path `%s` not absolute.".formatted(basePath));
+						}
+						basePaths.add(basePath);
+						basePathIndex = basePaths.size() - 1;
+						continue;
+					}
+					final Path path = Path.of(pathString);
+					final String keyString = path.isAbsolute() || basePathIndex == NO_BASE_PATH_INDEX ? pathString
+							: basePaths.get(basePathIndex).resolve(path).toString();
+					entrySorter.add(new IndexEntry(keyString.getBytes(UTF_8), lineReader.lineStart, basePathIndex));
+				}
+			}
+			entrySorter.sort();
+			final long entryCount = entrySorter.getCount();
+			//the table and the keys are written at the same time using separate channels, as the keys follow the table
+			try (final DataOutputStream tableOutputStream = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(indexFile, CREATE, TRUNCATE_EXISTING, WRITE))))) {
+				tableOutputStream.write(SIGNATURE);
+				tableOutputStream.writeInt(VERSION);
+				tableOutputStream.writeLong(datimSize);
+				tableOutputStream.writeLong(datimModifiedAt);
+				tableOutputStream.writeInt(basePaths.size());
+				for(final Path basePath : basePaths) {
+					final byte[] basePathBytes = basePath.toString().getBytes(UTF_8);
+					tableOutputStream.writeInt(basePathBytes.length);
+					tableOutputStream.write(basePathBytes);
+				}
+				tableOutputStream.writeLong(entryCount);
+				tableOutputStream.flush();
+				long keyPosition = tableOutputStream.size() + entryCount * TABLE_ENTRY_LENGTH;
+				try (final FileChannel keysChannel = FileChannel.open(indexFile, WRITE);
+						final OutputStream keysOutputStream = new BufferedOutputStream(Channels.newOutputStream(keysChannel.position(keyPosition)))) {
+					Optional<IndexEntry> foundEntry;
+					while((foundEntry = entrySorter.next()).isPresent()) {
+						final IndexEntry entry = foundEntry.get();
+						tableOutputStream.writeLong(keyPosition);
+						tableOutputStream.writeInt(entry.key().length);
+						tableOutputStream.writeLong(entry.recordPosition());
+						tableOutputStream.writeInt(entry.basePathIndex());
+						keysOutputStream.write(entry.key());
+						keyPosition += entry.key().length;
+					}
+				}
+			}
+			return entryCount;
+		}
+	}
+
+	/**
+	 * An entry of the index, before its key is written to the index file.
+	 * @param key The bytes of the absolute imprint path.
+	 * @param recordPosition The position of the imprint record in the datim file.
+	 * @param basePathIndex The index of the base path in effect for the record, or {@link #NO_BASE_PATH_INDEX} if there is no base path.
+	 * @author Garret Wilson
+	 */
+	private record IndexEntry(@Nonnull byte[] key, long recordPosition, int basePathIndex) {
+	}
+
+	/**
+	 * Collects index entries and provides them again sorted by key. Entries with the same key are provided in the order of their records in the datim file. Once
+	 * more entries have been added than the window size, the entries in memory are sorted and written to a temporary run file; runs are merged as the sorted
+	 * entries are read. If there are more runs than can be merged at the same time, groups of runs are first merged into larger runs.
+	 * <p>
+	 * This class is not thread safe.
+	 * </p>
+	 * @implNote Each run file holds the number of entries followed by each entry as the key length and bytes, the record position, and the base path index.
+	 * @author Garret Wilson
+	 * @see ImprintSorter
+	 */
+	private static final class EntrySorter implements Closeable {
+
+		/** The order of index entries: by the unsigned bytes of the key, and then by record position. */
+		private static final Comparator<IndexEntry> ENTRY_COMPARATOR = comparing(IndexEntry::key, Arrays::compareUnsigned)
+				.thenComparingLong(IndexEntry::recordPosition);
+
+		private final int windowSize;
+
+		private final Optional<Path> foundSpillDirectory;
+
+		/** The entries not yet written to a run file. */
+		private List<IndexEntry> entries = new ArrayList<>();
+
+		/** The run files not yet being merged. */
+		private final List<Path> pendingRunFiles = new ArrayList<>();
+
+		/** All run files created, including those already merged into other runs. */
+		private final List<Path> runFiles = new ArrayList<>();
+
+		/** The entries sorted in memory, if no run files were needed. */
+		@Nullable
+		private Iterator<IndexEntry> memoryEntryIterator = null;
+
+		/** The readers of the run files being merged, ordered by their current entry. */
+		private final PriorityQueue<RunReader> runReaders = new PriorityQueue<>(comparing(RunReader::getCurrent, ENTRY_COMPARATOR));
+
+		private long count = 0;
+
+		/** @return The number of entries added. */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Constructor.
+		 * @param windowSize The maximum number of entries to keep in memory before writing them to a run file.
+		 * @param foundSpillDirectory The directory in which to create run files, or empty if run files should be created in the default temporary directory.
+		 */
+		public EntrySorter(final int windowSize, @Nonnull final Optional<Path> foundSpillDirectory) {
+			this.windowSize = windowSize;
+			this.foundSpillDirectory = requireNonNull(foundSpillDirectory);
+		}
+
+		/**
+		 * Adds an entry to be sorted.
+		 * @param entry The entry to add.
+		 * @throws IllegalStateException if the entries have already been sorted.
+		 * @throws IOException if there was an error writing a run file.
+		 */
+		public void add(@Nonnull final IndexEntry entry) throws IOException {
+			checkState(memoryEntryIterator == null && runReaders.isEmpty(), "Index entries already sorted.");
+			entries.add(requireNonNull(entry));
+			count++;
+			if(entries.size() == windowSize) {
+				pendingRunFiles.add(spill(entries));
+				entries = new ArrayList<>(); //release the old list rather than keeping its grown backing array
+			}
+		}
+
+		/**
+		 * Finishes adding entries and prepares to provide them in sorted order.
+		 * @throws IOException if there was an error reading or writing a run file.
+		 */
+		public void sort() throws IOException {
+			if(pendingRunFiles.isEmpty()) { //if everything fit in memory, there is no need for run files
+				entries.sort(ENTRY_COMPARATOR);
+				memoryEntryIterator = entries.iterator();
+				return;
+			}
+			if(!entries.isEmpty()) {
+				pendingRunFiles.add(spill(entries));
+			}
+			entries = List.of(); //release the entries before merging
+			while(pendingRunFiles.size() > ImprintSorter.MAX_MERGE_WIDTH) { //merge groups of runs until there are few enough to merge at the same time
+				final List<Path> groupRunFiles = pendingRunFiles.subList(0, ImprintSorter.MAX_MERGE_WIDTH);
+				final Path mergedRunFile = merge(groupRunFiles);
+				groupRunFiles.clear();
+				pendingRunFiles.add(mergedRunFile);
+			}
+			openRunReaders(pendingRunFiles);
+			pendingRunFiles.clear();
+		}
+
+		/**
+		 * Removes and returns the least entry not yet provided.
+		 * @return The next entry in sorted order, which will not be present if all the entries have been provided.
+		 * @throws IOException if there was an error reading a run file.
+		 */
+		public Optional<IndexEntry> next() throws IOException {
+			if(memoryEntryIterator != null) {
+				return memoryEntryIterator.hasNext() ? Optional.of(memoryEntryIterator.next()) : Optional.empty();
+			}
+			return pollEntry();
+		}
+
+		/**
+		 * Creates a new run file, tracking it so that it will be deleted when this sorter is closed.
+		 * @return The new run file.
+		 * @throws IOException if there was an error creating the file.
+		 */
+		private Path createRunFile() throws IOException {
+			final Path runFile = ImprintSpool.createSpillFile(foundSpillDirectory);
+			runFiles.add(runFile);
+			return runFile;
+		}
+
+		/**
+		 * Sorts entries and writes them to a new run file.
+		 * @param spillEntries The entries to sort and write; the list will be sorted in place.
+		 * @return The new run file.
+		 * @throws IOException if there was an error writing the run file.
+		 */
+		private Path spill(@Nonnull final List<IndexEntry> spillEntries) throws IOException {
+			spillEntries.sort(ENTRY_COMPARATOR);
+			final Path runFile = createRunFile();
+			try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(runFile)))) {
+				outputStream.writeLong(spillEntries.size());
+				for(final IndexEntry entry : spillEntries) {
+					writeEntry(outputStream, entry);
+				}
+			}
+			return runFile;
+		}
+
+		/**
+		 * Merges several run files into a new run file, deleting the merged run files.
+		 * @param mergeRunFiles The run files to merge.
+		 * @return The new run file.
+		 * @throws IOException if there was an error reading or writing a run file.
+		 */
+		private Path merge(@Nonnull final List<Path> mergeRunFiles) throws IOException {
+			final Path runFile = createRunFile();
+			try {
+				openRunReaders(mergeRunFiles);
+				try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(runFile)))) {
+					outputStream.writeLong(runReaders.stream().mapToLong(RunReader::getCount).sum());
+					Optional<IndexEntry> foundEntry;
+					while((foundEntry = pollEntry()).isPresent()) {
+						writeEntry(outputStream, foundEntry.get());
+					}
+				}
+			} finally {
+				closeRunReaders();
+			}
+			for(final Path mergedRunFile : mergeRunFiles) {
+				delete(mergedRunFile);
+			}
+			return runFile;
+		}
+
+		/**
+		 * Opens readers of run files for merging.
+		 * @param openRunFiles The run files to open.
+		 * @throws IOException if there was an error opening or reading a run file.
+		 */
+		private void openRunReaders(@Nonnull final List<Path> openRunFiles) throws IOException {
+			for(final Path runFile : openRunFiles) {
+				final RunReader runReader = new RunReader(runFile);
+				if(runReader.advance()) {
+					runReaders.add(runReader);
+				} else {
+					runReader.close();
+				}
+			}
+		}
+
+		/**
+		 * Closes all the readers of run files being merged.
+		 * @throws IOException if there was an error closing a run file.
+		 */
+		private void closeRunReaders() throws IOException {
+			IOException ioException = null;
+			for(final RunReader runReader : runReaders) {
+				try {
+					runReader.close();
+				} catch(final IOException closeIOException) {
+					if(ioException == null) {
+						ioException = closeIOException;
+					} else {
+						ioException.addSuppressed(closeIOException);
+					}
+				}
+			}
+			runReaders.clear();
+			if(ioException != null) {
+				throw ioException;
+			}
+		}
+
+		/**
+		 * Removes and returns the least entry from the runs being merged.
+		 * @return The next entry, which will not be present if all the runs are finished.
+		 * @throws IOException if there was an error reading a run file.
+		 */
+		private Optional<IndexEntry> pollEntry() throws IOException {
+			final RunReader runReader = runReaders.poll();
+			if(runReader == null) {
+				return Optional.empty();
+			}
+			final IndexEntry entry = runReader.getCurrent();
+			if(runReader.advance()) {
+				runReaders.add(runReader);
+			} else {
+				runReader.close();
+			}
+			return Optional.of(entry);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @implSpec This implementation discards any entries not yet provided and deletes any run files.
+		 */
+		@Override
+		public void close() throws IOException {
+			entries = List.of();
+			memoryEntryIterator = Collections.emptyIterator();
+			IOException ioException = null;
+			try {
+				closeRunReaders();
+			} catch(final IOException closeIOException) {
+				ioException = closeIOException;
+			}
+			for(final Path runFile : runFiles) {
+				try {
+					deleteIfExists(runFile);
+				} catch(final IOException deleteIOException) {
+					if(ioException == null) {
+						ioException = deleteIOException;
+					} else {
+						ioException.addSuppressed(deleteIOException);
+					}
+				}
+			}
+			runFiles.clear();
+			if(ioException != null) {
+				throw ioException;
+			}
+		}
+
+		/**
+		 * Writes an entry to a run file.
+		 * @param output The output to the file.
+		 * @param entry The entry to write.
+		 * @throws IOException if there was an error writing the entry.
+		 */
+		private static void writeEntry(@Nonnull final DataOutput output, @Nonnull final IndexEntry entry) throws IOException {
+			output.writeInt(entry.key().length);
+			output.write(entry.key());
+			output.writeLong(entry.recordPosition());
+			output.writeInt(entry.basePathIndex());
+		}
+
+		/**
+		 * Sequential reader of the entries in a single run file.
+		 * @author Garret Wilson
+		 */
+		private static final class RunReader implements Closeable {
+
+			private final DataInputStream inputStream;
+
+			private final long count;
+
+			/** @return The total number of entries in the run. */
+			public long getCount() {
+				return count;
+			}
+
+			private long remainingCount;
+
+			@Nullable
+			private IndexEntry current = null;
+
+			/** @return The entry most recently read. */
+			public IndexEntry getCurrent() {
+				return current;
+			}
+
+			/**
+			 * Constructor.
+			 * @param runFile The run file to read.
+			 * @throws IOException if there was an error opening the run file.
+			 */
+			public RunReader(@Nonnull final Path runFile) throws IOException {
+				this.inputStream = new DataInputStream(new BufferedInputStream(newInputStream(runFile)));
+				this.count = inputStream.readLong();
+				this.remainingCount = count;
+			}
+
+			/**
+			 * Reads the next entry in the run.
+			 * @return <code>true</code> if another entry was read, or <code>false</code> if the run is finished.
+			 * @throws IOException if there was an error reading the run file.
+			 */
+			public boolean advance() throws IOException {
+				if(remainingCount == 0) {
+					current = null;
+					return false;
+				}
+				final byte[] key = new byte[inputStream.readInt()];
+				inputStream.readFully(key);
+				current = new IndexEntry(key, inputStream.readLong(), inputStream.readInt());
+				remainingCount--;
+				return true;
+			}
+
+			@Override
+			public void close() throws IOException {
+				inputStream.close();
+			}
+
+		}
+
+	}
+
+	/**
+	 * Reads lines of bytes from an input stream, keeping track of the position of each line. Lines may end in a line feed, a carriage return, or both.
+	 * @implNote This class is not thread safe.
+	 * @author Garret Wilson
+	 */
+	private static class LineReader implements Closeable {
+
+		private final InputStream inputStream;
+
+		/** The bytes of the current line, reused for each line. */
+		private byte[] line = new byte[256];
+
+		/** The number of bytes in the current line. */
+		private int lineLength = 0;
+
+		/** The position in the input of the start of the current line. */
+		private long lineStart = 0;
+
+		/** The position in the input of the next byte to read. */
+		private long position = 0;
+
+		/** Whether the previous line ended with a carriage return, so that a following line feed should be skipped. */
+		private boolean skipLineFeed = false;
+
+		/**
+		 * Constructor.
+		 * @param inputStream The input stream from which to read lines, which should be buffered.
+		 */
+		public LineReader(@Nonnull final InputStream inputStream) {
+			this.inputStream = inputStream;
+		}
+
+		/**
+		 * Reads the next line.
+		 * @return <code>true</code> if a line was read, or <code>false</code> if the end of the input was reached without reading any bytes.
+		 * @throws IOException if there is an error reading from the input stream.
+		 */
+		public boolean readLine() throws IOException {
+			lineLength = 0;
+			int b = inputStream.read();
+			if(skipLineFeed && b == '\n') {
+				position++;
+				b = inputStream.read();
+			}
+			skipLineFeed = false;
+			lineStart = position;
+			if(b == -1) {
+				return false;
+			}
+			while(b != -1) {
+				position++;
+				if(b == '\n') {
+					return true;
+				}
+				if(b == '\r') {
+					skipLineFeed = true;
+					return true;
+				}
+				if(lineLength == line.length) {
+					line = Arrays.copyOf(line, line.length * 2);
+				}
+				line[lineLength++] = (byte)b;
+				b = inputStream.read();
+			}
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Parser of the imprints in an imprints file, regardless of the format of the file.
+ * @author Garret Wilson
+ * @see Datim.Parser
+ * @see BinaryDatim.Parser
+ */
+public interface DatimParser {
+
+	/** @return The current base path, which may not be present if no base path record has yet been encountered. */
+	public Optional<Path> findCurrentBasePath();
+
+	/**
+	 * Returns the path of the imprint most recently read as it was stored relative to the current base path. This allows the imprint path to be relocated to
+	 * another base path by simply resolving the relative path.
+	 * @implSpec The default implementation returns {@link Optional#empty()}.
+	 * @return The path of the imprint most recently read relative to the current base path, which will not be present if the imprint path was not stored
+	 *         relative to the base path.
+	 */
+	public default Optional<Path> findRelativePath() {
+		return Optional.empty();
+	}
+
+	/**
+	 * Reads the next imprint from the input. For each base path record, if any, the current base path returned by {@link #findCurrentBasePath()} will be updated
+	 * and the record will be skipped.
+	 * @return The imprint that was read, which will not be present if the end of the file was reached.
+	 * @throws IOException If there was an error attempting to reading the imprint or if the imprint record did not have valid information.
+	 */
+	public Optional<PathImprint> readImprint() throws IOException;
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.file.Files.*;
+import static java.util.Comparator.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+import com.jordial.datimprint.file.PathImprintGenerator.DirectoryContentChildrenFingerprints;
+
+/**
+ * Accumulates the fingerprints of the children of a single directory in any order, and combines them in filename order into the fingerprints of the
+ * directory. Once more children have been added than the spill threshold, the accumulated children are sorted and written to a temporary run file, so that
+ * the memory used is bounded regardless of the number of children. The runs are merged in filename order when the fingerprints are finally combined, producing
+ * the same fingerprints as if all the children had been sorted in memory.
+ * <p>
+ * This class is thread safe; children may be added concurrently as their imprints are generated.
+ * </p>
+ * <p>
+ * Children are combined in the order of {@link TreeOrder#filenameComparator()}, which breaks ties between distinct filenames that the rules of
+ * {@link com.globalmentor.io.Paths#filenameComparator()} consider equal, such as <code>example.jar.sha1</code> and <code>example.pom.sha1</code>, by comparing
+ * their code units. Fingerprints of directories containing such children previously depended on the order in which the children happened to be combined, and
+ * so may differ from those in imprints generated by earlier versions.
+ * </p>
+ * @implNote Each run file holds the number of children followed by the filename and the raw bytes of the content fingerprint and fingerprint of each child.
+ * @author Garret Wilson
+ */
+final class DirectoryFingerprintAggregator implements Closeable {
+
+	/**
+	 * The fingerprints of a single child.
+	 * @param filename The filename of the child.
+	 * @param contentFingerprint The content fingerprint of the child.
+	 * @param fingerprint The full fingerprint of the child.
+	 */
+	record ChildFingerprints(@Nonnull String filename, @Nonnull Hash contentFingerprint, @Nonnull Hash fingerprint) {
+	}
+
+	/** The prefix of temporary run filenames. */
+	private static final String RUN_FILE_PREFIX = "datimprint-";
+
+	/** The suffix of temporary run filenames. */
+	private static final String RUN_FILE_SUFFIX = ".run";
+
+	/** The comparator for ordering child fingerprints, with no two distinct filenames considered equal. */
+	private static final Comparator<ChildFingerprints> CHILD_FINGERPRINTS_COMPARATOR = comparing(ChildFingerprints::filename, TreeOrder.filenameComparator());
+
+	private final MessageDigests.Algorithm algorithm;
+
+	private final int spillThreshold;
+
+	private final Optional<Path> foundSpillDirectory;
+
+	private List<ChildFingerprints> buffer = new ArrayList<>();
+
+	private final List<Path> runFiles = new ArrayList<>();
+
+	private boolean closed = false;
+
+	/**
+	 * Constructor.
+	 * @param algorithm The algorithm for combining the child fingerprints.
+	 * @param spillThreshold The maximum number of children to keep in memory before spilling them to a run file.
+	 * @param foundSpillDirectory The directory in which to create run files, or empty if run files should be created in the default temporary directory.
+	 * @throws IllegalArgumentException if the spill threshold is not positive.
+	 */
+	public DirectoryFingerprintAggregator(@Nonnull final MessageDigests.Algorithm algorithm, final int spillThreshold,
+			@Nonnull final Optional<Path> foundSpillDirectory) {
+		this.algorithm = requireNonNull(algorithm);
+		checkArgument(spillThreshold > 0, "Spill threshold %d not positive.", spillThreshold);
+		this.spillThreshold = spillThreshold;
+		this.foundSpillDirectory = requireNonNull(foundSpillDirectory);
+	}
+
+	/** @return The number of run files spilled so far. */
+	synchronized int getRunCount() {
+		return runFiles.size();
+	}
+
+	/**
+	 * Adds the fingerprints of a child imprint.
+	 * @param childImprint The imprint of a child of the directory.
+	 * @throws IllegalArgumentException if the child imprint path has no filename.
+	 * @throws IllegalStateException if the aggregator has already been closed.
+	 * @throws IOException if there was an error spilling children to a run file.
+	 */
+	public void add(@Nonnull final PathImprint childImprint) throws IOException {
+		final Path filename = childImprint.path().getFileName();
+		checkArgument(filename != null, "Child imprint path `%s` has no filename.", childImprint.path());
+		add(new ChildFingerprints(filename.toString(), childImprint.contentFingerprint(), childImprint.fingerprint()));
+	}
+
+	/**
+	 * Adds the fingerprints of a child.
+	 * @param childFingerprints The fingerprints of a child of the directory.
+	 * @throws IllegalStateException if the aggregator has already been closed.
+	 * @throws IOException if there was an error spilling children to a run file.
+	 */
+	public synchronized void add(@Nonnull final ChildFingerprints childFingerprints) throws IOException {
+		checkState(!closed, "Directory fingerprint aggregator already closed.");
+		buffer.add(requireNonNull(childFingerprints));
+		if(buffer.size() > spillThreshold) {
+			spill();
+		}
+	}
+
+	/**
+	 * Sorts the buffered children and writes them to a new run file, and then clears the buffer.
+	 * @throws IOException if there was an error writing the run file.
+	 */
+	private void spill() throws IOException {
+		buffer.sort(CHILD_FINGERPRINTS_COMPARATOR);
+		final Path runFile = foundSpillDirectory.isPresent() ? createTempFile(foundSpillDirectory.get(), RUN_FILE_PREFIX, RUN_FILE_SUFFIX)
+				: createTempFile(RUN_FILE_PREFIX, RUN_FILE_SUFFIX);
+		runFiles.add(runFile); //track the file immediately so that it will be deleted even if writing fails
+		try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(runFile)))) {
+			outputStream.writeInt(buffer.size());
+			for(final ChildFingerprints childFingerprints : buffer) {
+				outputStream.writeUTF(childFingerprints.filename());
+				outputStream.write(childFingerprints.contentFingerprint().getBytes());
+				outputStream.write(childFingerprints.fingerprint().getBytes());
+			}
+		}
+		buffer = new ArrayList<>(); //release the old buffer rather than keeping its grown backing array
+	}
+
+	/**
+	 * Combines the fingerprints of all the children added so far, in filename order.
+	 * @implNote The message digests used for the fingerprints are borrowed from a pool confined to the calling thread.
+	 * @return The fingerprints of the directory content fingerprints and children fingerprints.
+	 * @throws IllegalStateException if the aggregator has already been closed.
+	 * @throws IOException if there was an error reading the run files.
+	 */
+	public synchronized DirectoryContentChildrenFingerprints finish() throws IOException {
+		checkState(!closed, "Directory fingerprint aggregator already closed.");
+		final MessageDigestPool messageDigestPool = MessageDigestPool.forAlgorithm(algorithm);
+		final MessageDigest contentFingerprintMessageDigest = messageDigestPool.borrowMessageDigest();
+		final MessageDigest childrenFingerprintMessageDigest = messageDigestPool.borrowMessageDigest();
+		try {
+			if(runFiles.isEmpty()) {
+				buffer.sort(CHILD_FINGERPRINTS_COMPARATOR);
+				for(final ChildFingerprints childFingerprints : buffer) {
+					childFingerprints.contentFingerprint().updateMessageDigest(contentFingerprintMessageDigest);
+					childFingerprints.fingerprint().updateMessageDigest(childrenFingerprintMessageDigest);
+				}
+			} else {
+				if(!buffer.isEmpty()) { //spill the remainder as well so that all children can be merged uniformly
+					spill();
+				}
+				merge(contentFingerprintMessageDigest, childrenFingerprintMessageDigest);
+			}
+			return new DirectoryContentChildrenFingerprints(Hash.fromDigest(contentFingerprintMessageDigest), Hash.fromDigest(childrenFingerprintMessageDigest));
+		} finally {
+			messageDigestPool.returnMessageDigest(childrenFingerprintMessageDigest);
+			messageDigestPool.returnMessageDigest(contentFingerprintMessageDigest);
+		}
+	}
+
+	/**
+	 * Merges all the run files in filename order, updating the message digests with the fingerprints of each child.
+	 * @param contentFingerprintMessageDigest The message digest to update with the child content fingerprints.
+	 * @param childrenFingerprintMessageDigest The message digest to update with the child fingerprints.
+	 * @throws IOException if there was an error reading the run files.
+	 */
+	private void merge(@Nonnull final MessageDigest contentFingerprintMessageDigest, @Nonnull final MessageDigest childrenFingerprintMessageDigest)
+			throws IOException {
+		final int hashLength = contentFingerprintMessageDigest.getDigestLength();
+		final List<RunReader> runReaders = new ArrayList<>(runFiles.size());
+		try {
+			final PriorityQueue<RunReader> runReaderQueue = new PriorityQueue<>(Math.max(runFiles.size(), 1),
+					comparing(RunReader::getCurrent, CHILD_FINGERPRINTS_COMPARATOR));
+			for(final Path runFile : runFiles) {
+				final RunReader runReader = new RunReader(runFile, hashLength);
+				runReaders.add(runReader);
+				if(runReader.advance()) {
+					runReaderQueue.add(runReader);
+				}
+			}
+			RunReader runReader;
+			while((runReader = runReaderQueue.poll()) != null) {
+				final ChildFingerprints childFingerprints = runReader.getCurrent();
+				childFingerprints.contentFingerprint().updateMessageDigest(contentFingerprintMessageDigest);
+				childFingerprints.fingerprint().updateMessageDigest(childrenFingerprintMessageDigest);
+				if(runReader.advance()) {
+					runReaderQueue.add(runReader);
+				}
+			}
+		} finally {
+			for(final RunReader runReader : runReaders) {
+				runReader.close();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation discards any buffered children and deletes any run files. Any children added after closing will be rejected.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		buffer = List.of();
+		IOException ioException = null;
+		for(final Path runFile : runFiles) {
+			try {
+				deleteIfExists(runFile);
+			} catch(final IOException deleteIOException) {
+				if(ioException == null) {
+					ioException = deleteIOException;
+				} else {
+					ioException.addSuppressed(deleteIOException);
+				}
+			}
+		}
+		runFiles.clear();
+		if(ioException != null) {
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Sequential reader of the children in a single run file.
+	 * @author Garret Wilson
+	 */
+	private static final class RunReader implements Closeable {
+
+		private final DataInputStream inputStream;
+
+		private final int hashLength;
+
+		private int remainingCount;
+
+		@Nullable
+		private ChildFingerprints current = null;
+
+		/** @return The child most recently read. */
+		public ChildFingerprints getCurrent() {
+			return current;
+		}
+
+		/**
+		 * Constructor.
+		 * @param runFile The run file to read.
+		 * @param hashLength The length of each fingerprint in bytes.
+		 * @throws IOException if there was an error opening the run file.
+		 */
+		public RunReader(@Nonnull final Path runFile, final int hashLength) throws IOException {
+			this.inputStream = new DataInputStream(new BufferedInputStream(newInputStream(runFile)));
+			this.hashLength = hashLength;
+			this.remainingCount = inputStream.readInt();
+		}
+
+		/**
+		 * Reads the next child in the run.
+		 * @return <code>true</code> if another child was read, or <code>false</code> if the run is finished.
+		 * @throws IOException if there was an error reading the run file.
+		 */
+		public boolean advance() throws IOException {
+			if(remainingCount == 0) {
+				current = null;
+				return false;
+			}
+			final String filename = inputStream.readUTF();
+			final byte[] contentFingerprintBytes = new byte[hashLength];
+			inputStream.readFully(contentFingerprintBytes);
+			final byte[] fingerprintBytes = new byte[hashLength];
+			inputStream.readFully(fingerprintBytes);
+			current = new ChildFingerprints(filename, Hash.of(contentFingerprintBytes), Hash.of(fingerprintBytes));
+			remainingCount--;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+
+	}
+
+}
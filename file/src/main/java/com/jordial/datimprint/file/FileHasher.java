@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static java.util.Objects.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+
+/**
+ * Engine for generating a hash of the contents of a file.
+ * <p>
+ * Implementations of this interface <strong>must be thread safe</strong>, as files may be hashed concurrently.
+ * </p>
+ * @author Garret Wilson
+ */
+@FunctionalInterface
+public interface FileHasher {
+
+	/** Description of the type of file hasher to use. */
+	public enum Type {
+		/**
+		 * Indicates reading files via an input stream into a heap buffer.
+		 * @see FileHasher#of(MessageDigests.Algorithm)
+		 */
+		stream,
+		/**
+		 * Indicates reading files via a file channel, using memory mapping for large files and pooled direct buffers for small ones.
+		 * @see ChannelFileHasher
+		 */
+		channel
+	}
+
+	/**
+	 * Generates a hash of a file's contents.
+	 * @param file The file the contents of which should be hashed.
+	 * @return The hash of the file contents.
+	 * @throws IOException if there is a problem reading the content.
+	 */
+	Hash hash(@Nonnull Path file) throws IOException;
+
+	/**
+	 * Returns a file hasher that reads files using an input stream, delegating to {@link MessageDigests.Algorithm#hash(Path)}.
+	 * @param algorithm The algorithm for hashing the file contents.
+	 * @return A file hasher using the given algorithm.
+	 */
+	public static FileHasher of(@Nonnull final MessageDigests.Algorithm algorithm) {
+		requireNonNull(algorithm);
+		return algorithm::hash;
+	}
+
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.file.Files.*;
+import static java.util.Comparator.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+
+/**
+ * Buffer that accepts imprints in the order they are generated and passes them to a consumer in the deterministic order of {@link TreeOrder#pathComparator()}.
+ * Each path must be declared as expected before its imprint may be generated, and the children of a directory must be declared while the directory is
+ * marked as being listed. An imprint is passed to the consumer only once it comes before all the expected paths that have no imprint yet, and is not inside a
+ * directory still being listed. Once more imprints are waiting than the window size, the waiting imprints are sorted and written to a temporary run file, so
+ * that the memory used is bounded; runs are merged as imprints are passed to the consumer. If more runs would be open than can be merged at the same time, the
+ * open runs are first merged into a single run, limiting the number of files open.
+ * <p>
+ * Imprints are only passed to the consumer during {@link #consume()}, allowing the caller to decide which thread consumes imprints. Run files are only opened
+ * and read during {@link #consume()}.
+ * </p>
+ * <p>
+ * This class is thread safe. The consumer is never called concurrently, and neither the consumer nor the reading of run files is ever done while holding the
+ * lock used for offering imprints and declaring expected paths, so that generation is not delayed while imprints are being consumed.
+ * </p>
+ * @implNote Each run file holds the number of imprints followed by each imprint in the format of {@link ImprintSpool#writeImprint(DataOutput, PathImprint)}.
+ * @author Garret Wilson
+ */
+final class ImprintReorderBuffer implements Closeable {
+
+	/** The comparator for ordering imprints. */
+	private static final Comparator<PathImprint> IMPRINT_COMPARATOR = comparing(PathImprint::path, TreeOrder.pathComparator());
+
+	private final Consumer<PathImprint> imprintConsumer;
+
+	private final int hashLength;
+
+	private final int windowSize;
+
+	private final Optional<Path> foundSpillDirectory;
+
+	/** The paths for which imprints are expected but have not yet been generated. */
+	private final NavigableSet<Path> expectedPaths = new TreeSet<>(TreeOrder.pathComparator());
+
+	/** The directories currently being listed, the children of which may not all have been declared as expected. */
+	private final Set<Path> listingDirectories = new HashSet<>();
+
+	/** The imprints waiting in memory to be passed to the consumer. */
+	private PriorityQueue<PathImprint> waitingImprints = new PriorityQueue<>(IMPRINT_COMPARATOR);
+
+	/** The run files spilled but not yet opened for consuming. */
+	private final List<Path> pendingRunFiles = new ArrayList<>();
+
+	/** The file system of the imprint paths, determined from the first imprints spilled. */
+	@Nullable
+	private FileSystem fileSystem = null;
+
+	/** The run files not yet deleted, including those being merged. */
+	private final Set<Path> runFiles = new HashSet<>();
+
+	private int spilledRunCount = 0;
+
+	/** The readers of imprints waiting in run files, ordered by their current imprint; only accessed while holding the consume lock. */
+	private final PriorityQueue<RunReader> runReaders = new PriorityQueue<>(comparing(RunReader::getCurrent, IMPRINT_COMPARATOR));
+
+	/** The lock ensuring imprints are passed to the consumer one at a time and in order. */
+	private final Object consumeLock = new Object();
+
+	private boolean closed = false;
+
+	/**
+	 * Constructor.
+	 * @param imprintConsumer The consumer to which imprints will be passed in order.
+	 * @param algorithm The algorithm of the imprint fingerprints.
+	 * @param windowSize The maximum number of imprints to keep in memory while waiting for imprints that come before them.
+	 * @param foundSpillDirectory The directory in which to create run files, or empty if run files should be created in the default temporary directory.
+	 * @throws IllegalArgumentException if the window size is not positive.
+	 */
+	public ImprintReorderBuffer(@Nonnull final Consumer<PathImprint> imprintConsumer, @Nonnull final MessageDigests.Algorithm algorithm, final int windowSize,
+			@Nonnull final Optional<Path> foundSpillDirectory) {
+		this.imprintConsumer = requireNonNull(imprintConsumer);
+		this.hashLength = algorithm.newMessageDigest().getDigestLength();
+		checkArgument(windowSize > 0, "Reorder window size %d not positive.", windowSize);
+		this.windowSize = windowSize;
+		this.foundSpillDirectory = requireNonNull(foundSpillDirectory);
+	}
+
+	/** @return The number of run files spilled so far, not including those produced by merging other runs. */
+	synchronized int getRunCount() {
+		return spilledRunCount;
+	}
+
+	/** @return The number of run files currently open for consuming. */
+	int getOpenRunCount() {
+		synchronized(consumeLock) {
+			return runReaders.size();
+		}
+	}
+
+	/**
+	 * Declares that an imprint will be generated for the given path. No imprint coming after the path will be passed to the consumer until the imprint of the
+	 * path has been offered or the path has been abandoned.
+	 * @param path The path for which an imprint is expected.
+	 */
+	public synchronized void expect(@Nonnull final Path path) {
+		expectedPaths.add(requireNonNull(path));
+	}
+
+	/**
+	 * Marks that a directory is being listed. No imprint inside the directory will be passed to the consumer until listing is finished.
+	 * @param directory The directory being listed.
+	 * @see #endListing(Path)
+	 */
+	public synchronized void beginListing(@Nonnull final Path directory) {
+		listingDirectories.add(requireNonNull(directory));
+	}
+
+	/**
+	 * Marks that a directory is finished being listed, meaning that all its children have been declared as expected.
+	 * @param directory The directory that was being listed.
+	 * @see #beginListing(Path)
+	 */
+	public synchronized void endListing(@Nonnull final Path directory) {
+		listingDirectories.remove(requireNonNull(directory));
+	}
+
+	/**
+	 * Stops expecting the imprint of a path, such as when generation of the imprint failed.
+	 * @param path The path for which an imprint is no longer expected.
+	 */
+	public synchronized void abandon(@Nonnull final Path path) {
+		expectedPaths.remove(requireNonNull(path));
+	}
+
+	/**
+	 * Offers an imprint that has been generated.
+	 * @param imprint The imprint of a path previously declared as expected.
+	 * @throws IllegalStateException if the buffer has already been closed.
+	 * @throws IOException if there was an error spilling waiting imprints to a run file.
+	 */
+	public synchronized void offer(@Nonnull final PathImprint imprint) throws IOException {
+		checkState(!closed, "Imprint reorder buffer already closed.");
+		expectedPaths.remove(imprint.path());
+		waitingImprints.add(imprint);
+		if(waitingImprints.size() > windowSize) {
+			spill();
+		}
+	}
+
+	/**
+	 * Passes to the consumer, in order, all the waiting imprints that come before every expected path and are not inside a directory being listed. This method
+	 * should be called after any change that might allow waiting imprints to be consumed.
+	 * @throws IOException if there was an error reading or merging run files.
+	 */
+	public void consume() throws IOException {
+		synchronized(consumeLock) {
+			PathImprint imprint;
+			do {
+				openPendingRunFiles();
+				final RunReader runReader = runReaders.peek();
+				imprint = pollReady(runReader != null ? runReader.getCurrent() : null);
+				if(imprint != null) {
+					if(runReader != null && imprint == runReader.getCurrent()) { //the run is only advanced after releasing the lock, as that requires reading the file
+						runReaders.remove();
+						advanceRun(runReader);
+					}
+					imprintConsumer.accept(imprint);
+				}
+			} while(imprint != null || hasPendingRunFiles());
+		}
+	}
+
+	/** @return Whether there are spilled run files not yet opened for consuming. */
+	private synchronized boolean hasPendingRunFiles() {
+		return !pendingRunFiles.isEmpty();
+	}
+
+	/**
+	 * Removes and returns the next waiting imprint if it is ready to be passed to the consumer. No imprint will be returned if there are run files not yet
+	 * opened, as they might contain an imprint that comes first.
+	 * @param runImprint The least imprint waiting in the open run files, or <code>null</code> if there are no open run files; the run will not be advanced.
+	 * @return The next ready imprint, which will be the run imprint if it comes first, or <code>null</code> if there is no waiting imprint or the next one must
+	 *         still wait.
+	 */
+	@Nullable
+	private synchronized PathImprint pollReady(@Nullable final PathImprint runImprint) {
+		if(!pendingRunFiles.isEmpty()) {
+			return null;
+		}
+		final PathImprint waitingImprint = waitingImprints.peek();
+		final boolean isFromRun = runImprint != null && (waitingImprint == null || IMPRINT_COMPARATOR.compare(runImprint, waitingImprint) < 0);
+		final PathImprint nextImprint = isFromRun ? runImprint : waitingImprint;
+		if(nextImprint == null) {
+			return null;
+		}
+		final Path path = nextImprint.path();
+		if(!expectedPaths.isEmpty() && TreeOrder.pathComparator().compare(path, expectedPaths.first()) > 0) {
+			return null;
+		}
+		for(final Path listingDirectory : listingDirectories) {
+			if(path.startsWith(listingDirectory) && !path.equals(listingDirectory)) {
+				return null;
+			}
+		}
+		if(!isFromRun) {
+			waitingImprints.remove();
+		}
+		return nextImprint;
+	}
+
+	/**
+	 * Sorts the imprints waiting in memory and writes them to a new run file, and then clears the waiting imprints. The run file will be opened the next time
+	 * imprints are consumed.
+	 * @throws IOException if there was an error writing the run file.
+	 */
+	private void spill() throws IOException {
+		final Path runFile = ImprintSpool.createSpillFile(foundSpillDirectory);
+		runFiles.add(runFile); //track the file immediately so that it will be deleted even if writing fails
+		if(fileSystem == null) {
+			fileSystem = waitingImprints.element().path().getFileSystem();
+		}
+		try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(runFile)))) {
+			outputStream.writeLong(waitingImprints.size());
+			PathImprint imprint;
+			while((imprint = waitingImprints.poll()) != null) {
+				ImprintSpool.writeImprint(outputStream, imprint);
+			}
+		}
+		waitingImprints = new PriorityQueue<>(IMPRINT_COMPARATOR); //release the old queue rather than keeping its grown backing array
+		pendingRunFiles.add(runFile);
+		spilledRunCount++;
+	}
+
+	/**
+	 * Opens the run files spilled since imprints were last consumed. If opening a run file would exceed the number of runs that can be merged at the same time,
+	 * the open runs are first merged into a single run. Must only be called while holding the consume lock.
+	 * @throws IOException if there was an error opening, reading, or merging a run file.
+	 */
+	private void openPendingRunFiles() throws IOException {
+		final List<Path> openRunFiles;
+		final FileSystem runFileSystem;
+		synchronized(this) {
+			if(pendingRunFiles.isEmpty()) {
+				return;
+			}
+			openRunFiles = new ArrayList<>(pendingRunFiles);
+			pendingRunFiles.clear();
+			runFileSystem = fileSystem;
+		}
+		for(final Path runFile : openRunFiles) {
+			if(runReaders.size() >= ImprintSorter.MAX_MERGE_WIDTH) {
+				mergeOpenRuns(runFileSystem);
+			}
+			advanceRun(new RunReader(runFile, runFileSystem, hashLength));
+		}
+	}
+
+	/**
+	 * Merges the remaining imprints of all the open runs into a new run file, which replaces them as the only open run. Must only be called while holding the
+	 * consume lock.
+	 * @param runFileSystem The file system of the imprint paths.
+	 * @throws IOException if there was an error reading or writing a run file.
+	 */
+	private void mergeOpenRuns(@Nonnull final FileSystem runFileSystem) throws IOException {
+		final Path runFile = ImprintSpool.createSpillFile(foundSpillDirectory);
+		synchronized(this) {
+			runFiles.add(runFile);
+		}
+		try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(runFile)))) {
+			outputStream.writeLong(runReaders.stream().mapToLong(runReader -> runReader.getRemainingCount() + 1).sum()); //include each current imprint
+			while(!runReaders.isEmpty()) {
+				ImprintSpool.writeImprint(outputStream, runReaders.element().getCurrent());
+				advanceRun(runReaders.remove()); //the run is only removed after writing, so that it will be closed on failure
+			}
+		}
+		advanceRun(new RunReader(runFile, runFileSystem, hashLength));
+	}
+
+	/**
+	 * Advances a run that is not in the queue of open runs, returning it to the queue if it has another imprint, or otherwise closing and deleting its file.
+	 * Must only be called while holding the consume lock.
+	 * @param runReader The reader of the run to advance.
+	 * @throws IOException if there was an error reading, closing, or deleting the run file.
+	 */
+	private void advanceRun(@Nonnull final RunReader runReader) throws IOException {
+		final boolean isAdvanced;
+		try {
+			isAdvanced = runReader.advance();
+		} catch(final IOException | RuntimeException exception) {
+			runReader.close();
+			throw exception;
+		}
+		if(isAdvanced) {
+			runReaders.add(runReader);
+		} else {
+			runReader.close();
+			deleteIfExists(runReader.getRunFile());
+			synchronized(this) {
+				runFiles.remove(runReader.getRunFile());
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation discards any waiting imprints and deletes any run files. Any imprints offered after closing will be rejected.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(consumeLock) {
+			synchronized(this) {
+				closed = true;
+				waitingImprints.clear();
+				pendingRunFiles.clear();
+				IOException ioException = null;
+				for(final RunReader runReader : runReaders) {
+					try {
+						runReader.close();
+					} catch(final IOException closeIOException) {
+						if(ioException == null) {
+							ioException = closeIOException;
+						} else {
+							ioException.addSuppressed(closeIOException);
+						}
+					}
+				}
+				runReaders.clear();
+				for(final Path runFile : runFiles) {
+					try {
+						deleteIfExists(runFile);
+					} catch(final IOException deleteIOException) {
+						if(ioException == null) {
+							ioException = deleteIOException;
+						} else {
+							ioException.addSuppressed(deleteIOException);
+						}
+					}
+				}
+				runFiles.clear();
+				if(ioException != null) {
+					throw ioException;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sequential reader of the imprints in a single run file.
+	 * @author Garret Wilson
+	 */
+	private static final class RunReader implements Closeable {
+
+		private final Path runFile;
+
+		/** @return The run file being read. */
+		public Path getRunFile() {
+			return runFile;
+		}
+
+		private final DataInputStream inputStream;
+
+		private final FileSystem fileSystem;
+
+		private final int hashLength;
+
+		private long remainingCount;
+
+		/** @return The number of imprints in the run not yet read. */
+		public long getRemainingCount() {
+			return remainingCount;
+		}
+
+		@Nullable
+		private PathImprint current = null;
+
+		/** @return The imprint most recently read. */
+		public PathImprint getCurrent() {
+			return current;
+		}
+
+		/**
+		 * Constructor.
+		 * @param runFile The run file to read.
+		 * @param fileSystem The file system of the imprint paths.
+		 * @param hashLength The length of each fingerprint in bytes.
+		 * @throws IOException if there was an error opening the run file.
+		 */
+		public RunReader(@Nonnull final Path runFile, @Nonnull final FileSystem fileSystem, final int hashLength) throws IOException {
+			this.runFile = requireNonNull(runFile);
+			this.inputStream = new DataInputStream(new BufferedInputStream(newInputStream(runFile)));
+			this.fileSystem = requireNonNull(fileSystem);
+			this.hashLength = hashLength;
+			try {
+				this.remainingCount = inputStream.readLong();
+			} catch(final IOException ioException) {
+				inputStream.close();
+				throw ioException;
+			}
+		}
+
+		/**
+		 * Reads the next imprint in the run.
+		 * @return <code>true</code> if another imprint was read, or <code>false</code> if the run is finished.
+		 * @throws IOException if there was an error reading the run file.
+		 */
+		public boolean advance() throws IOException {
+			if(remainingCount == 0) {
+				current = null;
+				return false;
+			}
+			current = ImprintSpool.readImprint(inputStream, fileSystem, hashLength);
+			remainingCount--;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+
+	}
+
+}
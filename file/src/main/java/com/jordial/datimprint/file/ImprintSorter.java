@@ -0,0 +1,413 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.file.Files.*;
+import static java.util.Comparator.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+
+/**
+ * Reads all the imprints from a parser and provides them again in sorted order. Once more imprints have been read than the window size, the imprints in
+ * memory are sorted and written to a temporary run file, so that the memory used is bounded; runs are merged as the sorted imprints are read. If there are
+ * more runs than can be merged at the same time, groups of runs are first merged into larger runs.
+ * <p>
+ * The base path in effect for each imprint is kept with the imprint, so that {@link #findCurrentBasePath()} returns the base path of the imprint most recently
+ * read. When imprints are sorted by path, the imprints of each tree usually remain together; when they are sorted by content fingerprint, the base path may
+ * change with each imprint.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ * @implNote Each run file holds the number of imprints followed by each imprint, preceded by its base path string or an empty string if there is no base path,
+ *           in the format of {@link ImprintSpool#writeImprint(DataOutput, PathImprint)}.
+ * @author Garret Wilson
+ */
+public final class ImprintSorter implements DatimParser, Closeable {
+
+	/** The order in which to sort imprints. */
+	public enum Order {
+
+		/** In the order of {@link TreeOrder#pathComparator()}, each directory after its contents. */
+		path(comparing(PathImprint::path, TreeOrder.pathComparator())),
+
+		/** By the bytes of the content fingerprint, so that paths with the same content are together, and then by path. */
+		content(comparing((PathImprint imprint) -> imprint.contentFingerprint().getBytes(), Arrays::compareUnsigned).thenComparing(path.getComparator()));
+
+		private final Comparator<PathImprint> comparator;
+
+		/** @return The comparator of imprints for this order. */
+		public Comparator<PathImprint> getComparator() {
+			return comparator;
+		}
+
+		/**
+		 * Constructor.
+		 * @param comparator The comparator of imprints for this order.
+		 */
+		private Order(@Nonnull final Comparator<PathImprint> comparator) {
+			this.comparator = requireNonNull(comparator);
+		}
+
+	}
+
+	/** The default maximum number of imprints to keep in memory before writing them to a run file. */
+	public static final int DEFAULT_WINDOW_SIZE = 100_000;
+
+	/** The maximum number of runs to merge at the same time, limiting the number of files open. */
+	static final int MAX_MERGE_WIDTH = 128;
+
+	private final Comparator<MappedDatimReader.Entry> entryComparator;
+
+	private final Optional<Path> foundSpillDirectory;
+
+	private final int hashLength;
+
+	/** The file system of the imprint paths, determined from the first imprint read. */
+	@Nullable
+	private FileSystem fileSystem = null;
+
+	/** The imprints sorted in memory, if no run files were needed. */
+	@Nullable
+	private Iterator<MappedDatimReader.Entry> memoryEntryIterator = null;
+
+	/** The readers of the run files being merged, ordered by their current imprint. */
+	private final PriorityQueue<RunReader> runReaders;
+
+	/** All run files created, including those already merged into other runs. */
+	private final List<Path> runFiles = new ArrayList<>();
+
+	private Optional<Path> foundCurrentBasePath = Optional.empty();
+
+	@Override
+	public Optional<Path> findCurrentBasePath() {
+		return foundCurrentBasePath;
+	}
+
+	/**
+	 * Parser constructor for sorting by path, using the default window size and the default temporary directory. All the imprints are read from the parser
+	 * before this constructor returns.
+	 * @param parser The parser of the imprints to sort.
+	 * @param algorithm The algorithm of the imprint fingerprints.
+	 * @throws IOException if there was an error reading the imprints or writing a run file.
+	 */
+	public ImprintSorter(@Nonnull final DatimParser parser, @Nonnull final MessageDigests.Algorithm algorithm) throws IOException {
+		this(parser, Order.path, algorithm, DEFAULT_WINDOW_SIZE, Optional.empty());
+	}
+
+	/**
+	 * Full constructor. All the imprints are read from the parser before this constructor returns.
+	 * @param parser The parser of the imprints to sort.
+	 * @param order The order in which to sort the imprints.
+	 * @param algorithm The algorithm of the imprint fingerprints.
+	 * @param windowSize The maximum number of imprints to keep in memory before writing them to a run file.
+	 * @param foundSpillDirectory The directory in which to create run files, or empty if run files should be created in the default temporary directory.
+	 * @throws IllegalArgumentException if the window size is not positive.
+	 * @throws IOException if there was an error reading the imprints or writing a run file.
+	 */
+	public ImprintSorter(@Nonnull final DatimParser parser, @Nonnull final Order order, @Nonnull final MessageDigests.Algorithm algorithm, final int windowSize,
+			@Nonnull final Optional<Path> foundSpillDirectory) throws IOException {
+		checkArgument(windowSize > 0, "Sort window size %d not positive.", windowSize);
+		entryComparator = comparing(MappedDatimReader.Entry::imprint, order.getComparator());
+		runReaders = new PriorityQueue<>(comparing(RunReader::getCurrent, entryComparator));
+		this.foundSpillDirectory = requireNonNull(foundSpillDirectory);
+		hashLength = algorithm.newMessageDigest().getDigestLength();
+		try {
+			List<MappedDatimReader.Entry> entries = new ArrayList<>();
+			final List<Path> pendingRunFiles = new ArrayList<>();
+			Optional<PathImprint> foundImprint;
+			while((foundImprint = parser.readImprint()).isPresent()) {
+				if(fileSystem == null) {
+					fileSystem = foundImprint.get().path().getFileSystem();
+				}
+				entries.add(new MappedDatimReader.Entry(parser.findCurrentBasePath(), foundImprint.get()));
+				if(entries.size() == windowSize) {
+					pendingRunFiles.add(spill(entries));
+					entries = new ArrayList<>(); //release the old list rather than keeping its grown backing array
+				}
+			}
+			if(pendingRunFiles.isEmpty()) { //if everything fit in memory, there is no need for run files
+				entries.sort(entryComparator);
+				memoryEntryIterator = entries.iterator();
+				return;
+			}
+			if(!entries.isEmpty()) {
+				pendingRunFiles.add(spill(entries));
+			}
+			entries = null; //release the entries before merging
+			while(pendingRunFiles.size() > MAX_MERGE_WIDTH) { //merge groups of runs until there are few enough to merge at the same time
+				final List<Path> groupRunFiles = pendingRunFiles.subList(0, MAX_MERGE_WIDTH);
+				final Path mergedRunFile = merge(groupRunFiles);
+				groupRunFiles.clear();
+				pendingRunFiles.add(mergedRunFile);
+			}
+			openRunReaders(pendingRunFiles);
+		} catch(final IOException | RuntimeException exception) {
+			try {
+				close();
+			} catch(final IOException closeIOException) {
+				exception.addSuppressed(closeIOException);
+			}
+			throw exception;
+		}
+	}
+
+	/** @return The number of run files written, including those produced by merging other runs. */
+	int getRunCount() {
+		return runFiles.size();
+	}
+
+	/**
+	 * Creates a new run file, tracking it so that it will be deleted when this sorter is closed.
+	 * @return The new run file.
+	 * @throws IOException if there was an error creating the file.
+	 */
+	private Path createRunFile() throws IOException {
+		final Path runFile = ImprintSpool.createSpillFile(foundSpillDirectory);
+		runFiles.add(runFile);
+		return runFile;
+	}
+
+	/**
+	 * Sorts entries and writes them to a new run file.
+	 * @param entries The entries to sort and write; the list will be sorted in place.
+	 * @return The new run file.
+	 * @throws IOException if there was an error writing the run file.
+	 */
+	private Path spill(@Nonnull final List<MappedDatimReader.Entry> entries) throws IOException {
+		entries.sort(entryComparator);
+		final Path runFile = createRunFile();
+		try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(runFile)))) {
+			outputStream.writeLong(entries.size());
+			for(final MappedDatimReader.Entry entry : entries) {
+				writeEntry(outputStream, entry);
+			}
+		}
+		return runFile;
+	}
+
+	/**
+	 * Merges several run files into a new run file, deleting the merged run files.
+	 * @param mergeRunFiles The run files to merge.
+	 * @return The new run file.
+	 * @throws IOException if there was an error reading or writing a run file.
+	 */
+	private Path merge(@Nonnull final List<Path> mergeRunFiles) throws IOException {
+		final Path runFile = createRunFile();
+		try {
+			openRunReaders(mergeRunFiles);
+			try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(runFile)))) {
+				outputStream.writeLong(runReaders.stream().mapToLong(RunReader::getCount).sum());
+				Optional<MappedDatimReader.Entry> foundEntry;
+				while((foundEntry = pollEntry()).isPresent()) {
+					writeEntry(outputStream, foundEntry.get());
+				}
+			}
+		} finally {
+			closeRunReaders();
+		}
+		for(final Path mergedRunFile : mergeRunFiles) {
+			delete(mergedRunFile);
+		}
+		return runFile;
+	}
+
+	/**
+	 * Opens readers of run files for merging.
+	 * @param openRunFiles The run files to open.
+	 * @throws IOException if there was an error opening or reading a run file.
+	 */
+	private void openRunReaders(@Nonnull final List<Path> openRunFiles) throws IOException {
+		for(final Path runFile : openRunFiles) {
+			final RunReader runReader = new RunReader(runFile);
+			if(runReader.advance()) {
+				runReaders.add(runReader);
+			} else {
+				runReader.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes all the readers of run files being merged.
+	 * @throws IOException if there was an error closing a run file.
+	 */
+	private void closeRunReaders() throws IOException {
+		IOException ioException = null;
+		for(final RunReader runReader : runReaders) {
+			try {
+				runReader.close();
+			} catch(final IOException closeIOException) {
+				if(ioException == null) {
+					ioException = closeIOException;
+				} else {
+					ioException.addSuppressed(closeIOException);
+				}
+			}
+		}
+		runReaders.clear();
+		if(ioException != null) {
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Removes and returns the least entry from the runs being merged.
+	 * @return The next entry, which will not be present if all the runs are finished.
+	 * @throws IOException if there was an error reading a run file.
+	 */
+	private Optional<MappedDatimReader.Entry> pollEntry() throws IOException {
+		final RunReader runReader = runReaders.poll();
+		if(runReader == null) {
+			return Optional.empty();
+		}
+		final MappedDatimReader.Entry entry = runReader.getCurrent();
+		if(runReader.advance()) {
+			runReaders.add(runReader);
+		} else {
+			runReader.close();
+		}
+		return Optional.of(entry);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec The imprints are returned in the order requested.
+	 */
+	@Override
+	public Optional<PathImprint> readImprint() throws IOException {
+		final Optional<MappedDatimReader.Entry> foundEntry;
+		if(memoryEntryIterator != null) {
+			foundEntry = memoryEntryIterator.hasNext() ? Optional.of(memoryEntryIterator.next()) : Optional.empty();
+		} else {
+			foundEntry = pollEntry();
+		}
+		foundEntry.ifPresent(entry -> foundCurrentBasePath = entry.foundBasePath());
+		return foundEntry.map(MappedDatimReader.Entry::imprint);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation discards any imprints not yet read and deletes any run files.
+	 */
+	@Override
+	public void close() throws IOException {
+		memoryEntryIterator = Collections.emptyIterator();
+		IOException ioException = null;
+		try {
+			closeRunReaders();
+		} catch(final IOException closeIOException) {
+			ioException = closeIOException;
+		}
+		for(final Path runFile : runFiles) {
+			try {
+				deleteIfExists(runFile);
+			} catch(final IOException deleteIOException) {
+				if(ioException == null) {
+					ioException = deleteIOException;
+				} else {
+					ioException.addSuppressed(deleteIOException);
+				}
+			}
+		}
+		runFiles.clear();
+		if(ioException != null) {
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Writes an entry to a run file.
+	 * @param output The output to the file.
+	 * @param entry The entry to write.
+	 * @throws IOException if there was an error writing the entry.
+	 */
+	private static void writeEntry(@Nonnull final DataOutput output, @Nonnull final MappedDatimReader.Entry entry) throws IOException {
+		output.writeUTF(entry.foundBasePath().map(Path::toString).orElse(""));
+		ImprintSpool.writeImprint(output, entry.imprint());
+	}
+
+	/**
+	 * Sequential reader of the entries in a single run file.
+	 * @author Garret Wilson
+	 */
+	private final class RunReader implements Closeable {
+
+		private final DataInputStream inputStream;
+
+		private final long count;
+
+		/** @return The total number of entries in the run. */
+		public long getCount() {
+			return count;
+		}
+
+		private long remainingCount;
+
+		@Nullable
+		private MappedDatimReader.Entry current = null;
+
+		/** @return The entry most recently read. */
+		public MappedDatimReader.Entry getCurrent() {
+			return current;
+		}
+
+		/**
+		 * Constructor.
+		 * @param runFile The run file to read.
+		 * @throws IOException if there was an error opening the run file.
+		 */
+		public RunReader(@Nonnull final Path runFile) throws IOException {
+			this.inputStream = new DataInputStream(new BufferedInputStream(newInputStream(runFile)));
+			this.count = inputStream.readLong();
+			this.remainingCount = count;
+		}
+
+		/**
+		 * Reads the next entry in the run.
+		 * @return <code>true</code> if another entry was read, or <code>false</code> if the run is finished.
+		 * @throws IOException if there was an error reading the run file.
+		 */
+		public boolean advance() throws IOException {
+			if(remainingCount == 0) {
+				current = null;
+				return false;
+			}
+			final String basePathString = inputStream.readUTF();
+			final Optional<Path> foundBasePath = basePathString.isEmpty() ? Optional.empty() : Optional.of(fileSystem.getPath(basePathString));
+			final PathImprint imprint = ImprintSpool.readImprint(inputStream, fileSystem, hashLength);
+			current = new MappedDatimReader.Entry(foundBasePath, imprint);
+			remainingCount--;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+
+	}
+
+}
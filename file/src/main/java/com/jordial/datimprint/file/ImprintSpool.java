@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.file.Files.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+
+/**
+ * Holds imprints to be consumed later in the same order they were added. Once more imprints have been added than the memory limit, additional imprints are
+ * appended to a temporary spool file, so that the memory used is bounded.
+ * <p>
+ * This class also provides the format of temporary files holding imprints: each imprint is stored as the path string, the modification timestamp, and the raw
+ * bytes of the content fingerprint and fingerprint.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ */
+final class ImprintSpool implements Closeable {
+
+	/** The prefix of temporary spool filenames. */
+	private static final String SPOOL_FILE_PREFIX = "datimprint-";
+
+	/** The suffix of temporary spool filenames. */
+	private static final String SPOOL_FILE_SUFFIX = ".spool";
+
+	private final MessageDigests.Algorithm algorithm;
+
+	private final int memoryLimit;
+
+	private final Optional<Path> foundSpillDirectory;
+
+	private List<PathImprint> imprints = new ArrayList<>();
+
+	@Nullable
+	private Path spoolFile = null;
+
+	@Nullable
+	private DataOutputStream spoolOutputStream = null;
+
+	@Nullable
+	private FileSystem spoolFileSystem = null;
+
+	private long spooledCount = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * Constructor.
+	 * @param algorithm The algorithm of the imprint fingerprints.
+	 * @param memoryLimit The maximum number of imprints to keep in memory before appending them to a spool file.
+	 * @param foundSpillDirectory The directory in which to create the spool file, or empty if the spool file should be created in the default temporary
+	 *          directory.
+	 * @throws IllegalArgumentException if the memory limit is not positive.
+	 */
+	public ImprintSpool(@Nonnull final MessageDigests.Algorithm algorithm, final int memoryLimit, @Nonnull final Optional<Path> foundSpillDirectory) {
+		this.algorithm = requireNonNull(algorithm);
+		checkArgument(memoryLimit > 0, "Memory limit %d not positive.", memoryLimit);
+		this.memoryLimit = memoryLimit;
+		this.foundSpillDirectory = requireNonNull(foundSpillDirectory);
+	}
+
+	/** @return The number of imprints appended to the spool file since the spool was last drained. */
+	synchronized long getSpooledCount() {
+		return spooledCount;
+	}
+
+	/**
+	 * Adds an imprint to the spool.
+	 * @param imprint The imprint to add.
+	 * @throws IllegalStateException if the spool has already been closed.
+	 * @throws IOException if there was an error writing to the spool file.
+	 */
+	public synchronized void add(@Nonnull final PathImprint imprint) throws IOException {
+		checkState(!closed, "Imprint spool already closed.");
+		if(spoolOutputStream == null && imprints.size() < memoryLimit) {
+			imprints.add(requireNonNull(imprint));
+			return;
+		}
+		if(spoolOutputStream == null) {
+			spoolFile = createSpillFile(foundSpillDirectory);
+			spoolOutputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(spoolFile)));
+			spoolFileSystem = imprint.path().getFileSystem();
+		}
+		writeImprint(spoolOutputStream, imprint);
+		spooledCount++;
+	}
+
+	/**
+	 * Passes all the imprints in the spool to the given consumer in the order they were added, and then empties the spool.
+	 * @param imprintConsumer The consumer of the imprints.
+	 * @throws IllegalStateException if the spool has already been closed.
+	 * @throws IOException if there was an error reading the spool file.
+	 */
+	public synchronized void drain(@Nonnull final Consumer<PathImprint> imprintConsumer) throws IOException {
+		checkState(!closed, "Imprint spool already closed.");
+		final List<PathImprint> memoryImprints = imprints;
+		imprints = new ArrayList<>();
+		memoryImprints.forEach(imprintConsumer);
+		if(spoolOutputStream != null) {
+			spoolOutputStream.close();
+			spoolOutputStream = null;
+			final int hashLength = algorithm.newMessageDigest().getDigestLength();
+			try (final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(newInputStream(spoolFile)))) {
+				for(long i = 0; i < spooledCount; i++) {
+					imprintConsumer.accept(readImprint(inputStream, spoolFileSystem, hashLength));
+				}
+			}
+			spooledCount = 0;
+			delete(spoolFile);
+			spoolFile = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation discards any imprints and deletes any spool file. Any imprints added after closing will be rejected.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		imprints = List.of();
+		try {
+			if(spoolOutputStream != null) {
+				spoolOutputStream.close();
+				spoolOutputStream = null;
+			}
+		} finally {
+			if(spoolFile != null) {
+				deleteIfExists(spoolFile);
+				spoolFile = null;
+			}
+		}
+	}
+
+	/**
+	 * Creates a new temporary file for holding imprints or other information spilled from memory.
+	 * @param foundSpillDirectory The directory in which to create the file, or empty if the file should be created in the default temporary directory.
+	 * @return The new empty temporary file.
+	 * @throws IOException if the file could not be created.
+	 */
+	static Path createSpillFile(@Nonnull final Optional<Path> foundSpillDirectory) throws IOException {
+		return foundSpillDirectory.isPresent() ? createTempFile(foundSpillDirectory.get(), SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX)
+				: createTempFile(SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX);
+	}
+
+	/**
+	 * Writes an imprint to a temporary file.
+	 * @param output The output to the file.
+	 * @param imprint The imprint to write.
+	 * @throws IOException if there was an error writing the imprint.
+	 * @see #readImprint(DataInput, FileSystem, int)
+	 */
+	static void writeImprint(@Nonnull final DataOutput output, @Nonnull final PathImprint imprint) throws IOException {
+		output.writeUTF(imprint.path().toString());
+		final Instant contentModifiedAt = imprint.contentModifiedAt().toInstant();
+		output.writeLong(contentModifiedAt.getEpochSecond());
+		output.writeInt(contentModifiedAt.getNano());
+		output.write(imprint.contentFingerprint().getBytes());
+		output.write(imprint.fingerprint().getBytes());
+	}
+
+	/**
+	 * Reads an imprint from a temporary file.
+	 * @param input The input from the file.
+	 * @param fileSystem The file system of the imprint path.
+	 * @param hashLength The length of each fingerprint in bytes.
+	 * @return The imprint read.
+	 * @throws IOException if there was an error reading the imprint.
+	 * @see #writeImprint(DataOutput, PathImprint)
+	 */
+	static PathImprint readImprint(@Nonnull final DataInput input, @Nonnull final FileSystem fileSystem, final int hashLength) throws IOException {
+		final Path path = fileSystem.getPath(input.readUTF());
+		final long contentModifiedAtSeconds = input.readLong();
+		final int contentModifiedAtNanos = input.readInt();
+		final byte[] contentFingerprintBytes = new byte[hashLength];
+		input.readFully(contentFingerprintBytes);
+		final byte[] fingerprintBytes = new byte[hashLength];
+		input.readFully(fingerprintBytes);
+		return new PathImprint(path, FileTime.from(Instant.ofEpochSecond(contentModifiedAtSeconds, contentModifiedAtNanos)), Hash.of(contentFingerprintBytes),
+				Hash.of(fingerprintBytes));
+	}
+
+}
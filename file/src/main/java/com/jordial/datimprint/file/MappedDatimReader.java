@@ -0,0 +1,493 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.io.Paths.*;
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.*;
+import static org.zalando.fauxpas.FauxPas.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.*;
+
+import javax.annotation.*;
+
+import com.jordial.datimprint.file.Datim.Field;
+
+/**
+ * Reader of the imprints in a UTF-8 <code>.datim</code> file that memory-maps the file and divides it at line boundaries into chunks that may be parsed by
+ * several threads at the same time. Each imprint is provided along with the base path in effect where its record appears in the file.
+ * <p>
+ * When the reader is constructed, the header is read and the chunks are determined. In addition all the chunks are scanned in parallel for base path records,
+ * so that the base path in effect at the start of each chunk is known before parsing begins. This scan only examines the record type of each line, and is much
+ * faster than parsing.
+ * </p>
+ * <p>
+ * This class is thread safe. The reader must not be closed while imprints are being read.
+ * </p>
+ * @implNote Each chunk is parsed by a {@link Datim.Parser}, so that records are parsed the same as when reading the file sequentially.
+ * @author Garret Wilson
+ */
+public class MappedDatimReader implements Closeable {
+
+	/** The default maximum size of each chunk to be parsed by a single thread, not counting the remainder of any line straddling the end of the chunk. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 26;
+
+	/** The maximum number of bytes to examine when looking for the end of the header. */
+	private static final int MAX_HEADER_LENGTH = 1 << 16;
+
+	/** The bytes of the UTF-8 byte order mark. */
+	private static final byte[] UTF_8_BOM = {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+
+	/** The approximate length of a record in bytes, used for estimating the number of imprints remaining. */
+	private static final int ESTIMATED_RECORD_LENGTH = 250;
+
+	/**
+	 * An imprint read from a datim file, along with the base path in effect where its record appears.
+	 * @param foundBasePath The base path in effect for the imprint, if any.
+	 * @param imprint The imprint read.
+	 * @param foundRelativePath The imprint path as stored relative to the base path, if it was stored relative to the base path.
+	 * @author Garret Wilson
+	 */
+	public record Entry(@Nonnull Optional<Path> foundBasePath, @Nonnull PathImprint imprint, @Nonnull Optional<Path> foundRelativePath) {
+
+		/**
+		 * Constructor for validating arguments.
+		 * @param foundBasePath The base path in effect for the imprint, if any.
+		 * @param imprint The imprint read.
+		 * @param foundRelativePath The imprint path as stored relative to the base path, if it was stored relative to the base path.
+		 */
+		public Entry {
+			requireNonNull(foundBasePath);
+			requireNonNull(imprint);
+			requireNonNull(foundRelativePath);
+		}
+
+		/**
+		 * Constructor for an imprint the path of which was not stored relative to the base path.
+		 * @param foundBasePath The base path in effect for the imprint, if any.
+		 * @param imprint The imprint read.
+		 */
+		public Entry(@Nonnull final Optional<Path> foundBasePath, @Nonnull final PathImprint imprint) {
+			this(foundBasePath, imprint, Optional.empty());
+		}
+
+		/**
+		 * Determines the path the imprint would have if its base path were changed to the given base path.
+		 * @implSpec If the imprint path was stored relative to the base path, it is simply resolved against the new base path; otherwise the base of the imprint
+		 *           path is changed from the base path in effect.
+		 * @param newBasePath The new base path.
+		 * @return The imprint path relocated to the new base path.
+		 * @throws IOException if the imprint path was not stored relative to the base path and no base path is in effect.
+		 */
+		public Path relocatePath(@Nonnull final Path newBasePath) throws IOException {
+			if(foundRelativePath.isPresent()) {
+				return newBasePath.resolve(foundRelativePath.get());
+			}
+			final Path imprintPath = imprint.path();
+			final Path basePath = foundBasePath.orElseThrow(() -> new IOException("Cannot relocate imprint path `%s`; base path not known.".formatted(imprintPath)));
+			return changeBase(imprintPath, basePath, newBasePath);
+		}
+
+	}
+
+	private final FileChannel channel;
+
+	private final Map<Field, Integer> fieldIndexes;
+
+	/** The position in the file at which each chunk starts, followed by the end of the last chunk. */
+	private final long[] chunkPositions;
+
+	/** The base path in effect at the start of each chunk. */
+	private final List<Optional<Path>> chunkBasePaths;
+
+	/** @return The number of chunks into which the file has been divided. */
+	int getChunkCount() {
+		return chunkPositions.length - 1;
+	}
+
+	/**
+	 * File constructor using the default chunk size.
+	 * @param file The datim file to read, which must be encoded in UTF-8.
+	 * @throws IOException if there was an error opening the file, if the file is not encoded in UTF-8, or if the header or a base path record is invalid.
+	 * @see #DEFAULT_CHUNK_SIZE
+	 */
+	public MappedDatimReader(@Nonnull final Path file) throws IOException {
+		this(file, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * File and chunk size constructor.
+	 * @param file The datim file to read, which must be encoded in UTF-8.
+	 * @param chunkSize The maximum size of each chunk to be parsed by a single thread, not counting the remainder of any line straddling the end of the chunk.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 * @throws IOException if there was an error opening the file, if the file is not encoded in UTF-8, or if the header or a base path record is invalid.
+	 */
+	public MappedDatimReader(@Nonnull final Path file, final int chunkSize) throws IOException {
+		checkArgument(chunkSize > 0, "Chunk size %d not positive.", chunkSize);
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			final long size = channel.size();
+			final ByteBuffer headerBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_HEADER_LENGTH));
+			final int headerStart = hasPrefix(headerBuffer, UTF_8_BOM) ? UTF_8_BOM.length : 0;
+			if(!isUtf8(headerBuffer)) {
+				throw new IOException("Imprints file `%s` is not encoded in UTF-8.".formatted(file));
+			}
+			final int headerEnd = findLineEnd(headerBuffer, headerStart, headerBuffer.limit());
+			if(headerEnd == headerBuffer.limit() && headerBuffer.limit() < size) {
+				throw new IOException("Imprints file `%s` header longer than %d bytes.".formatted(file, MAX_HEADER_LENGTH));
+			}
+			final String header = UTF_8.decode(headerBuffer.duplicate().position(headerStart).limit(headerEnd)).toString();
+			fieldIndexes = new Datim.Parser(new StringReader(header)).getFieldIndexes();
+			final long recordsStart = findLineStart(headerEnd);
+			final List<Long> chunkPositions = new ArrayList<>();
+			long chunkPosition = recordsStart;
+			while(chunkPosition < size) {
+				chunkPositions.add(chunkPosition);
+				chunkPosition = chunkPosition + chunkSize < size ? findLineStart(chunkPosition + chunkSize) : size;
+			}
+			chunkPositions.add(Math.max(chunkPosition, recordsStart));
+			this.chunkPositions = chunkPositions.stream().mapToLong(Long::longValue).toArray();
+			final List<Optional<Path>> lastBasePaths = IntStream.range(0, getChunkCount()).boxed().parallel()
+					.map(throwingFunction(chunkIndex -> findLastBasePath(mapChunk(chunkIndex)))).toList();
+			final List<Optional<Path>> chunkBasePaths = new ArrayList<>(lastBasePaths.size());
+			Optional<Path> foundBasePath = Optional.empty();
+			for(final Optional<Path> foundLastBasePath : lastBasePaths) {
+				chunkBasePaths.add(foundBasePath);
+				if(foundLastBasePath.isPresent()) {
+					foundBasePath = foundLastBasePath;
+				}
+			}
+			this.chunkBasePaths = List.copyOf(chunkBasePaths);
+		} catch(final IOException | RuntimeException exception) {
+			try {
+				channel.close();
+			} catch(final IOException closeIOException) {
+				exception.addSuppressed(closeIOException);
+			}
+			throw exception;
+		}
+	}
+
+	/**
+	 * Determines whether a buffer starts with the given bytes.
+	 * @param buffer The buffer to examine from its start.
+	 * @param prefix The bytes to look for.
+	 * @return <code>true</code> if the buffer starts with the prefix.
+	 */
+	private static boolean hasPrefix(@Nonnull final ByteBuffer buffer, @Nonnull final byte[] prefix) {
+		if(buffer.limit() < prefix.length) {
+			return false;
+		}
+		for(int i = 0; i < prefix.length; i++) {
+			if(buffer.get(i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determines whether the start of a file is compatible with UTF-8, that is, it does not start with a byte order mark of some other Unicode encoding.
+	 * @param buffer The buffer containing the start of the file.
+	 * @return <code>false</code> if the file starts with a UTF-16 or UTF-32 byte order mark.
+	 */
+	private static boolean isUtf8(@Nonnull final ByteBuffer buffer) {
+		if(hasPrefix(buffer, UTF_8_BOM)) {
+			return true;
+		}
+		return !hasPrefix(buffer, new byte[] {(byte)0xFE, (byte)0xFF}) && !hasPrefix(buffer, new byte[] {(byte)0xFF, (byte)0xFE})
+				&& !hasPrefix(buffer, new byte[] {0, 0, (byte)0xFE, (byte)0xFF});
+	}
+
+	/**
+	 * Determines whether a file is compatible with reading by this class, that is, whether it does not start with a byte order mark of a Unicode encoding other
+	 * than UTF-8. A file without a byte order mark is assumed to be encoded in UTF-8, as is the default for datim files.
+	 * @param file The file to examine.
+	 * @return <code>true</code> if the file is assumed to be encoded in UTF-8.
+	 * @throws IOException if there was an error reading the file.
+	 * @see Datim#DEFAULT_CHARSET
+	 */
+	public static boolean isUtf8(@Nonnull final Path file) throws IOException {
+		try (final FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(4);
+			while(buffer.hasRemaining() && fileChannel.read(buffer) != -1) {}
+			return isUtf8(buffer.flip());
+		}
+	}
+
+	/**
+	 * Finds the end of the line containing the given position in a buffer.
+	 * @param buffer The buffer to search.
+	 * @param start The position at which to start searching.
+	 * @param end The position at which to stop searching.
+	 * @return The position of the line feed or carriage return ending the line, or the end position if no end of line was found.
+	 */
+	private static int findLineEnd(@Nonnull final ByteBuffer buffer, final int start, final int end) {
+		for(int i = start; i < end; i++) {
+			final byte b = buffer.get(i);
+			if(b == '\n' || b == '\r') {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Finds the start of the first line beginning at or after the given position, that is, the position following the next line separator. A carriage return
+	 * followed by a line feed is considered a single line separator.
+	 * @param position The position in the file at which to start looking, which should be at or after a line ending before the position.
+	 * @return The position of the start of the next line, or the size of the file if there is no further line.
+	 * @throws IOException if there was an error reading the file.
+	 */
+	private long findLineStart(final long position) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long bufferPosition = position;
+		boolean isCarriageReturn = false;
+		while(true) {
+			buffer.clear();
+			final int readCount = channel.read(buffer, bufferPosition);
+			if(readCount <= 0) {
+				return channel.size();
+			}
+			for(int i = 0; i < readCount; i++) {
+				final byte b = buffer.get(i);
+				if(isCarriageReturn) {
+					return bufferPosition + (b == '\n' ? i + 1 : i);
+				}
+				if(b == '\n') {
+					return bufferPosition + i + 1;
+				}
+				isCarriageReturn = b == '\r';
+			}
+			bufferPosition += readCount;
+		}
+	}
+
+	/**
+	 * Maps a chunk of the file into memory.
+	 * @param chunkIndex The index of the chunk.
+	 * @return A buffer containing the bytes of the chunk.
+	 * @throws IOException if there was an error mapping the chunk, or if the chunk is too large to be mapped, such as if it contains an extremely long line.
+	 */
+	private ByteBuffer mapChunk(final int chunkIndex) throws IOException {
+		final long start = chunkPositions[chunkIndex];
+		final long length = chunkPositions[chunkIndex + 1] - start;
+		if(length > Integer.MAX_VALUE) {
+			throw new IOException("Imprints file chunk at position %d too large to map.".formatted(start));
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+	}
+
+	/**
+	 * Scans a chunk for base path records, without parsing other records.
+	 * @param chunk The bytes of the chunk.
+	 * @return The base path of the last base path record in the chunk, if any.
+	 */
+	private Optional<Path> findLastBasePath(@Nonnull final ByteBuffer chunk) {
+		final int numberFieldIndex = fieldIndexes.get(Field.NUMBER);
+		final int pathFieldIndex = fieldIndexes.get(Field.PATH);
+		final byte recordTypeBasePath = (byte)Datim.RECORD_TYPE_BASE_PATH.charAt(0);
+		final int limit = chunk.limit();
+		int lineStart = 0;
+		Optional<Path> foundBasePath = Optional.empty();
+		while(lineStart < limit) {
+			final int lineEnd = findLineEnd(chunk, lineStart, limit);
+			final int numberStart = findFieldStart(chunk, lineStart, lineEnd, numberFieldIndex);
+			if(numberStart + 1 < lineEnd && chunk.get(numberStart) == recordTypeBasePath && chunk.get(numberStart + 1) == Datim.FIELD_DELIMITER
+					|| numberStart + 1 == lineEnd && chunk.get(numberStart) == recordTypeBasePath) {
+				final int pathStart = findFieldStart(chunk, lineStart, lineEnd, pathFieldIndex);
+				int pathEnd = pathStart;
+				while(pathEnd < lineEnd && chunk.get(pathEnd) != Datim.FIELD_DELIMITER) {
+					pathEnd++;
+				}
+				foundBasePath = Optional.of(Path.of(UTF_8.decode(chunk.duplicate().position(pathStart).limit(pathEnd)).toString()));
+			}
+			lineStart = lineEnd + 1;
+		}
+		return foundBasePath;
+	}
+
+	/**
+	 * Finds the start of a field in a line.
+	 * @param buffer The buffer containing the line.
+	 * @param lineStart The position of the start of the line.
+	 * @param lineEnd The position of the end of the line.
+	 * @param fieldIndex The index of the field.
+	 * @return The position of the start of the field, or the end of the line if the line has fewer fields.
+	 */
+	private static int findFieldStart(@Nonnull final ByteBuffer buffer, final int lineStart, final int lineEnd, final int fieldIndex) {
+		int position = lineStart;
+		for(int i = 0; i < fieldIndex; i++) {
+			while(position < lineEnd && buffer.get(position) != Datim.FIELD_DELIMITER) {
+				position++;
+			}
+			if(position == lineEnd) {
+				return lineEnd;
+			}
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns a spliterator of the imprints in the file, in the order they appear in the file. The spliterator splits at chunk boundaries.
+	 * @return A new spliterator of the imprints in the file.
+	 */
+	public Spliterator<Entry> spliterator() {
+		return new ChunkSpliterator(0, getChunkCount());
+	}
+
+	/**
+	 * Returns a stream of the imprints in the file.
+	 * @apiNote A parallel stream parses chunks of the file using several threads; for best performance when order does not matter, the stream should be made
+	 *          unordered.
+	 * @param parallel <code>true</code> if a parallel stream should be returned.
+	 * @return A new stream of the imprints in the file, in the order they appear in the file.
+	 * @throws UncheckedIOException if there was an error reading an imprint.
+	 */
+	public Stream<Entry> entries(final boolean parallel) {
+		return StreamSupport.stream(this::spliterator, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE, parallel);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Spliterator of the imprints in a range of chunks.
+	 * @author Garret Wilson
+	 */
+	private final class ChunkSpliterator implements Spliterator<Entry> {
+
+		/** The index of the next chunk to be parsed. */
+		private int chunkIndex;
+
+		/** The index after the last chunk to be parsed. */
+		private final int chunkEnd;
+
+		/** The parser of the current chunk, if any. */
+		@Nullable
+		private Datim.Parser parser = null;
+
+		/**
+		 * Constructor.
+		 * @param chunkStart The index of the first chunk to be parsed.
+		 * @param chunkEnd The index after the last chunk to be parsed.
+		 */
+		public ChunkSpliterator(final int chunkStart, final int chunkEnd) {
+			this.chunkIndex = chunkStart;
+			this.chunkEnd = chunkEnd;
+		}
+
+		@Override
+		public boolean tryAdvance(@Nonnull final Consumer<? super Entry> action) {
+			try {
+				while(true) {
+					if(parser == null) {
+						if(chunkIndex == chunkEnd) {
+							return false;
+						}
+						parser = new Datim.Parser(new InputStreamReader(new ByteBufferInputStream(mapChunk(chunkIndex)), UTF_8), fieldIndexes,
+								chunkBasePaths.get(chunkIndex));
+						chunkIndex++;
+					}
+					final Optional<PathImprint> foundImprint = parser.readImprint();
+					if(foundImprint.isPresent()) {
+						action.accept(new Entry(parser.findCurrentBasePath(), foundImprint.get(), parser.findRelativePath()));
+						return true;
+					}
+					parser = null;
+				}
+			} catch(final IOException ioException) {
+				throw new UncheckedIOException(ioException);
+			}
+		}
+
+		@Override
+		@Nullable
+		public Spliterator<Entry> trySplit() {
+			if(parser != null || chunkEnd - chunkIndex < 2) {
+				return null;
+			}
+			final int chunkMiddle = chunkIndex + (chunkEnd - chunkIndex) / 2;
+			final Spliterator<Entry> prefix = new ChunkSpliterator(chunkIndex, chunkMiddle);
+			chunkIndex = chunkMiddle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return (chunkPositions[chunkEnd] - chunkPositions[chunkIndex]) / ESTIMATED_RECORD_LENGTH;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | IMMUTABLE;
+		}
+
+	}
+
+	/**
+	 * Input stream reading the remaining bytes of a byte buffer.
+	 * @author Garret Wilson
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		/**
+		 * Constructor.
+		 * @param buffer The buffer from which to read.
+		 */
+		public ByteBufferInputStream(@Nonnull final ByteBuffer buffer) {
+			this.buffer = requireNonNull(buffer);
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if(length == 0) {
+				return 0;
+			}
+			if(!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static java.lang.Math.*;
+import static java.util.Objects.*;
+
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.MessageDigests;
+
+/**
+ * Thread-confined pool of reusable message digests for a single algorithm, along with a reusable scratch buffer for feeding the digests, so that generating
+ * fingerprints does not require allocating new message digests and byte arrays for every path.
+ * <p>
+ * Each thread has its own message digests, so a borrowed message digest must be returned in the same thread, and must not be used after it is returned.
+ * </p>
+ * @implNote Because resources are confined to threads, a pool provides no reuse across tasks run on separate virtual threads; in that case it simply
+ *           allocates message digests as needed, as would happen without the pool.
+ * @author Garret Wilson
+ */
+final class MessageDigestPool {
+
+	/** The initial size of each thread's scratch buffer. */
+	static final int INITIAL_SCRATCH_BUFFER_SIZE = 256;
+
+	private static final Map<MessageDigests.Algorithm, MessageDigestPool> POOLS_BY_ALGORITHM = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the shared pool for the given algorithm.
+	 * @param algorithm The message digest algorithm.
+	 * @return The pool of message digests for the algorithm.
+	 */
+	static MessageDigestPool forAlgorithm(@Nonnull final MessageDigests.Algorithm algorithm) {
+		return POOLS_BY_ALGORITHM.computeIfAbsent(algorithm, MessageDigestPool::new);
+	}
+
+	private final MessageDigests.Algorithm algorithm;
+
+	/** @return The algorithm of the pooled message digests. */
+	MessageDigests.Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	private final ThreadLocal<Deque<MessageDigest>> threadMessageDigests = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private final ThreadLocal<byte[]> threadScratchBuffer = ThreadLocal.withInitial(() -> new byte[INITIAL_SCRATCH_BUFFER_SIZE]);
+
+	/**
+	 * Algorithm constructor.
+	 * @param algorithm The message digest algorithm.
+	 */
+	private MessageDigestPool(@Nonnull final MessageDigests.Algorithm algorithm) {
+		this.algorithm = requireNonNull(algorithm);
+	}
+
+	/** @return A message digest in its initial state, from the current thread's pool or newly created if none is available. */
+	MessageDigest borrowMessageDigest() {
+		final MessageDigest messageDigest = threadMessageDigests.get().pollFirst();
+		return messageDigest != null ? messageDigest : getAlgorithm().newMessageDigest();
+	}
+
+	/**
+	 * Resets a message digest and returns it to the current thread's pool.
+	 * @param messageDigest The message digest previously borrowed in the current thread.
+	 */
+	void returnMessageDigest(@Nonnull final MessageDigest messageDigest) {
+		messageDigest.reset();
+		threadMessageDigests.get().offerFirst(messageDigest);
+	}
+
+	/**
+	 * Returns the current thread's scratch buffer, growing it if needed. The contents of the buffer are undefined, and the same buffer may be returned on the
+	 * next call in the same thread.
+	 * @param minLength The minimum length required.
+	 * @return A buffer of at least the requested length, confined to the current thread.
+	 */
+	byte[] scratchBuffer(final int minLength) {
+		byte[] buffer = threadScratchBuffer.get();
+		if(buffer.length < minLength) {
+			buffer = new byte[max(minLength, buffer.length * 2)];
+			threadScratchBuffer.set(buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Updates a message digest with the big-endian bytes of a long value, without allocation.
+	 * @implSpec The bytes are the same as those produced by {@link com.globalmentor.java.Longs#toBytes(long)}.
+	 * @param messageDigest The message digest to update.
+	 * @param value The value to hash.
+	 */
+	void update(@Nonnull final MessageDigest messageDigest, final long value) {
+		final byte[] buffer = scratchBuffer(Long.BYTES);
+		for(int i = 0; i < Long.BYTES; i++) {
+			buffer[i] = (byte)(value >> (Long.SIZE - Byte.SIZE * (i + 1)));
+		}
+		messageDigest.update(buffer, 0, Long.BYTES);
+	}
+
+	/**
+	 * Updates a message digest with the hash of a string encoded in UTF-8, without allocation. The result is the same as updating the message digest with the
+	 * bytes of {@link MessageDigests.Algorithm#hash(CharSequence...)}.
+	 * @implSpec This implementation encodes the string directly into the scratch buffer. As with {@link String#getBytes(java.nio.charset.Charset)}, unpaired
+	 *           surrogates are replaced with <code>?</code>.
+	 * @param messageDigest The message digest to update.
+	 * @param string The string the hash of which should be used to update the message digest.
+	 */
+	void updateHash(@Nonnull final MessageDigest messageDigest, @Nonnull final String string) {
+		final MessageDigest stringMessageDigest = borrowMessageDigest();
+		try {
+			final int digestLength = stringMessageDigest.getDigestLength();
+			final byte[] buffer = scratchBuffer(max(string.length() * 3, digestLength)); //UTF-8 uses at most three bytes per UTF-16 code unit
+			final int length = encodeUtf8(string, buffer);
+			stringMessageDigest.update(buffer, 0, length);
+			try {
+				stringMessageDigest.digest(buffer, 0, digestLength); //the encoded string has been consumed, so reuse the buffer for the hash
+			} catch(final DigestException digestException) {
+				throw new IllegalStateException(digestException);
+			}
+			messageDigest.update(buffer, 0, digestLength);
+		} finally {
+			returnMessageDigest(stringMessageDigest);
+		}
+	}
+
+	/**
+	 * Encodes a string in UTF-8 into a buffer.
+	 * @param string The string to encode.
+	 * @param buffer The buffer, which must have a length of at least three times the length of the string.
+	 * @return The number of bytes written.
+	 */
+	static int encodeUtf8(@Nonnull final String string, @Nonnull final byte[] buffer) {
+		final int stringLength = string.length();
+		int position = 0;
+		for(int i = 0; i < stringLength; i++) {
+			final char c = string.charAt(i);
+			if(c < 0x80) {
+				buffer[position++] = (byte)c;
+			} else if(c < 0x800) {
+				buffer[position++] = (byte)(0xC0 | (c >> 6));
+				buffer[position++] = (byte)(0x80 | (c & 0x3F));
+			} else if(Character.isHighSurrogate(c) && i + 1 < stringLength && Character.isLowSurrogate(string.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+				buffer[position++] = (byte)(0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte)(0x80 | (codePoint & 0x3F));
+			} else if(Character.isSurrogate(c)) { //unpaired surrogate
+				buffer[position++] = '?';
+			} else {
+				buffer[position++] = (byte)(0xE0 | (c >> 12));
+				buffer[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+		return position;
+	}
+
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.lang.Math.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+import javax.annotation.*;
+
+/**
+ * Channel that compresses written content into a single standard gzip stream, compressing independent blocks of the content on multiple threads in the manner
+ * of <a href="https://zlib.net/pigz/">pigz</a>. Each block is compressed as raw DEFLATE data primed with the end of the previous block as a dictionary and
+ * ending with a sync flush, so that the compressed blocks can simply be concatenated. The CRC of each block is calculated along with its compression and
+ * combined as the blocks are written in order to the underlying channel.
+ * <p>
+ * Blocks are written to the underlying channel by the thread writing content, as compressed blocks become available. If too many blocks are waiting to be
+ * compressed, the writing thread waits for the oldest to finish, limiting the memory used.
+ * </p>
+ * <p>
+ * This class is not thread safe; content must be written by a single thread at a time.
+ * </p>
+ * @implNote The compressing threads are owned by the channel and are shut down when the channel is closed.
+ * @author Garret Wilson
+ */
+public class ParallelGzipChannel implements WritableByteChannel {
+
+	/** The filename extension for gzip files. */
+	public static final String FILENAME_EXTENSION = "gz";
+
+	/** The default size of each block of uncompressed content. */
+	public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+	/** The maximum size of a DEFLATE dictionary. */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/**
+	 * The gzip header: magic number, DEFLATE compression method, no flags, no modification time, no extra flags, and an unknown operating system.
+	 * @see <a href="https://www.rfc-editor.org/rfc/rfc1952">RFC 1952</a>
+	 */
+	private static final byte[] HEADER = {0x1f, (byte)0x8b, 8, 0, 0, 0, 0, 0, 0, (byte)0xff};
+
+	/** The number of bytes in the gzip trailer. */
+	private static final int TRAILER_LENGTH = 8;
+
+	private final WritableByteChannel channel;
+
+	private final int blockSize;
+
+	/** @return The size of each block of uncompressed content. */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	private final int level;
+
+	private final ExecutorService compressExecutorService;
+
+	/** The maximum number of blocks being compressed or waiting to be written before the writing thread waits. */
+	private final int maxPendingBlockCount;
+
+	/** The blocks being compressed or waiting to be written, in order. */
+	private final Queue<CompletableFuture<CompressedBlock>> pendingBlocks = new ArrayDeque<>();
+
+	/** The block currently being filled. */
+	private byte[] block;
+
+	/** The number of bytes in the current block. */
+	private int blockLength = 0;
+
+	/** The previous block, the end of which serves as the dictionary for the current block; or <code>null</code> if the current block is the first. */
+	@Nullable
+	private byte[] previousBlock = null;
+
+	/** The CRC of all the content of blocks written so far. */
+	private long crc = 0;
+
+	/** The number of uncompressed bytes in all blocks written so far. */
+	private long uncompressedLength = 0;
+
+	private boolean open = true;
+
+	/**
+	 * Channel constructor using the default block size and compression level, with a thread for each available processor.
+	 * @param channel The channel to which compressed content will be written.
+	 * @throws IOException if an I/O error occurs writing the gzip header.
+	 * @see #DEFAULT_BLOCK_SIZE
+	 */
+	public ParallelGzipChannel(@Nonnull final WritableByteChannel channel) throws IOException {
+		this(channel, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Full constructor.
+	 * @param channel The channel to which compressed content will be written.
+	 * @param blockSize The size of each block of uncompressed content.
+	 * @param level The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param threadCount The number of threads for compressing blocks.
+	 * @throws IllegalArgumentException if the block size or the thread count is not positive.
+	 * @throws IOException if an I/O error occurs writing the gzip header.
+	 */
+	public ParallelGzipChannel(@Nonnull final WritableByteChannel channel, final int blockSize, final int level, final int threadCount) throws IOException {
+		this.channel = requireNonNull(channel);
+		checkArgument(blockSize > 0, "Block size %d not positive.", blockSize);
+		this.blockSize = blockSize;
+		this.level = level;
+		checkArgument(threadCount > 0, "Thread count %d not positive.", threadCount);
+		this.maxPendingBlockCount = threadCount * 2;
+		this.block = new byte[blockSize];
+		writeFully(ByteBuffer.wrap(HEADER));
+		this.compressExecutorService = Executors.newFixedThreadPool(threadCount, runnable -> {
+			final Thread thread = new Thread(runnable, getClass().getSimpleName());
+			thread.setDaemon(true); //don't keep the application from exiting if the channel is abandoned
+			return thread;
+		});
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public int write(final ByteBuffer source) throws IOException {
+		if(!open) {
+			throw new ClosedChannelException();
+		}
+		final int count = source.remaining();
+		while(source.hasRemaining()) {
+			final int length = min(source.remaining(), blockSize - blockLength);
+			source.get(block, blockLength, length);
+			blockLength += length;
+			if(blockLength == blockSize) {
+				submitBlock(false);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Schedules the current block for compression and starts a new block, writing any compressed blocks that are ready.
+	 * @param isLast Whether the block is the last one of the stream.
+	 * @throws IOException if an I/O error occurs writing compressed blocks.
+	 */
+	private void submitBlock(final boolean isLast) throws IOException {
+		final byte[] data = block;
+		final int length = blockLength;
+		final byte[] dictionary = previousBlock;
+		pendingBlocks.add(CompletableFuture.supplyAsync(() -> compress(data, length, dictionary, level, isLast), compressExecutorService));
+		previousBlock = data;
+		block = new byte[blockSize];
+		blockLength = 0;
+		CompletableFuture<CompressedBlock> oldestPendingBlock;
+		while((oldestPendingBlock = pendingBlocks.peek()) != null && (oldestPendingBlock.isDone() || pendingBlocks.size() > maxPendingBlockCount)) {
+			writeBlock(pendingBlocks.remove().join());
+		}
+	}
+
+	/**
+	 * Writes a compressed block to the underlying channel and updates the stream CRC and length.
+	 * @param compressedBlock The compressed block to write.
+	 * @throws IOException if an I/O error occurs writing the block.
+	 */
+	private void writeBlock(@Nonnull final CompressedBlock compressedBlock) throws IOException {
+		writeFully(ByteBuffer.wrap(compressedBlock.bytes(), 0, compressedBlock.length()));
+		crc = crc32Combine(crc, compressedBlock.crc(), compressedBlock.uncompressedLength());
+		uncompressedLength += compressedBlock.uncompressedLength();
+	}
+
+	/**
+	 * Writes all the bytes of a buffer to the underlying channel.
+	 * @param buffer The buffer to write.
+	 * @throws IOException if an I/O error occurs writing the data.
+	 */
+	private void writeFully(@Nonnull final ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation compresses the last block, waits for all blocks to be written, writes the gzip trailer, and then closes the underlying
+	 *           channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(!open) {
+			return;
+		}
+		open = false;
+		try {
+			submitBlock(true);
+			while(!pendingBlocks.isEmpty()) {
+				writeBlock(pendingBlocks.remove().join());
+			}
+			final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+			trailer.putInt((int)crc).putInt((int)uncompressedLength).flip(); //the length is stored modulo 2^32
+			writeFully(trailer);
+		} finally {
+			compressExecutorService.shutdownNow();
+			channel.close();
+		}
+	}
+
+	/**
+	 * A block of compressed content.
+	 * @param bytes The array containing the compressed bytes.
+	 * @param length The number of compressed bytes in the array.
+	 * @param crc The CRC-32 of the uncompressed content.
+	 * @param uncompressedLength The number of bytes of uncompressed content.
+	 */
+	private record CompressedBlock(@Nonnull byte[] bytes, int length, int crc, int uncompressedLength) {
+	}
+
+	/**
+	 * Compresses a block of content as raw DEFLATE data.
+	 * @param data The array containing the content.
+	 * @param length The number of bytes of content in the array.
+	 * @param dictionary The previous block, the end of which will be used as a dictionary, or <code>null</code> if this is the first block.
+	 * @param level The compression level.
+	 * @param isLast Whether this is the last block, which will finish the DEFLATE data; otherwise the compressed data will end with a sync flush.
+	 * @return The compressed block.
+	 */
+	private static CompressedBlock compress(@Nonnull final byte[] data, final int length, @Nullable final byte[] dictionary, final int level,
+			final boolean isLast) {
+		final Deflater deflater = new Deflater(level, true);
+		try {
+			if(dictionary != null) {
+				final int dictionaryLength = min(dictionary.length, DICTIONARY_SIZE);
+				deflater.setDictionary(dictionary, dictionary.length - dictionaryLength, dictionaryLength);
+			}
+			deflater.setInput(data, 0, length);
+			if(isLast) {
+				deflater.finish();
+			}
+			byte[] bytes = new byte[length / 2 + 64];
+			int compressedLength = 0;
+			boolean isDone;
+			do {
+				if(compressedLength == bytes.length) {
+					bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				}
+				final int available = bytes.length - compressedLength;
+				final int deflatedLength = deflater.deflate(bytes, compressedLength, available, isLast ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+				compressedLength += deflatedLength;
+				isDone = isLast ? deflater.finished() : deflatedLength < available; //a flush is only complete if there was space left over
+			} while(!isDone);
+			final CRC32 crc32 = new CRC32();
+			crc32.update(data, 0, length);
+			return new CompressedBlock(bytes, compressedLength, (int)crc32.getValue(), length);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Combines two CRC-32 values as if the content of the second followed that of the first, using the approach of zlib <code>crc32_combine()</code>.
+	 * @param crc1 The CRC-32 of the first content.
+	 * @param crc2 The CRC-32 of the second content.
+	 * @param length2 The length of the second content.
+	 * @return The CRC-32 of the combined content.
+	 */
+	static long crc32Combine(long crc1, final long crc2, long length2) {
+		crc1 &= 0xffffffffL;
+		if(length2 <= 0) {
+			return crc1;
+		}
+		final long[] even = new long[32]; //operator for an even number of zero bits
+		final long[] odd = new long[32]; //operator for an odd number of zero bits
+		odd[0] = 0xedb88320L; //CRC-32 polynomial
+		long row = 1;
+		for(int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+		gf2MatrixSquare(even, odd); //operator for two zero bits
+		gf2MatrixSquare(odd, even); //operator for four zero bits
+		do { //apply zeros for each bit of the length, in bytes
+			gf2MatrixSquare(even, odd);
+			if((length2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(even, crc1);
+			}
+			length2 >>= 1;
+			if(length2 == 0) {
+				break;
+			}
+			gf2MatrixSquare(odd, even);
+			if((length2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(odd, crc1);
+			}
+			length2 >>= 1;
+		} while(length2 != 0);
+		return crc1 ^ (crc2 & 0xffffffffL);
+	}
+
+	/**
+	 * Multiplies a GF(2) matrix by a vector.
+	 * @param matrix The matrix.
+	 * @param vector The vector.
+	 * @return The product.
+	 */
+	private static long gf2MatrixTimes(@Nonnull final long[] matrix, long vector) {
+		long sum = 0;
+		for(int i = 0; vector != 0; i++, vector >>>= 1) {
+			if((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Squares a GF(2) matrix.
+	 * @param square The matrix to receive the square.
+	 * @param matrix The matrix to square.
+	 */
+	private static void gf2MatrixSquare(@Nonnull final long[] square, @Nonnull final long[] matrix) {
+		for(int n = 0; n < 32; n++) {
+			square[n] = gf2MatrixTimes(matrix, matrix[n]);
+		}
+	}
+
+	/**
+	 * Determines whether the given input stream is positioned at the start of gzip content. The input stream position will not be changed.
+	 * @param inputStream The input stream, which must support marking.
+	 * @return <code>true</code> if the next bytes of the input stream are the gzip magic number.
+	 * @throws IllegalArgumentException if the input stream does not support marking.
+	 * @throws IOException if an I/O error occurs reading from the input stream.
+	 */
+	public static boolean isGzip(@Nonnull final InputStream inputStream) throws IOException {
+		checkArgument(inputStream.markSupported(), "Input stream does not support marking.");
+		inputStream.mark(2);
+		try {
+			return inputStream.read() == (GZIPInputStream.GZIP_MAGIC & 0xff) && inputStream.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+		} finally {
+			inputStream.reset();
+		}
+	}
+
+	/**
+	 * Determines whether the given file starts with gzip content.
+	 * @param file The file to check.
+	 * @return <code>true</code> if the file starts with the gzip magic number.
+	 * @throws IOException if an I/O error occurs reading from the file.
+	 */
+	public static boolean isGzip(@Nonnull final Path file) throws IOException {
+		try (final InputStream inputStream = new BufferedInputStream(Files.newInputStream(file), 2)) {
+			return isGzip(inputStream);
+		}
+	}
+
+}
@@ -28,11 +28,12 @@
 
 import java.io.*;
 import java.nio.file.*;
-import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.*;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.annotation.*;
 import com.globalmentor.security.*;
@@ -77,6 +78,13 @@ protected Optional<Consumer<Result>> findResultConsumer() {
 		return foundResultConsumer;
 	}
 
+	private final Optional<Consumer<TreeResult>> foundTreeResultConsumer;
+
+	/** @return The consumer, if any, to which results of verifying directory fingerprints will be produced, enabling verification of directory trees. */
+	protected Optional<Consumer<TreeResult>> findTreeResultConsumer() {
+		return foundTreeResultConsumer;
+	}
+
 	private final Optional<Listener> foundListener;
 
 	/** @return The listener, if any, to events from this class. */
@@ -84,6 +92,34 @@ protected Optional<Listener> findListener() {
 		return foundListener;
 	}
 
+	private final Optional<ConcurrencyLimiter> foundCheckLimiter;
+
+	/** @return The limiter, if any, of how many paths may be checked at the same time. */
+	Optional<ConcurrencyLimiter> findCheckLimiter() {
+		return foundCheckLimiter;
+	}
+
+	private final FileHasher fileHasher;
+
+	/** @return The engine for hashing the contents of files. */
+	protected FileHasher getFileHasher() {
+		return fileHasher;
+	}
+
+	private final int maxInFlightChecks;
+
+	/** @return The maximum number of checks scheduled but not yet finished when checking many imprints. */
+	protected int getMaxInFlightChecks() {
+		return maxInFlightChecks;
+	}
+
+	private final boolean groupByDirectory;
+
+	/** @return Whether imprints being checked are grouped by directory, so that each directory is listed once rather than each path accessed individually. */
+	protected boolean isGroupByDirectory() {
+		return groupByDirectory;
+	}
+
 	/**
 	 * No-args constructor.
 	 * @see Builder#newDefaultCheckExecutor()
@@ -93,7 +129,12 @@ public PathChecker() {
 		this.checkExecutor = Builder.newDefaultCheckExecutor();
 		this.produceExecutor = Builder.newDefaultProduceExecutor();
 		this.foundResultConsumer = Optional.empty();
+		this.foundTreeResultConsumer = Optional.empty();
 		this.foundListener = Optional.empty();
+		this.foundCheckLimiter = Optional.empty();
+		this.fileHasher = Builder.newDefaultFileHasher();
+		this.maxInFlightChecks = CompletionWindow.DEFAULT_SIZE;
+		this.groupByDirectory = false;
 	}
 
 	/**
@@ -103,7 +144,12 @@ public PathChecker() {
 	public PathChecker(@Nonnull final Executor executor) {
 		this.checkExecutor = this.produceExecutor = requireNonNull(executor);
 		this.foundResultConsumer = Optional.empty();
+		this.foundTreeResultConsumer = Optional.empty();
 		this.foundListener = Optional.empty();
+		this.foundCheckLimiter = Optional.empty();
+		this.fileHasher = Builder.newDefaultFileHasher();
+		this.maxInFlightChecks = CompletionWindow.DEFAULT_SIZE;
+		this.groupByDirectory = false;
 	}
 
 	/**
@@ -114,7 +160,12 @@ protected PathChecker(@Nonnull final Builder builder) {
 		this.checkExecutor = builder.determineCheckExecutor();
 		this.produceExecutor = builder.determineProduceExecutor();
 		this.foundResultConsumer = builder.findResultConsumer();
+		this.foundTreeResultConsumer = builder.findTreeResultConsumer();
 		this.foundListener = builder.findListener();
+		this.foundCheckLimiter = builder.determineMaxConcurrentChecks().stream().mapToObj(ConcurrencyLimiter::new).findAny();
+		this.fileHasher = builder.determineFileHasher();
+		this.maxInFlightChecks = builder.determineMaxInFlightChecks();
+		this.groupByDirectory = builder.isGroupByDirectory();
 	}
 
 	/** @return A new builder for specifying a new {@link PathChecker}. */
@@ -179,6 +230,7 @@ public void close() throws IOException {
 
 	/**
 	 * Asynchronously checks a single path, which must be a regular file or a directory, against an imprint.
+	 * @implSpec If there is a check limiter, the check will wait until a check is permitted before accessing the path and notifying the listener.
 	 * @param path The path being checked.
 	 * @param imprint The imprint against which the path is being checked.
 	 * @return A future result of checking the path.
@@ -188,29 +240,47 @@ public CompletableFuture<Result> checkPathAsync(@Nonnull final Path path, @Nonnu
 		getLogger().trace("Checking path `{}` against imprint {}.", path, imprint);
 		findListener().ifPresent(listener -> listener.onCheckPath(path, imprint));
 		final CompletableFuture<Result> futureResult = supplyAsync(throwingSupplier(() -> {
-			findListener().ifPresent(listener -> listener.beforeCheckPath(path));
+			final ConcurrencyLimiter.Permit permit = ConcurrencyLimiter.acquire(findCheckLimiter());
 			try {
-				final Result result;
-				if(isRegularFile(path)) {
-					result = new FileResult(path, imprint);
-				} else if(isDirectory(path)) {
-					result = new DirectoryResult(path, imprint);
-				} else if(!exists(path)) {
-					result = new MissingPathResult(path, imprint);
-				} else {
-					throw new UnsupportedOperationException("Unsupported path `%s` is neither a regular file or a directory.".formatted(path));
+				findListener().ifPresent(listener -> listener.beforeCheckPath(path));
+				try {
+					final Result result;
+					if(isRegularFile(path)) {
+						result = new FileResult(path, imprint);
+					} else if(isDirectory(path)) {
+						result = new DirectoryResult(path, imprint);
+					} else if(!exists(path)) {
+						result = new MissingPathResult(path, imprint);
+					} else {
+						throw new UnsupportedOperationException("Unsupported path `%s` is neither a regular file or a directory.".formatted(path));
+					}
+					return result;
+				} finally { //even if there was an error, at least note we're finished checking the path
+					findListener().ifPresent(listener -> listener.afterCheckPath(path));
 				}
-				return result;
-			} finally { //even if there was an error, at least note we're finished checking the path
-				findListener().ifPresent(listener -> listener.afterCheckPath(path));
+			} finally {
+				permit.release();
 			}
 		}), getCheckExecutor());
+		return handleResultAsync(futureResult);
+	}
+
+	/**
+	 * Chains production and reporting of a future result of a check.
+	 * @implSpec The result is produced using the result consumer, if any, and reported to the listener, if any, if it is a mismatch.
+	 * @param futureResult The future result of checking a path.
+	 * @return The future result, completing once it has been scheduled for production and reported.
+	 */
+	private CompletableFuture<Result> handleResultAsync(@Nonnull final CompletableFuture<Result> futureResult) {
 		//chain production of the result if there is a consumer
 		final CompletableFuture<Result> futureResultProduced = findResultConsumer().map(resultConsumer -> futureResult.thenApply(result -> { //only produce if there is a consumer
 			if(foundProduceErrorReference.get().isEmpty()) { //skip production if there is any error in effect
-				runAsync(() -> resultConsumer.accept(result), getProduceExecutor()).exceptionally(throwable -> {
-					foundProduceErrorReference.compareAndSet(Optional.empty(), Optional.of(throwable)); //keep track of the first error that occurs
-					return null;
+				getProduceExecutor().execute(() -> { //no future is needed, as nothing waits on an individual result being produced
+					try {
+						resultConsumer.accept(result);
+					} catch(final Throwable throwable) {
+						foundProduceErrorReference.compareAndSet(Optional.empty(), Optional.of(throwable)); //keep track of the first error that occurs
+					}
 				});
 			}
 			return result;
@@ -224,6 +294,390 @@ public CompletableFuture<Result> checkPathAsync(@Nonnull final Path path, @Nonnu
 		})).orElse(futureResultProduced); //stay with the same produced future result if there is no listener
 	}
 
+	/**
+	 * Asynchronously checks several paths in a single directory against their imprints, listing the directory once rather than accessing each path individually.
+	 * The existence and filename case of each path are determined from the listing, and the type, modification timestamp, and size of each existing path are
+	 * read together in a single access. Only files are then checked further, each being hashed as a separate check.
+	 * @apiNote This saves file system round trips, which may take longer than hashing on network file systems with many small files. In particular a missing
+	 *          path costs nothing beyond the listing.
+	 * @implSpec If the directory does not exist, all the paths are considered missing. A path not in the listing under its exact filename is considered to exist
+	 *           with a different filename case only if the file system reports that it exists.
+	 * @implSpec If there is a check limiter, listing the directory and hashing each file will each wait until a check is permitted.
+	 * @param directory The directory containing the paths.
+	 * @param checks The paths to check against their imprints; the parent of each path must be the directory.
+	 * @return A future list of the results of checking the paths, in no particular order.
+	 * @throws IllegalArgumentException if the parent of one of the paths is not the directory.
+	 * @see #checkPathAsync(Path, PathImprint)
+	 */
+	public CompletableFuture<List<Result>> checkDirectoryAsync(@Nonnull final Path directory, @Nonnull final Collection<Check> checks) {
+		checks.forEach(check -> checkArgument(directory.equals(check.path().getParent()), "Path `%s` is not in directory `%s`.", check.path(), directory));
+		getLogger().trace("Checking {} paths in directory `{}`.", checks.size(), directory);
+		findListener().ifPresent(listener -> checks.forEach(check -> listener.onCheckPath(check.path(), check.imprint())));
+		record ListedCheck(@Nonnull Check check, @Nonnull Path realPath, @Nullable BasicFileAttributes attributes) { //a path listed in the directory, with any attributes
+		}
+		final CompletableFuture<List<CompletableFuture<Result>>> futureFutureResults = supplyAsync(throwingSupplier(() -> {
+			final List<ListedCheck> listedChecks = new ArrayList<>(checks.size());
+			final ConcurrencyLimiter.Permit listPermit = ConcurrencyLimiter.acquire(findCheckLimiter());
+			try { //release the permit before hashing, which needs its own
+				final Set<String> filenames = new HashSet<>();
+				try (final DirectoryStream<Path> directoryStream = newDirectoryStream(directory)) {
+					directoryStream.forEach(childPath -> filenames.add(childPath.getFileName().toString()));
+				} catch(final NoSuchFileException | NotDirectoryException noDirectoryException) { //all paths are missing; the set of filenames remains empty
+					getLogger().trace("Directory `{}` being checked does not exist.", directory);
+				}
+				final Path realDirectory = filenames.isEmpty() ? directory : directory.toRealPath(NOFOLLOW_LINKS);
+				final Map<String, String> filenamesByFoldedFilename = new HashMap<>(); //only populated if needed
+				for(final Check check : checks) {
+					final Path path = check.path();
+					String filename = path.getFileName().toString();
+					if(!filenames.contains(filename) && !filenames.isEmpty()) { //the file system may ignore filename case
+						if(filenamesByFoldedFilename.isEmpty()) {
+							filenames.forEach(listedFilename -> filenamesByFoldedFilename.putIfAbsent(listedFilename.toLowerCase(Locale.ROOT), listedFilename));
+						}
+						final String foldedFilename = filenamesByFoldedFilename.get(filename.toLowerCase(Locale.ROOT));
+						if(foldedFilename != null && exists(path)) {
+							filename = foldedFilename;
+						}
+					}
+					BasicFileAttributes attributes = null;
+					if(filenames.contains(filename)) {
+						try {
+							attributes = readAttributes(path, BasicFileAttributes.class); //follow links, as when checking an individual path
+						} catch(final NoSuchFileException noSuchFileException) { //e.g. a broken symbolic link
+							getLogger().trace("Path `{}` being checked does not exist.", path);
+						}
+					}
+					listedChecks.add(new ListedCheck(check, realDirectory.resolve(filename), attributes));
+				}
+			} finally {
+				listPermit.release();
+			}
+			final List<CompletableFuture<Result>> futureResults = new ArrayList<>(listedChecks.size());
+			for(final ListedCheck listedCheck : listedChecks) {
+				final Path path = listedCheck.check().path();
+				final PathImprint imprint = listedCheck.check().imprint();
+				final BasicFileAttributes attributes = listedCheck.attributes();
+				final CompletableFuture<Result> futureResult;
+				if(attributes != null && attributes.isRegularFile()) {
+					futureResult = supplyAsync(throwingSupplier(() -> {
+						final ConcurrencyLimiter.Permit permit = ConcurrencyLimiter.acquire(findCheckLimiter());
+						try {
+							findListener().ifPresent(listener -> listener.beforeCheckPath(path));
+							try {
+								return new FileResult(path, listedCheck.realPath(), imprint, attributes);
+							} finally { //even if there was an error, at least note we're finished checking the path
+								findListener().ifPresent(listener -> listener.afterCheckPath(path));
+							}
+						} finally {
+							permit.release();
+						}
+					}), getCheckExecutor());
+				} else {
+					findListener().ifPresent(listener -> listener.beforeCheckPath(path));
+					try {
+						if(attributes == null) {
+							futureResult = completedFuture(new MissingPathResult(path, imprint));
+						} else if(attributes.isDirectory()) {
+							futureResult = completedFuture(new DirectoryResult(listedCheck.realPath(), imprint, attributes));
+						} else {
+							throw new UnsupportedOperationException("Unsupported path `%s` is neither a regular file or a directory.".formatted(path));
+						}
+					} finally { //even if there was an error, at least note we're finished checking the path
+						findListener().ifPresent(listener -> listener.afterCheckPath(path));
+					}
+				}
+				futureResults.add(handleResultAsync(futureResult));
+			}
+			return futureResults;
+		}), getCheckExecutor());
+		return futureFutureResults.thenCompose(futureResults -> allOf(futureResults.toArray(CompletableFuture[]::new))
+				.thenApply(__ -> futureResults.stream().map(CompletableFuture::join).toList()));
+	}
+
+	/**
+	 * A path to check against an imprint.
+	 * @param path The path being checked.
+	 * @param imprint The imprint against which the path is being checked.
+	 * @author Garret Wilson
+	 */
+	public record Check(@Nonnull Path path, @Nonnull PathImprint imprint) {
+
+		/**
+		 * Constructor for argument validation.
+		 * @param path The path being checked.
+		 * @param imprint The imprint against which the path is being checked.
+		 */
+		public Check {
+			requireNonNull(path);
+			requireNonNull(imprint);
+		}
+
+	}
+
+	/**
+	 * Asynchronously checks all the imprints read by a parser, relocating each imprint path to a new base path.
+	 * @apiNote The parser is read on a separate thread, so it and any underlying input must not be closed or otherwise used until the returned future completes.
+	 * @param parser The parser of the imprints to check.
+	 * @param newBasePath The base path to which the imprint paths are relocated; typically the base path of the imprints, or the path of a copy of the tree.
+	 * @return A future summary of checking the imprints, which will complete exceptionally with the first error encountered, if any.
+	 * @see #checkAsync(Stream, Path)
+	 */
+	public CompletableFuture<Summary> checkAsync(@Nonnull final DatimParser parser, @Nonnull final Path newBasePath) {
+		return checkAsync(Stream.generate(throwingSupplier(() -> parser.readImprint()
+				.map(imprint -> new MappedDatimReader.Entry(parser.findCurrentBasePath(), imprint, parser.findRelativePath())))).takeWhile(Optional::isPresent)
+				.map(Optional::get), newBasePath);
+	}
+
+	/**
+	 * Asynchronously checks the imprints of several entries, such as those read by {@link MappedDatimReader}, relocating each imprint path to a new base path.
+	 * The entries are read on a separate thread, which starts checks using the check executor while there are fewer than
+	 * {@link Builder#withMaxInFlightChecks(int)} checks in flight, and otherwise waits. Checks may finish in any order. Only counts of the results and the first
+	 * error are kept, so the memory used does not depend on the number of entries. Once an error occurs, no more checks are started.
+	 * <p>
+	 * If {@link Builder#withGroupByDirectory(boolean)} is enabled, the paths are instead grouped by parent directory and checked using
+	 * {@link #checkDirectoryAsync(Path, Collection)}. The group for a directory is checked once the imprint of the directory itself is read, as imprints in
+	 * tree order follow those of their children, or when too many paths are waiting to be checked, or at the end of the entries.
+	 * </p>
+	 * <p>
+	 * If a tree result consumer is configured using {@link Builder#withTreeResultConsumer(Consumer)}, the fingerprints of each directory are also recomputed
+	 * bottom-up from the check results of its children and verified against its imprint, with no further access to the file system. This requires the entries
+	 * to be in tree order, as produced by {@link TreeOrder#pathComparator()}, so they are read sequentially; any entry out of order causes checking to fail.
+	 * </p>
+	 * @apiNote The entries may be a parallel stream, in which case they are read by several threads. Entries not in tree order, as when reading in parallel,
+	 *          are still checked correctly if grouping by directory, but a directory may then be listed more than once.
+	 * @param entries The entries of the imprints to check.
+	 * @param newBasePath The base path to which the imprint paths are relocated; typically the base path of the imprints, or the path of a copy of the tree.
+	 * @return A future summary of checking the imprints, which will complete exceptionally with the first error encountered, if any.
+	 * @see MappedDatimReader.Entry#relocatePath(Path)
+	 */
+	public CompletableFuture<Summary> checkAsync(@Nonnull final Stream<MappedDatimReader.Entry> entries, @Nonnull final Path newBasePath) {
+		requireNonNull(newBasePath);
+		final CompletionWindow checkWindow = new CompletionWindow(getMaxInFlightChecks());
+		final SummaryCounter summaryCounter = new SummaryCounter();
+		final Optional<TreeFingerprintVerifier> foundTreeVerifier = findTreeResultConsumer()
+				.map(treeResultConsumer -> new TreeFingerprintVerifier(FINGERPRINT_ALGORITHM, treeResultConsumer));
+		final Consumer<Result> resultTally = foundTreeVerifier.<Consumer<Result>>map(treeVerifier -> summaryCounter.andThen(throwingConsumer(treeVerifier::onResult)))
+				.orElse(summaryCounter);
+		final Optional<DirectoryGrouper> foundDirectoryGrouper = isGroupByDirectory() ? Optional.of(new DirectoryGrouper(checkWindow, resultTally))
+				: Optional.empty();
+		final CompletableFuture<Summary> futureSummary = new CompletableFuture<>();
+		final Thread readThread = new Thread(() -> {
+			try {
+				try {
+					(foundTreeVerifier.isPresent() ? entries.sequential() : entries).forEach(throwingConsumer(entry -> {
+						if(checkWindow.findError().isPresent()) { //stop checking once there is an error
+							return;
+						}
+						final Path path = entry.relocatePath(newBasePath);
+						if(foundTreeVerifier.isPresent()) {
+							foundTreeVerifier.get().addImprint(path, entry.imprint());
+						}
+						if(foundDirectoryGrouper.isPresent()) {
+							foundDirectoryGrouper.get().add(new Check(path, entry.imprint()));
+						} else {
+							checkWindow.start(() -> checkPathAsync(path, entry.imprint()).thenApply(result -> {
+								resultTally.accept(result);
+								return result;
+							}));
+						}
+					}));
+					if(foundDirectoryGrouper.isPresent() && checkWindow.findError().isEmpty()) {
+						foundDirectoryGrouper.get().flushAll();
+					}
+				} finally { //even if reading failed, wait for the checks already started so that no check is running once the future completes
+					try {
+						checkWindow.await();
+					} finally {
+						if(foundTreeVerifier.isPresent()) {
+							foundTreeVerifier.get().close();
+						}
+					}
+				}
+				checkWindow.findError().ifPresentOrElse(futureSummary::completeExceptionally, () -> futureSummary.complete(summaryCounter.toSummary()));
+			} catch(final Throwable throwable) {
+				futureSummary.completeExceptionally(throwable);
+			}
+		}, "datimprint-check-reader");
+		readThread.setDaemon(true);
+		readThread.start();
+		return futureSummary;
+	}
+
+	/**
+	 * Groups paths to check by parent directory, starting checks of each group in a completion window.
+	 * @implNote All methods are synchronized, as the entries being grouped may be read by several threads.
+	 * @author Garret Wilson
+	 */
+	private final class DirectoryGrouper {
+
+		private final CompletionWindow checkWindow;
+
+		private final Consumer<Result> resultConsumer;
+
+		/** The maximum number of checks waiting in groups; half the window, so that a group can be started while other checks are in flight. */
+		private final int maxPendingCheckCount;
+
+		private final Map<Path, List<Check>> pendingChecksByDirectory = new HashMap<>();
+
+		private int pendingCheckCount = 0;
+
+		/**
+		 * Constructor.
+		 * @param checkWindow The window in which to start checks, each group taking up one place for each of its paths.
+		 * @param resultConsumer The consumer to receive each result once checked.
+		 */
+		public DirectoryGrouper(@Nonnull final CompletionWindow checkWindow, @Nonnull final Consumer<Result> resultConsumer) {
+			this.checkWindow = requireNonNull(checkWindow);
+			this.resultConsumer = requireNonNull(resultConsumer);
+			this.maxPendingCheckCount = Math.max(checkWindow.getSize() / 2, 1);
+		}
+
+		/**
+		 * Adds a path to be checked to the group of its parent directory. If the path is that of a directory with a group of its own, that group is started, as
+		 * the directory is assumed to have no more children to check. If too many checks are waiting, the largest group is started.
+		 * @implSpec A path with no parent or no filename, such as a root directory, is checked on its own immediately.
+		 * @param check The path to check against its imprint.
+		 * @throws IOException if there is an error starting a check.
+		 */
+		public synchronized void add(@Nonnull final Check check) throws IOException {
+			final Path path = check.path();
+			final Path directory = path.getParent();
+			if(directory == null || path.getFileName() == null) {
+				checkWindow.start(() -> checkPathAsync(path, check.imprint()).thenApply(result -> {
+					resultConsumer.accept(result);
+					return result;
+				}));
+				return;
+			}
+			pendingChecksByDirectory.computeIfAbsent(directory, __ -> new ArrayList<>()).add(check);
+			pendingCheckCount++;
+			if(pendingChecksByDirectory.containsKey(path)) {
+				flush(path);
+			}
+			if(pendingCheckCount >= maxPendingCheckCount) {
+				flush(pendingChecksByDirectory.entrySet().stream().max(Comparator.comparingInt(entry -> entry.getValue().size())).orElseThrow().getKey());
+			}
+		}
+
+		/**
+		 * Starts checking the group of paths in a directory.
+		 * @param directory The directory of the group, which must be pending.
+		 * @throws IOException if there is an error starting the check.
+		 */
+		private void flush(@Nonnull final Path directory) throws IOException {
+			final List<Check> checks = pendingChecksByDirectory.remove(directory);
+			pendingCheckCount -= checks.size();
+			checkWindow.start(checks.size(), () -> checkDirectoryAsync(directory, checks).thenApply(results -> {
+				results.forEach(resultConsumer);
+				return results;
+			}));
+		}
+
+		/**
+		 * Starts checking all the groups of paths still waiting.
+		 * @throws IOException if there is an error starting a check.
+		 */
+		public synchronized void flushAll() throws IOException {
+			for(final Path directory : List.copyOf(pendingChecksByDirectory.keySet())) {
+				flush(directory);
+			}
+		}
+
+	}
+
+	/**
+	 * The result of verifying the fingerprints of a directory recomputed bottom-up from the check results of its children, which were in turn recomputed from
+	 * the check results of their own children. The fingerprint of a directory thus only matches its imprint if its whole tree is intact, as far as the imprints
+	 * being checked describe it.
+	 * @param path The real path of the directory.
+	 * @param imprint The imprint of the directory.
+	 * @param contentFingerprint The fingerprint recomputed from the current content fingerprints of the children of the directory.
+	 * @param fingerprint The full fingerprint recomputed from the current state of the directory and of its children.
+	 * @author Garret Wilson
+	 */
+	public record TreeResult(@Nonnull Path path, @Nonnull PathImprint imprint, @Nonnull Hash contentFingerprint, @Nonnull Hash fingerprint) {
+
+		/**
+		 * Constructor for argument validation.
+		 * @param path The real path of the directory.
+		 * @param imprint The imprint of the directory.
+		 * @param contentFingerprint The fingerprint recomputed from the current content fingerprints of the children of the directory.
+		 * @param fingerprint The full fingerprint recomputed from the current state of the directory and of its children.
+		 */
+		public TreeResult {
+			requireNonNull(path);
+			requireNonNull(imprint);
+			requireNonNull(contentFingerprint);
+			requireNonNull(fingerprint);
+		}
+
+		/** @return <code>true</code> if the recomputed content fingerprint matches that of the imprint. */
+		public boolean isContentFingerprintMatch() {
+			return contentFingerprint().equals(imprint().contentFingerprint());
+		}
+
+		/** @return <code>true</code> if the recomputed full fingerprint matches that of the imprint, indicating the directory tree is intact. */
+		public boolean isMatch() {
+			return fingerprint().equals(imprint().fingerprint());
+		}
+
+	}
+
+	/**
+	 * Summary of checking many paths against their imprints.
+	 * @param pathCount The number of paths checked.
+	 * @param fileCount The number of existing regular files checked.
+	 * @param directoryCount The number of existing directories checked.
+	 * @param missingPathCount The number of paths that did not exist.
+	 * @param mismatchCount The number of existing paths that did not match their imprints.
+	 * @param byteCount The total size in bytes of the file contents verified.
+	 * @author Garret Wilson
+	 */
+	public record Summary(long pathCount, long fileCount, long directoryCount, long missingPathCount, long mismatchCount, long byteCount) {
+	}
+
+	/**
+	 * Thread-safe accumulator of the results of checking paths.
+	 * @author Garret Wilson
+	 */
+	private static final class SummaryCounter implements Consumer<Result> {
+
+		private final LongAdder fileCount = new LongAdder();
+
+		private final LongAdder directoryCount = new LongAdder();
+
+		private final LongAdder missingPathCount = new LongAdder();
+
+		private final LongAdder mismatchCount = new LongAdder();
+
+		private final LongAdder byteCount = new LongAdder();
+
+		@Override
+		public void accept(final Result result) {
+			if(result instanceof FileResult fileResult) {
+				fileCount.increment();
+				byteCount.add(fileResult.getContentSize());
+			} else if(result instanceof DirectoryResult) {
+				directoryCount.increment();
+			} else if(result instanceof MissingPathResult) {
+				missingPathCount.increment();
+				return;
+			}
+			if(!result.isMatch()) {
+				mismatchCount.increment();
+			}
+		}
+
+		/** @return A summary of the results accumulated so far. */
+		public Summary toSummary() {
+			final long fileCount = this.fileCount.sum();
+			final long directoryCount = this.directoryCount.sum();
+			final long missingPathCount = this.missingPathCount.sum();
+			return new Summary(fileCount + directoryCount + missingPathCount, fileCount, directoryCount, missingPathCount, mismatchCount.sum(), byteCount.sum());
+		}
+
+	}
+
 	/**
 	 * The result of checking a path against an imprint. Equality is based upon {@link #getPath()}, {@link #getImprint()}, {@link #isMatch()}, and
 	 * {@link #getMismatches()}.
@@ -392,7 +846,18 @@ protected void addMismatches(@Nonnull final Set<Mismatch> moreMismatches) {
 		 * @throws IOException if there is an error getting additional information about the path.
 		 */
 		protected ExistingPathResult(@Nonnull final Path path, @Nonnull final PathImprint imprint) throws IOException {
-			super(path.toRealPath(NOFOLLOW_LINKS), imprint);
+			this(path.toRealPath(NOFOLLOW_LINKS), imprint, getLastModifiedTime(path));
+		}
+
+		/**
+		 * Modification timestamp constructor.
+		 * @implSpec Filenames are checked in the same way as {@link #ExistingPathResult(Path, PathImprint)}.
+		 * @param realPath The real path of the file system being checked, determined without following links, to ensure a unique path and the correct case.
+		 * @param imprint The imprint against which the path is being checked.
+		 * @param contentModifiedAt The modification timestamp of the path.
+		 */
+		protected ExistingPathResult(@Nonnull final Path realPath, @Nonnull final PathImprint imprint, @Nonnull final FileTime contentModifiedAt) {
+			super(realPath, imprint);
 			final EnumSet<Mismatch> moreMismatches = EnumSet.noneOf(Mismatch.class);
 			//check the filename (or none) against that of the path saved in the base class, which has been converted to the real path (i.e. true case)
 			@Nullable
@@ -406,7 +871,7 @@ protected ExistingPathResult(@Nonnull final Path path, @Nonnull final PathImprin
 					moreMismatches.add(Mismatch.FILENAME);
 				}
 			}
-			this.contentModifiedAt = getLastModifiedTime(path);
+			this.contentModifiedAt = requireNonNull(contentModifiedAt);
 			if(!contentModifiedAt.equals(imprint.contentModifiedAt())) {
 				moreMismatches.add(Mismatch.CONTENT_MODIFIED_AT);
 			}
@@ -428,15 +893,38 @@ public Hash getContentFingerprint() {
 			return contentFingerprint;
 		}
 
+		private final long contentSize;
+
+		/** @return The size of the file in bytes when it was checked. */
+		public long getContentSize() {
+			return contentSize;
+		}
+
 		/**
 		 * Constructor.
+		 * @implSpec The file contents are hashed using the file hasher returned by {@link PathChecker#getFileHasher()}.
 		 * @param file The file being checked.
 		 * @param imprint The imprint against which the path is being checked.
 		 * @throws IOException if there is an error getting additional information about the file.
 		 */
 		protected FileResult(@Nonnull final Path file, @Nonnull final PathImprint imprint) throws IOException {
-			super(file, imprint);
-			this.contentFingerprint = FINGERPRINT_ALGORITHM.hash(file);
+			this(file, file.toRealPath(NOFOLLOW_LINKS), imprint, readAttributes(file, BasicFileAttributes.class));
+		}
+
+		/**
+		 * Attributes constructor.
+		 * @implSpec The file contents are hashed using the file hasher returned by {@link PathChecker#getFileHasher()}.
+		 * @param file The file being checked, which is the path that will be hashed.
+		 * @param realFile The real path of the file being checked, determined without following links.
+		 * @param imprint The imprint against which the path is being checked.
+		 * @param attributes The attributes of the file, already read.
+		 * @throws IOException if there is an error hashing the file.
+		 */
+		protected FileResult(@Nonnull final Path file, @Nonnull final Path realFile, @Nonnull final PathImprint imprint,
+				@Nonnull final BasicFileAttributes attributes) throws IOException {
+			super(realFile, imprint, attributes.lastModifiedTime());
+			this.contentSize = attributes.size();
+			this.contentFingerprint = getFileHasher().hash(file);
 			final EnumSet<Mismatch> moreMismatches = EnumSet.noneOf(Mismatch.class);
 			if(!contentFingerprint.equals(imprint.contentFingerprint())) {
 				moreMismatches.add(Mismatch.CONTENT_FINGERPRINT);
@@ -454,12 +942,22 @@ public final class DirectoryResult extends ExistingPathResult {
 
 		/**
 		 * Constructor.
-		 * @param directory The directory being checked.
+		 * @param directory The directory being checked; converted to the real path of the file system without following links.
 		 * @param imprint The imprint against which the path is being checked.
 		 * @throws IOException if there is an error getting additional information about the directory.
 		 */
 		protected DirectoryResult(@Nonnull final Path directory, @Nonnull final PathImprint imprint) throws IOException {
-			super(directory, imprint);
+			this(directory.toRealPath(NOFOLLOW_LINKS), imprint, readAttributes(directory, BasicFileAttributes.class));
+		}
+
+		/**
+		 * Attributes constructor.
+		 * @param realDirectory The real path of the directory being checked, determined without following links.
+		 * @param imprint The imprint against which the path is being checked.
+		 * @param attributes The attributes of the directory, already read.
+		 */
+		protected DirectoryResult(@Nonnull final Path realDirectory, @Nonnull final PathImprint imprint, @Nonnull final BasicFileAttributes attributes) {
+			super(realDirectory, imprint, attributes.lastModifiedTime());
 		}
 
 	}
@@ -508,6 +1006,8 @@ public static class Builder {
 
 		private Executor checkExecutor = null;
 
+		private PathImprintGenerator.Builder.ExecutorType checkExecutorType = null;
+
 		/**
 		 * Specifies the check executor; if not set, a {@link #newDefaultCheckExecutor()} will be created and used.
 		 * @param checkExecutor The executor for checking paths; may or may not be an instance of {@link ExecutorService}, and may or may not be the same executor
@@ -516,11 +1016,23 @@ public static class Builder {
 		 * @throws IllegalStateException if a check executor-setting method is called twice on the builder.
 		 */
 		public Builder withCheckExecutor(@Nonnull final Executor checkExecutor) {
-			checkState(this.checkExecutor == null, "Check executor already specified.");
+			checkState(this.checkExecutor == null && this.checkExecutorType == null, "Check executor already specified.");
 			this.checkExecutor = requireNonNull(checkExecutor);
 			return this;
 		}
 
+		/**
+		 * Specifies the check executor using one of the predefined executor types.
+		 * @param checkExecutorType The predefined type of executor for checking paths.
+		 * @return This builder.
+		 * @throws IllegalStateException if a check executor-setting method is called twice on the builder.
+		 */
+		public Builder withCheckExecutorType(@Nonnull final PathImprintGenerator.Builder.ExecutorType checkExecutorType) {
+			checkState(this.checkExecutor == null && this.checkExecutorType == null, "Check executor already specified.");
+			this.checkExecutorType = requireNonNull(checkExecutorType);
+			return this;
+		}
+
 		/**
 		 * Determines the check executor to use based upon the current settings.
 		 * @return The specified check executor.
@@ -529,11 +1041,90 @@ private Executor determineCheckExecutor() {
 			if(checkExecutor != null) {
 				return checkExecutor;
 			}
+			if(checkExecutorType != null) {
+				return checkExecutorType.newExecutorService();
+			}
 			return newDefaultCheckExecutor();
 		}
 
+		/** The maximum number of paths to check at the same time by default when using {@link PathImprintGenerator.Builder.ExecutorType#virtualthread}. */
+		public static final int DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_CHECKS = PathImprintGenerator.Builder.DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_FILE_READS;
+
+		private int maxConcurrentChecks = 0;
+
+		/**
+		 * Specifies the maximum number of paths to check at the same time. If not set, the number of checks is only limited by the check executor, except when
+		 * using {@link PathImprintGenerator.Builder.ExecutorType#virtualthread}, which defaults to {@link #DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_CHECKS}.
+		 * @param maxConcurrentChecks The maximum number of paths to check at the same time.
+		 * @return This builder.
+		 * @throws IllegalArgumentException if the given maximum is not positive.
+		 */
+		public Builder withMaxConcurrentChecks(final int maxConcurrentChecks) {
+			checkArgument(maxConcurrentChecks > 0, "Maximum concurrent checks %d not positive.", maxConcurrentChecks);
+			this.maxConcurrentChecks = maxConcurrentChecks;
+			return this;
+		}
+
+		/**
+		 * Determines the maximum number of paths to check at the same time based upon the current settings.
+		 * @return The maximum number of concurrent checks, or empty if checks should not be limited.
+		 */
+		private OptionalInt determineMaxConcurrentChecks() {
+			if(maxConcurrentChecks > 0) {
+				return OptionalInt.of(maxConcurrentChecks);
+			}
+			return checkExecutorType == PathImprintGenerator.Builder.ExecutorType.virtualthread ? OptionalInt.of(DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_CHECKS)
+					: OptionalInt.empty();
+		}
+
+		private int maxInFlightChecks = 0;
+
+		/**
+		 * Specifies the maximum number of checks scheduled but not yet finished when checking many imprints. If not set, defaults to
+		 * {@link CompletionWindow#DEFAULT_SIZE}.
+		 * @param maxInFlightChecks The maximum number of checks in flight.
+		 * @return This builder.
+		 * @throws IllegalArgumentException if the given maximum is not positive.
+		 * @see PathChecker#checkAsync(Stream, Path)
+		 */
+		public Builder withMaxInFlightChecks(final int maxInFlightChecks) {
+			checkArgument(maxInFlightChecks > 0, "Maximum in-flight checks %d not positive.", maxInFlightChecks);
+			this.maxInFlightChecks = maxInFlightChecks;
+			return this;
+		}
+
+		/**
+		 * Determines the maximum number of checks in flight based upon the current settings.
+		 * @return The maximum number of checks scheduled but not yet finished.
+		 */
+		private int determineMaxInFlightChecks() {
+			return maxInFlightChecks > 0 ? maxInFlightChecks : CompletionWindow.DEFAULT_SIZE;
+		}
+
+		private boolean groupByDirectory = false;
+
+		/** @return Whether imprints being checked will be grouped by directory. */
+		private boolean isGroupByDirectory() {
+			return groupByDirectory;
+		}
+
+		/**
+		 * Specifies whether imprints being checked should be grouped by directory, so that each directory is listed once rather than each path accessed
+		 * individually. Disabled by default.
+		 * @param groupByDirectory Whether to group imprints by directory.
+		 * @return This builder.
+		 * @see PathChecker#checkAsync(Stream, Path)
+		 * @see PathChecker#checkDirectoryAsync(Path, Collection)
+		 */
+		public Builder withGroupByDirectory(final boolean groupByDirectory) {
+			this.groupByDirectory = groupByDirectory;
+			return this;
+		}
+
 		private Executor produceExecutor;
 
+		private RingBufferExecutor.WaitStrategy produceWaitStrategy;
+
 		/**
 		 * Specifies the produce executor; if not set, a {@link #newDefaultProduceExecutor()} will be created and used.
 		 * @param produceExecutor The executor for producing imprints; may or may not be an instance of {@link ExecutorService}, and may or may not be the same
@@ -542,17 +1133,36 @@ private Executor determineCheckExecutor() {
 		 * @return This builder.
 		 */
 		public Builder withProduceExecutor(@Nonnull final Executor produceExecutor) {
-			checkState(this.produceExecutor == null, "Produce executor already specified.");
+			checkState(this.produceExecutor == null && this.produceWaitStrategy == null, "Produce executor already specified.");
 			this.produceExecutor = requireNonNull(produceExecutor);
 			return this;
 		}
 
+		/**
+		 * Specifies that a default produce executor be used, waiting for results using the given strategy.
+		 * @param produceWaitStrategy The strategy for waiting for results to be produced, or for room to produce them.
+		 * @throws IllegalStateException if a produce executor-setting method is called twice on the builder.
+		 * @return This builder.
+		 * @see #newDefaultProduceExecutor(RingBufferExecutor.WaitStrategy)
+		 */
+		public Builder withProduceWaitStrategy(@Nonnull final RingBufferExecutor.WaitStrategy produceWaitStrategy) {
+			checkState(this.produceExecutor == null && this.produceWaitStrategy == null, "Produce executor already specified.");
+			this.produceWaitStrategy = requireNonNull(produceWaitStrategy);
+			return this;
+		}
+
 		/**
 		 * Determines the produce executor to use based upon the current settings.
 		 * @return The specified produce executor.
 		 */
 		private Executor determineProduceExecutor() {
-			return produceExecutor != null ? produceExecutor : newDefaultProduceExecutor();
+			if(produceExecutor != null) {
+				return produceExecutor;
+			}
+			if(produceWaitStrategy != null) {
+				return newDefaultProduceExecutor(produceWaitStrategy);
+			}
+			return newDefaultProduceExecutor();
 		}
 
 		/**
@@ -565,8 +1175,8 @@ private Executor determineProduceExecutor() {
 		 * @see #withProduceExecutor(Executor)
 		 */
 		public Builder withExecutor(@Nonnull final Executor executor) {
-			checkState(this.checkExecutor == null, "Check executor already specified.");
-			checkState(this.produceExecutor == null, "Produce executor already specified.");
+			checkState(this.checkExecutor == null && this.checkExecutorType == null, "Check executor already specified.");
+			checkState(this.produceExecutor == null && this.produceWaitStrategy == null, "Produce executor already specified.");
 			this.checkExecutor = requireNonNull(executor);
 			this.produceExecutor = requireNonNull(executor);
 			return this;
@@ -590,6 +1200,27 @@ public Builder withResultConsumer(@Nonnull final Consumer<Result> resultConsumer
 			return this;
 		}
 
+		private Consumer<TreeResult> treeResultConsumer = null;
+
+		/** @return The configured tree result consumer, if any. */
+		private Optional<Consumer<TreeResult>> findTreeResultConsumer() {
+			return Optional.ofNullable(treeResultConsumer);
+		}
+
+		/**
+		 * Specifies the tree result consumer, enabling bottom-up verification of directory fingerprints when checking many imprints.
+		 * <p>
+		 * The consumer will be called immediately in the thread completing the last check of the directory tree, and thus <em>must be thread safe</em>.
+		 * </p>
+		 * @param treeResultConsumer The consumer to which results will be produced after the fingerprints of a directory are recomputed.
+		 * @return This builder.
+		 * @see PathChecker#checkAsync(Stream, Path)
+		 */
+		public Builder withTreeResultConsumer(@Nonnull final Consumer<TreeResult> treeResultConsumer) {
+			this.treeResultConsumer = requireNonNull(treeResultConsumer);
+			return this;
+		}
+
 		@Nullable
 		private Listener listener = null;
 
@@ -612,6 +1243,27 @@ public Builder withListener(@Nonnull final Listener listener) {
 			return this;
 		}
 
+		@Nullable
+		private FileHasher fileHasher = null;
+
+		/**
+		 * Specifies the engine for hashing the contents of files; if not set, a {@link #newDefaultFileHasher()} will be created and used.
+		 * @param fileHasher The file hasher, which must use {@link PathImprintGenerator#FINGERPRINT_ALGORITHM}.
+		 * @return This builder.
+		 */
+		public Builder withFileHasher(@Nonnull final FileHasher fileHasher) {
+			this.fileHasher = requireNonNull(fileHasher);
+			return this;
+		}
+
+		/**
+		 * Determines the file hasher to use based upon the current settings.
+		 * @return The specified file hasher.
+		 */
+		private FileHasher determineFileHasher() {
+			return fileHasher != null ? fileHasher : newDefaultFileHasher();
+		}
+
 		/** @return A new instance of the imprint checker based upon the current builder configuration. */
 		public PathChecker build() {
 			return new PathChecker(this);
@@ -633,13 +1285,34 @@ public static Executor newDefaultCheckExecutor() {
 					new ThreadPoolExecutor.CallerRunsPolicy());
 		}
 
+		/**
+		 * Returns a default engine for hashing the contents of files.
+		 * @implSpec This implementation delegates to {@link PathImprintGenerator.Builder#newDefaultFileHasher()}, so that files are checked using the same
+		 *           default engine with which their imprints are generated.
+		 * @return A new default file hasher.
+		 */
+		public static FileHasher newDefaultFileHasher() {
+			return PathImprintGenerator.Builder.newDefaultFileHasher();
+		}
+
 		/**
 		 * Returns a default executor for production of results.
-		 * @implSpec This implementation returns an executor using a single thread with normal priority.
+		 * @implSpec This implementation delegates to {@link #newDefaultProduceExecutor(RingBufferExecutor.WaitStrategy)} using
+		 *           {@link RingBufferExecutor#DEFAULT_WAIT_STRATEGY}.
 		 * @return A new default produce executor.
 		 */
 		public static Executor newDefaultProduceExecutor() {
-			return newSingleThreadExecutor();
+			return newDefaultProduceExecutor(RingBufferExecutor.DEFAULT_WAIT_STRATEGY);
+		}
+
+		/**
+		 * Returns a default executor for production of results, using the given wait strategy.
+		 * @implSpec This implementation returns a ring buffer executor using a single thread with normal priority.
+		 * @param waitStrategy The strategy for waiting for results to be produced, or for room to produce them.
+		 * @return A new default produce executor.
+		 */
+		public static Executor newDefaultProduceExecutor(@Nonnull final RingBufferExecutor.WaitStrategy waitStrategy) {
+			return new RingBufferExecutor(RingBufferExecutor.DEFAULT_CAPACITY, waitStrategy, Executors.defaultThreadFactory());
 		}
 
 	}
@@ -16,9 +16,7 @@
 
 package com.jordial.datimprint.file;
 
-import static com.globalmentor.io.Paths.*;
 import static com.globalmentor.java.Conditions.*;
-import static com.globalmentor.java.Longs.*;
 import static java.nio.file.LinkOption.*;
 import static java.util.Objects.*;
 
@@ -26,7 +24,6 @@
 import java.nio.file.*;
 import java.nio.file.attribute.FileTime;
 import java.security.MessageDigest;
-import java.util.Optional;
 
 import javax.annotation.*;
 
@@ -108,6 +105,27 @@ public static PathImprint forFile(@Nonnull final Path file, @Nonnull final FileT
 				generateFingerprint(file, contentModifiedAt, contentFingerprint, null, fingerprintAlgorithm));
 	}
 
+	/**
+	 * Generates an imprint of a single file, already known to be a real path, given the modification timestamp and pre-generated hash of the file contents.
+	 * @apiNote This method is useful during traversal, in which child paths listed from a directory with a real path are themselves real paths, as it avoids
+	 *          accessing the file system to determine the real path of each file.
+	 * @implSpec The overall fingerprint is generated using
+	 *           {@link #generateFingerprint(Path, FileTime, Hash, Hash, com.globalmentor.security.MessageDigests.Algorithm)}.
+	 * @param realFile The real path of the file for which an imprint should be generated, with the correct case and without links resolved; not checked.
+	 * @param contentModifiedAt The modification timestamp of the file.
+	 * @param contentFingerprint The fingerprint of the contents of the file.
+	 * @param fingerprintAlgorithm The algorithm for calculating fingerprints.
+	 * @return An imprint for the file.
+	 * @throws IllegalArgumentException if the file has no filename.
+	 * @see #forFile(Path, FileTime, Hash, com.globalmentor.security.MessageDigests.Algorithm)
+	 */
+	public static PathImprint forRealFile(@Nonnull final Path realFile, @Nonnull final FileTime contentModifiedAt, @Nonnull final Hash contentFingerprint,
+			@Nonnull final MessageDigests.Algorithm fingerprintAlgorithm) {
+		checkArgument(realFile.getFileName() != null, "File `%s` has no filename.", realFile);
+		return new PathImprint(realFile, contentModifiedAt, contentFingerprint,
+				generateFingerprint(realFile, contentModifiedAt, contentFingerprint, null, fingerprintAlgorithm));
+	}
+
 	/**
 	 * Generates an imprint of a single path given the modification timestamp and pre-generated hash of the path contents.
 	 * @implSpec The overall fingerprint is generated using
@@ -129,9 +147,34 @@ public static PathImprint forDirectory(@Nonnull final Path directory, @Nonnull f
 				generateFingerprint(directory, contentModifiedAt, contentFingerprint, childrenFingerprint, fingerprintAlgorithm));
 	}
 
+	/**
+	 * Generates an imprint of a single directory, already known to be a real path, given the modification timestamp and pre-generated hash of the path
+	 * contents.
+	 * @apiNote This method is useful during traversal, in which child paths listed from a directory with a real path are themselves real paths, as it avoids
+	 *          accessing the file system to determine the real path of each directory.
+	 * @implSpec The overall fingerprint is generated using
+	 *           {@link #generateFingerprint(Path, FileTime, Hash, Hash, com.globalmentor.security.MessageDigests.Algorithm)}.
+	 * @param realDirectory The real path of the directory for which an imprint should be generated, with the correct case and without links resolved; not
+	 *          checked.
+	 * @param contentModifiedAt The modification timestamp of the file.
+	 * @param contentFingerprint The fingerprint of the child content fingerprints of the directory.
+	 * @param childrenFingerprint The fingerprint of the the child fingerprints of the directory. Note that an empty directory is still expected to have a
+	 *          children fingerprint.
+	 * @param fingerprintAlgorithm The algorithm for calculating fingerprints.
+	 * @return An imprint for the directory.
+	 * @see #forDirectory(Path, FileTime, Hash, Hash, com.globalmentor.security.MessageDigests.Algorithm)
+	 */
+	public static PathImprint forRealDirectory(@Nonnull final Path realDirectory, @Nonnull final FileTime contentModifiedAt, @Nonnull final Hash contentFingerprint,
+			@Nonnull final Hash childrenFingerprint, @Nonnull final MessageDigests.Algorithm fingerprintAlgorithm) {
+		return new PathImprint(realDirectory, contentModifiedAt, contentFingerprint,
+				generateFingerprint(realDirectory, contentModifiedAt, contentFingerprint, childrenFingerprint, fingerprintAlgorithm));
+	}
+
 	/**
 	 * Returns an overall fingerprint for the components of an imprint.
 	 * @implSpec the file time is hashed at millisecond resolution.
+	 * @implNote This implementation reuses message digests and buffers confined to the current thread, so that no objects are allocated other than the
+	 *           resulting hash (and the filename path and string, if the file system does not cache them).
 	 * @param path The path for which an imprint should be generated.
 	 * @param contentModifiedAt The modification timestamp of the file.
 	 * @param contentFingerprint The fingerprint of the contents of a file, or of the all the child content fingerprints of a directory.
@@ -143,15 +186,23 @@ public static PathImprint forDirectory(@Nonnull final Path directory, @Nonnull f
 	 */
 	public static Hash generateFingerprint(@Nonnull final Path path, @Nonnull final FileTime contentModifiedAt, @Nonnull final Hash contentFingerprint,
 			@Nullable final Hash childrenFingerprint, @Nonnull final MessageDigests.Algorithm fingerprintAlgorithm) {
-		final MessageDigest fingerprintMessageDigest = fingerprintAlgorithm.newMessageDigest();
-		final Optional<Hash> foundFilenameFingerprint = findFilename(path).map(fingerprintAlgorithm::hash);
-		foundFilenameFingerprint.ifPresent(filenameFingerprint -> filenameFingerprint.updateMessageDigest(fingerprintMessageDigest));
-		fingerprintMessageDigest.update(toBytes(contentModifiedAt.toMillis()));
-		contentFingerprint.updateMessageDigest(fingerprintMessageDigest);
-		if(childrenFingerprint != null) {
-			childrenFingerprint.updateMessageDigest(fingerprintMessageDigest);
+		final MessageDigestPool messageDigestPool = MessageDigestPool.forAlgorithm(fingerprintAlgorithm);
+		final MessageDigest fingerprintMessageDigest = messageDigestPool.borrowMessageDigest();
+		try {
+			@Nullable
+			final Path filenamePath = path.getFileName();
+			if(filenamePath != null) {
+				messageDigestPool.updateHash(fingerprintMessageDigest, filenamePath.toString());
+			}
+			messageDigestPool.update(fingerprintMessageDigest, contentModifiedAt.toMillis());
+			contentFingerprint.updateMessageDigest(fingerprintMessageDigest);
+			if(childrenFingerprint != null) {
+				childrenFingerprint.updateMessageDigest(fingerprintMessageDigest);
+			}
+			return Hash.fromDigest(fingerprintMessageDigest);
+		} finally {
+			messageDigestPool.returnMessageDigest(fingerprintMessageDigest);
 		}
-		return Hash.fromDigest(fingerprintMessageDigest);
 	}
 
 }
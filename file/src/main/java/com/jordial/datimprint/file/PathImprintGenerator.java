@@ -16,14 +16,12 @@
 
 package com.jordial.datimprint.file;
 
-import static com.globalmentor.io.Paths.*;
 import static com.globalmentor.java.Conditions.*;
 import static java.nio.file.Files.*;
-import static java.util.Comparator.*;
+import static java.nio.file.LinkOption.*;
 import static java.util.Objects.*;
 import static java.util.concurrent.CompletableFuture.*;
 import static java.util.concurrent.Executors.*;
-import static java.util.function.Function.*;
 import static java.util.stream.Collectors.*;
 import static java.util.stream.Stream.*;
 import static org.zalando.fauxpas.FauxPas.*;
@@ -31,10 +29,9 @@
 import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
-import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.*;
 import java.util.function.*;
 import java.util.stream.Stream;
 
@@ -128,6 +125,70 @@ protected boolean isExcludedPath(@Nonnull final Path path) {
 		return getExcludePathMatchers().stream().anyMatch(pathMatcher -> pathMatcher.matches(path));
 	}
 
+	private final FileHasher fileHasher;
+
+	/** @return The engine for hashing the contents of files. */
+	protected FileHasher getFileHasher() {
+		return fileHasher;
+	}
+
+	private final Optional<ConcurrencyLimiter> foundFileReadLimiter;
+
+	/** @return The limiter, if any, of how many files may be read at the same time. */
+	Optional<ConcurrencyLimiter> findFileReadLimiter() {
+		return foundFileReadLimiter;
+	}
+
+	private final Optional<TraversalLimiter> foundTraversalLimiter;
+
+	/** @return The limiter, if any, of how many path tasks may be in flight at the same time during traversal. */
+	Optional<TraversalLimiter> findTraversalLimiter() {
+		return foundTraversalLimiter;
+	}
+
+	private final int directorySpillThreshold;
+
+	/** @return The maximum number of child fingerprints of a directory to keep in memory before spilling them to a temporary run file. */
+	int getDirectorySpillThreshold() {
+		return directorySpillThreshold;
+	}
+
+	private final Optional<Path> foundSpillDirectory;
+
+	/** @return The directory in which to create temporary run files, or empty if the default temporary directory should be used. */
+	Optional<Path> findSpillDirectory() {
+		return foundSpillDirectory;
+	}
+
+	private final int reorderWindowSize;
+
+	/**
+	 * @return The maximum number of imprints to keep in memory while waiting to produce them in order, either in tree order or in root sections.
+	 * @see Builder#withOrderedProduction(int)
+	 */
+	int getReorderWindowSize() {
+		return reorderWindowSize;
+	}
+
+	private final Optional<ImprintReorderBuffer> foundImprintReorderBuffer;
+
+	/** @return The buffer, if any, for producing imprints in tree order rather than in the order they are generated. */
+	Optional<ImprintReorderBuffer> findImprintReorderBuffer() {
+		return foundImprintReorderBuffer;
+	}
+
+	private final Map<Path, PathImprint> baselineImprintsByPath;
+
+	/**
+	 * Finds the imprint of a path in the baseline imprint, if any, from a previous generation.
+	 * @param path The path for which a baseline imprint should be found.
+	 * @return The baseline imprint for the path, which will not be present if no baseline was configured or the baseline did not include the path.
+	 * @see Builder#withBaselineImprint(PathImprint)
+	 */
+	protected Optional<PathImprint> findBaselineImprint(@Nonnull final Path path) {
+		return Optional.ofNullable(baselineImprintsByPath.get(path));
+	}
+
 	/**
 	 * No-args constructor.
 	 * @implSpec Traversal and imprint generation uses a thread pool that by default has the same number of threads as the number of available processors.
@@ -174,6 +235,14 @@ public PathImprintGenerator(@Nonnull final Executor generateExecutor, @Nonnull f
 		this.foundImprintConsumer = Optional.empty();
 		this.foundListener = Optional.empty();
 		this.excludePathMatchers = Set.of();
+		this.fileHasher = Builder.newDefaultFileHasher();
+		this.foundFileReadLimiter = Optional.empty();
+		this.foundTraversalLimiter = Optional.empty();
+		this.directorySpillThreshold = Builder.DEFAULT_DIRECTORY_SPILL_THRESHOLD;
+		this.foundSpillDirectory = Optional.empty();
+		this.reorderWindowSize = Builder.DEFAULT_REORDER_WINDOW_SIZE;
+		this.foundImprintReorderBuffer = Optional.empty();
+		this.baselineImprintsByPath = Map.of();
 	}
 
 	/**
@@ -191,6 +260,14 @@ public PathImprintGenerator(@Nonnull final Executor generateExecutor, @Nonnull f
 		this.foundImprintConsumer = Optional.of(imprintConsumer);
 		this.foundListener = Optional.empty();
 		this.excludePathMatchers = Set.of();
+		this.fileHasher = Builder.newDefaultFileHasher();
+		this.foundFileReadLimiter = Optional.empty();
+		this.foundTraversalLimiter = Optional.empty();
+		this.directorySpillThreshold = Builder.DEFAULT_DIRECTORY_SPILL_THRESHOLD;
+		this.foundSpillDirectory = Optional.empty();
+		this.reorderWindowSize = Builder.DEFAULT_REORDER_WINDOW_SIZE;
+		this.foundImprintReorderBuffer = Optional.empty();
+		this.baselineImprintsByPath = Map.of();
 	}
 
 	/**
@@ -203,6 +280,17 @@ protected PathImprintGenerator(@Nonnull final Builder builder) {
 		this.foundImprintConsumer = builder.findImprintConsumer();
 		this.foundListener = builder.findListener();
 		this.excludePathMatchers = builder.determineExcludePathMatchers();
+		this.fileHasher = builder.determineFileHasher();
+		this.foundFileReadLimiter = builder.determineMaxConcurrentFileReads().stream().mapToObj(ConcurrencyLimiter::new).findAny();
+		this.foundTraversalLimiter = builder.findMaxInFlightPathTasks().stream().mapToObj(TraversalLimiter::new).findAny();
+		this.directorySpillThreshold = builder.getDirectorySpillThreshold();
+		this.foundSpillDirectory = builder.findSpillDirectory();
+		final OptionalInt foundReorderWindowSize = builder.findReorderWindowSize();
+		this.reorderWindowSize = foundReorderWindowSize.orElse(Builder.DEFAULT_REORDER_WINDOW_SIZE);
+		this.foundImprintReorderBuffer = foundReorderWindowSize.isPresent()
+				? foundImprintConsumer.map(__ -> new ImprintReorderBuffer(this::consumeImprint, FINGERPRINT_ALGORITHM, reorderWindowSize, foundSpillDirectory))
+				: Optional.empty();
+		this.baselineImprintsByPath = builder.determineBaselineImprintsByPath();
 	}
 
 	/** @return A new builder for specifying a new {@link PathImprintGenerator}. */
@@ -212,8 +300,9 @@ public static PathImprintGenerator.Builder builder() {
 
 	/**
 	 * {@inheritDoc}
-	 * @implSpec This implementation shuts down each executor if it is an instance of {@link ExecutorService}. If there was any error that occurred during
-	 *           production, it will be thrown after the executors are shut down.
+	 * @implSpec This implementation shuts down each executor if it is an instance of {@link ExecutorService}. Any imprint reorder buffer and any root section
+	 *           sequencer still in use are then closed, deleting any temporary files. If there was any error that occurred during production, it will be thrown
+	 *           after the executors are shut down.
 	 * @throws IOException If one of the executor services could not be shut down.
 	 * @see #getGenerateExecutor()
 	 * @see #getProduceExecutor()
@@ -258,6 +347,13 @@ public void close() throws IOException {
 		} catch(final InterruptedException interruptedException) {
 			Thread.currentThread().interrupt();
 		}
+		if(foundImprintReorderBuffer.isPresent()) {
+			foundImprintReorderBuffer.get().close();
+		}
+		final Optional<RootSectionSequencer> foundRootSectionSequencer = foundRootSectionSequencerReference.getAndSet(Optional.empty());
+		if(foundRootSectionSequencer.isPresent()) {
+			foundRootSectionSequencer.get().close();
+		}
 		foundProduceErrorReference.get().ifPresent(throwingConsumer(throwable -> { //propagate any production error
 			throw throwable instanceof IOException ? (IOException)throwable : new IOException("Production error.", throwable);
 		}));
@@ -266,11 +362,87 @@ public void close() throws IOException {
 	/** Record of any error encountered while producing. A present value suspends production and causes the exception to be thrown during {@link #close()}. */
 	private final AtomicReference<Optional<Throwable>> foundProduceErrorReference = new AtomicReference<>(Optional.empty());
 
+	/** The sequencer, if any, arranging the imprints of several roots being produced into sections. */
+	private final AtomicReference<Optional<RootSectionSequencer>> foundRootSectionSequencerReference = new AtomicReference<>(Optional.empty());
+
+	/**
+	 * Asynchronously generates imprints of several paths at the same time, each of which must be a regular file or a directory, and then produces them to the
+	 * imprint consumer, if there is one, as a contiguous section for each path in the order given. Each section begins with the real path of the root being
+	 * passed to the base path consumer, followed by the imprints of the root and its descendants.
+	 * @apiNote This method allows trees on separate devices to be traversed in parallel while producing the same sections as traversing each tree in turn.
+	 * @implSpec This implementation converts each path to its real path in the same manner as {@link #generateImprintAsync(Path)}. If no real path is inside
+	 *           another, all roots are traversed at the same time; the imprints of each root are held, spilling to temporary files in the spill directory if
+	 *           there are more than the reorder window size, until the sections of all previous roots are finished. Otherwise each root is traversed only once
+	 *           the section of the previous root is finished.
+	 * @implSpec If there is no imprint consumer, no sections are produced and the base path consumer is not called.
+	 * @implNote Sections are only guaranteed to be contiguous if the produce executor performs tasks in the order they are submitted, as does the default
+	 *           produce executor.
+	 * @param paths The paths for which imprints should be produced.
+	 * @param basePathConsumer The consumer to which the real path of each root is produced at the beginning of its section.
+	 * @return The future imprints of the paths, in the same order as the paths.
+	 * @throws IllegalArgumentException if no paths are given.
+	 * @throws IllegalStateException if imprints of several paths are already being produced.
+	 * @throws IOException if there is a problem accessing the file system.
+	 * @see #findImprintConsumer()
+	 * @see #getProduceExecutor()
+	 * @see Builder#withSpillDirectory(Path)
+	 */
+	public CompletableFuture<List<PathImprint>> produceImprintsAsync(@Nonnull final List<Path> paths, @Nonnull final Consumer<Path> basePathConsumer)
+			throws IOException {
+		checkArgument(!paths.isEmpty(), "At least one path is required.");
+		requireNonNull(basePathConsumer);
+		final List<CompletableFuture<Map.Entry<Path, BasicFileAttributes>>> futureRealPathsAttributes = paths.stream().map(this::readRealPathAttributesAsync)
+				.collect(toUnmodifiableList());
+		return allOf(futureRealPathsAttributes.toArray(CompletableFuture[]::new)).thenCompose(throwingFunction(realPathsAttributesRead -> {
+			final List<Map.Entry<Path, BasicFileAttributes>> realPathsAttributes = futureRealPathsAttributes.stream().map(CompletableFuture::join)
+					.collect(toUnmodifiableList());
+			final List<Path> roots = realPathsAttributes.stream().map(Map.Entry::getKey).collect(toUnmodifiableList());
+			final List<CompletableFuture<PathImprint>> futureRootImprints = new ArrayList<>(roots.size());
+			if(findImprintConsumer().isEmpty()) { //without production there is nothing to arrange into sections
+				for(final Map.Entry<Path, BasicFileAttributes> realPathAttributes : realPathsAttributes) {
+					futureRootImprints.add(produceImprintAsync(realPathAttributes.getKey(), realPathAttributes.getValue()));
+				}
+			} else {
+				final RootSectionSequencer rootSectionSequencer = new RootSectionSequencer(roots, basePathConsumer, findImprintConsumer().get(), FINGERPRINT_ALGORITHM,
+						getReorderWindowSize(), findSpillDirectory());
+				final Optional<RootSectionSequencer> foundRootSectionSequencer = Optional.of(rootSectionSequencer);
+				checkState(foundRootSectionSequencerReference.compareAndSet(Optional.empty(), foundRootSectionSequencer),
+						"Imprints of several paths already being produced.");
+				rootSectionSequencer.getAllSectionsFinishedFuture().whenComplete(throwingBiConsumer((__, throwable) -> {
+					foundRootSectionSequencerReference.compareAndSet(foundRootSectionSequencer, Optional.empty());
+					rootSectionSequencer.close();
+				}));
+				produceAsync(rootSectionSequencer::begin);
+				final boolean isAnyRootNested = roots.stream()
+						.anyMatch(root -> roots.stream().filter(otherRoot -> otherRoot != root).anyMatch(otherRoot -> root.startsWith(otherRoot)));
+				for(int i = 0; i < roots.size(); i++) {
+					final Map.Entry<Path, BasicFileAttributes> realPathAttributes = realPathsAttributes.get(i);
+					if(i == 0 || !isAnyRootNested) {
+						futureRootImprints.add(produceImprintAsync(realPathAttributes.getKey(), realPathAttributes.getValue()));
+					} else { //wait for the previous root to be generated and its section produced, so that the imprints of nested roots are not confused
+						final CompletableFuture<Void> futurePreviousSectionFinished = rootSectionSequencer.getSectionFinishedFuture(i - 1);
+						futureRootImprints.add(futureRootImprints.get(i - 1).thenCompose(previousRootImprint -> futurePreviousSectionFinished)
+								.thenCompose(throwingFunction(previousSectionFinished -> produceImprintAsync(realPathAttributes.getKey(), realPathAttributes.getValue()))));
+					}
+				}
+			}
+			final CompletableFuture<List<PathImprint>> futureRootImprintList = allOf(futureRootImprints.toArray(CompletableFuture[]::new))
+					.thenApply(rootImprintsGenerated -> futureRootImprints.stream().map(CompletableFuture::join).collect(toUnmodifiableList()));
+			//if any root could not be generated, its section will never be finished
+			return futureRootImprintList.whenComplete((rootImprints, throwable) -> {
+				if(throwable != null) {
+					foundRootSectionSequencerReference.get().ifPresent(rootSectionSequencer -> rootSectionSequencer.abort(throwable));
+				}
+			});
+		}));
+	}
+
 	/**
 	 * Asynchronously generates an imprint of a single path, which must be a regular file or a directory, and then produces it to the imprint consumer, if there
 	 * is one. Because a directory imprint fingerprint is formed from the imprints of all its children and so on, this method ultimately involves asynchronous
 	 * recursion to all the descendants of any directory.
-	 * @implSpec This implementation delegates to {@link #generateImprintAsync(Path)}.
+	 * @implSpec This implementation converts the path to its real path in the same manner as {@link #generateImprintAsync(Path)}, and then delegates to
+	 *           {@link #produceImprintAsync(Path, BasicFileAttributes)}.
 	 * @param path The path for which an imprint should be produced.
 	 * @return A future imprint of the path.
 	 * @throws IOException if there is a problem accessing the file system.
@@ -278,47 +450,206 @@ public void close() throws IOException {
 	 * @see #getProduceExecutor()
 	 */
 	public CompletableFuture<PathImprint> produceImprintAsync(@Nonnull final Path path) throws IOException {
-		final CompletableFuture<PathImprint> futureGeneratedImprint = generateImprintAsync(path);
-		return findImprintConsumer().map(imprintConsumer -> futureGeneratedImprint.thenApply(imprint -> { //only produce if there is a consumer
-			if(foundProduceErrorReference.get().isEmpty()) { //skip production if there is any error in effect
-				runAsync(() -> imprintConsumer.accept(imprint), getProduceExecutor()).exceptionally(throwable -> {
-					foundProduceErrorReference.compareAndSet(Optional.empty(), Optional.of(throwable)); //keep track of the first error that occurs
-					return null;
-				});
+		return readRealPathAttributesAsync(path)
+				.thenCompose(throwingFunction(realPathAttributes -> produceImprintAsync(realPathAttributes.getKey(), realPathAttributes.getValue())));
+	}
+
+	/**
+	 * Asynchronously generates an imprint of a single path, which must be a regular file or a directory, using attributes already read from the file system,
+	 * and then produces it to the imprint consumer, if there is one.
+	 * @implSpec This implementation delegates to {@link #generateImprintAsync(Path, BasicFileAttributes)}.
+	 * @implSpec If imprints are produced in tree order, the path is declared as expected to the imprint reorder buffer before generation begins.
+	 * @param path The real path for which an imprint should be produced.
+	 * @param attributes The attributes of the path.
+	 * @return A future imprint of the path.
+	 * @throws IOException if there is a problem accessing the file system.
+	 * @see #findImprintConsumer()
+	 * @see #getProduceExecutor()
+	 * @see #findImprintReorderBuffer()
+	 */
+	CompletableFuture<PathImprint> produceImprintAsync(@Nonnull final Path path, @Nonnull final BasicFileAttributes attributes) throws IOException {
+		final Optional<ImprintReorderBuffer> foundReorderBuffer = findImprintReorderBuffer();
+		if(foundReorderBuffer.isEmpty()) {
+			return produceImprintAsync(generateImprintAsync(path, attributes));
+		}
+		final ImprintReorderBuffer reorderBuffer = foundReorderBuffer.get();
+		reorderBuffer.expect(path);
+		final CompletableFuture<PathImprint> futureGeneratedImprint;
+		try {
+			futureGeneratedImprint = generateImprintAsync(path, attributes);
+		} catch(final IOException | RuntimeException exception) {
+			reorderBuffer.abandon(path);
+			throw exception;
+		}
+		return futureGeneratedImprint.whenComplete((imprint, throwable) -> {
+			if(throwable != null) { //don't hold back the imprints of other paths waiting for an imprint that will never be generated
+				reorderBuffer.abandon(path);
+				produceAsync(throwingRunnable(reorderBuffer::consume));
+			} else {
+				produceAsync(throwingRunnable(() -> {
+					reorderBuffer.offer(imprint);
+					reorderBuffer.consume();
+				}));
 			}
+		});
+	}
+
+	/**
+	 * Produces an imprint to the imprint consumer, if there is one, after it has been generated.
+	 * @param futureGeneratedImprint The future imprint being generated.
+	 * @return A future imprint of the path.
+	 * @see #findImprintConsumer()
+	 * @see #getProduceExecutor()
+	 */
+	private CompletableFuture<PathImprint> produceImprintAsync(@Nonnull final CompletableFuture<PathImprint> futureGeneratedImprint) {
+		return findImprintConsumer().map(imprintConsumer -> futureGeneratedImprint.thenApply(imprint -> { //only produce if there is a consumer
+			final Runnable consumption = prepareConsumption(imprintConsumer, imprint); //prepare in the generating thread
+			produceAsync(() -> consumeImprint(imprint, consumption));
 			return imprint;
 		})).orElse(futureGeneratedImprint); //otherwise the future generated imprint is all we need
 	}
 
+	/**
+	 * Prepares the consumption of an imprint by an imprint consumer.
+	 * @implSpec If the imprint consumer is a {@link PreparedImprintConsumer}, the imprint is prepared immediately in the calling thread.
+	 * @param imprintConsumer The imprint consumer.
+	 * @param imprint The imprint to be consumed.
+	 * @return The task for passing the imprint to the imprint consumer.
+	 */
+	private static Runnable prepareConsumption(@Nonnull final Consumer<PathImprint> imprintConsumer, @Nonnull final PathImprint imprint) {
+		if(imprintConsumer instanceof PreparedImprintConsumer<?> preparedImprintConsumer) {
+			return preparedConsumption(preparedImprintConsumer, imprint);
+		}
+		return () -> imprintConsumer.accept(imprint);
+	}
+
+	/**
+	 * Prepares an imprint for a prepared imprint consumer.
+	 * @param <P> The type of prepared imprint.
+	 * @param preparedImprintConsumer The prepared imprint consumer.
+	 * @param imprint The imprint to be consumed.
+	 * @return The task for passing the imprint and its preparation to the imprint consumer.
+	 */
+	private static <P> Runnable preparedConsumption(@Nonnull final PreparedImprintConsumer<P> preparedImprintConsumer, @Nonnull final PathImprint imprint) {
+		final P prepared = preparedImprintConsumer.prepare(imprint);
+		return () -> preparedImprintConsumer.accept(imprint, prepared);
+	}
+
+	/**
+	 * Passes an imprint being produced to the imprint consumer, if there is one.
+	 * @implSpec If the imprints of several roots are being produced, the imprint is passed to the root section sequencer rather than directly to the imprint
+	 *           consumer.
+	 * @param imprint The imprint being produced.
+	 * @see #findImprintConsumer()
+	 * @see #produceImprintsAsync(List, Consumer)
+	 */
+	private void consumeImprint(@Nonnull final PathImprint imprint) {
+		findImprintConsumer().ifPresent(imprintConsumer -> consumeImprint(imprint, () -> imprintConsumer.accept(imprint)));
+	}
+
+	/**
+	 * Passes an imprint being produced to the imprint consumer using a task already prepared.
+	 * @implSpec If the imprints of several roots are being produced, the imprint is passed to the root section sequencer, which will only use the given task if
+	 *           the imprint can be consumed immediately.
+	 * @param imprint The imprint being produced.
+	 * @param consumption The task for passing the imprint to the imprint consumer.
+	 * @see #produceImprintsAsync(List, Consumer)
+	 */
+	private void consumeImprint(@Nonnull final PathImprint imprint, @Nonnull final Runnable consumption) {
+		final Optional<RootSectionSequencer> foundRootSectionSequencer = foundRootSectionSequencerReference.get();
+		if(foundRootSectionSequencer.isPresent()) {
+			foundRootSectionSequencer.get().accept(imprint, consumption);
+		} else {
+			consumption.run();
+		}
+	}
+
+	/**
+	 * Asynchronously performs some production task using the produce executor, unless production has been suspended because of an error. Any error during
+	 * production is recorded and suspends further production.
+	 * @implNote The task is passed directly to the produce executor rather than by using {@link CompletableFuture#runAsync(Runnable, Executor)}, as nothing waits
+	 *           on an individual production task and the overhead of a future for every imprint is significant for large numbers of small files.
+	 * @param production The production task to perform.
+	 * @see #getProduceExecutor()
+	 */
+	private void produceAsync(@Nonnull final Runnable production) {
+		if(foundProduceErrorReference.get().isEmpty()) { //skip production if there is any error in effect
+			getProduceExecutor().execute(() -> {
+				try {
+					production.run();
+				} catch(final Throwable throwable) {
+					foundProduceErrorReference.compareAndSet(Optional.empty(), Optional.of(throwable)); //keep track of the first error that occurs
+					//production is suspended, so don't leave any roots waiting for sections that will never be finished
+					foundRootSectionSequencerReference.get().ifPresent(rootSectionSequencer -> rootSectionSequencer.abort(throwable));
+				}
+			});
+		}
+	}
+
 	/**
 	 * Asynchronously generates an imprint of a single path, which must be a regular file or a directory. Any descendant imprints will be produced, but the path
 	 * itself will not be produced.
 	 * @apiNote This method involves asynchronous recursion to all the descendants of the directory.
 	 * @implSpec This implementation assumes the path exists, and will throw a {@link FileNotFoundException} if it does not.
+	 * @implSpec This implementation converts the path to its real path without following links and reads the path attributes asynchronously, and then
+	 *           delegates to {@link #generateImprintAsync(Path, BasicFileAttributes)}. This is the only place the real path is determined; paths of descendants
+	 *           are derived from the directory listing and are thus already real paths.
 	 * @param path The path for which an imprint should be generated.
 	 * @return A future imprint of the path.
 	 * @throws IOException if there is a problem accessing the file system.
+	 * @see Path#toRealPath(LinkOption...)
 	 */
 	public CompletableFuture<PathImprint> generateImprintAsync(@Nonnull final Path path) throws IOException {
+		return readRealPathAttributesAsync(path)
+				.thenCompose(throwingFunction(realPathAttributes -> generateImprintAsync(realPathAttributes.getKey(), realPathAttributes.getValue())));
+	}
+
+	/**
+	 * Asynchronously converts a path to its real path without following links, and reads the attributes of the real path.
+	 * @apiNote Reading the attributes asynchronously could cause extra overhead, but it allows all the I/O to be asynchronous.
+	 * @implSpec This implementation uses the executor returned by {@link #getGenerateExecutor()}.
+	 * @param path The path to convert.
+	 * @return The future real path, mapped to the attributes of the real path.
+	 * @see Path#toRealPath(LinkOption...)
+	 */
+	private CompletableFuture<Map.Entry<Path, BasicFileAttributes>> readRealPathAttributesAsync(@Nonnull final Path path) {
+		return supplyAsync(throwingSupplier(() -> {
+			final Path realPath = path.toRealPath(NOFOLLOW_LINKS);
+			return Map.entry(realPath, readAttributes(realPath, BasicFileAttributes.class));
+		}), getGenerateExecutor());
+	}
+
+	/**
+	 * Asynchronously generates an imprint of a single path, which must be a regular file or a directory, using attributes already read from the file system.
+	 * Any descendant imprints will be produced, but the path itself will not be produced.
+	 * @apiNote This method involves asynchronous recursion to all the descendants of the directory.
+	 * @apiNote Passing the attributes read during traversal avoids querying the file system again for the modification timestamp and the type of path.
+	 * @implSpec The path is assumed to be a real path, and will not be converted using {@link Path#toRealPath(LinkOption...)}.
+	 * @implSpec If a baseline imprint is present for a regular file and has the same modification timestamp, the file contents will not be read; instead the
+	 *           content fingerprint of the baseline imprint will be reused. Directory fingerprints are always generated from their children.
+	 * @param path The real path for which an imprint should be generated.
+	 * @param attributes The attributes of the path.
+	 * @return A future imprint of the path.
+	 * @throws IOException if there is a problem accessing the file system.
+	 */
+	CompletableFuture<PathImprint> generateImprintAsync(@Nonnull final Path path, @Nonnull final BasicFileAttributes attributes) throws IOException {
 		getLogger().trace("Generating imprint for path `{}`.", path);
 		findListener().ifPresent(listener -> listener.onGenerateImprint(path));
-		//Checking the modification timestamp asynchronously could cause extra overhead, but it then checks the path type
-		//in the same thread and most importantly allows all the I/O to be asynchronous.
-		final CompletableFuture<FileTime> futureContentModifiedAt = supplyAsync(throwingSupplier(() -> getLastModifiedTime(path)), getGenerateExecutor());
-		return futureContentModifiedAt.thenCompose(throwingFunction(contentModifiedAt -> {
-			if(isRegularFile(path)) {
-				final CompletableFuture<Hash> futureContentFingerprint = generateFileContentFingerprintAsync(path);
-				return futureContentFingerprint
-						.thenApply(throwingFunction(contentFingerprint -> PathImprint.forFile(path, contentModifiedAt, contentFingerprint, FINGERPRINT_ALGORITHM)));
-			} else if(isDirectory(path)) {
-				final CompletableFuture<DirectoryContentChildrenFingerprints> futureContentChildrenFingerprints = generateDirectoryContentChildrenFingerprintsAsync(
-						path);
-				return futureContentChildrenFingerprints.thenApply(throwingFunction(contentChildrenFingerprints -> PathImprint.forDirectory(path, contentModifiedAt,
-						contentChildrenFingerprints.contentFingerprint(), contentChildrenFingerprints.childrenFingerprint(), FINGERPRINT_ALGORITHM)));
-			} else {
-				throw new UnsupportedOperationException("Unsupported path `%s` is neither a regular file or a directory.".formatted(path));
-			}
-		}));
+		final FileTime contentModifiedAt = attributes.lastModifiedTime();
+		if(attributes.isRegularFile()) {
+			//reuse the content fingerprint from any baseline imprint if the file does not appear to have been modified since the baseline
+			final CompletableFuture<Hash> futureContentFingerprint = findBaselineImprint(path)
+					.filter(baselineImprint -> baselineImprint.contentModifiedAt().equals(contentModifiedAt)).map(PathImprint::contentFingerprint)
+					.map(CompletableFuture::completedFuture).orElseGet(throwingSupplier(() -> generateFileContentFingerprintAsync(path)));
+			return futureContentFingerprint
+					.thenApply(contentFingerprint -> PathImprint.forRealFile(path, contentModifiedAt, contentFingerprint, FINGERPRINT_ALGORITHM));
+		} else if(attributes.isDirectory()) {
+			final CompletableFuture<DirectoryContentChildrenFingerprints> futureContentChildrenFingerprints = generateDirectoryContentChildrenFingerprintsAsync(path);
+			return futureContentChildrenFingerprints.thenApply(contentChildrenFingerprints -> PathImprint.forRealDirectory(path, contentModifiedAt,
+					contentChildrenFingerprints.contentFingerprint(), contentChildrenFingerprints.childrenFingerprint(), FINGERPRINT_ALGORITHM));
+		} else {
+			throw new UnsupportedOperationException("Unsupported path `%s` is neither a regular file or a directory.".formatted(path));
+		}
 	}
 
 	/**
@@ -332,45 +663,76 @@ public CompletableFuture<PathImprint> generateImprintAsync(@Nonnull final Path p
 	 *          entire directory listing to complete, and as production occurs in a separate thread, this could theoretically complete generation and production
 	 *          of children more quickly, freeing resources for other children without needing to wait until the directory listing is finished.
 	 * @implSpec This implementation uses the executor returned by {@link #getGenerateExecutor()} for traversal.
-	 * @implSpec This implementation delegates to {@link #produceImprintAsync(Path)} to produce each child imprint.
+	 * @implSpec If there is a traversal limiter, the directory is listed only after a traversal permit is granted. The permit is released as soon as the
+	 *           listing is complete and the child imprints have been scheduled, before any child imprint is generated.
+	 * @implSpec This implementation reads the attributes of each child only once, and delegates to {@link #produceImprintAsync(Path, BasicFileAttributes)} to
+	 *           produce each child imprint using those attributes.
 	 * @implSpec This implementation ignores any configured exclude paths and/or globs determined by calling {@link #isExcludedPath(Path)}.
 	 * @implSpec Any child directories that are hidden and marked as DOS "system" directories are ignored. This would prevent an {@link AccessDeniedException}
 	 *           when trying to access the Windows <code>System Volume Information</code> directory, but this directory should already be skipped because it is
 	 *           unreadable. More importantly this will ignore <code>$RECYCLE.BIN</code> on the Windows file systems. Note that hidden+system <em>files</em> are
 	 *           not ignored unless they are unreadable.
-	 * @implNote The approach used in this method to detect hidden directories only works from Java 13 onwards because of bug
-	 *           <a href="https://bugs.openjdk.org/browse/JDK-8215467">JDK-8215467</a>.
+	 * @implNote On a DOS file system such as on Windows, the returned {@link BasicFileAttributes} implementation also provides the {@link DosFileAttributes},
+	 *           so detecting hidden+system directories requires no additional file system access.
 	 * @param directory The path for which an imprint should be produced.
 	 * @return A map of all future imprints for each child mapped to the path of each child.
 	 * @throws IOException if there is a problem traversing the directory or reading file contents.
 	 */
 	CompletableFuture<Map<Path, CompletableFuture<PathImprint>>> produceChildImprintsAsync(@Nonnull final Path directory) throws IOException {
-		return supplyAsync(throwingSupplier(() -> {
-			findListener().ifPresent(listener -> listener.onEnterDirectory(directory));
-			try (final Stream<Path> childPaths = list(directory)) {
-				return childPaths.filter(throwingPredicate(childPath -> { //skip unreadable paths
-					if(!isReadable(childPath)) {
-						findListener().ifPresent(listener -> listener.onSkipUnreadablePath(childPath));
-						return false;
-					}
-					return true;
-				})).filter(childPath -> { //skip excluded paths
-					if(isExcludedPath(childPath)) {
-						findListener().ifPresent(listener -> listener.onSkipExcludedPath(childPath));
-						return false;
-					}
-					return true;
-				}).filter(throwingPredicate(childPath -> { //completely ignore DOS hidden+system directories
-					if(isDirectory(childPath) && isHidden(childPath)) { //isHidden() only works for directories from Java 13 onwards; see JDK-8215467
-						try {
-							final DosFileAttributes dosFileAttributes = readAttributes(childPath, DosFileAttributes.class);
-							return !dosFileAttributes.isSystem(); //only hidden+system directories are ignored
-						} catch(final UnsupportedOperationException unsupportedOperationException) {
-							//not an error condition; simply don't filter out the hidden directory if it isn't on a DOS file system
+		return traverseChildrenAsync(directory, childPathsAttributes -> childPathsAttributes.collect(toUnmodifiableMap(Map.Entry::getKey,
+				throwingFunction(childPathAttributes -> produceImprintAsync(childPathAttributes.getKey(), childPathAttributes.getValue())))));
+	}
+
+	/**
+	 * Asynchronously lists the immediate children of a directory that should be included in the directory imprint, passing them to the given handler. Children
+	 * that are not readable are skipped, reported to {@link Listener#onSkipUnreadablePath(Path)}. Excluded paths are also skipped, reported to
+	 * {@link Listener#onSkipExcludedPath(Path)}.
+	 * @implSpec This implementation uses the executor returned by {@link #getGenerateExecutor()} for traversal.
+	 * @implSpec If there is a traversal limiter, the directory is listed only after a traversal permit is granted. The permit is released as soon as the
+	 *           handler returns.
+	 * @implSpec This implementation ignores any configured exclude paths and/or globs determined by calling {@link #isExcludedPath(Path)}, as well as any child
+	 *           directories that are hidden and marked as DOS "system" directories.
+	 * @implSpec If imprints are produced in tree order, the directory is marked as being listed in the imprint reorder buffer until the handler returns, so
+	 *           that no imprint inside the directory is produced before all the children have been declared as expected.
+	 * @param <T> The type of result produced by the handler.
+	 * @param directory The directory the children of which should be listed.
+	 * @param childPathsAttributesHandler The handler of the child paths, each mapped to the attributes of the child path, which must consume the stream before
+	 *          returning.
+	 * @return The future result of the handler.
+	 * @throws IOException if there is a problem traversing the directory.
+	 * @see #produceChildImprintsAsync(Path)
+	 */
+	private <T> CompletableFuture<T> traverseChildrenAsync(@Nonnull final Path directory,
+			@Nonnull final Function<Stream<Map.Entry<Path, BasicFileAttributes>>, T> childPathsAttributesHandler) throws IOException {
+		return TraversalLimiter.acquireAsync(findTraversalLimiter()).thenApplyAsync(throwingFunction(traversalPermit -> {
+			try (traversalPermit) {
+				findListener().ifPresent(listener -> listener.onEnterDirectory(directory));
+				findImprintReorderBuffer().ifPresent(reorderBuffer -> reorderBuffer.beginListing(directory));
+				try (final Stream<Path> childPaths = list(directory)) {
+					return childPathsAttributesHandler.apply(childPaths.filter(throwingPredicate(childPath -> { //skip unreadable paths
+						if(!isReadable(childPath)) {
+							findListener().ifPresent(listener -> listener.onSkipUnreadablePath(childPath));
+							return false;
 						}
-					}
-					return true;
-				})).collect(toUnmodifiableMap(identity(), throwingFunction(this::produceImprintAsync)));
+						return true;
+					})).filter(childPath -> { //skip excluded paths
+						if(isExcludedPath(childPath)) {
+							findListener().ifPresent(listener -> listener.onSkipExcludedPath(childPath));
+							return false;
+						}
+						return true;
+					}).map(throwingFunction(childPath -> Map.entry(childPath, readAttributes(childPath, BasicFileAttributes.class))))
+							.filter(childPathAttributes -> { //completely ignore DOS hidden+system directories
+								//only hidden+system directories are ignored; simply don't filter out hidden directories if they aren't on a DOS file system
+								return !(childPathAttributes.getValue() instanceof DosFileAttributes dosFileAttributes && dosFileAttributes.isDirectory()
+										&& dosFileAttributes.isHidden() && dosFileAttributes.isSystem());
+							}));
+				} finally {
+					findImprintReorderBuffer().ifPresent(reorderBuffer -> {
+						reorderBuffer.endListing(directory);
+						produceAsync(throwingRunnable(reorderBuffer::consume));
+					});
+				}
 			}
 		}), getGenerateExecutor());
 	}
@@ -378,6 +740,10 @@ CompletableFuture<Map<Path, CompletableFuture<PathImprint>>> produceChildImprint
 	/**
 	 * Generates the fingerprint of a file's contents asynchronously. Events are sent before and after fingerprint generation.
 	 * @implSpec This implementation uses the executor returned by {@link #getGenerateExecutor()}.
+	 * @implSpec This implementation hashes the file contents using the file hasher returned by {@link #getFileHasher()}.
+	 * @implSpec If there is a traversal limiter, the file is hashed only after a traversal permit is granted, and the permit is released when hashing is
+	 *           finished.
+	 * @implSpec If there is a file read limiter, this method will wait until a file read is permitted before hashing the file and notifying the listener.
 	 * @param file The file for which a fingerprint should be generated of the contents.
 	 * @return A future fingerprint of the file contents.
 	 * @throws IOException if there is a problem reading the content.
@@ -385,12 +751,19 @@ CompletableFuture<Map<Path, CompletableFuture<PathImprint>>> produceChildImprint
 	 * @see Listener#afterGenerateFileContentFingerprint(Path)
 	 */
 	CompletableFuture<Hash> generateFileContentFingerprintAsync(@Nonnull final Path file) throws IOException {
-		return supplyAsync(throwingSupplier(() -> {
-			findListener().ifPresent(listener -> listener.beforeGenerateFileContentFingerprint(file));
-			try {
-				return FINGERPRINT_ALGORITHM.hash(file);
-			} finally { //even if there was an error, at least note we're finished generating the file content fingerprint
-				findListener().ifPresent(listener -> listener.afterGenerateFileContentFingerprint(file));
+		return TraversalLimiter.acquireAsync(findTraversalLimiter()).thenApplyAsync(throwingFunction(traversalPermit -> {
+			try (traversalPermit) {
+				final ConcurrencyLimiter.Permit fileReadPermit = ConcurrencyLimiter.acquire(findFileReadLimiter());
+				try {
+					findListener().ifPresent(listener -> listener.beforeGenerateFileContentFingerprint(file));
+					try {
+						return getFileHasher().hash(file);
+					} finally { //even if there was an error, at least note we're finished generating the file content fingerprint
+						findListener().ifPresent(listener -> listener.afterGenerateFileContentFingerprint(file));
+					}
+				} finally {
+					fileReadPermit.release();
+				}
 			}
 		}), getGenerateExecutor());
 	}
@@ -399,30 +772,49 @@ CompletableFuture<Hash> generateFileContentFingerprintAsync(@Nonnull final Path
 	 * Generates fingerprints of a directory's child contents and children asynchronously. Because each child directory imprint fingerprint depends on the
 	 * fingerprints of its children, this method ultimately includes recursive traversal of all descendants.
 	 * @apiNote This method inherently involves production of child imprints during generation of the directory contents fingerprint.
-	 * @implSpec This method generates child imprints by delegating to {@link #produceChildImprintsAsync(Path)}.
+	 * @implSpec This method lists the children in the same manner as {@link #produceChildImprintsAsync(Path)}, but rather than retaining the child imprints,
+	 *           the fingerprints of each child are passed to a {@link DirectoryFingerprintAggregator} as soon as the child imprint is generated. Children beyond
+	 *           the directory spill threshold are spilled to temporary run files in the spill directory, if any, and merged in filename order.
 	 * @implSpec This implementation uses the executor returned by {@link #getGenerateExecutor()}.
+	 * @implNote The message digests used for the fingerprints are borrowed from a pool confined to the thread combining the child fingerprints.
+	 * @see #getDirectorySpillThreshold()
+	 * @see #findSpillDirectory()
 	 * @param directory The directory for which a fingerprint should be generated of the children.
 	 * @return A future fingerprint of the directory content fingerprints and children fingerprints.
 	 * @throws IOException if there is a problem traversing the directory or reading file contents.
 	 */
 	CompletableFuture<DirectoryContentChildrenFingerprints> generateDirectoryContentChildrenFingerprintsAsync(@Nonnull final Path directory) throws IOException {
-		return produceChildImprintsAsync(directory) //**important** --- join the child values asynchronously to prevent a deadlock in a chain when threads are exhausted
-				.thenCompose(childImprintFuturesByPath -> {
-					final CompletableFuture<?>[] childImprintFutures = childImprintFuturesByPath.values().toArray(CompletableFuture[]::new);
-					//wait for all child futures to finish, and then hash their fingerprints in deterministic order
-					return allOf(childImprintFutures).thenApply(__ -> {
-						final MessageDigest contentFingerprintMessageDigest = FINGERPRINT_ALGORITHM.newMessageDigest();
-						final MessageDigest childrenFingerprintMessageDigest = FINGERPRINT_ALGORITHM.newMessageDigest();
-						//sort children to ensure deterministic hashing, but we only need to sort by filename as all children are in the same directory
-						childImprintFuturesByPath.entrySet().stream().sorted(comparing(Map.Entry::getKey, filenameComparator())).map(Map.Entry::getValue)
-								.map(CompletableFuture::join).forEach(childImprint -> {
-									childImprint.contentFingerprint().updateMessageDigest(contentFingerprintMessageDigest);
-									childImprint.fingerprint().updateMessageDigest(childrenFingerprintMessageDigest);
-								});
-						return new DirectoryContentChildrenFingerprints(Hash.fromDigest(contentFingerprintMessageDigest),
-								Hash.fromDigest(childrenFingerprintMessageDigest));
-					});
+		final DirectoryFingerprintAggregator aggregator = new DirectoryFingerprintAggregator(FINGERPRINT_ALGORITHM, getDirectorySpillThreshold(),
+				findSpillDirectory());
+		final CompletableFuture<Void> futureChildrenAggregated = new CompletableFuture<>();
+		final AtomicLong pendingCount = new AtomicLong(1); //the listing itself is pending until all children have been scheduled
+		final Runnable onPendingFinished = () -> {
+			if(pendingCount.decrementAndGet() == 0) {
+				futureChildrenAggregated.complete(null);
+			}
+		};
+		//**important** --- aggregate the child values asynchronously to prevent a deadlock in a chain when threads are exhausted
+		return traverseChildrenAsync(directory, childPathsAttributes -> {
+			childPathsAttributes.forEach(throwingConsumer(childPathAttributes -> {
+				pendingCount.incrementAndGet();
+				produceImprintAsync(childPathAttributes.getKey(), childPathAttributes.getValue()).whenComplete((childImprint, throwable) -> {
+					if(throwable != null) {
+						futureChildrenAggregated.completeExceptionally(throwable);
+					} else {
+						try {
+							aggregator.add(childImprint);
+						} catch(final IOException | RuntimeException exception) { //the aggregator may have already been closed if another child failed
+							futureChildrenAggregated.completeExceptionally(exception);
+						}
+					}
+					onPendingFinished.run();
 				});
+			}));
+			return null;
+		}).thenCompose(__ -> {
+			onPendingFinished.run();
+			return futureChildrenAggregated;
+		}).thenApply(throwingFunction(__ -> aggregator.finish())).whenComplete(throwingBiConsumer((__, throwable) -> aggregator.close()));
 	}
 
 	/**
@@ -446,6 +838,69 @@ record DirectoryContentChildrenFingerprints(@Nonnull Hash contentFingerprint, @N
 
 	}
 
+	/**
+	 * Imprint consumer that allows some of the work of consuming each imprint, such as formatting it for output, to be performed in advance in the thread that
+	 * generated the imprint. Because imprints are produced one at a time, this lessens the work performed by the thread producing imprints.
+	 * <p>
+	 * Implementations of {@link #prepare(PathImprint)} <strong>must be thread safe</strong>, as the method may be called concurrently.
+	 * </p>
+	 * @apiNote Not every imprint is necessarily prepared in advance; for example imprints held to be produced in order may instead be prepared immediately before
+	 *          being consumed, by calling {@link #accept(PathImprint)}.
+	 * @param <P> The type of preparation of each imprint.
+	 * @author Garret Wilson
+	 */
+	public interface PreparedImprintConsumer<P> extends Consumer<PathImprint> {
+
+		/**
+		 * Prepares an imprint to be consumed. This method may be called in any thread.
+		 * @param imprint The imprint that will be consumed.
+		 * @return The preparation of the imprint, to be passed to {@link #accept(PathImprint, Object)}.
+		 */
+		P prepare(@Nonnull PathImprint imprint);
+
+		/**
+		 * Consumes an imprint that has already been prepared.
+		 * @param imprint The imprint being produced.
+		 * @param prepared The preparation of the imprint returned by {@link #prepare(PathImprint)}.
+		 */
+		void accept(@Nonnull PathImprint imprint, P prepared);
+
+		/**
+		 * {@inheritDoc}
+		 * @implSpec This implementation prepares the imprint and then consumes it immediately in the calling thread.
+		 * @see #prepare(PathImprint)
+		 * @see #accept(PathImprint, Object)
+		 */
+		@Override
+		default void accept(@Nonnull final PathImprint imprint) {
+			accept(imprint, prepare(imprint));
+		}
+
+		/**
+		 * Creates a prepared imprint consumer from functions.
+		 * @param <P> The type of preparation of each imprint.
+		 * @param preparer The thread-safe function for preparing each imprint.
+		 * @param consumer The consumer of each imprint and its preparation.
+		 * @return A new prepared imprint consumer delegating to the given functions.
+		 */
+		static <P> PreparedImprintConsumer<P> of(@Nonnull final Function<PathImprint, P> preparer, @Nonnull final BiConsumer<PathImprint, P> consumer) {
+			requireNonNull(preparer);
+			requireNonNull(consumer);
+			return new PreparedImprintConsumer<>() {
+				@Override
+				public P prepare(final PathImprint imprint) {
+					return preparer.apply(imprint);
+				}
+
+				@Override
+				public void accept(final PathImprint imprint, final P prepared) {
+					consumer.accept(imprint, prepared);
+				}
+			};
+		}
+
+	}
+
 	/**
 	 * Listens for events from the generator.
 	 * <p>
@@ -523,7 +978,29 @@ public enum ExecutorType {
 			 * Indicates using a LIFO fork/join pool.
 			 * @see ForkJoinPool
 			 */
-			forkjoinlifo
+			forkjoinlifo,
+			/**
+			 * Indicates starting a new virtual thread for each task. Unless otherwise specified, the number of files read at the same time will be limited to
+			 * {@link Builder#DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_FILE_READS}.
+			 * @apiNote Virtual threads are only available on Java 21 and later.
+			 * @see <a href="https://openjdk.org/jeps/444">JEP 444: Virtual Threads</a>
+			 */
+			virtualthread;
+
+			/**
+			 * Creates a new executor of this type.
+			 * @return A new executor service of this type.
+			 * @throws UnsupportedOperationException if this type of executor is not supported on this Java version.
+			 */
+			public ExecutorService newExecutorService() {
+				return switch(this) {
+					case fixedthread -> newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+					case cachedthread -> newCachedThreadPool();
+					case forkjoinfifo -> new ForkJoinPool(1, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+					case forkjoinlifo -> new ForkJoinPool(1, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false);
+					case virtualthread -> VirtualThreads.newVirtualThreadPerTaskExecutor();
+				};
+			}
 		}
 
 		private Executor generateExecutor = null;
@@ -563,19 +1040,16 @@ private Executor determineGenerateExecutor() {
 			if(generateExecutor != null) {
 				return generateExecutor;
 			}
-			if(generateExecutorType != null) { //TODO use null case when available; see https://stackoverflow.com/q/72596788
-				return switch(generateExecutorType) {
-					case fixedthread -> newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-					case cachedthread -> newCachedThreadPool();
-					case forkjoinfifo -> new ForkJoinPool(1, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
-					case forkjoinlifo -> new ForkJoinPool(1, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false);
-				};
+			if(generateExecutorType != null) {
+				return generateExecutorType.newExecutorService();
 			}
 			return newDefaultGenerateExecutor();
 		}
 
 		private Executor produceExecutor;
 
+		private RingBufferExecutor.WaitStrategy produceWaitStrategy;
+
 		/**
 		 * Specifies the produce executor; if not set, a {@link #newDefaultProduceExecutor()} will be created and used.
 		 * @param produceExecutor The executor for producing imprints; may or may not be an instance of {@link ExecutorService}, and may or may not be the same
@@ -584,17 +1058,36 @@ private Executor determineGenerateExecutor() {
 		 * @return This builder.
 		 */
 		public Builder withProduceExecutor(@Nonnull final Executor produceExecutor) {
-			checkState(this.produceExecutor == null, "Produce executor already specified.");
+			checkState(this.produceExecutor == null && this.produceWaitStrategy == null, "Produce executor already specified.");
 			this.produceExecutor = requireNonNull(produceExecutor);
 			return this;
 		}
 
+		/**
+		 * Specifies that a default produce executor be used, waiting for imprints using the given strategy.
+		 * @param produceWaitStrategy The strategy for waiting for imprints to be produced, or for room to produce them.
+		 * @throws IllegalStateException if a produce executor-setting method is called twice on the builder.
+		 * @return This builder.
+		 * @see #newDefaultProduceExecutor(RingBufferExecutor.WaitStrategy)
+		 */
+		public Builder withProduceWaitStrategy(@Nonnull final RingBufferExecutor.WaitStrategy produceWaitStrategy) {
+			checkState(this.produceExecutor == null && this.produceWaitStrategy == null, "Produce executor already specified.");
+			this.produceWaitStrategy = requireNonNull(produceWaitStrategy);
+			return this;
+		}
+
 		/**
 		 * Determines the produce executor to use based upon the current settings.
 		 * @return The specified produce executor.
 		 */
 		private Executor determineProduceExecutor() {
-			return produceExecutor != null ? produceExecutor : newDefaultProduceExecutor();
+			if(produceExecutor != null) {
+				return produceExecutor;
+			}
+			if(produceWaitStrategy != null) {
+				return newDefaultProduceExecutor(produceWaitStrategy);
+			}
+			return newDefaultProduceExecutor();
 		}
 
 		/**
@@ -608,7 +1101,7 @@ private Executor determineProduceExecutor() {
 		 */
 		public Builder withExecutor(@Nonnull final Executor executor) {
 			checkState(this.generateExecutor == null && this.generateExecutorType == null, "Generate executor already specified.");
-			checkState(this.produceExecutor == null, "Produce executor already specified.");
+			checkState(this.produceExecutor == null && this.produceWaitStrategy == null, "Produce executor already specified.");
 			this.generateExecutor = requireNonNull(executor);
 			this.produceExecutor = requireNonNull(executor);
 			return this;
@@ -624,7 +1117,8 @@ private Optional<Consumer<PathImprint>> findImprintConsumer() {
 
 		/**
 		 * Specifies the imprint consumer.
-		 * @param imprintConsumer The consumer to which imprints will be produced after being generated.
+		 * @param imprintConsumer The consumer to which imprints will be produced after being generated. If the consumer is a {@link PreparedImprintConsumer},
+		 *          imprints will be prepared in the generating threads when possible.
 		 * @return This builder.
 		 */
 		public Builder withImprintConsumer(@Nonnull final Consumer<PathImprint> imprintConsumer) {
@@ -654,6 +1148,202 @@ public Builder withListener(@Nonnull final Listener listener) {
 			return this;
 		}
 
+		/** The maximum number of files to read at the same time by default when using {@link ExecutorType#virtualthread}. */
+		public static final int DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_FILE_READS = 128;
+
+		private int maxConcurrentFileReads = 0;
+
+		/**
+		 * Specifies the maximum number of files to read at the same time for generating content fingerprints. If not set, the number of file reads is only
+		 * limited by the generate executor, except when using {@link ExecutorType#virtualthread}, which defaults to
+		 * {@link #DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_FILE_READS}.
+		 * @param maxConcurrentFileReads The maximum number of files to read at the same time.
+		 * @return This builder.
+		 * @throws IllegalArgumentException if the given maximum is not positive.
+		 */
+		public Builder withMaxConcurrentFileReads(final int maxConcurrentFileReads) {
+			checkArgument(maxConcurrentFileReads > 0, "Maximum concurrent file reads %d not positive.", maxConcurrentFileReads);
+			this.maxConcurrentFileReads = maxConcurrentFileReads;
+			return this;
+		}
+
+		/**
+		 * Determines the maximum number of files to read at the same time based upon the current settings.
+		 * @return The maximum number of concurrent file reads, or empty if file reads should not be limited.
+		 */
+		private OptionalInt determineMaxConcurrentFileReads() {
+			if(maxConcurrentFileReads > 0) {
+				return OptionalInt.of(maxConcurrentFileReads);
+			}
+			return generateExecutorType == ExecutorType.virtualthread ? OptionalInt.of(DEFAULT_VIRTUAL_THREAD_MAX_CONCURRENT_FILE_READS) : OptionalInt.empty();
+		}
+
+		private int maxInFlightPathTasks = 0;
+
+		/**
+		 * Specifies the maximum number of path tasks, i.e. directory listings and file content fingerprint generations, that may be in flight at the same time.
+		 * Tasks waiting for a permit are performed most recent first, so that traversal proceeds depth-first and the pending state is proportional to the depth
+		 * of the tree times the number of children per directory rather than to the size of the tree. If not set, all discovered paths are scheduled
+		 * immediately.
+		 * @apiNote This setting is useful for limiting the memory used when generating imprints of very large trees.
+		 * @param maxInFlightPathTasks The maximum number of path tasks in flight at the same time.
+		 * @return This builder.
+		 * @throws IllegalArgumentException if the given maximum is not positive.
+		 */
+		public Builder withMaxInFlightPathTasks(final int maxInFlightPathTasks) {
+			checkArgument(maxInFlightPathTasks > 0, "Maximum in-flight path tasks %d not positive.", maxInFlightPathTasks);
+			this.maxInFlightPathTasks = maxInFlightPathTasks;
+			return this;
+		}
+
+		/** @return The configured maximum number of path tasks in flight at the same time, if any. */
+		private OptionalInt findMaxInFlightPathTasks() {
+			return maxInFlightPathTasks > 0 ? OptionalInt.of(maxInFlightPathTasks) : OptionalInt.empty();
+		}
+
+		/** The maximum number of child fingerprints of a directory to keep in memory by default before spilling them to a temporary run file. */
+		public static final int DEFAULT_DIRECTORY_SPILL_THRESHOLD = 100_000;
+
+		private int directorySpillThreshold = DEFAULT_DIRECTORY_SPILL_THRESHOLD;
+
+		/**
+		 * Specifies the maximum number of child fingerprints of a directory to keep in memory while generating the directory fingerprints. The fingerprints of
+		 * directories with more children are spilled in sorted runs to temporary files and merged in filename order, producing the same fingerprints with bounded
+		 * memory. If not set, defaults to {@link #DEFAULT_DIRECTORY_SPILL_THRESHOLD}.
+		 * @apiNote Spilling bounds the memory used for combining the child fingerprints; to also bound the number of child imprints being generated at the same
+		 *          time, use {@link #withMaxInFlightPathTasks(int)}.
+		 * @param directorySpillThreshold The maximum number of child fingerprints to keep in memory for each directory.
+		 * @return This builder.
+		 * @throws IllegalArgumentException if the given threshold is not positive.
+		 */
+		public Builder withDirectorySpillThreshold(final int directorySpillThreshold) {
+			checkArgument(directorySpillThreshold > 0, "Directory spill threshold %d not positive.", directorySpillThreshold);
+			this.directorySpillThreshold = directorySpillThreshold;
+			return this;
+		}
+
+		/** @return The maximum number of child fingerprints of a directory to keep in memory. */
+		private int getDirectorySpillThreshold() {
+			return directorySpillThreshold;
+		}
+
+		@Nullable
+		private Path spillDirectory = null;
+
+		/**
+		 * Specifies the directory in which to create temporary run files, such as for directories with more children than the directory spill threshold, or for
+		 * imprints overflowing the reorder window during ordered production. If not set, the default temporary directory is used.
+		 * @param spillDirectory The directory for temporary run files.
+		 * @return This builder.
+		 * @see #withDirectorySpillThreshold(int)
+		 * @see #withOrderedProduction(int)
+		 */
+		public Builder withSpillDirectory(@Nonnull final Path spillDirectory) {
+			this.spillDirectory = requireNonNull(spillDirectory);
+			return this;
+		}
+
+		/** @return The configured directory for temporary run files, if any. */
+		private Optional<Path> findSpillDirectory() {
+			return Optional.ofNullable(spillDirectory);
+		}
+
+		/** The maximum number of imprints to keep in memory by default while waiting to produce them in tree order. */
+		public static final int DEFAULT_REORDER_WINDOW_SIZE = 100_000;
+
+		private int reorderWindowSize = 0;
+
+		/**
+		 * Specifies that imprints should be produced in the deterministic order of {@link TreeOrder#pathComparator()} rather than in the order they are
+		 * generated, so that imprints of the same tree are always produced in the same order, using a reorder window of
+		 * {@link #DEFAULT_REORDER_WINDOW_SIZE}.
+		 * @return This builder.
+		 * @see #withOrderedProduction(int)
+		 */
+		public Builder withOrderedProduction() {
+			return withOrderedProduction(DEFAULT_REORDER_WINDOW_SIZE);
+		}
+
+		/**
+		 * Specifies that imprints should be produced in the deterministic order of {@link TreeOrder#pathComparator()} rather than in the order they are
+		 * generated, so that imprints of the same tree are always produced in the same order. In this order the children of each directory are produced in
+		 * filename order, each followed by its own descendants, and each directory is produced after all its descendants. Imprints generated early wait in a
+		 * reorder window until the imprints before them have been produced; if more imprints are waiting than the size of the window, they are spilled in sorted
+		 * runs to temporary files in the spill directory.
+		 * @apiNote Directories are produced after their descendants because a directory imprint can only be generated after the imprints of its children.
+		 * @param reorderWindowSize The maximum number of imprints to keep in memory while waiting to produce them.
+		 * @return This builder.
+		 * @throws IllegalArgumentException if the given window size is not positive.
+		 * @see #withSpillDirectory(Path)
+		 */
+		public Builder withOrderedProduction(final int reorderWindowSize) {
+			checkArgument(reorderWindowSize > 0, "Reorder window size %d not positive.", reorderWindowSize);
+			this.reorderWindowSize = reorderWindowSize;
+			return this;
+		}
+
+		/** @return The configured reorder window size if imprints should be produced in tree order. */
+		private OptionalInt findReorderWindowSize() {
+			return reorderWindowSize > 0 ? OptionalInt.of(reorderWindowSize) : OptionalInt.empty();
+		}
+
+		@Nullable
+		private FileHasher fileHasher = null;
+
+		/**
+		 * Specifies the engine for hashing the contents of files; if not set, a {@link #newDefaultFileHasher()} will be created and used.
+		 * @param fileHasher The file hasher, which must use {@link PathImprintGenerator#FINGERPRINT_ALGORITHM}.
+		 * @return This builder.
+		 */
+		public Builder withFileHasher(@Nonnull final FileHasher fileHasher) {
+			this.fileHasher = requireNonNull(fileHasher);
+			return this;
+		}
+
+		/**
+		 * Determines the file hasher to use based upon the current settings.
+		 * @return The specified file hasher.
+		 */
+		private FileHasher determineFileHasher() {
+			return fileHasher != null ? fileHasher : newDefaultFileHasher();
+		}
+
+		private final Map<Path, PathImprint> baselineImprintsByPath = new HashMap<>();
+
+		/**
+		 * Specifies a single imprint from a previous generation to serve as a baseline. If a regular file at the same path has the same modification timestamp as
+		 * the baseline imprint, the content fingerprint of the baseline imprint will be reused rather than reading the file contents again. If a baseline imprint
+		 * had already been specified for the same path, it will be replaced.
+		 * @apiNote Datim files do not record file sizes, so only the path and the modification timestamp are compared.
+		 * @param baselineImprint The imprint from a previous generation.
+		 * @return This builder.
+		 */
+		public Builder withBaselineImprint(@Nonnull final PathImprint baselineImprint) {
+			baselineImprintsByPath.put(baselineImprint.path(), baselineImprint);
+			return this;
+		}
+
+		/**
+		 * Specifies the imprints from a previous generation to serve as a baseline by reading all the imprints from a datim parser.
+		 * @implNote All the imprints are kept in memory until the generator is closed.
+		 * @param baselineParser The parser for reading the baseline imprints from an imprints file.
+		 * @return This builder.
+		 * @throws IOException if there is an error reading the baseline imprints.
+		 * @see #withBaselineImprint(PathImprint)
+		 */
+		public Builder withBaselineImprints(@Nonnull final DatimParser baselineParser) throws IOException {
+			Optional<PathImprint> foundImprint;
+			while((foundImprint = baselineParser.readImprint()).isPresent()) {
+				withBaselineImprint(foundImprint.get());
+			}
+			return this;
+		}
+
+		/** @return An unmodifiable map of all the specified baseline imprints, mapped to their paths. */
+		private Map<Path, PathImprint> determineBaselineImprintsByPath() {
+			return Map.copyOf(baselineImprintsByPath);
+		}
+
 		/** @return A new instance of the imprint generator based upon the current builder configuration. */
 		public PathImprintGenerator build() {
 			return new PathImprintGenerator(this);
@@ -668,14 +1358,35 @@ public static Executor newDefaultGenerateExecutor() {
 			return newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 		}
 
+		/**
+		 * Returns a default engine for hashing the contents of files.
+		 * @implSpec This implementation returns a file hasher that reads files using an input stream.
+		 * @return A new default file hasher.
+		 * @see FileHasher#of(MessageDigests.Algorithm)
+		 */
+		public static FileHasher newDefaultFileHasher() {
+			return FileHasher.of(FINGERPRINT_ALGORITHM);
+		}
+
 		/**
 		 * Returns a default executor for production of imprints.
-		 * @implSpec This implementation returns an executor using a single thread with maximum priority, as we want the consumer to always have priority so that
-		 *           imprints can be discarded as quickly as possible, lowering the memory overhead.
+		 * @implSpec This implementation delegates to {@link #newDefaultProduceExecutor(RingBufferExecutor.WaitStrategy)} using
+		 *           {@link RingBufferExecutor#DEFAULT_WAIT_STRATEGY}.
 		 * @return A new default produce executor.
 		 */
 		public static Executor newDefaultProduceExecutor() {
-			return newSingleThreadExecutor(runnable -> {
+			return newDefaultProduceExecutor(RingBufferExecutor.DEFAULT_WAIT_STRATEGY);
+		}
+
+		/**
+		 * Returns a default executor for production of imprints, using the given wait strategy.
+		 * @implSpec This implementation returns a ring buffer executor using a single thread with maximum priority, as we want the consumer to always have
+		 *           priority so that imprints can be discarded as quickly as possible, lowering the memory overhead.
+		 * @param waitStrategy The strategy for waiting for imprints to be produced, or for room to produce them.
+		 * @return A new default produce executor.
+		 */
+		public static Executor newDefaultProduceExecutor(@Nonnull final RingBufferExecutor.WaitStrategy waitStrategy) {
+			return new RingBufferExecutor(RingBufferExecutor.DEFAULT_CAPACITY, waitStrategy, runnable -> {
 				final Thread thread = Executors.defaultThreadFactory().newThread(runnable);
 				thread.setPriority(Thread.MAX_PRIORITY);
 				return thread;
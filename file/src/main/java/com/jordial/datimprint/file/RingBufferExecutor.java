@@ -0,0 +1,369 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.Objects.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.*;
+
+/**
+ * Executor that runs tasks one at a time, in the order they were submitted, in a single consumer thread. Tasks are passed to the consumer thread through a
+ * pre-allocated ring buffer that any number of threads may submit to without locking. The consumer thread runs all the tasks available in a batch before
+ * making the freed slots available again to submitting threads.
+ * <p>
+ * When the consumer thread has no tasks to run, or a submitting thread finds the ring buffer full, the thread waits according to the configured
+ * {@link WaitStrategy}.
+ * </p>
+ * @apiNote This executor is intended for producing results from many worker threads to a single consumer, as the per-task overhead is lower than that of a
+ *          {@link ThreadPoolExecutor} with a blocking queue: no queue node is allocated and submitting threads do not contend for a lock.
+ * @implNote If a task running in the consumer thread submits another task while the ring buffer is full, rather than waiting for itself the consumer thread
+ *           places the task in a local overflow queue, which it drains once the current task has completed and any tasks it placed earlier in the ring
+ *           buffer have been run. Tasks are thus never run nested within another task, and the tasks submitted by the consumer thread still run in the order
+ *           submitted.
+ * @author Garret Wilson
+ */
+public final class RingBufferExecutor extends AbstractExecutorService {
+
+	/** Strategy for a thread to wait for a task to become available, or for room in the ring buffer to become available. */
+	public enum WaitStrategy {
+		/**
+		 * Indicates continuously checking again, giving the lowest latency at the cost of keeping a processor busy.
+		 * @apiNote The consumer thread will keep a processor busy even when no tasks are being submitted, until the executor is shut down.
+		 * @implNote After a limited number of checks the waiting thread yields between checks, so that a thread waiting on a processor shared with the thread it
+		 *           waits for does not prevent that thread from running.
+		 * @see Thread#onSpinWait()
+		 */
+		spin,
+		/**
+		 * Indicates checking again after giving other threads the opportunity to run.
+		 * @see Thread#yield()
+		 */
+		yield,
+		/**
+		 * Indicates suspending the thread until a task is available, using the least processor time at the cost of latency when waking.
+		 * @see LockSupport#park(Object)
+		 */
+		park
+	}
+
+	/** The default number of slots in the ring buffer. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** The default strategy for waiting. */
+	public static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.park;
+
+	/** The maximum number of tasks run before freed slots are made available to submitting threads. */
+	private static final int MAX_BATCH_SIZE = 256;
+
+	/** The number of times a thread checks again using {@link WaitStrategy#spin} before yielding between checks. */
+	private static final int MAX_SPIN_COUNT = 1_000;
+
+	/** The duration a submitting thread sleeps between checks for room when using {@link WaitStrategy#park}. */
+	private static final long SUBMIT_PARK_NANOS = 10_000;
+
+	/** The bit of the claim sequence indicating that the executor has been shut down. */
+	private static final long SHUTDOWN_FLAG = Long.MIN_VALUE;
+
+	private final AtomicReferenceArray<Runnable> slots;
+
+	/** The mask for converting a sequence number to a slot index. */
+	private final int indexMask;
+
+	private final WaitStrategy waitStrategy;
+
+	/** @return The strategy for waiting for tasks or room in the ring buffer. */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/** The sequence number of the next slot to be claimed by a submitting thread, combined with {@link #SHUTDOWN_FLAG} once shut down. */
+	private final AtomicLong claimSequence = new AtomicLong(0);
+
+	/** The sequence number up to which slots have been freed by the consumer thread and may be claimed again. */
+	private volatile long releasedSequence = 0;
+
+	/** The sequence number of the next slot to be run; only accessed by the consumer thread. */
+	private long consumeSequence = 0;
+
+	/** Whether the consumer thread is parked or about to park, waiting for a task. */
+	private volatile boolean consumerParked = false;
+
+	/** Tasks submitted by the consumer thread that did not fit in the ring buffer; only accessed by the consumer thread. */
+	private final Queue<Runnable> overflowTasks = new ArrayDeque<>();
+
+	/**
+	 * The sequence number of the last slot claimed by the consumer thread itself, which must be run before any overflow tasks to keep the tasks submitted by the
+	 * consumer thread in order; only accessed by the consumer thread.
+	 */
+	private long consumerClaimedSequence = -1;
+
+	/** Whether the consumer thread should stop without running the remaining tasks. */
+	private volatile boolean stopped = false;
+
+	private final Thread consumerThread;
+
+	private final CountDownLatch terminatedLatch = new CountDownLatch(1);
+
+	/**
+	 * Default capacity and wait strategy constructor.
+	 * @param threadFactory The factory for creating the consumer thread.
+	 * @see #DEFAULT_CAPACITY
+	 * @see #DEFAULT_WAIT_STRATEGY
+	 */
+	public RingBufferExecutor(@Nonnull final ThreadFactory threadFactory) {
+		this(DEFAULT_CAPACITY, DEFAULT_WAIT_STRATEGY, threadFactory);
+	}
+
+	/**
+	 * Constructor. The consumer thread is started immediately.
+	 * @param capacity The number of slots in the ring buffer, which must be a power of two.
+	 * @param waitStrategy The strategy for waiting for tasks or room in the ring buffer.
+	 * @param threadFactory The factory for creating the consumer thread.
+	 * @throws IllegalArgumentException if the capacity is not a positive power of two.
+	 */
+	public RingBufferExecutor(final int capacity, @Nonnull final WaitStrategy waitStrategy, @Nonnull final ThreadFactory threadFactory) {
+		checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "Ring buffer capacity %d not a positive power of two.", capacity);
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.indexMask = capacity - 1;
+		this.waitStrategy = requireNonNull(waitStrategy);
+		this.consumerThread = threadFactory.newThread(this::consume);
+		consumerThread.start();
+	}
+
+	/** @return The number of slots in the ring buffer. */
+	public int getCapacity() {
+		return slots.length();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation claims the next slot in the ring buffer, waiting if the ring buffer is full, and then places the task in the slot. If
+	 *           called from the consumer thread, the task is placed in the overflow queue instead if the ring buffer is full or the overflow queue already
+	 *           has tasks.
+	 * @throws RejectedExecutionException if the executor has been shut down, including if it is shut down immediately while waiting for room in the ring
+	 *           buffer.
+	 */
+	@Override
+	public void execute(@Nonnull final Runnable task) {
+		requireNonNull(task);
+		if(Thread.currentThread() == consumerThread) { //the consumer thread would wait for itself
+			executeInConsumer(task);
+			return;
+		}
+		long sequence;
+		do {
+			sequence = claimSequence.get();
+			if((sequence & SHUTDOWN_FLAG) != 0) {
+				throw new RejectedExecutionException("Ring buffer executor has been shut down.");
+			}
+		} while(!claimSequence.compareAndSet(sequence, sequence + 1));
+		for(int waitCount = 0; sequence - releasedSequence >= slots.length(); waitCount++) {
+			if(stopped) { //the consumer thread will free no more slots
+				throw new RejectedExecutionException("Ring buffer executor was shut down while waiting for room.");
+			}
+			awaitRoom(waitCount);
+		}
+		slots.set(index(sequence), task);
+		if(consumerParked) {
+			LockSupport.unpark(consumerThread);
+		}
+	}
+
+	/**
+	 * Submits a task from the consumer thread, without waiting. The task is placed in the next slot of the ring buffer if there is room and there are no overflow
+	 * tasks; otherwise it is added to the overflow queue.
+	 * @param task The task to run.
+	 * @throws RejectedExecutionException if the executor has been shut down.
+	 */
+	private void executeInConsumer(@Nonnull final Runnable task) {
+		final long sequence = claimSequence.get();
+		if((sequence & SHUTDOWN_FLAG) != 0) {
+			throw new RejectedExecutionException("Ring buffer executor has been shut down.");
+		}
+		//only the consumer thread frees slots, so if there is room it will remain unless another thread claims the slot first
+		if(overflowTasks.isEmpty() && sequence - releasedSequence < slots.length() && claimSequence.compareAndSet(sequence, sequence + 1)) {
+			slots.set(index(sequence), task);
+			consumerClaimedSequence = sequence;
+		} else {
+			overflowTasks.add(task);
+		}
+	}
+
+	/**
+	 * Determines the index of the slot for a sequence number.
+	 * @param sequence The sequence number.
+	 * @return The index in the ring buffer.
+	 */
+	private int index(final long sequence) {
+		return (int)sequence & indexMask;
+	}
+
+	/**
+	 * Waits for room in the ring buffer by a submitting thread other than the consumer thread, using the wait strategy.
+	 * @param waitCount The number of times the thread has already waited for the same slot.
+	 */
+	private void awaitRoom(final int waitCount) {
+		switch(waitStrategy) {
+			case spin -> spin(waitCount);
+			case yield -> Thread.yield();
+			case park -> LockSupport.parkNanos(this, SUBMIT_PARK_NANOS);
+			default -> throw new AssertionError();
+		}
+	}
+
+	/** Runs tasks in the consumer thread until the executor is shut down and all tasks have been run, or until the executor is stopped. */
+	private void consume() {
+		try {
+			int waitCount = 0;
+			while(!stopped) {
+				if(runBatch() == 0) {
+					final long claimed = claimSequence.get();
+					if((claimed & SHUTDOWN_FLAG) != 0 && (claimed & ~SHUTDOWN_FLAG) == consumeSequence && overflowTasks.isEmpty()) {
+						break;
+					}
+					awaitTask(waitCount++);
+				} else {
+					waitCount = 0;
+				}
+			}
+		} finally {
+			terminatedLatch.countDown();
+		}
+	}
+
+	/**
+	 * Runs in order the tasks that are available, up to the maximum batch size, and then frees their slots for submitting threads. Must only be called in the
+	 * consumer thread. Overflow tasks are run as soon as the tasks the consumer thread placed in the ring buffer before them have been run. If a task throws an
+	 * exception, it is passed to the uncaught exception handler of the consumer thread and the following tasks are still run.
+	 * @return The number of tasks run.
+	 */
+	private int runBatch() {
+		int count = 0;
+		final long startSequence = consumeSequence;
+		while(count < MAX_BATCH_SIZE && !stopped) {
+			final Runnable task;
+			if(!overflowTasks.isEmpty() && consumeSequence > consumerClaimedSequence) {
+				task = overflowTasks.remove();
+			} else {
+				task = slots.get(index(consumeSequence));
+				if(task == null) {
+					break;
+				}
+				slots.lazySet(index(consumeSequence), null); //made visible to submitting threads when the released sequence is updated
+				consumeSequence++;
+			}
+			count++;
+			try {
+				task.run();
+			} catch(final Throwable throwable) {
+				consumerThread.getUncaughtExceptionHandler().uncaughtException(consumerThread, throwable);
+			}
+		}
+		if(consumeSequence != startSequence) {
+			releasedSequence = consumeSequence;
+		}
+		return count;
+	}
+
+	/**
+	 * Waits for a task to be submitted by the consumer thread, using the wait strategy.
+	 * @param waitCount The number of times the consumer thread has already waited for the same task.
+	 */
+	private void awaitTask(final int waitCount) {
+		switch(waitStrategy) {
+			case spin -> spin(waitCount);
+			case yield -> Thread.yield();
+			case park -> {
+				consumerParked = true;
+				try {
+					//check again after announcing parking, as a submitting thread may have placed a task before seeing the announcement
+					if(slots.get(index(consumeSequence)) == null && !isShutdown()) {
+						LockSupport.park(this);
+						Thread.interrupted(); //a pending interrupt would keep parking from suspending the thread; shutting down now is indicated separately
+					}
+				} finally {
+					consumerParked = false;
+				}
+			}
+			default -> throw new AssertionError();
+		}
+	}
+
+	/**
+	 * Waits briefly using {@link WaitStrategy#spin}.
+	 * @param waitCount The number of times the thread has already waited for the same condition.
+	 */
+	private static void spin(final int waitCount) {
+		if(waitCount < MAX_SPIN_COUNT) {
+			Thread.onSpinWait();
+		} else {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec Tasks already submitted will still be run.
+	 */
+	@Override
+	public void shutdown() {
+		long sequence;
+		do {
+			sequence = claimSequence.get();
+			if((sequence & SHUTDOWN_FLAG) != 0) {
+				return;
+			}
+		} while(!claimSequence.compareAndSet(sequence, sequence | SHUTDOWN_FLAG));
+		LockSupport.unpark(consumerThread);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec Tasks not yet run are discarded rather than returned, as they are still held in the ring buffer owned by the consumer thread. The consumer
+	 *           thread is interrupted, and threads waiting for room in the ring buffer are rejected.
+	 * @return An empty list.
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		stopped = true;
+		shutdown();
+		consumerThread.interrupt();
+		return List.of();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return (claimSequence.get() & SHUTDOWN_FLAG) != 0;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return terminatedLatch.getCount() == 0;
+	}
+
+	@Override
+	public boolean awaitTermination(final long timeout, @Nonnull final TimeUnit unit) throws InterruptedException {
+		return terminatedLatch.await(timeout, unit);
+	}
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+
+/**
+ * Arranges the imprints of several root paths being produced at the same time into contiguous sections, one for each root in order. Each section consists of
+ * the root path, passed to the base path consumer, followed by all the imprints of the root, ending with the imprint of the root itself. Imprints of the root
+ * of the current section are passed through immediately; imprints of later roots are held in a spool for each root until all the earlier sections are
+ * finished.
+ * <p>
+ * The section to which an imprint belongs is determined by its path. If the path is inside several roots, the imprint belongs to the current section if
+ * possible, otherwise to the first unfinished section that contains it. Roots containing each other should therefore not have imprints produced at the same
+ * time.
+ * </p>
+ * <p>
+ * This class is thread safe. The consumers are never called concurrently.
+ * </p>
+ * @implNote A section is considered finished when the imprint of its root is received, as a directory imprint is only produced after the imprints of all its
+ *           descendants. Any imprint received after its section is finished, which could happen if imprints are produced using several threads, is passed
+ *           through immediately.
+ * @author Garret Wilson
+ */
+final class RootSectionSequencer implements Closeable {
+
+	private final List<Path> roots;
+
+	private final Consumer<Path> basePathConsumer;
+
+	private final Consumer<PathImprint> imprintConsumer;
+
+	/** The spool of each root, holding imprints received before the section of the root begins. */
+	private final List<ImprintSpool> spools;
+
+	/** The future completion of each section. */
+	private final List<CompletableFuture<Void>> sectionFinishedFutures;
+
+	/** The index of the current section, or <code>-1</code> if the first section has not yet begun. */
+	private int currentSectionIndex = -1;
+
+	/**
+	 * Constructor.
+	 * @param roots The real paths of the roots, in the order of their sections.
+	 * @param basePathConsumer The consumer to which each root path is passed at the beginning of its section.
+	 * @param imprintConsumer The consumer to which imprints are passed.
+	 * @param algorithm The algorithm of the imprint fingerprints.
+	 * @param spoolMemoryLimit The maximum number of imprints of each root to keep in memory while waiting for the root section to begin.
+	 * @param foundSpillDirectory The directory in which to create spool files, or empty if spool files should be created in the default temporary directory.
+	 * @throws IllegalArgumentException if no roots are given or the memory limit is not positive.
+	 */
+	public RootSectionSequencer(@Nonnull final List<Path> roots, @Nonnull final Consumer<Path> basePathConsumer,
+			@Nonnull final Consumer<PathImprint> imprintConsumer, @Nonnull final MessageDigests.Algorithm algorithm, final int spoolMemoryLimit,
+			@Nonnull final Optional<Path> foundSpillDirectory) {
+		this.roots = List.copyOf(roots);
+		checkArgument(!this.roots.isEmpty(), "At least one root is required.");
+		this.basePathConsumer = requireNonNull(basePathConsumer);
+		this.imprintConsumer = requireNonNull(imprintConsumer);
+		final List<ImprintSpool> spools = new ArrayList<>(this.roots.size());
+		final List<CompletableFuture<Void>> sectionFinishedFutures = new ArrayList<>(this.roots.size());
+		for(int i = 0; i < this.roots.size(); i++) {
+			spools.add(new ImprintSpool(algorithm, spoolMemoryLimit, foundSpillDirectory));
+			sectionFinishedFutures.add(new CompletableFuture<>());
+		}
+		this.spools = List.copyOf(spools);
+		this.sectionFinishedFutures = List.copyOf(sectionFinishedFutures);
+	}
+
+	/**
+	 * Returns a future that completes when the section of a root is finished, that is, when the imprints of the root have all been passed to the consumer.
+	 * @param index The index of the root.
+	 * @return The future completion of the root section.
+	 */
+	public CompletableFuture<Void> getSectionFinishedFuture(final int index) {
+		return sectionFinishedFutures.get(index);
+	}
+
+	/** @return A future that completes when all sections are finished. */
+	public CompletableFuture<Void> getAllSectionsFinishedFuture() {
+		return sectionFinishedFutures.get(sectionFinishedFutures.size() - 1);
+	}
+
+	/**
+	 * Begins the first section by passing the first root to the base path consumer, followed by any imprints already being held for it. If the sections have
+	 * already been aborted, this method does nothing.
+	 * @throws IllegalStateException if the first section has already begun.
+	 * @throws UncheckedIOException if there was an error reading a spool.
+	 * @see #abort(Throwable)
+	 */
+	public synchronized void begin() {
+		if(currentSectionIndex == roots.size()) { //aborted
+			return;
+		}
+		checkState(currentSectionIndex == -1, "Root sections already begun.");
+		currentSectionIndex = 0;
+		try {
+			beginSection();
+		} catch(final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	/**
+	 * Accepts the imprint of a path in one of the roots. The imprint is passed to the imprint consumer if it belongs to the current section, and otherwise held
+	 * until its section begins. If the imprint is of the root of the current section, the section is finished and the following sections are begun in turn,
+	 * passing along any imprints being held for them. Imprints accepted before the first section has begun are held as well.
+	 * @param imprint The imprint being produced.
+	 * @throws UncheckedIOException if there was an error spooling imprints.
+	 */
+	public void accept(@Nonnull final PathImprint imprint) {
+		accept(imprint, () -> imprintConsumer.accept(imprint));
+	}
+
+	/**
+	 * Accepts the imprint of a path in one of the roots, along with a task already prepared for passing the imprint to the imprint consumer. The task is run if
+	 * the imprint belongs to the current section; otherwise the task is discarded, and the imprint is held and later passed to the imprint consumer directly.
+	 * @param imprint The imprint being produced.
+	 * @param consumption The task for passing the imprint to the imprint consumer.
+	 * @throws UncheckedIOException if there was an error spooling imprints.
+	 * @see #accept(PathImprint)
+	 */
+	public synchronized void accept(@Nonnull final PathImprint imprint, @Nonnull final Runnable consumption) {
+		final Path path = imprint.path();
+		final int sectionIndex = findSectionIndex(path).orElse(-1);
+		try {
+			if(sectionIndex > currentSectionIndex) {
+				spools.get(sectionIndex).add(imprint);
+				return;
+			}
+			consumption.run(); //this includes imprints not belonging to any unfinished section
+			if(sectionIndex == currentSectionIndex && path.equals(roots.get(sectionIndex))) {
+				finishSection();
+			}
+		} catch(final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	/**
+	 * Determines the index of the unfinished section to which a path belongs.
+	 * @param path The path of an imprint.
+	 * @return The index of the section, which will be empty if the path belongs to no unfinished section.
+	 */
+	private OptionalInt findSectionIndex(@Nonnull final Path path) {
+		if(currentSectionIndex >= 0 && currentSectionIndex < roots.size() && path.startsWith(roots.get(currentSectionIndex))) {
+			return OptionalInt.of(currentSectionIndex);
+		}
+		for(int i = currentSectionIndex + 1; i < roots.size(); i++) {
+			if(path.startsWith(roots.get(i))) {
+				return OptionalInt.of(i);
+			}
+		}
+		return OptionalInt.empty();
+	}
+
+	/**
+	 * Finishes the current section and begins the next one, if any.
+	 * @throws IOException if there was an error reading a spool.
+	 * @see #beginSection()
+	 */
+	private void finishSection() throws IOException {
+		spools.get(currentSectionIndex).close();
+		sectionFinishedFutures.get(currentSectionIndex).complete(null);
+		currentSectionIndex++;
+		if(currentSectionIndex < roots.size()) {
+			beginSection();
+		}
+	}
+
+	/**
+	 * Begins the current section, passing along the imprints held for it. If the imprint of the root of the section was already being held, the section is
+	 * finished as well and the next one begun, and so on.
+	 * @throws IOException if there was an error reading a spool.
+	 */
+	private void beginSection() throws IOException {
+		final Path root = roots.get(currentSectionIndex);
+		basePathConsumer.accept(root);
+		final boolean[] rootProduced = {false};
+		spools.get(currentSectionIndex).drain(imprint -> {
+			imprintConsumer.accept(imprint);
+			if(imprint.path().equals(root)) {
+				rootProduced[0] = true;
+			}
+		});
+		if(rootProduced[0]) {
+			finishSection();
+		}
+	}
+
+	/**
+	 * Abandons all sections not yet finished, such as when production of imprints has failed. The futures of all unfinished sections are completed
+	 * exceptionally, and no more sections will be begun.
+	 * @param throwable The reason the sections were abandoned.
+	 */
+	public synchronized void abort(@Nonnull final Throwable throwable) {
+		sectionFinishedFutures.forEach(sectionFinishedFuture -> sectionFinishedFuture.completeExceptionally(throwable));
+		currentSectionIndex = roots.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation closes all the spools, discarding any imprints being held and deleting any spool files.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		IOException ioException = null;
+		for(final ImprintSpool spool : spools) {
+			try {
+				spool.close();
+			} catch(final IOException closeIOException) {
+				if(ioException == null) {
+					ioException = closeIOException;
+				} else {
+					ioException.addSuppressed(closeIOException);
+				}
+			}
+		}
+		if(ioException != null) {
+			throw ioException;
+		}
+	}
+
+}
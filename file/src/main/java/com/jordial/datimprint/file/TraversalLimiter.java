@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.concurrent.CompletableFuture.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.*;
+
+/**
+ * Limits how many path tasks, such as listing a directory or reading a file, may be in flight at the same time during traversal, without blocking any thread.
+ * <p>
+ * Rather than waiting, a caller receives a future permit, and should perform the task in an asynchronous stage dependent on it, closing the permit when the
+ * task is finished. A task must not wait for another permit while holding a permit, so that traversal cannot deadlock.
+ * </p>
+ * <p>
+ * Permits are granted to waiting tasks in LIFO order, so that the tasks most recently discovered—the children of the directory most recently listed—are
+ * performed first. Traversal thus proceeds depth-first, and the number of pending tasks is proportional to the depth of the tree times the number of children
+ * per directory, rather than to the size of the tree.
+ * </p>
+ * @implNote This class is thread safe. A released permit completes the future of the next waiting task in the releasing thread, so dependent stages should be
+ *           asynchronous (e.g. using {@link CompletableFuture#thenApplyAsync(java.util.function.Function, java.util.concurrent.Executor)}) to avoid deep
+ *           recursion.
+ * @author Garret Wilson
+ */
+final class TraversalLimiter {
+
+	private final int maxInFlightTasks;
+
+	/** @return The maximum number of tasks allowed to be in flight at the same time. */
+	int getMaxInFlightTasks() {
+		return maxInFlightTasks;
+	}
+
+	/** The number of permits available; guarded by <code>this</code>. */
+	private int availablePermitCount;
+
+	/** The futures of tasks waiting for permits, most recent first; guarded by <code>this</code>. */
+	private final Deque<CompletableFuture<ConcurrencyLimiter.Permit>> waiters = new ArrayDeque<>();
+
+	/**
+	 * Constructor.
+	 * @param maxInFlightTasks The maximum number of tasks allowed to be in flight at the same time.
+	 * @throws IllegalArgumentException if the maximum number of tasks is not positive.
+	 */
+	TraversalLimiter(final int maxInFlightTasks) {
+		checkArgument(maxInFlightTasks > 0, "Maximum in-flight tasks %d not positive.", maxInFlightTasks);
+		this.maxInFlightTasks = maxInFlightTasks;
+		this.availablePermitCount = maxInFlightTasks;
+	}
+
+	/** @return The number of tasks waiting for a permit. */
+	synchronized int getWaitingTaskCount() {
+		return waiters.size();
+	}
+
+	/**
+	 * Requests a permit to perform a task. The returned future will be completed immediately if a permit is available; otherwise it will be completed when a
+	 * permit is released, with more recent requests taking priority.
+	 * @return A future permit for performing one task, which must be closed when the task is finished.
+	 */
+	CompletableFuture<ConcurrencyLimiter.Permit> acquireAsync() {
+		synchronized(this) {
+			if(availablePermitCount == 0) {
+				final CompletableFuture<ConcurrencyLimiter.Permit> waiter = new CompletableFuture<>();
+				waiters.addFirst(waiter);
+				return waiter;
+			}
+			availablePermitCount--;
+		}
+		return completedFuture(this::release);
+	}
+
+	/**
+	 * Requests a permit from the given limiter, if any.
+	 * @param foundLimiter The limiter, if any, of traversal tasks.
+	 * @return A future permit for performing one task; if no limiter is present, the permit is immediately available and does nothing when closed.
+	 * @see #acquireAsync()
+	 */
+	static CompletableFuture<ConcurrencyLimiter.Permit> acquireAsync(@Nonnull final Optional<TraversalLimiter> foundLimiter) {
+		return foundLimiter.isPresent() ? foundLimiter.get().acquireAsync() : completedFuture(() -> {});
+	}
+
+	/** Releases a permit, handing it directly to the most recent waiting task, if any. */
+	private void release() {
+		final CompletableFuture<ConcurrencyLimiter.Permit> waiter;
+		synchronized(this) {
+			waiter = waiters.pollFirst();
+			if(waiter == null) {
+				availablePermitCount++;
+				return;
+			}
+		}
+		waiter.complete(this::release);
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.annotation.*;
+
+import com.globalmentor.security.*;
+import com.jordial.datimprint.file.DirectoryFingerprintAggregator.ChildFingerprints;
+import com.jordial.datimprint.file.PathImprintGenerator.DirectoryContentChildrenFingerprints;
+
+/**
+ * Verifies the fingerprints of directories bottom-up by folding the results of checking their children, in the same way that
+ * {@link PathImprintGenerator#generateDirectoryContentChildrenFingerprintsAsync(Path)} combines child imprints. As the children of a directory are checked, the
+ * fingerprints of their current content and modification timestamps are combined into the content fingerprint and children fingerprint of the directory, which
+ * once the directory itself is checked give its current fingerprint, to be combined in turn into that of its parent. The fingerprints of the directory at the
+ * root of the tree thus indicate whether the whole tree is intact, without accessing the file system beyond the checks themselves.
+ * <p>
+ * The imprints must be added in tree order, as produced by {@link TreeOrder#pathComparator()}, so that the imprints of all the children of a directory are
+ * added before that of the directory itself. Check results may be provided in any order, from any thread.
+ * </p>
+ * @apiNote Only paths with imprints are checked, so new paths not in the imprints are not included in the recomputed fingerprints. Missing paths are not
+ *          included, just as they would not be found when generating imprints.
+ * @implNote Only directories whose own imprints have not yet been added are kept open, along with directories still waiting for check results, so the memory
+ *           used depends on the depth of the tree and the number of checks in flight. The children of each directory are combined using a
+ *           {@link DirectoryFingerprintAggregator}, which spills them to temporary files for very large directories.
+ * @implNote All methods are synchronized, as check results may complete on several threads.
+ * @author Garret Wilson
+ */
+final class TreeFingerprintVerifier implements Closeable {
+
+	private final MessageDigests.Algorithm algorithm;
+
+	private final Consumer<PathChecker.TreeResult> treeResultConsumer;
+
+	/** Directories with children added but whose own imprints have not yet been added, keyed by path. */
+	private final Map<Path, Node> openNodes = new HashMap<>();
+
+	/** Paths whose imprints have been added but whose check results have not yet been provided, keyed by the identity of the imprint. */
+	private final Map<PathImprint, Node> checkingNodes = new IdentityHashMap<>();
+
+	@Nullable
+	private Path previousPath = null;
+
+	/**
+	 * Constructor.
+	 * @param algorithm The algorithm for calculating fingerprints.
+	 * @param treeResultConsumer The consumer to receive the result of verifying each directory, once the fingerprints of all its descendants are known.
+	 */
+	public TreeFingerprintVerifier(@Nonnull final MessageDigests.Algorithm algorithm, @Nonnull final Consumer<PathChecker.TreeResult> treeResultConsumer) {
+		this.algorithm = requireNonNull(algorithm);
+		this.treeResultConsumer = requireNonNull(treeResultConsumer);
+	}
+
+	/**
+	 * Adds the imprint of a path about to be checked. The check result must later be provided via {@link #onResult(PathChecker.Result)}.
+	 * @param path The path being checked.
+	 * @param imprint The imprint against which the path is being checked; the same instance that will be provided in the check result.
+	 * @throws IOException if the path is not in tree order after the previous path added.
+	 */
+	public synchronized void addImprint(@Nonnull final Path path, @Nonnull final PathImprint imprint) throws IOException {
+		if(previousPath != null && TreeOrder.pathComparator().compare(previousPath, path) >= 0) {
+			throw new IOException(
+					"Imprint for path `%s` not in tree order after `%s`; imprints must be sorted by path to verify directory fingerprints.".formatted(path, previousPath));
+		}
+		previousPath = path;
+		final Node node = Optional.ofNullable(openNodes.remove(path)).orElseGet(Node::new); //all the children of this path have been added
+		node.imprint = imprint;
+		final Path parentPath = path.getParent();
+		if(parentPath != null) {
+			final Node parentNode = openNodes.computeIfAbsent(parentPath, __ -> new Node());
+			parentNode.expectedChildCount++;
+			node.parent = parentNode;
+		}
+		checkingNodes.put(imprint, node);
+	}
+
+	/**
+	 * Provides the result of checking a path, folding the fingerprints of the path into those of its parent directory once they are known.
+	 * @param result The result of checking a path the imprint of which has been added.
+	 * @throws IOException if there is an error combining the fingerprints of a directory.
+	 */
+	public synchronized void onResult(@Nonnull final PathChecker.Result result) throws IOException {
+		final Node node = checkingNodes.remove(result.getImprint());
+		if(node != null) {
+			node.result = result;
+			fold(node);
+		}
+	}
+
+	/**
+	 * Folds the fingerprints of a path into its parent if all its children have been folded into it and it has been checked, continuing up the tree for each
+	 * parent that is then complete as well.
+	 * @param node The node of the path, the imprint of which has been added.
+	 * @throws IOException if there is an error combining the fingerprints of a directory.
+	 */
+	private void fold(@Nonnull Node node) throws IOException {
+		while(node != null && node.imprint != null && node.result != null && node.foldedChildCount == node.expectedChildCount) {
+			final PathChecker.Result result = node.result;
+			final Path realPath = result.getPath();
+			Optional<ChildFingerprints> foundChildFingerprints = Optional.empty();
+			if(result instanceof PathChecker.FileResult fileResult) {
+				final Hash fingerprint = PathImprint.generateFingerprint(realPath, fileResult.getContentModifiedAt(), fileResult.getContentFingerprint(), null,
+						algorithm);
+				foundChildFingerprints = Optional.of(new ChildFingerprints(realPath.getFileName().toString(), fileResult.getContentFingerprint(), fingerprint));
+			} else if(result instanceof PathChecker.DirectoryResult directoryResult) {
+				final DirectoryContentChildrenFingerprints contentChildrenFingerprints;
+				try (final DirectoryFingerprintAggregator aggregator = node.aggregator != null ? node.aggregator : newAggregator()) { //an empty directory still has fingerprints
+					contentChildrenFingerprints = aggregator.finish();
+				}
+				final Hash fingerprint = PathImprint.generateFingerprint(realPath, directoryResult.getContentModifiedAt(),
+						contentChildrenFingerprints.contentFingerprint(), contentChildrenFingerprints.childrenFingerprint(), algorithm);
+				treeResultConsumer.accept(new PathChecker.TreeResult(realPath, node.imprint, contentChildrenFingerprints.contentFingerprint(), fingerprint));
+				if(realPath.getFileName() != null) { //a root directory has no parent to fold into
+					foundChildFingerprints = Optional.of(new ChildFingerprints(realPath.getFileName().toString(), contentChildrenFingerprints.contentFingerprint(), fingerprint));
+				}
+			} else if(node.aggregator != null) { //a missing path contributes nothing to its parent, as it would not have been found when generating imprints
+				node.aggregator.close();
+			}
+			node.aggregator = null;
+			final Node parentNode = node.parent;
+			if(parentNode != null) {
+				if(foundChildFingerprints.isPresent()) {
+					if(parentNode.aggregator == null) {
+						parentNode.aggregator = newAggregator();
+					}
+					parentNode.aggregator.add(foundChildFingerprints.get());
+				}
+				parentNode.foldedChildCount++;
+			}
+			node = parentNode;
+		}
+	}
+
+	/** @return A new aggregator for combining the fingerprints of the children of a directory. */
+	private DirectoryFingerprintAggregator newAggregator() {
+		return new DirectoryFingerprintAggregator(algorithm, PathImprintGenerator.Builder.DEFAULT_DIRECTORY_SPILL_THRESHOLD, Optional.empty());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @implSpec This implementation discards the children of any directories not yet verified, deleting any temporary files, such as for directories above the
+	 *           root of the imprints which have no imprints themselves, or if checking stopped because of an error.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		IOException ioException = null;
+		for(final Node node : (Iterable<Node>)Stream.concat(openNodes.values().stream(), checkingNodes.values().stream())::iterator) {
+			if(node.aggregator != null) {
+				try {
+					node.aggregator.close();
+				} catch(final IOException closeIOException) {
+					if(ioException == null) {
+						ioException = closeIOException;
+					} else {
+						ioException.addSuppressed(closeIOException);
+					}
+				}
+				node.aggregator = null;
+			}
+		}
+		openNodes.clear();
+		checkingNodes.clear();
+		if(ioException != null) {
+			throw ioException;
+		}
+	}
+
+	/**
+	 * The state of verifying a single path.
+	 * @author Garret Wilson
+	 */
+	private static final class Node {
+
+		@Nullable
+		private Node parent = null;
+
+		/** The imprint of the path, or <code>null</code> if its imprint has not been added, as for a directory above the root of the imprints. */
+		@Nullable
+		private PathImprint imprint = null;
+
+		@Nullable
+		private PathChecker.Result result = null;
+
+		private long expectedChildCount = 0;
+
+		private long foldedChildCount = 0;
+
+		@Nullable
+		private DirectoryFingerprintAggregator aggregator = null;
+
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static java.util.Comparator.*;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import com.globalmentor.io.Filenames;
+
+/**
+ * Definitions of the deterministic order in which the paths of a tree are processed, such as when combining the fingerprints of directory children or when
+ * producing imprints in order.
+ * @author Garret Wilson
+ */
+public final class TreeOrder {
+
+	/** This class cannot be publicly instantiated. */
+	private TreeOrder() {
+	}
+
+	/**
+	 * The comparator of filenames, using the rules of {@link com.globalmentor.io.Paths#filenameComparator()}, with any filenames the rules consider equal
+	 * ordered by their code units.
+	 */
+	private static final Comparator<CharSequence> FILENAME_COMPARATOR = Filenames.comparator(Locale.ROOT).thenComparing(CharSequence::toString);
+
+	/**
+	 * Returns a comparator for ordering filenames in the same directory. Filenames are ordered using the same rules as
+	 * {@link com.globalmentor.io.Paths#filenameComparator()}, except that no two distinct filenames are considered equal.
+	 * @apiNote The rules of {@link com.globalmentor.io.Paths#filenameComparator()} consider some distinct filenames equal, such as
+	 *          <code>example.jar.sha1</code> and <code>example.pom.sha1</code>; breaking such ties is necessary for ordering to be deterministic.
+	 * @return A comparator for ordering filenames.
+	 */
+	public static Comparator<CharSequence> filenameComparator() {
+		return FILENAME_COMPARATOR;
+	}
+
+	/** The comparator of path roots, which may be missing for relative paths. */
+	private static final Comparator<Path> ROOT_COMPARATOR = nullsFirst(comparing(Path::toString));
+
+	/** The comparator of paths in depth-first post-order. */
+	private static final Comparator<Path> PATH_COMPARATOR = (path1, path2) -> {
+		final Path root1 = path1.getRoot();
+		final Path root2 = path2.getRoot();
+		if(!Objects.equals(root1, root2)) {
+			final int result = ROOT_COMPARATOR.compare(root1, root2);
+			if(result != 0) {
+				return result;
+			}
+		}
+		final int nameCount1 = path1.getNameCount();
+		final int nameCount2 = path2.getNameCount();
+		final int commonNameCount = Math.min(nameCount1, nameCount2);
+		for(int i = 0; i < commonNameCount; i++) {
+			final String name1 = path1.getName(i).toString();
+			final String name2 = path2.getName(i).toString();
+			if(!name1.equals(name2)) { //avoid the more expensive filename comparison for the ancestor names that paths usually share
+				return FILENAME_COMPARATOR.compare(name1, name2);
+			}
+		}
+		return Integer.compare(nameCount2, nameCount1); //descendants come before their ancestors
+	};
+
+	/**
+	 * Returns a comparator for ordering paths in depth-first post-order: the children of a directory are ordered by {@link #filenameComparator()}, and all the
+	 * descendants of a directory come immediately before the directory itself. This is the order in which a directory imprint naturally becomes available, as
+	 * a directory fingerprint depends on the fingerprints of its children.
+	 * @apiNote Paths are compared by their name elements only, without resolving or normalizing them. Paths with different roots are ordered by the string form
+	 *          of their roots, with relative paths first.
+	 * @return A comparator for ordering the paths of a tree.
+	 */
+	public static Comparator<Path> pathComparator() {
+		return PATH_COMPARATOR;
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static java.lang.invoke.MethodType.*;
+
+import java.lang.invoke.*;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+/**
+ * Access to virtual threads, which are only available when running on Java 21 and later.
+ * @implNote As this module targets Java 17, the factory method for creating a virtual thread executor is looked up when this class is initialized, so that
+ *           virtual threads are available whenever the runtime supports them, regardless of the Java version used for building.
+ * @author Garret Wilson
+ */
+final class VirtualThreads {
+
+	private VirtualThreads() {
+	}
+
+	/** The handle to {@link Executors}<code>.newVirtualThreadPerTaskExecutor()</code>, if the method is available in the runtime. */
+	private static final Optional<MethodHandle> FOUND_NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+	/** @return The handle to {@link Executors}<code>.newVirtualThreadPerTaskExecutor()</code>, or empty if the runtime does not support virtual threads. */
+	private static Optional<MethodHandle> findNewVirtualThreadPerTaskExecutor() {
+		try {
+			return Optional.of(MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", methodType(ExecutorService.class)));
+		} catch(final NoSuchMethodException | IllegalAccessException exception) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Creates an executor that starts a new virtual thread for each task.
+	 * @return A new executor using virtual threads.
+	 * @throws UnsupportedOperationException if virtual threads are not supported by the Java runtime.
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		final MethodHandle newVirtualThreadPerTaskExecutor = FOUND_NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR
+				.orElseThrow(() -> new UnsupportedOperationException("Virtual threads require Java 21 or later; running on Java %s.".formatted(Runtime.version())));
+		try {
+			return (ExecutorService)newVirtualThreadPerTaskExecutor.invokeExact();
+		} catch(final RuntimeException | Error unchecked) {
+			throw unchecked;
+		} catch(final Throwable throwable) { //the method declares no checked exceptions
+			throw new IllegalStateException(throwable);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.*;
+import static com.globalmentor.collections.iterables.Iterables.*;
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static com.jordial.datimprint.file.TestImprints.*;
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.security.MessageDigests;
+
+/**
+ * Tests of {@link BinaryDatim}.
+ * @author Garret Wilson
+ */
+public class BinaryDatimTest {
+
+	/** Verifies that imprints and base paths written by the serializer are read back by the parser. */
+	@Test
+	void verifySerializedImprintsParsed() throws IOException {
+		final Path rootDirectory = findFirst(FileSystems.getDefault().getRootDirectories()).orElseThrow(IllegalStateException::new);
+		final Path fooBaseDirectory = rootDirectory.resolve("test").resolve("foo");
+		final Path barBaseDirectory = rootDirectory.resolve("test").resolve("bar");
+		final List<PathImprint> fooImprints = List.of(imprint(fooBaseDirectory.resolve("a.txt"), Instant.ofEpochSecond(1653252496, 751214600)),
+				imprint(fooBaseDirectory.resolve("abc.txt"), Instant.ofEpochSecond(-1, 999_999_999)), imprint(fooBaseDirectory, Instant.EPOCH));
+		final List<PathImprint> barImprints = List.of(imprint(barBaseDirectory.resolve("sub").resolve("z.bin"), Instant.ofEpochSecond(4_102_444_800L, 1)),
+				imprint(barBaseDirectory.resolve("sub"), Instant.ofEpochSecond(1653252496)), imprint(barBaseDirectory, Instant.ofEpochSecond(1653252496)));
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final BinaryDatim.Serializer serializer = new BinaryDatim.Serializer(outputStream, FINGERPRINT_ALGORITHM);
+		serializer.writeHeader();
+		serializer.writeBasePath(fooBaseDirectory);
+		for(final PathImprint imprint : fooImprints) {
+			serializer.writeImprint(imprint);
+		}
+		serializer.writeBasePath(barBaseDirectory);
+		for(final PathImprint imprint : barImprints) {
+			serializer.writeImprint(imprint);
+		}
+		serializer.flush();
+		final byte[] bytes = outputStream.toByteArray();
+		assertThat(BinaryDatim.isBinaryDatim(new ByteArrayInputStream(bytes)), is(true));
+
+		final BinaryDatim.Parser parser = new BinaryDatim.Parser(new ByteArrayInputStream(bytes), FINGERPRINT_ALGORITHM);
+		assertThat(parser.findCurrentBasePath(), isEmpty());
+		for(final PathImprint imprint : fooImprints) {
+			assertThat(parser.readImprint(), isPresentAndIs(imprint));
+			assertThat(parser.findCurrentBasePath(), isPresentAndIs(fooBaseDirectory));
+		}
+		for(final PathImprint imprint : barImprints) {
+			assertThat(parser.readImprint(), isPresentAndIs(imprint));
+			assertThat(parser.findCurrentBasePath(), isPresentAndIs(barBaseDirectory));
+		}
+		assertThat(parser.readImprint(), isEmpty());
+	}
+
+	/** Verifies that text data is not detected as a binary imprints file and is rejected by the parser. */
+	@Test
+	void verifyTextDatimNotBinary() throws IOException {
+		final byte[] bytes = new Datim.Serializer().appendHeader(new StringBuilder()).toString().getBytes(UTF_8);
+		assertThat(BinaryDatim.isBinaryDatim(new ByteArrayInputStream(bytes)), is(false));
+		assertThrows(IOException.class, () -> new BinaryDatim.Parser(new ByteArrayInputStream(bytes), FINGERPRINT_ALGORITHM).readImprint());
+	}
+
+	/** Verifies that a file with fingerprints of another algorithm is rejected, even if the fingerprints have the same length. */
+	@Test
+	void verifyOtherAlgorithmRejected() throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final BinaryDatim.Serializer serializer = new BinaryDatim.Serializer(outputStream, MessageDigests.SHA_512_256);
+		serializer.writeHeader();
+		serializer.flush();
+		final byte[] bytes = outputStream.toByteArray();
+		assertThat(MessageDigests.SHA_512_256.newMessageDigest().getDigestLength(), is(FINGERPRINT_ALGORITHM.newMessageDigest().getDigestLength()));
+		assertThrows(IOException.class, () -> new BinaryDatim.Parser(new ByteArrayInputStream(bytes), FINGERPRINT_ALGORITHM).readImprint());
+		assertThat(new BinaryDatim.Parser(new ByteArrayInputStream(bytes), MessageDigests.SHA_512_256).readImprint(), isEmpty());
+	}
+
+	/** Verifies that a truncated imprint record is reported as the end of the data being reached. */
+	@Test
+	void verifyTruncatedImprintThrowsEOFException() throws IOException {
+		final Path rootDirectory = findFirst(FileSystems.getDefault().getRootDirectories()).orElseThrow(IllegalStateException::new);
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final BinaryDatim.Serializer serializer = new BinaryDatim.Serializer(outputStream, FINGERPRINT_ALGORITHM);
+		serializer.writeHeader();
+		serializer.writeImprint(imprint(rootDirectory.resolve("foo.txt"), Instant.EPOCH));
+		final byte[] bytes = Arrays.copyOf(outputStream.toByteArray(), outputStream.size() - 1);
+		assertThrows(EOFException.class, () -> new BinaryDatim.Parser(new ByteArrayInputStream(bytes), FINGERPRINT_ALGORITHM).readImprint());
+	}
+
+	/** Verifies round trips of variable-length and zigzag encoding. */
+	@Test
+	void verifyVarLongRoundTrip() throws IOException {
+		for(final long value : new long[] {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE}) {
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			BinaryDatim.writeVarLong(outputStream, value);
+			assertThat(BinaryDatim.readVarLong(new ByteArrayInputStream(outputStream.toByteArray())), is(value));
+			assertThat(BinaryDatim.zigzagDecode(BinaryDatim.zigzagEncode(value)), is(value));
+		}
+		assertThat(BinaryDatim.zigzagEncode(-1), is(1L));
+		assertThat(BinaryDatim.zigzagEncode(1), is(2L));
+	}
+
+}
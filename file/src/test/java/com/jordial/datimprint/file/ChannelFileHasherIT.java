@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static java.nio.file.Files.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Integration tests of {@link ChannelFileHasher}.
+ * @author Garret Wilson
+ */
+public class ChannelFileHasherIT {
+
+	/** @see ChannelFileHasher#hash(Path) */
+	@Test
+	void testHashEmptyFile(@TempDir final Path tempDir) throws IOException {
+		final Path file = write(tempDir.resolve("empty.bin"), new byte[0]);
+		assertThat(new ChannelFileHasher(FINGERPRINT_ALGORITHM).hash(file), is(FINGERPRINT_ALGORITHM.emptyHash()));
+		assertThat("Mapping threshold of zero.", new ChannelFileHasher(FINGERPRINT_ALGORITHM, 4, 0, 3).hash(file), is(FINGERPRINT_ALGORITHM.emptyHash()));
+	}
+
+	/**
+	 * Tests hashing a file smaller than the map threshold, using a buffer smaller than the file to ensure the buffer is reused.
+	 * @see ChannelFileHasher#hash(Path)
+	 */
+	@Test
+	void testHashBufferedFile(@TempDir final Path tempDir) throws IOException {
+		final Path file = writeString(tempDir.resolve("foo.txt"), "fooBar");
+		final ChannelFileHasher fileHasher = new ChannelFileHasher(FINGERPRINT_ALGORITHM, 4, Long.MAX_VALUE, 3);
+		assertThat(fileHasher.hash(file), is(FINGERPRINT_ALGORITHM.hash("fooBar")));
+		assertThat("Pooled buffer is reused.", fileHasher.hash(file), is(FINGERPRINT_ALGORITHM.hash("fooBar")));
+	}
+
+	/**
+	 * Tests hashing a file larger than the map threshold, using several map windows, the last of which is partial.
+	 * @see ChannelFileHasher#hash(Path)
+	 */
+	@Test
+	void testHashMappedFile(@TempDir final Path tempDir) throws IOException {
+		final byte[] contents = new byte[10_000];
+		new Random(123).nextBytes(contents);
+		final Path file = write(tempDir.resolve("random.bin"), contents);
+		assertThat(new ChannelFileHasher(FINGERPRINT_ALGORITHM, 64, 1_000, 3_000).hash(file), is(FINGERPRINT_ALGORITHM.hash(contents)));
+		assertThat("Default sizes.", new ChannelFileHasher(FINGERPRINT_ALGORITHM).hash(file), is(FINGERPRINT_ALGORITHM.hash(contents)));
+	}
+
+}
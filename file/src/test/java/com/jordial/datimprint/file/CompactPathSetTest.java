@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link CompactPathSet}.
+ * @author Garret Wilson
+ */
+public class CompactPathSetTest {
+
+	/** Verifies that added paths are found and others are not, including duplicates and paths added after testing membership, as the set grows. */
+	@Test
+	void verifyMembership() {
+		final CompactPathSet pathSet = new CompactPathSet(1);
+		final Path root = Path.of("/root");
+		for(int i = 0; i < 1000; i++) {
+			pathSet.add(root.resolve("file-" + i + ".txt"));
+		}
+		pathSet.add(root.resolve("file-0.txt"));
+		assertThat(pathSet.size(), is(1000));
+		assertThat(pathSet.contains(root.resolve("file-999.txt")), is(true));
+		assertThat(pathSet.contains(root.resolve("file-1000.txt")), is(false));
+		assertThat(pathSet.contains(root), is(false));
+		pathSet.add(root);
+		assertThat(pathSet.contains(root), is(true));
+		assertThat(pathSet.contains(root.resolve("file-0.txt")), is(true));
+		assertThat(pathSet.size(), is(1001));
+	}
+
+	/** Verifies that an empty set contains no paths. */
+	@Test
+	void testEmpty() {
+		final CompactPathSet pathSet = new CompactPathSet(0);
+		assertThat(pathSet.contains(Path.of("/")), is(false));
+		assertThat(pathSet.size(), is(0));
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link CompletionWindow}.
+ * @author Garret Wilson
+ */
+public class CompletionWindowTest {
+
+	@Test
+	void testConstructorRequiresPositiveSize() {
+		assertThrows(IllegalArgumentException.class, () -> new CompletionWindow(0));
+	}
+
+	/** @see CompletionWindow#start(CompletionWindow.Operation) */
+	@Test
+	void testStartWaitsForRoomInWindow() throws Exception {
+		final CompletionWindow window = new CompletionWindow(2);
+		final List<CompletableFuture<Void>> futures = List.of(new CompletableFuture<>(), new CompletableFuture<>(), new CompletableFuture<>());
+		window.start(() -> futures.get(0));
+		window.start(() -> futures.get(1));
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<?> futureStarted = executor.submit(() -> {
+				window.start(() -> futures.get(2));
+				return null;
+			});
+			assertThrows(TimeoutException.class, () -> futureStarted.get(100, TimeUnit.MILLISECONDS), "Third operation waits while the window is full.");
+			futures.get(1).complete(null); //operations may complete out of order
+			assertThat("Third operation starts once another completes.", futureStarted.get(5, TimeUnit.SECONDS), is(nullValue()));
+			assertThat(window.getCompletedCount(), is(1L));
+			final Future<?> futureAwaited = executor.submit(() -> {
+				window.await();
+				return null;
+			});
+			futures.get(2).complete(null);
+			assertThrows(TimeoutException.class, () -> futureAwaited.get(100, TimeUnit.MILLISECONDS), "Waiting continues until all operations complete.");
+			futures.get(0).complete(null);
+			futureAwaited.get(5, TimeUnit.SECONDS);
+			assertThat(window.getCompletedCount(), is(3L));
+			assertThat(window.findError(), isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Verifies that only the first error is kept, including an error thrown when starting an operation, and that errors still free room in the window. */
+	@Test
+	void verifyFirstErrorKept() throws IOException {
+		final CompletionWindow window = new CompletionWindow(1);
+		final IOException firstException = new IOException("first");
+		window.start(() -> CompletableFuture.failedFuture(firstException));
+		window.start(() -> CompletableFuture.supplyAsync(() -> {
+			throw new IllegalStateException("second");
+		}));
+		final IOException thirdException = new IOException("third");
+		assertThrows(IOException.class, () -> window.start(() -> {
+			throw thirdException;
+		}));
+		window.await();
+		assertThat(window.getCompletedCount(), is(3L));
+		assertThat(window.findError(), isPresentAndIs(firstException));
+	}
+
+	/** Verifies that an operation with a weight waits for room for all its places in the window, and frees them all when it completes. */
+	@Test
+	void verifyStartWeightedOperation() throws Exception {
+		final CompletionWindow window = new CompletionWindow(3);
+		assertThrows(IllegalArgumentException.class, () -> window.start(4, () -> CompletableFuture.completedFuture(null)));
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		window.start(() -> future);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<?> futureStarted = executor.submit(() -> {
+				window.start(3, () -> CompletableFuture.completedFuture(null));
+				return null;
+			});
+			assertThrows(TimeoutException.class, () -> futureStarted.get(100, TimeUnit.MILLISECONDS), "Weighted operation waits for room for all its places.");
+			future.complete(null);
+			futureStarted.get(5, TimeUnit.SECONDS);
+			window.await();
+			assertThat(window.getCompletedCount(), is(2L));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
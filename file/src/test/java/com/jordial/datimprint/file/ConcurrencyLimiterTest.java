@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InterruptedIOException;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link ConcurrencyLimiter}.
+ * @author Garret Wilson
+ */
+public class ConcurrencyLimiterTest {
+
+	@Test
+	void testConstructorRequiresPositiveMaxConcurrency() {
+		assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter(0));
+	}
+
+	/** @see ConcurrencyLimiter#acquire() */
+	@Test
+	void testAcquireWaitsForPermitRelease() throws Exception {
+		final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<?> future;
+			final ConcurrencyLimiter.Permit permit = limiter.acquire();
+			try {
+				future = executor.submit(() -> {
+					final ConcurrencyLimiter.Permit otherPermit = limiter.acquire();
+					otherPermit.release();
+					return null;
+				});
+				assertThrows(TimeoutException.class, () -> future.get(100, TimeUnit.MILLISECONDS), "Second operation waits while first permit is held.");
+			} finally {
+				permit.release();
+			}
+			assertThat("Second operation proceeds once first permit is released.", future.get(5, TimeUnit.SECONDS), is(nullValue()));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** @see ConcurrencyLimiter#acquire(Optional) */
+	@Test
+	void testAcquireWithoutLimiterDoesNotWait() throws InterruptedIOException {
+		try (final ConcurrencyLimiter.Permit permit = ConcurrencyLimiter.acquire(Optional.empty());
+				final ConcurrencyLimiter.Permit otherPermit = ConcurrencyLimiter.acquire(Optional.empty())) {
+			assertThat(permit, is(notNullValue()));
+			assertThat(otherPermit, is(notNullValue()));
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link DatimDiff}.
+ * @author Garret Wilson
+ */
+public class DatimDiffTest {
+
+	/**
+	 * Creates a test imprint.
+	 * @param path The path of the imprint.
+	 * @param content The content of the path.
+	 * @param modifiedAtSeconds The modification timestamp in seconds.
+	 * @return A new imprint.
+	 */
+	private static PathImprint imprint(final Path path, final String content, final long modifiedAtSeconds) {
+		final FileTime modifiedAt = FileTime.from(Instant.ofEpochSecond(modifiedAtSeconds));
+		return new PathImprint(path, modifiedAt, FINGERPRINT_ALGORITHM.hash(content), FINGERPRINT_ALGORITHM.hash(path + content + modifiedAt));
+	}
+
+	/**
+	 * Creates a parser returning the given imprints.
+	 * @param imprints The imprints to return.
+	 * @return A parser of the imprints.
+	 */
+	static DatimParser parser(final List<PathImprint> imprints) {
+		final Iterator<PathImprint> imprintIterator = imprints.iterator();
+		return new DatimParser() {
+			@Override
+			public Optional<Path> findCurrentBasePath() {
+				return Optional.empty();
+			}
+
+			@Override
+			public Optional<PathImprint> readImprint() {
+				return imprintIterator.hasNext() ? Optional.of(imprintIterator.next()) : Optional.empty();
+			}
+		};
+	}
+
+	/** Verifies that added, removed, content-changed, and metadata-changed paths are all found, in path order. */
+	@Test
+	void verifyDiffFindsDifferences() throws IOException {
+		final Path foo = Path.of("/foo");
+		final Path removed = foo.resolve("a-removed.txt");
+		final Path added = foo.resolve("b-added.txt");
+		final Path same = foo.resolve("c-same.txt");
+		final Path changed = foo.resolve("d-changed.txt");
+		final Path touched = foo.resolve("e-touched.txt");
+		final List<PathImprint> oldImprints = List.of(imprint(removed, "removed", 1), imprint(same, "same", 1), imprint(changed, "old", 1),
+				imprint(touched, "touched", 1), imprint(foo, "old", 1));
+		final List<PathImprint> newImprints = List.of(imprint(added, "added", 2), imprint(same, "same", 1), imprint(changed, "new", 1),
+				imprint(touched, "touched", 2), imprint(foo, "new", 2));
+		final List<DatimDiff.Difference> differences = new ArrayList<>();
+		assertThat(new DatimDiff(differences::add).diff(parser(oldImprints), parser(newImprints)), is(5L));
+		assertThat(differences,
+				contains(new DatimDiff.Difference(DatimDiff.Difference.Type.REMOVED, Optional.of(oldImprints.get(0)), Optional.empty()),
+						new DatimDiff.Difference(DatimDiff.Difference.Type.ADDED, Optional.empty(), Optional.of(newImprints.get(0))),
+						new DatimDiff.Difference(DatimDiff.Difference.Type.CONTENT_CHANGED, Optional.of(oldImprints.get(2)), Optional.of(newImprints.get(2))),
+						new DatimDiff.Difference(DatimDiff.Difference.Type.METADATA_CHANGED, Optional.of(oldImprints.get(3)), Optional.of(newImprints.get(3))),
+						new DatimDiff.Difference(DatimDiff.Difference.Type.CONTENT_CHANGED, Optional.of(oldImprints.get(4)), Optional.of(newImprints.get(4)))));
+		assertThat(differences.get(1).path(), is(added));
+	}
+
+	/** Verifies that identical imprints have no differences, and that imprints compared with none are all added or removed. */
+	@Test
+	void verifyDiffSameAndEmpty() throws IOException {
+		final List<PathImprint> imprints = List.of(imprint(Path.of("/foo/bar.txt"), "bar", 1), imprint(Path.of("/foo"), "foo", 1));
+		assertThat(new DatimDiff(difference -> fail()).diff(parser(imprints), parser(imprints)), is(0L));
+		final List<DatimDiff.Difference.Type> types = new ArrayList<>();
+		new DatimDiff(difference -> types.add(difference.type())).diff(parser(imprints), parser(List.of()));
+		new DatimDiff(difference -> types.add(difference.type())).diff(parser(List.of()), parser(imprints));
+		assertThat(types, contains(DatimDiff.Difference.Type.REMOVED, DatimDiff.Difference.Type.REMOVED, DatimDiff.Difference.Type.ADDED,
+				DatimDiff.Difference.Type.ADDED));
+	}
+
+	/** Verifies that imprints not in tree order are detected, and are rejected when compared. */
+	@Test
+	void verifyUnsortedImprints() throws IOException {
+		final List<PathImprint> sortedImprints = List.of(imprint(Path.of("/foo/bar.txt"), "bar", 1), imprint(Path.of("/foo"), "foo", 1));
+		final List<PathImprint> unsortedImprints = List.of(sortedImprints.get(1), sortedImprints.get(0));
+		assertThat(DatimDiff.isSorted(parser(sortedImprints)), is(true));
+		assertThat(DatimDiff.isSorted(parser(unsortedImprints)), is(false));
+		assertThat(DatimDiff.isSorted(parser(List.of())), is(true));
+		assertThrows(IOException.class, () -> new DatimDiff(difference -> {}).diff(parser(sortedImprints), parser(unsortedImprints)));
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.*;
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.Files.*;
+import static java.util.stream.Collectors.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Integration tests of {@link DatimIndex}.
+ * @author Garret Wilson
+ */
+public class DatimIndexIT {
+
+	/**
+	 * Writes a datim file with several base paths, each followed by imprints of files and subdirectories within it.
+	 * @param datimFile The file to write.
+	 * @param lineSeparator The line separator to use.
+	 * @param isRelativePaths Whether imprint paths should be written relative to the base path.
+	 * @return The entries written, in order.
+	 * @throws IOException if there was an error writing the file.
+	 */
+	private static List<MappedDatimReader.Entry> writeDatim(final Path datimFile, final String lineSeparator, final boolean isRelativePaths)
+			throws IOException {
+		final Datim.Serializer serializer = new Datim.Serializer(lineSeparator, isRelativePaths);
+		final List<MappedDatimReader.Entry> entries = new ArrayList<>();
+		try (final Writer writer = new BufferedWriter(new OutputStreamWriter(newOutputStream(datimFile), UTF_8))) {
+			serializer.appendHeader(writer);
+			long number = 0;
+			for(final String baseName : List.of("foo", "bar", "foo-bar")) {
+				final Path basePath = datimFile.getParent().resolve(baseName);
+				serializer.appendBasePath(writer, basePath);
+				for(final String name : List.of("sub/file-2.txt", "sub/file-1.txt", "sub", "file.txt", "")) { //directories are written after their children
+					final Path path = basePath.resolve(name);
+					final PathImprint imprint = new PathImprint(path, FileTime.from(Instant.ofEpochSecond(1653252496)), FINGERPRINT_ALGORITHM.hash("content " + path),
+							FINGERPRINT_ALGORITHM.hash(path.toString()));
+					serializer.appendImprint(writer, imprint, ++number, Optional.of(basePath));
+					entries.add(new MappedDatimReader.Entry(Optional.of(basePath), imprint,
+							isRelativePaths ? Optional.of(basePath.relativize(path)) : Optional.empty()));
+				}
+			}
+		}
+		return entries;
+	}
+
+	/** Verifies that imprints of individual paths are found, for each line separator and with both absolute and relative paths. */
+	@Test
+	void verifyFindEntry(@TempDir final Path tempDir) throws IOException {
+		for(final String lineSeparator : List.of("\n", "\r", "\r\n")) {
+			for(final boolean isRelativePaths : List.of(false, true)) {
+				final Path datimFile = tempDir.resolve("test.datim");
+				final List<MappedDatimReader.Entry> entries = writeDatim(datimFile, lineSeparator, isRelativePaths);
+				assertThat(DatimIndex.build(datimFile), is((long)entries.size()));
+				try (final DatimIndex index = new DatimIndex(datimFile)) {
+					assertThat(index.getEntryCount(), is((long)entries.size()));
+					assertThat(index.getBasePaths(), is(List.of(tempDir.resolve("foo"), tempDir.resolve("bar"), tempDir.resolve("foo-bar"))));
+					for(final MappedDatimReader.Entry entry : entries) {
+						assertThat(index.findEntry(entry.imprint().path()), isPresentAndIs(entry));
+					}
+					assertThat(index.findEntry(tempDir.resolve("foo").resolve("missing.txt")), isEmpty());
+					assertThat(index.findEntry(tempDir.resolve("fo")), isEmpty());
+				}
+			}
+		}
+	}
+
+	/** Verifies that the imprints of a subtree include the path itself and all descendants, but not siblings sharing a name prefix. */
+	@Test
+	void verifySubtreeEntries(@TempDir final Path tempDir) throws IOException {
+		final Path datimFile = tempDir.resolve("test.datim");
+		final List<MappedDatimReader.Entry> entries = writeDatim(datimFile, "\n", true);
+		DatimIndex.build(datimFile);
+		try (final DatimIndex index = new DatimIndex(datimFile)) {
+			final Path foo = tempDir.resolve("foo");
+			final List<MappedDatimReader.Entry> fooEntries = index.entries(foo).collect(toList());
+			assertThat(fooEntries, hasSize(5));
+			assertThat(fooEntries.get(0).imprint().path(), is(foo));
+			assertThat(fooEntries, containsInAnyOrder(entries.stream().filter(entry -> entry.imprint().path().startsWith(foo)).toArray()));
+			assertThat(index.entries(foo.resolve("sub")).map(entry -> entry.imprint().path()).collect(toList()),
+					contains(foo.resolve("sub"), foo.resolve("sub").resolve("file-1.txt"), foo.resolve("sub").resolve("file-2.txt")));
+			assertThat(index.entries(foo.resolve("file.txt")).count(), is(1L));
+			assertThat(index.entries(foo.resolve("missing")).count(), is(0L));
+			assertThat(index.entries(tempDir).count(), is((long)entries.size()));
+		}
+	}
+
+	/**
+	 * Verifies that an index built from sorted runs is the same as one built in memory, including when there are more runs than can be merged at the same time,
+	 * and that duplicate paths in different runs remain in the order of the datim file.
+	 */
+	@Test
+	void verifyBuildFromRuns(@TempDir final Path tempDir) throws IOException {
+		final Path datimFile = tempDir.resolve("test.datim");
+		final Datim.Serializer serializer = new Datim.Serializer();
+		final List<PathImprint> imprints = new ArrayList<>();
+		try (final Writer writer = new BufferedWriter(new OutputStreamWriter(newOutputStream(datimFile), UTF_8))) {
+			serializer.appendHeader(writer);
+			long number = 0;
+			for(final String baseName : List.of("foo", "bar", "foo")) { //the second `foo` tree duplicates the paths of the first
+				final Path basePath = tempDir.resolve(baseName);
+				serializer.appendBasePath(writer, basePath);
+				for(int i = 149; i >= 0; i--) {
+					final Path path = basePath.resolve("file-%d.txt".formatted(i));
+					final PathImprint imprint = new PathImprint(path, FileTime.from(Instant.ofEpochSecond(1653252496)),
+							FINGERPRINT_ALGORITHM.hash("content " + number), FINGERPRINT_ALGORITHM.hash(path.toString()));
+					serializer.appendImprint(writer, imprint, ++number, Optional.of(basePath));
+					imprints.add(imprint);
+				}
+			}
+		}
+		final Path memoryIndexFile = tempDir.resolve("memory.idx");
+		assertThat(DatimIndex.build(datimFile, memoryIndexFile), is((long)imprints.size()));
+		final List<PathImprint> memoryImprints;
+		try (final DatimIndex index = new DatimIndex(datimFile, memoryIndexFile)) {
+			memoryImprints = index.entries(tempDir).map(MappedDatimReader.Entry::imprint).collect(toList());
+		}
+		assertThat(memoryImprints, containsInAnyOrder(imprints.toArray()));
+		final Path spillDirectory = createDirectory(tempDir.resolve("spill"));
+		for(final int windowSize : List.of(1, 2, 100)) { //a window size of 1 or 2 produces more runs than ImprintSorter.MAX_MERGE_WIDTH
+			final Path indexFile = tempDir.resolve("runs-%d.idx".formatted(windowSize));
+			assertThat(DatimIndex.build(datimFile, indexFile, windowSize, Optional.of(spillDirectory)), is((long)imprints.size()));
+			try (final Stream<Path> spillFiles = list(spillDirectory)) {
+				assertThat("Run files deleted.", spillFiles.count(), is(0L));
+			}
+			try (final DatimIndex index = new DatimIndex(datimFile, indexFile)) {
+				assertThat(index.entries(tempDir).map(MappedDatimReader.Entry::imprint).collect(toList()), is(memoryImprints));
+				final Path duplicatePath = tempDir.resolve("foo").resolve("file-0.txt");
+				assertThat(index.findEntry(duplicatePath).map(MappedDatimReader.Entry::imprint), isPresentAndIs(imprints.get(149)));
+			}
+		}
+	}
+
+	/** Verifies that an index cannot be opened after the datim file has changed. */
+	@Test
+	void verifyOutOfDateIndexRejected(@TempDir final Path tempDir) throws IOException {
+		final Path datimFile = tempDir.resolve("test.datim");
+		writeDatim(datimFile, "\n", false);
+		DatimIndex.build(datimFile);
+		writeString(datimFile, "\n", StandardOpenOption.APPEND);
+		assertThrows(IOException.class, () -> new DatimIndex(datimFile).close());
+	}
+
+	/** Verifies that a compressed datim file cannot be indexed. */
+	@Test
+	void verifyCompressedRejected(@TempDir final Path tempDir) throws IOException {
+		final Path datimFile = tempDir.resolve("test.datim.gz");
+		try (final ParallelGzipChannel channel = new ParallelGzipChannel(newByteChannel(datimFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE))) {
+			channel.write(UTF_8.encode(new Datim.Serializer().appendHeader(new StringBuilder()).toString()));
+		}
+		assertThrows(IOException.class, () -> DatimIndex.build(datimFile));
+	}
+
+}
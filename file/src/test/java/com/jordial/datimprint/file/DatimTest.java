@@ -19,17 +19,19 @@
 import static com.github.npathai.hamcrestopt.OptionalMatchers.*;
 import static com.globalmentor.collections.iterables.Iterables.*;
 import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static java.nio.charset.StandardCharsets.*;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
-import java.io.IOException;
-import java.io.StringReader;
+import java.io.*;
+import java.nio.channels.Channels;
 import java.nio.file.*;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
-import java.util.Map;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 
 import org.junit.jupiter.api.*;
 
@@ -155,6 +157,102 @@ void verifyReadImprintSkipsBasePathRecords() throws IOException {
 		assertThat(parser.findCurrentBasePath(), isPresentAndIs(barBaseDirectory));
 	}
 
+	/**
+	 * Verifies that relative imprint paths are resolved against the current base path, with an empty path indicating the base path itself.
+	 * @see Datim.Parser#readImprint()
+	 * @see Datim.Parser#findRelativePath()
+	 */
+	@Test
+	void verifyReadImprintResolvesRelativePaths() throws IOException {
+		final Path rootDirectory = findFirst(FileSystems.getDefault().getRootDirectories()).orElseThrow(IllegalStateException::new);
+		final Path fooBaseDirectory = rootDirectory.resolve("test").resolve("foo");
+		final Path testFile = fooBaseDirectory.resolve("sub").resolve("test.bin");
+		final Path otherFile = rootDirectory.resolve("other.bin");
+		final var input = """
+				#\tminiprint\tpath\tcontent-modifiedAt\tcontent-fingerprint\tfingerprint
+				/\t\t%s\t\t\t
+				1\tc56f2ad0\t%s\t2022-05-22T20:48:16.7512146Z\tc3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2\tc56f2ad0a6e082790805ffabf1f68f13f77954ae6936ab1793edde7e101864c9
+				2\tc56f2ad0\t%s\t2022-05-22T20:48:16.7512146Z\tc3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2\tc56f2ad0a6e082790805ffabf1f68f13f77954ae6936ab1793edde7e101864c9
+				3\tc56f2ad0\t\t2022-05-22T20:48:16.7512146Z\tc3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2\tc56f2ad0a6e082790805ffabf1f68f13f77954ae6936ab1793edde7e101864c9
+				"""
+				.formatted(fooBaseDirectory, fooBaseDirectory.relativize(testFile), otherFile);
+		final var parser = new Datim.Parser(new StringReader(input));
+		assertThat(parser.readImprint().map(PathImprint::path), isPresentAndIs(testFile));
+		assertThat(parser.findRelativePath(), isPresentAndIs(fooBaseDirectory.relativize(testFile)));
+		assertThat(parser.readImprint().map(PathImprint::path), isPresentAndIs(otherFile));
+		assertThat(parser.findRelativePath(), isEmpty());
+		assertThat(parser.readImprint().map(PathImprint::path), isPresentAndIs(fooBaseDirectory));
+		assertThat(parser.findRelativePath().map(Path::toString), isPresentAndIs(""));
+		assertThat(parser.readImprint(), isEmpty());
+		final String inputWithoutBasePath = input.replaceFirst("/\t\t.*\\R", "");
+		assertThrows(IOException.class, () -> new Datim.Parser(new StringReader(inputWithoutBasePath)).readImprint());
+	}
+
+	/**
+	 * Verifies that imprints are read regardless of the line separator, including a large record that does not fit in the reader buffer and a last line with no
+	 * line separator.
+	 * @see Datim.Parser#readImprint()
+	 */
+	@Test
+	void verifyReadImprintHandlesLineSeparators() throws IOException {
+		final String longName = "x".repeat(100_000);
+		for(final String lineSeparator : List.of("\n", "\r", "\r\n")) {
+			final String input = String.join(lineSeparator, "#\tminiprint\tpath\tcontent-modifiedAt\tcontent-fingerprint\tfingerprint",
+					"1\tc56f2ad0\t/foo.bar\t2022-05-22T20:48:16.7512146Z\tc3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2\tc56f2ad0a6e082790805ffabf1f68f13f77954ae6936ab1793edde7e101864c9",
+					"2\tc56f2ad0\t/" + longName
+							+ "\t2022-05-22T20:48:16Z\tC3AB8FF13720E8AD9047DD39466B3C8974E592C2FA383D4A3960714CAEF0C4F2\tc56f2ad0a6e082790805ffabf1f68f13f77954ae6936ab1793edde7e101864c9");
+			final var parser = new Datim.Parser(new StringReader(input));
+			assertThat(parser.readImprint().map(PathImprint::path), isPresentAndIs(Path.of("/foo.bar")));
+			final PathImprint imprint = parser.readImprint().orElseThrow(AssertionError::new);
+			assertThat(imprint.path(), is(Path.of("/" + longName)));
+			assertThat(imprint.contentModifiedAt(), is(FileTime.from(Instant.ofEpochSecond(1653252496))));
+			assertThat(imprint.contentFingerprint(), is(Hash.fromChecksum("c3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2")));
+			assertThat(parser.readImprint(), isEmpty());
+		}
+	}
+
+	/** @see Datim.Parser#readImprint() */
+	@Test
+	void verifyReadImprintWithMissingFieldsThrowsIOException() throws IOException {
+		final var input = """
+				#\tminiprint\tpath\tcontent-modifiedAt\tcontent-fingerprint\tfingerprint
+				1\tc56f2ad0\t/foo.bar\t2022-05-22T20:48:16.7512146Z
+				""";
+		assertThrows(IOException.class, () -> new Datim.Parser(new StringReader(input)).readImprint());
+	}
+
+	/** Verifies that timestamps are parsed the same as by {@link Instant#parse(CharSequence)}, including those falling back to it. */
+	@Test
+	void verifyParseTimestampMatchesInstantParse() {
+		final List<String> timestamps = new ArrayList<>(List.of("1970-01-01T00:00:00Z", "2022-05-22T20:48:16.7512146Z", "2000-02-29T23:59:59.999999999Z",
+				"1900-03-01T00:00:00.1Z", "0000-02-29T12:00:00Z", "0000-12-31T00:00:00Z", "1969-12-31T23:59:59.123456Z", "9999-12-31T23:59:59Z",
+				"+10000-01-01T00:00:00Z", "-0001-01-01T00:00:00Z", "2022-05-22T24:00:00Z", "2022-05-22T20:48:16.Z"));
+		final Random random = new Random(1);
+		for(int i = 0; i < 10_000; i++) {
+			timestamps.add(Instant.ofEpochSecond(random.nextLong(-62_167_219_200L, 253_402_300_800L), random.nextInt(1_000_000_000)).toString());
+		}
+		for(final String timestamp : timestamps) {
+			assertThat(timestamp, Datim.parseTimestamp(timestamp.toCharArray(), 0, timestamp.length()), is(Instant.parse(timestamp)));
+		}
+		final char[] chars = "\t2022-05-22T20:48:16Z\t".toCharArray();
+		assertThat(Datim.parseTimestamp(chars, 1, chars.length - 1), is(Instant.ofEpochSecond(1653252496)));
+		for(final String invalidTimestamp : List.of("2022-02-29T00:00:00Z", "2022-13-01T00:00:00Z", "2022-05-22T20:48:16.1234567891Z",
+				"2022-05-22 20:48:16Z", "2022-05-22T20:48:16", "")) {
+			assertThrows(DateTimeParseException.class, () -> Datim.parseTimestamp(invalidTimestamp.toCharArray(), 0, invalidTimestamp.length()),
+					invalidTimestamp);
+		}
+	}
+
+	/** Verifies that checksums are parsed the same as by {@link Hash#fromChecksum(CharSequence)}. */
+	@Test
+	void verifyParseChecksumMatchesHashFromChecksum() {
+		for(final String checksum : List.of("c3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2",
+				"C3AB8FF13720E8AD9047DD39466B3C8974E592C2FA383D4A3960714CAEF0C4F2", "00ff", "")) {
+			final char[] chars = ("\t" + checksum + "\t").toCharArray();
+			assertThat(checksum, Datim.parseChecksum(chars, 1, chars.length - 1), is(Hash.fromChecksum(checksum)));
+		}
+	}
+
 	//Serializer
 
 	/** @see Datim.Serializer#appendHeader(Appendable) */
@@ -194,4 +292,102 @@ void testSerializerAppendImprint() throws IOException {
 				"81985529216486895\tc56f2ad0\t/foo.bar\t2022-05-22T20:48:16.7512146Z\tc3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2\tc56f2ad0a6e082790805ffabf1f68f13f77954ae6936ab1793edde7e101864c9\n"));
 	}
 
+	/**
+	 * Verifies that an encoded imprint is the same as the appended imprint following the number field, including for paths with characters outside ASCII.
+	 * @see Datim.Serializer#encodeImprint(PathImprint)
+	 */
+	@Test
+	void verifySerializerEncodeImprintMatchesAppendImprint() throws IOException {
+		final Datim.Serializer serializer = new Datim.Serializer("\r\n");
+		final FileTime modifiedAt = FileTime.from(Instant.ofEpochSecond(1653252496, 751214600));
+		for(final String pathString : new String[] {"/foo.bar", "/caf\u00e9/na\u00efve \uD83D\uDE00.txt", "/"}) {
+			final Path path = mock(Path.class); //the default file system might not support all characters
+			when(path.toString()).thenReturn(pathString);
+			final PathImprint imprint = new PathImprint(path, modifiedAt, FINGERPRINT_ALGORITHM.hash("content " + pathString),
+					FINGERPRINT_ALGORITHM.hash(pathString));
+			final String record = serializer.appendImprint(new StringBuilder(), imprint, 123).toString();
+			assertThat(new String(serializer.encodeImprint(imprint), UTF_8), is(record.substring("123".length())));
+		}
+	}
+
+	/**
+	 * Verifies that the channel writer writes the same content as the serializer appending to a writer, using a buffer small enough to require flushing and
+	 * direct writes.
+	 * @see Datim.ChannelWriter
+	 */
+	@Test
+	void verifyChannelWriterWritesSameAsSerializer() throws IOException {
+		final Datim.Serializer serializer = new Datim.Serializer("\n");
+		final FileTime modifiedAt = FileTime.from(Instant.ofEpochSecond(1653252496, 751214600));
+		final StringBuilder expected = serializer.appendHeader(new StringBuilder());
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (final Datim.ChannelWriter channelWriter = new Datim.ChannelWriter(Channels.newChannel(outputStream), 64)) {
+			channelWriter.write(serializer.encodeHeader());
+			final Path basePath = Path.of("/base");
+			serializer.appendBasePath(expected, basePath);
+			channelWriter.write(serializer.encodeBasePath(basePath));
+			for(long number = 1; number <= 20; number++) {
+				final String pathString = "/base/file-" + number;
+				final PathImprint imprint = new PathImprint(Path.of(pathString), modifiedAt, FINGERPRINT_ALGORITHM.hash("content " + pathString),
+						FINGERPRINT_ALGORITHM.hash(pathString));
+				final long recordNumber = number == 20 ? -1 : number; //include the largest unsigned number
+				serializer.appendImprint(expected, imprint, recordNumber);
+				channelWriter.writeImprint(recordNumber, serializer.encodeImprint(imprint));
+			}
+		}
+		assertThat(outputStream.toString(UTF_8), is(expected.toString()));
+	}
+
+	/** @see Datim.Serializer#relativizePathString(String, String, String) */
+	@Test
+	void testSerializerRelativizePathString() {
+		assertThat(Datim.Serializer.relativizePathString("/foo/bar/test.txt", "/foo/bar", "/"), is("test.txt"));
+		assertThat(Datim.Serializer.relativizePathString("/foo/bar", "/foo/bar", "/"), is(""));
+		assertThat(Datim.Serializer.relativizePathString("/foo/barbaz/test.txt", "/foo/bar", "/"), is("/foo/barbaz/test.txt"));
+		assertThat(Datim.Serializer.relativizePathString("/other/test.txt", "/foo/bar", "/"), is("/other/test.txt"));
+		assertThat(Datim.Serializer.relativizePathString("/foo/test.txt", "/", "/"), is("foo/test.txt"));
+		assertThat(Datim.Serializer.relativizePathString("C:\\foo\\test.txt", "C:\\", "\\"), is("foo\\test.txt"));
+		assertThat(Datim.Serializer.relativizePathString("C:\\foo\\test.txt", "C:\\foo", "\\"), is("test.txt"));
+	}
+
+	/**
+	 * Verifies that the channel writer writes the same relative paths as the serializer appending to a writer, and that the imprints are read back with their
+	 * original paths.
+	 * @see Datim.ChannelWriter#writeBasePath(Datim.Serializer, Path)
+	 */
+	@Test
+	void verifyChannelWriterWritesSameRelativePathsAsSerializer() throws IOException {
+		final Datim.Serializer serializer = new Datim.Serializer("\n", true);
+		final FileTime modifiedAt = FileTime.from(Instant.ofEpochSecond(1653252496, 751214600));
+		final StringBuilder expected = serializer.appendHeader(new StringBuilder());
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final List<PathImprint> imprints = new ArrayList<>();
+		try (final Datim.ChannelWriter channelWriter = new Datim.ChannelWriter(Channels.newChannel(outputStream), 64)) {
+			channelWriter.write(serializer.encodeHeader());
+			long number = 0;
+			for(final String basePathString : List.of("/base", "/")) {
+				final Path basePath = Path.of(basePathString);
+				serializer.appendBasePath(expected, basePath);
+				channelWriter.writeBasePath(serializer, basePath);
+				for(final String pathString : List.of("/base/file", "/base/sub/file", "/basement/file", "/other/file", "/base", "/")) {
+					final PathImprint imprint = new PathImprint(Path.of(pathString), modifiedAt, FINGERPRINT_ALGORITHM.hash("content " + pathString),
+							FINGERPRINT_ALGORITHM.hash(pathString));
+					imprints.add(imprint);
+					number++;
+					serializer.appendImprint(expected, imprint, number, Optional.of(basePath));
+					channelWriter.writeImprint(number, serializer.encodeImprint(imprint));
+				}
+			}
+		}
+		final String output = outputStream.toString(UTF_8);
+		assertThat(output, is(expected.toString()));
+		assertThat(output, containsString("\tsub/file\t"));
+		assertThat(output, containsString("\t/basement/file\t"));
+		final Datim.Parser parser = new Datim.Parser(new StringReader(output));
+		for(final PathImprint imprint : imprints) {
+			assertThat(parser.readImprint(), isPresentAndIs(imprint));
+		}
+		assertThat(parser.readImprint(), isEmpty());
+	}
+
 }
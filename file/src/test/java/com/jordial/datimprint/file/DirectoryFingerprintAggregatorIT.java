@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static java.nio.file.Files.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import com.globalmentor.io.Filenames;
+import com.globalmentor.security.Hash;
+import com.jordial.datimprint.file.DirectoryFingerprintAggregator.ChildFingerprints;
+import com.jordial.datimprint.file.PathImprintGenerator.DirectoryContentChildrenFingerprints;
+
+/**
+ * Integration tests of {@link DirectoryFingerprintAggregator}.
+ * @author Garret Wilson
+ */
+public class DirectoryFingerprintAggregatorIT {
+
+	/**
+	 * Creates the fingerprints of a number of children in shuffled order.
+	 * @param count The number of children.
+	 * @return The child fingerprints.
+	 */
+	private static List<ChildFingerprints> shuffledChildFingerprints(final int count) {
+		final List<ChildFingerprints> childFingerprints = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			final String filename = "child-%d.txt".formatted(i);
+			childFingerprints.add(new ChildFingerprints(filename, FINGERPRINT_ALGORITHM.hash("content " + filename), FINGERPRINT_ALGORITHM.hash(filename)));
+		}
+		Collections.shuffle(childFingerprints, new Random(123));
+		return childFingerprints;
+	}
+
+	/**
+	 * Combines child fingerprints using a spill threshold.
+	 * @param childFingerprints The child fingerprints to add.
+	 * @param spillThreshold The spill threshold.
+	 * @param foundSpillDirectory The directory for run files, if not the default temporary directory.
+	 * @return The combined fingerprints.
+	 */
+	private static DirectoryContentChildrenFingerprints aggregate(final List<ChildFingerprints> childFingerprints, final int spillThreshold,
+			final Optional<Path> foundSpillDirectory) throws IOException {
+		try (final DirectoryFingerprintAggregator aggregator = new DirectoryFingerprintAggregator(FINGERPRINT_ALGORITHM, spillThreshold, foundSpillDirectory)) {
+			for(final ChildFingerprints childFingerprint : childFingerprints) {
+				aggregator.add(childFingerprint);
+			}
+			return aggregator.finish();
+		}
+	}
+
+	/**
+	 * Combines child fingerprints directly in the order given.
+	 * @param childFingerprints The child fingerprints to combine.
+	 * @return The combined fingerprints.
+	 */
+	private static DirectoryContentChildrenFingerprints combine(final List<ChildFingerprints> childFingerprints) {
+		final Hash contentFingerprint = FINGERPRINT_ALGORITHM.hash(childFingerprints.stream().map(ChildFingerprints::contentFingerprint).toArray(Hash[]::new));
+		final Hash childrenFingerprint = FINGERPRINT_ALGORITHM.hash(childFingerprints.stream().map(ChildFingerprints::fingerprint).toArray(Hash[]::new));
+		return new DirectoryContentChildrenFingerprints(contentFingerprint, childrenFingerprint);
+	}
+
+	/** @see DirectoryFingerprintAggregator#finish() */
+	@Test
+	void testFinishEmpty(@TempDir final Path tempDir) throws IOException {
+		assertThat(aggregate(List.of(), 10, Optional.of(tempDir)),
+				is(new DirectoryContentChildrenFingerprints(FINGERPRINT_ALGORITHM.emptyHash(), FINGERPRINT_ALGORITHM.emptyHash())));
+	}
+
+	/**
+	 * Verifies that children are combined in filename order, regardless of the order they were added.
+	 * @see DirectoryFingerprintAggregator#finish()
+	 */
+	@Test
+	void testFinishInMemory(@TempDir final Path tempDir) throws IOException {
+		final List<ChildFingerprints> childFingerprints = shuffledChildFingerprints(3);
+		final List<ChildFingerprints> sortedChildFingerprints = new ArrayList<>(childFingerprints);
+		sortedChildFingerprints.sort(Comparator.comparing(ChildFingerprints::filename, TreeOrder.filenameComparator()));
+		final Hash contentFingerprint = FINGERPRINT_ALGORITHM
+				.hash(sortedChildFingerprints.stream().map(ChildFingerprints::contentFingerprint).toArray(Hash[]::new));
+		final Hash childrenFingerprint = FINGERPRINT_ALGORITHM.hash(sortedChildFingerprints.stream().map(ChildFingerprints::fingerprint).toArray(Hash[]::new));
+		assertThat(aggregate(childFingerprints, 10, Optional.of(tempDir)), is(new DirectoryContentChildrenFingerprints(contentFingerprint, childrenFingerprint)));
+	}
+
+	/**
+	 * Verifies that spilling children to run files produces the same fingerprints as combining them in memory, and that run files are deleted on closing.
+	 * @see DirectoryFingerprintAggregator#add(ChildFingerprints)
+	 * @see DirectoryFingerprintAggregator#finish()
+	 * @see DirectoryFingerprintAggregator#close()
+	 */
+	@Test
+	void verifySpilledRunsProduceSameFingerprints(@TempDir final Path tempDir) throws IOException {
+		final List<ChildFingerprints> childFingerprints = shuffledChildFingerprints(1_000);
+		final DirectoryContentChildrenFingerprints inMemoryFingerprints = aggregate(childFingerprints, 1_000, Optional.of(tempDir));
+		for(final int spillThreshold : new int[] {1, 7, 100, 999}) {
+			assertThat("Spill threshold %d.".formatted(spillThreshold), aggregate(childFingerprints, spillThreshold, Optional.of(tempDir)),
+					is(inMemoryFingerprints));
+		}
+		assertThat("Default temporary directory.", aggregate(childFingerprints, 100, Optional.empty()), is(inMemoryFingerprints));
+		try (final Stream<Path> runFiles = list(tempDir)) {
+			assertThat("Run files are deleted.", runFiles.count(), is(0L));
+		}
+	}
+
+	/**
+	 * Verifies that distinct filenames the rules of {@link com.globalmentor.io.Paths#filenameComparator()} consider equal are combined in code unit order,
+	 * regardless of the order the children are added. Ordering by those rules alone, as before, gave fingerprints that depended on the order the children were
+	 * added: one of the two fingerprints shown here.
+	 * @see DirectoryFingerprintAggregator#finish()
+	 */
+	@Test
+	void verifyCollationTiesCombinedInCodeUnitOrder(@TempDir final Path tempDir) throws IOException {
+		final ChildFingerprints jarChecksumFingerprints = new ChildFingerprints("example-1.0.jar.sha1", FINGERPRINT_ALGORITHM.hash("jar checksum"),
+				FINGERPRINT_ALGORITHM.hash("jar checksum file"));
+		final ChildFingerprints pomChecksumFingerprints = new ChildFingerprints("example-1.0.pom.sha1", FINGERPRINT_ALGORITHM.hash("pom checksum"),
+				FINGERPRINT_ALGORITHM.hash("pom checksum file"));
+		assertThat("Filenames are a tie using the collation rules alone.",
+				Filenames.comparator(Locale.ROOT).compare(jarChecksumFingerprints.filename(), pomChecksumFingerprints.filename()), is(0));
+		final DirectoryContentChildrenFingerprints jarFirstFingerprints = combine(List.of(jarChecksumFingerprints, pomChecksumFingerprints));
+		final DirectoryContentChildrenFingerprints pomFirstFingerprints = combine(List.of(pomChecksumFingerprints, jarChecksumFingerprints));
+		assertThat("Previous fingerprints varied with the order added.", pomFirstFingerprints, is(not(jarFirstFingerprints)));
+		assertThat(aggregate(List.of(jarChecksumFingerprints, pomChecksumFingerprints), 10, Optional.of(tempDir)), is(jarFirstFingerprints));
+		assertThat(aggregate(List.of(pomChecksumFingerprints, jarChecksumFingerprints), 10, Optional.of(tempDir)), is(jarFirstFingerprints));
+		assertThat("Spilled.", aggregate(List.of(pomChecksumFingerprints, jarChecksumFingerprints), 1, Optional.of(tempDir)), is(jarFirstFingerprints));
+	}
+
+	/** @see DirectoryFingerprintAggregator#add(ChildFingerprints) */
+	@Test
+	void testAddAfterCloseThrowsIllegalStateException(@TempDir final Path tempDir) throws IOException {
+		final ChildFingerprints childFingerprints = shuffledChildFingerprints(1).get(0);
+		final DirectoryFingerprintAggregator aggregator = new DirectoryFingerprintAggregator(FINGERPRINT_ALGORITHM, 1, Optional.of(tempDir));
+		aggregator.add(childFingerprints);
+		aggregator.add(childFingerprints);
+		assertThat(aggregator.getRunCount(), is(1));
+		aggregator.close();
+		assertThrows(IllegalStateException.class, () -> aggregator.add(childFingerprints));
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.globalmentor.io.Paths.*;
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.globalmentor.java.Longs;
+import com.globalmentor.security.Hash;
+
+/**
+ * Benchmarks of generating path fingerprints, comparing pooled message digests with allocating new message digests and buffers for each fingerprint.
+ * <p>
+ * Run using <code>mvn test-compile</code> and then {@link #main(String[])} with the test classpath, which enables the GC profiler to show the bytes allocated
+ * per operation (<code>gc.alloc.rate.norm</code>).
+ * </p>
+ * @author Garret Wilson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FingerprintBenchmark {
+
+	private final Path path = Paths.get("foo", "bar", "example-file.txt");
+
+	private final FileTime contentModifiedAt = FileTime.from(Instant.ofEpochSecond(1653252496, 751214600));
+
+	private final Hash contentFingerprint = FINGERPRINT_ALGORITHM.hash("foobar");
+
+	private final Hash[] childFingerprints = new Hash[16];
+
+	@Setup
+	public void setUp() {
+		for(int i = 0; i < childFingerprints.length; i++) {
+			childFingerprints[i] = FINGERPRINT_ALGORITHM.hash("child" + i);
+		}
+	}
+
+	/** @see PathImprint#generateFingerprint(Path, FileTime, Hash, Hash, com.globalmentor.security.MessageDigests.Algorithm) */
+	@Benchmark
+	public Hash generateFingerprint() {
+		return PathImprint.generateFingerprint(path, contentModifiedAt, contentFingerprint, null, FINGERPRINT_ALGORITHM);
+	}
+
+	/** Generates a fingerprint as {@link #generateFingerprint()} does, but allocating a new message digest and buffers each time. */
+	@Benchmark
+	public Hash generateFingerprintUnpooled() {
+		final MessageDigest fingerprintMessageDigest = FINGERPRINT_ALGORITHM.newMessageDigest();
+		findFilename(path).map(FINGERPRINT_ALGORITHM::hash).ifPresent(filenameFingerprint -> filenameFingerprint.updateMessageDigest(fingerprintMessageDigest));
+		fingerprintMessageDigest.update(Longs.toBytes(contentModifiedAt.toMillis()));
+		contentFingerprint.updateMessageDigest(fingerprintMessageDigest);
+		return Hash.fromDigest(fingerprintMessageDigest);
+	}
+
+	/** Combines child fingerprints as is done for a directory, using a pooled message digest. */
+	@Benchmark
+	public Hash combineChildFingerprints() {
+		final MessageDigestPool messageDigestPool = MessageDigestPool.forAlgorithm(FINGERPRINT_ALGORITHM);
+		final MessageDigest messageDigest = messageDigestPool.borrowMessageDigest();
+		try {
+			for(final Hash childFingerprint : childFingerprints) {
+				childFingerprint.updateMessageDigest(messageDigest);
+			}
+			return Hash.fromDigest(messageDigest);
+		} finally {
+			messageDigestPool.returnMessageDigest(messageDigest);
+		}
+	}
+
+	/** Combines child fingerprints as {@link #combineChildFingerprints()} does, but allocating a new message digest. */
+	@Benchmark
+	public Hash combineChildFingerprintsUnpooled() {
+		final MessageDigest messageDigest = FINGERPRINT_ALGORITHM.newMessageDigest();
+		for(final Hash childFingerprint : childFingerprints) {
+			childFingerprint.updateMessageDigest(messageDigest);
+		}
+		return Hash.fromDigest(messageDigest);
+	}
+
+	/**
+	 * Runs the benchmarks in this class with the GC profiler.
+	 * @param args Command-line arguments; ignored.
+	 * @throws RunnerException if there is an error running the benchmarks.
+	 */
+	public static void main(final String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FingerprintBenchmark.class.getSimpleName()).addProfiler("gc").build()).run();
+	}
+
+}
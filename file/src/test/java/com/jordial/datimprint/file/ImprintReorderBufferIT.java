@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static com.jordial.datimprint.file.TestImprints.*;
+import static java.nio.file.Files.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Integration tests of {@link ImprintReorderBuffer}.
+ * @author Garret Wilson
+ */
+public class ImprintReorderBufferIT {
+
+	/**
+	 * Creates the paths of a test tree in tree order.
+	 * @param rootDirectory The root directory of the tree.
+	 * @return The paths of the tree, including the root directory, in the order of {@link TreeOrder#pathComparator()}.
+	 */
+	private static List<Path> treePaths(final Path rootDirectory) {
+		final List<Path> paths = new ArrayList<>();
+		for(int i = 0; i < 10; i++) {
+			final Path directory = rootDirectory.resolve("dir-%d".formatted(i));
+			for(int j = 0; j < 10; j++) {
+				paths.add(directory.resolve("file-%d.txt".formatted(j)));
+			}
+			paths.add(directory);
+		}
+		paths.add(rootDirectory);
+		paths.sort(TreeOrder.pathComparator());
+		return paths;
+	}
+
+	/**
+	 * Verifies that imprints are consumed in tree order when offered in random order, and only when all the imprints before them have been offered.
+	 * @see ImprintReorderBuffer#offer(PathImprint)
+	 * @see ImprintReorderBuffer#consume()
+	 */
+	@Test
+	void verifyImprintsConsumedInTreeOrder(@TempDir final Path tempDir) throws IOException {
+		final Path rootDirectory = tempDir.resolve("root");
+		final List<Path> paths = treePaths(rootDirectory);
+		final List<PathImprint> consumedImprints = new ArrayList<>();
+		try (final ImprintReorderBuffer reorderBuffer = new ImprintReorderBuffer(consumedImprints::add, FINGERPRINT_ALGORITHM, 1_000, Optional.of(tempDir))) {
+			paths.forEach(reorderBuffer::expect);
+			final List<Path> shuffledPaths = new ArrayList<>(paths);
+			Collections.shuffle(shuffledPaths, new Random(123));
+			final Path firstPath = paths.get(0);
+			for(final Path path : shuffledPaths) {
+				if(!path.equals(firstPath)) {
+					reorderBuffer.offer(imprint(path));
+					reorderBuffer.consume();
+				}
+			}
+			assertThat("Imprints wait for the first imprint.", consumedImprints, is(empty()));
+			reorderBuffer.offer(imprint(firstPath));
+			reorderBuffer.consume();
+			assertThat(consumedImprints, contains(paths.stream().map(TestImprints::imprint).toArray()));
+			assertThat(reorderBuffer.getRunCount(), is(0));
+		}
+	}
+
+	/**
+	 * Verifies that imprints inside a directory being listed wait until the listing is finished, even if they come before all the expected paths.
+	 * @see ImprintReorderBuffer#beginListing(Path)
+	 * @see ImprintReorderBuffer#endListing(Path)
+	 */
+	@Test
+	void verifyImprintsInsideListingDirectoryWait(@TempDir final Path tempDir) throws IOException {
+		final Path directory = tempDir.resolve("dir");
+		final Path file2 = directory.resolve("file-2.txt");
+		final Path file1 = directory.resolve("file-1.txt");
+		final List<PathImprint> consumedImprints = new ArrayList<>();
+		try (final ImprintReorderBuffer reorderBuffer = new ImprintReorderBuffer(consumedImprints::add, FINGERPRINT_ALGORITHM, 1_000, Optional.of(tempDir))) {
+			reorderBuffer.expect(directory);
+			reorderBuffer.beginListing(directory);
+			reorderBuffer.expect(file2);
+			reorderBuffer.offer(imprint(file2));
+			reorderBuffer.consume();
+			assertThat(consumedImprints, is(empty()));
+			reorderBuffer.expect(file1); //listed after the other file was generated
+			reorderBuffer.endListing(directory);
+			reorderBuffer.consume();
+			assertThat(consumedImprints, is(empty()));
+			reorderBuffer.offer(imprint(file1));
+			reorderBuffer.offer(imprint(directory));
+			reorderBuffer.consume();
+			assertThat(consumedImprints, contains(imprint(file1), imprint(file2), imprint(directory)));
+		}
+	}
+
+	/**
+	 * Verifies that an abandoned path no longer holds back the imprints after it.
+	 * @see ImprintReorderBuffer#abandon(Path)
+	 */
+	@Test
+	void testAbandon(@TempDir final Path tempDir) throws IOException {
+		final Path file1 = tempDir.resolve("file-1.txt");
+		final Path file2 = tempDir.resolve("file-2.txt");
+		final List<PathImprint> consumedImprints = new ArrayList<>();
+		try (final ImprintReorderBuffer reorderBuffer = new ImprintReorderBuffer(consumedImprints::add, FINGERPRINT_ALGORITHM, 1_000, Optional.of(tempDir))) {
+			reorderBuffer.expect(file1);
+			reorderBuffer.expect(file2);
+			reorderBuffer.offer(imprint(file2));
+			reorderBuffer.consume();
+			assertThat(consumedImprints, is(empty()));
+			reorderBuffer.abandon(file1);
+			reorderBuffer.consume();
+			assertThat(consumedImprints, contains(imprint(file2)));
+		}
+	}
+
+	/**
+	 * Verifies that imprints overflowing the reorder window are spilled to run files and still consumed in tree order, and that run files are deleted on
+	 * closing.
+	 * @see ImprintReorderBuffer#offer(PathImprint)
+	 * @see ImprintReorderBuffer#close()
+	 */
+	@Test
+	void verifySpilledImprintsConsumedInTreeOrder(@TempDir final Path tempDir) throws IOException {
+		final Path spillDirectory = createDirectory(tempDir.resolve("spill"));
+		final List<Path> paths = treePaths(tempDir.resolve("root"));
+		final List<PathImprint> consumedImprints = new ArrayList<>();
+		try (final ImprintReorderBuffer reorderBuffer = new ImprintReorderBuffer(consumedImprints::add, FINGERPRINT_ALGORITHM, 7, Optional.of(spillDirectory))) {
+			paths.forEach(reorderBuffer::expect);
+			final List<Path> shuffledPaths = new ArrayList<>(paths);
+			Collections.shuffle(shuffledPaths, new Random(123));
+			for(final Path path : shuffledPaths) {
+				reorderBuffer.offer(imprint(path));
+				reorderBuffer.consume();
+			}
+			assertThat(consumedImprints, contains(paths.stream().map(TestImprints::imprint).toArray()));
+			assertThat(reorderBuffer.getRunCount(), is(greaterThan(0)));
+		}
+		try (final Stream<Path> runFiles = list(spillDirectory)) {
+			assertThat("Run files are deleted.", runFiles.count(), is(0L));
+		}
+	}
+
+	/**
+	 * Verifies that when more runs are spilled than can be merged at the same time, the open runs are merged so that the number of open run files stays bounded,
+	 * and that the imprints are still consumed in tree order.
+	 * @see ImprintSorter#MAX_MERGE_WIDTH
+	 */
+	@Test
+	void verifyRunsMergedBeyondMergeWidth(@TempDir final Path tempDir) throws IOException {
+		final Path spillDirectory = createDirectory(tempDir.resolve("spill"));
+		final Path rootDirectory = tempDir.resolve("root");
+		final List<Path> paths = new ArrayList<>();
+		for(int i = 0; i < ImprintSorter.MAX_MERGE_WIDTH * 3; i++) {
+			paths.add(rootDirectory.resolve("file-%d.txt".formatted(i)));
+		}
+		paths.add(rootDirectory);
+		paths.sort(TreeOrder.pathComparator());
+		final List<PathImprint> consumedImprints = new ArrayList<>();
+		try (final ImprintReorderBuffer reorderBuffer = new ImprintReorderBuffer(consumedImprints::add, FINGERPRINT_ALGORITHM, 1, Optional.of(spillDirectory))) {
+			paths.forEach(reorderBuffer::expect);
+			final List<Path> shuffledPaths = new ArrayList<>(paths);
+			Collections.shuffle(shuffledPaths, new Random(123));
+			final Path firstPath = paths.get(0);
+			for(final Path path : shuffledPaths) {
+				if(!path.equals(firstPath)) {
+					reorderBuffer.offer(imprint(path));
+					reorderBuffer.consume();
+					assertThat(reorderBuffer.getOpenRunCount(), is(lessThanOrEqualTo(ImprintSorter.MAX_MERGE_WIDTH)));
+				}
+			}
+			assertThat("Imprints wait for the first imprint.", consumedImprints, is(empty()));
+			assertThat(reorderBuffer.getRunCount(), is(greaterThan(ImprintSorter.MAX_MERGE_WIDTH)));
+			reorderBuffer.offer(imprint(firstPath));
+			reorderBuffer.consume();
+			assertThat(consumedImprints, contains(paths.stream().map(TestImprints::imprint).toArray()));
+			assertThat(reorderBuffer.getOpenRunCount(), is(0));
+		}
+		try (final Stream<Path> runFiles = list(spillDirectory)) {
+			assertThat("Run files are deleted.", runFiles.count(), is(0L));
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.github.npathai.hamcrestopt.OptionalMatchers.*;
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static com.jordial.datimprint.file.TestImprints.*;
+import static java.nio.file.Files.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Integration tests of {@link ImprintSorter}.
+ * @author Garret Wilson
+ */
+public class ImprintSorterIT {
+
+	/**
+	 * Creates shuffled imprints of a tree of directories and files.
+	 * @return The imprints, not in tree order.
+	 */
+	private static List<PathImprint> shuffledImprints() {
+		final List<PathImprint> imprints = new ArrayList<>();
+		final Path root = Path.of("/root");
+		for(int directoryNumber = 0; directoryNumber < 20; directoryNumber++) {
+			final Path directory = root.resolve("dir-" + directoryNumber);
+			for(int fileNumber = 0; fileNumber < 50; fileNumber++) {
+				imprints.add(imprint(directory.resolve("file-" + fileNumber + ".txt")));
+			}
+			imprints.add(imprint(directory));
+		}
+		imprints.add(imprint(root));
+		Collections.shuffle(imprints, new Random(123));
+		return imprints;
+	}
+
+	/**
+	 * Reads all the imprints from a parser.
+	 * @param parser The parser to read.
+	 * @return The imprints read.
+	 */
+	private static List<PathImprint> readAll(final DatimParser parser) throws IOException {
+		final List<PathImprint> imprints = new ArrayList<>();
+		Optional<PathImprint> foundImprint;
+		while((foundImprint = parser.readImprint()).isPresent()) {
+			imprints.add(foundImprint.get());
+		}
+		return imprints;
+	}
+
+	/**
+	 * Verifies that imprints are sorted in each order, both in memory and by merging run files, including merging groups of runs when there are many, and that
+	 * run files are deleted.
+	 */
+	@Test
+	void verifyImprintsSorted(@TempDir final Path tempDir) throws IOException {
+		final List<PathImprint> imprints = shuffledImprints();
+		for(final ImprintSorter.Order order : ImprintSorter.Order.values()) {
+			final List<PathImprint> sortedImprints = imprints.stream().sorted(order.getComparator()).toList();
+			for(final int windowSize : List.of(imprints.size() + 1, imprints.size(), 100, 7, 1)) {
+				try (final ImprintSorter sorter = new ImprintSorter(DatimDiffTest.parser(imprints), order, FINGERPRINT_ALGORITHM, windowSize, Optional.of(tempDir))) {
+					final int spilledRunCount = windowSize > imprints.size() ? 0 : (imprints.size() + windowSize - 1) / windowSize;
+					assertThat(sorter.getRunCount(), spilledRunCount > ImprintSorter.MAX_MERGE_WIDTH ? greaterThan(spilledRunCount) : is(spilledRunCount));
+					final List<PathImprint> readImprints = readAll(sorter);
+					assertThat(readImprints, is(sortedImprints));
+					if(order == ImprintSorter.Order.path) {
+						assertThat(DatimDiff.isSorted(DatimDiffTest.parser(readImprints)), is(true));
+					}
+				}
+				try (final Stream<Path> tempFiles = list(tempDir)) {
+					assertThat(tempFiles.count(), is(0L));
+				}
+			}
+		}
+	}
+
+	/** Verifies that the base path in effect for each imprint is kept when sorting, even after imprints from different trees are interleaved. */
+	@Test
+	void verifyBasePathsKept(@TempDir final Path tempDir) throws IOException {
+		final Path foo = Path.of("/foo");
+		final Path bar = Path.of("/bar");
+		final List<PathImprint> fooImprints = List.of(imprint(foo.resolve("b.txt")), imprint(foo.resolve("a.txt")), imprint(foo));
+		final List<PathImprint> barImprints = List.of(imprint(bar.resolve("a.txt")), imprint(bar));
+		final Map<PathImprint, Path> imprintBasePaths = new HashMap<>();
+		fooImprints.forEach(imprint -> imprintBasePaths.put(imprint, foo));
+		barImprints.forEach(imprint -> imprintBasePaths.put(imprint, bar));
+		final Iterator<PathImprint> imprintIterator = Stream.concat(fooImprints.stream(), barImprints.stream()).iterator();
+		final DatimParser parser = new DatimParser() { //a parser with a base path for each tree
+			private Optional<Path> foundCurrentBasePath = Optional.empty();
+
+			@Override
+			public Optional<Path> findCurrentBasePath() {
+				return foundCurrentBasePath;
+			}
+
+			@Override
+			public Optional<PathImprint> readImprint() {
+				final Optional<PathImprint> foundImprint = imprintIterator.hasNext() ? Optional.of(imprintIterator.next()) : Optional.empty();
+				foundImprint.map(imprintBasePaths::get).ifPresent(basePath -> foundCurrentBasePath = Optional.of(basePath));
+				return foundImprint;
+			}
+		};
+		try (final ImprintSorter sorter = new ImprintSorter(parser, ImprintSorter.Order.content, FINGERPRINT_ALGORITHM, 2, Optional.of(tempDir))) {
+			Optional<PathImprint> foundImprint;
+			int count = 0;
+			while((foundImprint = sorter.readImprint()).isPresent()) {
+				assertThat(sorter.findCurrentBasePath(), isPresentAndIs(imprintBasePaths.get(foundImprint.get())));
+				count++;
+			}
+			assertThat(count, is(imprintBasePaths.size()));
+		}
+	}
+
+	/** Verifies that sorting no imprints produces no imprints. */
+	@Test
+	void verifyNoImprints(@TempDir final Path tempDir) throws IOException {
+		try (final ImprintSorter sorter = new ImprintSorter(DatimDiffTest.parser(List.of()), ImprintSorter.Order.path, FINGERPRINT_ALGORITHM, 10, Optional.of(tempDir))) {
+			assertThat(sorter.readImprint(), isEmpty());
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.Files.*;
+import static java.util.stream.Collectors.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Integration tests of {@link MappedDatimReader}.
+ * @author Garret Wilson
+ */
+public class MappedDatimReaderIT {
+
+	/**
+	 * Writes a datim file with several base paths, each followed by imprints of files within it.
+	 * @param datimFile The file to write.
+	 * @param lineSeparator The line separator to use.
+	 * @param isBOM Whether a UTF-8 byte order mark should be written.
+	 * @return The entries written, in order.
+	 * @throws IOException if there was an error writing the file.
+	 */
+	private static List<MappedDatimReader.Entry> writeDatim(final Path datimFile, final String lineSeparator, final boolean isBOM) throws IOException {
+		final Datim.Serializer serializer = new Datim.Serializer(lineSeparator);
+		final List<MappedDatimReader.Entry> entries = new ArrayList<>();
+		try (final Writer writer = new BufferedWriter(new OutputStreamWriter(newOutputStream(datimFile), UTF_8))) {
+			if(isBOM) {
+				writer.write('\uFEFF');
+			}
+			serializer.appendHeader(writer);
+			long number = 0;
+			for(final String baseName : List.of("foo", "bar", "empty", "baz")) {
+				final Path basePath = datimFile.getParent().resolve(baseName);
+				serializer.appendBasePath(writer, basePath);
+				final int fileCount = baseName.equals("empty") ? 0 : 50;
+				for(int i = 0; i < fileCount; i++) {
+					final Path path = basePath.resolve("file-" + i + ".txt");
+					final PathImprint imprint = new PathImprint(path, FileTime.from(Instant.ofEpochSecond(1653252496, i * 1000)),
+							FINGERPRINT_ALGORITHM.hash("content " + path), FINGERPRINT_ALGORITHM.hash(path.toString()));
+					serializer.appendImprint(writer, imprint, ++number);
+					entries.add(new MappedDatimReader.Entry(Optional.of(basePath), imprint));
+				}
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Verifies that the imprints of a file divided into many chunks are all read with the correct base path, both sequentially and in parallel, for each line
+	 * separator.
+	 */
+	@Test
+	void verifyEntriesReadWithCorrectBasePaths(@TempDir final Path tempDir) throws IOException {
+		for(final String lineSeparator : List.of("\n", "\r", "\r\n")) {
+			for(final boolean isBOM : List.of(false, true)) {
+				final Path datimFile = tempDir.resolve("test.datim");
+				final List<MappedDatimReader.Entry> entries = writeDatim(datimFile, lineSeparator, isBOM);
+				assertThat(MappedDatimReader.isUtf8(datimFile), is(true));
+				try (final MappedDatimReader reader = new MappedDatimReader(datimFile, 1000)) {
+					assertThat(reader.getChunkCount(), is(greaterThan(10)));
+					assertThat(reader.entries(false).collect(toList()), is(entries));
+					assertThat(reader.entries(true).collect(toList()), is(entries));
+				}
+				try (final MappedDatimReader reader = new MappedDatimReader(datimFile)) {
+					assertThat(reader.getChunkCount(), is(1));
+					assertThat(reader.entries(true).collect(toList()), is(entries));
+				}
+			}
+		}
+	}
+
+	/** Verifies that a file with only a header has no entries. */
+	@Test
+	void verifyHeaderOnlyHasNoEntries(@TempDir final Path tempDir) throws IOException {
+		final Path datimFile = tempDir.resolve("test.datim");
+		writeString(datimFile, new Datim.Serializer().appendHeader(new StringBuilder()));
+		try (final MappedDatimReader reader = new MappedDatimReader(datimFile)) {
+			assertThat(reader.getChunkCount(), is(0));
+			assertThat(reader.entries(true).count(), is(0L));
+		}
+	}
+
+	/** Verifies that a file encoded in UTF-16 with a byte order mark is rejected. */
+	@Test
+	void verifyUtf16Rejected(@TempDir final Path tempDir) throws IOException {
+		final Path datimFile = tempDir.resolve("test.datim");
+		writeString(datimFile, "\uFEFF" + new Datim.Serializer().appendHeader(new StringBuilder()), UTF_16BE);
+		assertThat(MappedDatimReader.isUtf8(datimFile), is(false));
+		assertThrows(IOException.class, () -> new MappedDatimReader(datimFile).close());
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.java.Longs;
+import com.globalmentor.security.Hash;
+
+/**
+ * Tests of {@link MessageDigestPool}.
+ * @author Garret Wilson
+ */
+public class MessageDigestPoolTest {
+
+	/** @see MessageDigestPool#forAlgorithm(com.globalmentor.security.MessageDigests.Algorithm) */
+	@Test
+	void testForAlgorithmReturnsSharedPool() {
+		assertThat(MessageDigestPool.forAlgorithm(FINGERPRINT_ALGORITHM), is(sameInstance(MessageDigestPool.forAlgorithm(FINGERPRINT_ALGORITHM))));
+	}
+
+	/**
+	 * @see MessageDigestPool#borrowMessageDigest()
+	 * @see MessageDigestPool#returnMessageDigest(MessageDigest)
+	 */
+	@Test
+	void testReturnedMessageDigestIsResetAndReused() {
+		final MessageDigestPool pool = MessageDigestPool.forAlgorithm(FINGERPRINT_ALGORITHM);
+		final MessageDigest messageDigest = pool.borrowMessageDigest();
+		messageDigest.update("foo".getBytes(UTF_8));
+		pool.returnMessageDigest(messageDigest);
+		final MessageDigest reusedMessageDigest = pool.borrowMessageDigest();
+		try {
+			assertThat(reusedMessageDigest, is(sameInstance(messageDigest)));
+			assertThat(Hash.fromDigest(reusedMessageDigest), is(FINGERPRINT_ALGORITHM.emptyHash()));
+		} finally {
+			pool.returnMessageDigest(reusedMessageDigest);
+		}
+	}
+
+	/** @see MessageDigestPool#update(MessageDigest, long) */
+	@Test
+	void testUpdateLong() {
+		final MessageDigestPool pool = MessageDigestPool.forAlgorithm(FINGERPRINT_ALGORITHM);
+		for(final long value : new long[] {0, 1, -1, 1653252496751L, Long.MIN_VALUE, Long.MAX_VALUE}) {
+			final MessageDigest messageDigest = FINGERPRINT_ALGORITHM.newMessageDigest();
+			pool.update(messageDigest, value);
+			assertThat("Value " + value, Hash.fromDigest(messageDigest), is(FINGERPRINT_ALGORITHM.hash(Longs.toBytes(value))));
+		}
+	}
+
+	/**
+	 * @see MessageDigestPool#encodeUtf8(String, byte[])
+	 * @see MessageDigestPool#updateHash(MessageDigest, String)
+	 */
+	@Test
+	void testUpdateHash() {
+		for(final String string : new String[] {"", "foo.bar", "touché", "€uro", "日本語.txt", "😀smile", "unpaired\uD800high", "unpaired\uDC00low",
+				"trailing\uD800", "x".repeat(MessageDigestPool.INITIAL_SCRATCH_BUFFER_SIZE + 1)}) {
+			final byte[] buffer = new byte[string.length() * 3];
+			final int length = MessageDigestPool.encodeUtf8(string, buffer);
+			assertThat("Encoded `%s`.".formatted(string), Arrays.copyOf(buffer, length), is(string.getBytes(UTF_8)));
+			final MessageDigest messageDigest = FINGERPRINT_ALGORITHM.newMessageDigest();
+			MessageDigestPool.forAlgorithm(FINGERPRINT_ALGORITHM).updateHash(messageDigest, string);
+			assertThat("Hashed `%s`.".formatted(string), Hash.fromDigest(messageDigest), is(FINGERPRINT_ALGORITHM.hash(FINGERPRINT_ALGORITHM.hash(string))));
+		}
+	}
+
+}
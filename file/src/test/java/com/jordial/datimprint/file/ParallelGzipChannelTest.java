@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link ParallelGzipChannel}.
+ * @author Garret Wilson
+ */
+public class ParallelGzipChannelTest {
+
+	/**
+	 * Creates compressible test content resembling imprint records.
+	 * @param length The number of bytes of content.
+	 * @return The test content.
+	 */
+	private static byte[] content(final int length) {
+		final Random random = new Random(length);
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length);
+		for(long number = 1; outputStream.size() < length; number++) {
+			outputStream.writeBytes("%d\t/foo/bar/file-%d.txt\t%x%n".formatted(number, random.nextInt(1000), random.nextLong()).getBytes(UTF_8));
+		}
+		return Arrays.copyOf(outputStream.toByteArray(), length);
+	}
+
+	/**
+	 * Compresses content, writing it to the channel in pieces of varying size.
+	 * @param content The content to compress.
+	 * @param blockSize The size of each block of uncompressed content.
+	 * @param threadCount The number of threads for compressing blocks.
+	 * @return The compressed bytes.
+	 */
+	private static byte[] compress(final byte[] content, final int blockSize, final int threadCount) throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (final ParallelGzipChannel channel = new ParallelGzipChannel(Channels.newChannel(outputStream), blockSize, Deflater.DEFAULT_COMPRESSION, threadCount)) {
+			int position = 0;
+			for(int pieceLength = 1; position < content.length; pieceLength = pieceLength * 3 % 7919 + 1) {
+				final int length = Math.min(pieceLength, content.length - position);
+				channel.write(ByteBuffer.wrap(content, position, length));
+				position += length;
+			}
+		}
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Decompresses gzip content using the JDK implementation.
+	 * @param bytes The compressed bytes.
+	 * @return The decompressed content.
+	 */
+	private static byte[] decompress(final byte[] bytes) throws IOException {
+		try (final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			return inputStream.readAllBytes();
+		}
+	}
+
+	/** Verifies that content of various lengths compressed with various block sizes is a single standard gzip stream. */
+	@Test
+	void verifyCompressedContentDecompresses() throws IOException {
+		for(final int length : List.of(0, 1, 1000, 32 * 1024, 100_000, 1_000_000)) {
+			final byte[] content = content(length);
+			for(final int blockSize : List.of(1000, 64 * 1024, ParallelGzipChannel.DEFAULT_BLOCK_SIZE)) {
+				for(final int threadCount : List.of(1, 4)) {
+					final byte[] compressed = compress(content, blockSize, threadCount);
+					assertThat(ParallelGzipChannel.isGzip(new ByteArrayInputStream(compressed)), is(true));
+					assertThat(decompress(compressed), is(content));
+					//the JDK would also accept concatenated gzip members, so make sure the single trailer covers all the content
+					assertThat(ByteBuffer.wrap(compressed, compressed.length - 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(), is(length));
+				}
+			}
+		}
+	}
+
+	/** Verifies that compressing content in multiple blocks still compresses it well, as each block uses the end of the previous block as a dictionary. */
+	@Test
+	void verifyBlocksCompressWithDictionary() throws IOException {
+		final byte[] content = content(1_000_000);
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (final OutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+			gzipOutputStream.write(content);
+		}
+		assertThat((double)compress(content, ParallelGzipChannel.DEFAULT_BLOCK_SIZE, 4).length, is(lessThan(outputStream.size() * 1.05)));
+	}
+
+	/** Verifies that CRC-32 values of adjacent content are combined to the CRC-32 of the whole. */
+	@Test
+	void verifyCrc32Combine() {
+		final byte[] content = content(10_000);
+		for(final int split : List.of(0, 1, 4999, 10_000)) {
+			final CRC32 crc1 = new CRC32();
+			crc1.update(content, 0, split);
+			final CRC32 crc2 = new CRC32();
+			crc2.update(content, split, content.length - split);
+			final CRC32 crc = new CRC32();
+			crc.update(content);
+			assertThat(ParallelGzipChannel.crc32Combine(crc1.getValue(), crc2.getValue(), content.length - split), is(crc.getValue()));
+		}
+	}
+
+	/** Verifies that content not starting with the gzip magic number is not detected as gzip. */
+	@Test
+	void verifyNotGzip() throws IOException {
+		assertThat(ParallelGzipChannel.isGzip(new BufferedInputStream(new ByteArrayInputStream("#\tminiprint".getBytes(UTF_8)))), is(false));
+		assertThat(ParallelGzipChannel.isGzip(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))), is(false));
+	}
+
+}
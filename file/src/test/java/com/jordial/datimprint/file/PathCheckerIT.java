@@ -20,6 +20,7 @@
 import static java.nio.file.Files.*;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.*;
 
 import java.io.IOException;
@@ -27,7 +28,8 @@
 import java.nio.file.attribute.*;
 import java.time.*;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.condition.*;
@@ -272,4 +274,119 @@ void testMissingPathResult(@TempDir final Path tempDir) throws IOException {
 		assertThat(missingPathResult.getMismatches(), is(empty()));
 	}
 
+	/**
+	 * Verifies that checking imprints of a tree relocated to a copy of the tree summarizes the results, including missing paths, mismatches, and the bytes
+	 * verified, both checking each path individually and grouping paths by directory.
+	 * @see PathChecker#checkAsync(java.util.stream.Stream, Path)
+	 */
+	@Test
+	void verifyCheckAsyncSummary(@TempDir final Path tempDir) throws IOException {
+		final Path source = createDirectory(tempDir.resolve("source"));
+		final Path sourceFoo = writeString(source.resolve("foo.txt"), "foo");
+		final Path sourceBar = writeString(source.resolve("bar.txt"), "barbar");
+		final Path sourceBaz = writeString(source.resolve("baz.txt"), "baz");
+		final Path copy = createDirectories(tempDir.resolve("copy").resolve("source")); //keep the same directory filename
+		setLastModifiedTime(writeString(copy.resolve("foo.txt"), "foo"), getLastModifiedTime(sourceFoo));
+		setLastModifiedTime(writeString(copy.resolve("bar.txt"), "BARBAR"), getLastModifiedTime(sourceBar));
+		setLastModifiedTime(copy, getLastModifiedTime(source));
+		final List<MappedDatimReader.Entry> entries = new ArrayList<>();
+		for(final Path path : List.of(sourceFoo, sourceBar, sourceBaz, source)) {
+			entries.add(new MappedDatimReader.Entry(Optional.of(source), fixtureImprintGenerator.generateImprintAsync(path).join()));
+		}
+		for(final boolean groupByDirectory : List.of(false, true)) {
+			testProducedResults.clear();
+			try (final PathChecker pathChecker = PathChecker.builder().withMaxInFlightChecks(2).withGroupByDirectory(groupByDirectory)
+					.withResultConsumer(testProducedResults::add).build()) {
+				assertThat(pathChecker.checkAsync(entries.stream(), copy).join(), is(new Summary(4, 2, 1, 1, 1, 9)));
+			}
+			assertThat(testProducedResults.stream().map(Result::getPath).toList(),
+					containsInAnyOrder(copy.resolve("foo.txt"), copy.resolve("bar.txt"), copy.resolve("baz.txt"), copy.toRealPath(LinkOption.NOFOLLOW_LINKS)));
+		}
+	}
+
+	/**
+	 * Verifies that checking the paths in a directory from a single listing gives the same results as checking each path individually.
+	 * @see PathChecker#checkDirectoryAsync(Path, Collection)
+	 */
+	@Test
+	void verifyCheckDirectoryAsyncResults(@TempDir final Path tempDir) throws IOException {
+		final Path foo = writeString(tempDir.resolve("foo.txt"), "foo");
+		final Path bar = writeString(tempDir.resolve("bar.txt"), "bar");
+		final Path baz = createDirectory(tempDir.resolve("baz"));
+		final Path missing = writeString(tempDir.resolve("missing.txt"), "missing");
+		final List<Check> checks = new ArrayList<>();
+		for(final Path path : List.of(foo, bar, baz, missing)) {
+			checks.add(new Check(path, fixtureImprintGenerator.generateImprintAsync(path).join()));
+		}
+		delete(missing);
+		writeString(bar, "BAR");
+		final List<Result> expectedResults = new ArrayList<>();
+		for(final Check check : checks) {
+			expectedResults.add(testPathChecker.checkPathAsync(check.path(), check.imprint()).join());
+		}
+		testProducedResults.clear();
+		final List<Result> results = testPathChecker.checkDirectoryAsync(tempDir, checks).join();
+		assertThat(results, containsInAnyOrder(expectedResults.toArray()));
+		assertThat(testProducedResults, containsInAnyOrder(expectedResults.toArray()));
+		assertThat(results.stream().filter(result -> !result.isMatch()).map(Result::getPath).toList(), containsInAnyOrder(bar, missing));
+		final Path missingDirectory = tempDir.resolve("missing");
+		assertThat(testPathChecker.checkDirectoryAsync(missingDirectory, List.of(new Check(missingDirectory.resolve("foo.txt"), checks.get(0).imprint()))).join(),
+				contains(instanceOf(MissingPathResult.class)));
+	}
+
+	/**
+	 * Verifies that checking the imprints from a parser completes with the first error, such as being unable to relocate an imprint with no base path.
+	 * @see PathChecker#checkAsync(DatimParser, Path)
+	 */
+	@Test
+	void verifyCheckAsyncParserError(@TempDir final Path tempDir) throws IOException {
+		final Path file = writeString(tempDir.resolve("foo.bar"), "foobar");
+		final PathImprint imprint = fixtureImprintGenerator.generateImprintAsync(file).join();
+		final CompletionException completionException = assertThrows(CompletionException.class,
+				() -> testPathChecker.checkAsync(DatimDiffTest.parser(List.of(imprint)), tempDir).join());
+		assertThat(completionException.getCause(), is(instanceOf(IOException.class)));
+		assertThat(testProducedResults, is(empty()));
+	}
+
+	/**
+	 * Verifies that directory fingerprints recomputed bottom-up from check results match the imprints of an unchanged tree, that a changed file is detected in
+	 * the trees of all its ancestor directories, and that imprints not in tree order are rejected.
+	 * @see PathChecker.Builder#withTreeResultConsumer(java.util.function.Consumer)
+	 */
+	@Test
+	void verifyCheckAsyncTree(@TempDir final Path tempDir) throws IOException {
+		final Path root = createDirectory(tempDir.resolve("root"));
+		writeString(root.resolve("a.txt"), "a");
+		final Path sub = createDirectory(root.resolve("sub"));
+		final Path subFile = writeString(sub.resolve("b.txt"), "b");
+		writeString(sub.resolve("c.txt"), "c");
+		final Path empty = createDirectory(root.resolve("empty"));
+		final List<MappedDatimReader.Entry> entries = new ArrayList<>();
+		try (final Stream<Path> paths = walk(root)) {
+			for(final Path path : paths.sorted(TreeOrder.pathComparator()).toList()) {
+				entries.add(new MappedDatimReader.Entry(Optional.of(root), fixtureImprintGenerator.generateImprintAsync(path).join()));
+			}
+		}
+		final Map<Path, TreeResult> treeResults = new ConcurrentHashMap<>();
+		try (final PathChecker pathChecker = PathChecker.builder().withExecutor(Runnable::run)
+				.withTreeResultConsumer(treeResult -> treeResults.put(treeResult.path(), treeResult)).build()) {
+			pathChecker.checkAsync(entries.stream(), root).join();
+			assertThat(treeResults.keySet(), containsInAnyOrder(root.toRealPath(), sub.toRealPath(), empty.toRealPath()));
+			assertThat(treeResults.values().stream().allMatch(TreeResult::isMatch), is(true));
+			treeResults.clear();
+			final FileTime subModifiedAt = getLastModifiedTime(sub);
+			setLastModifiedTime(writeString(subFile, "B"), getLastModifiedTime(subFile));
+			setLastModifiedTime(sub, subModifiedAt);
+			pathChecker.checkAsync(entries.stream(), root).join();
+			assertThat(treeResults.get(root.toRealPath()).isMatch(), is(false));
+			assertThat(treeResults.get(sub.toRealPath()).isContentFingerprintMatch(), is(false));
+			assertThat(treeResults.get(empty.toRealPath()).isMatch(), is(true));
+			final List<MappedDatimReader.Entry> reversedEntries = new ArrayList<>(entries);
+			Collections.reverse(reversedEntries);
+			final CompletionException completionException = assertThrows(CompletionException.class,
+					() -> pathChecker.checkAsync(reversedEntries.stream(), root).join());
+			assertThat(completionException.getCause(), is(instanceOf(IOException.class)));
+		}
+	}
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static java.nio.file.Files.*;
+import static java.nio.file.LinkOption.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.globalmentor.security.Hash;
+
+/**
+ * Benchmarks of creating {@link PathImprint} instances for files deep in a directory tree, comparing determining the real path of each file with trusting a
+ * path already known to be real.
+ * <p>
+ * Run using <code>mvn test-compile</code> and then {@link #main(String[])} with the test classpath, or via <code>org.openjdk.jmh.Main PathImprintBenchmark</code>.
+ * </p>
+ * @author Garret Wilson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathImprintBenchmark {
+
+	/** The number of directory levels above the file. */
+	@Param({"1", "8", "32"})
+	public int depth;
+
+	private Path tempDirectory;
+
+	private Path file;
+
+	private FileTime contentModifiedAt;
+
+	private final Hash contentFingerprint = FINGERPRINT_ALGORITHM.hash("foobar");
+
+	@Setup
+	public void setUp() throws IOException {
+		tempDirectory = createTempDirectory(getClass().getSimpleName()).toRealPath(NOFOLLOW_LINKS);
+		Path directory = tempDirectory;
+		for(int level = 0; level < depth; level++) {
+			directory = createDirectory(directory.resolve("level" + level));
+		}
+		file = writeString(directory.resolve("foo.txt"), "foobar");
+		contentModifiedAt = getLastModifiedTime(file);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		try (final Stream<Path> paths = walk(tempDirectory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/**
+	 * Creates a file imprint, determining the real path of the file.
+	 * @see PathImprint#forFile(Path, FileTime, Hash, com.globalmentor.security.MessageDigests.Algorithm)
+	 */
+	@Benchmark
+	public PathImprint forFile() throws IOException {
+		return PathImprint.forFile(file, contentModifiedAt, contentFingerprint, FINGERPRINT_ALGORITHM);
+	}
+
+	/**
+	 * Creates a file imprint from a path already known to be real, without accessing the file system.
+	 * @see PathImprint#forRealFile(Path, FileTime, Hash, com.globalmentor.security.MessageDigests.Algorithm)
+	 */
+	@Benchmark
+	public PathImprint forRealFile() {
+		return PathImprint.forRealFile(file, contentModifiedAt, contentFingerprint, FINGERPRINT_ALGORITHM);
+	}
+
+	/**
+	 * Runs the benchmarks in this class.
+	 * @param args Command-line arguments; ignored.
+	 * @throws RunnerException if there is an error running the benchmarks.
+	 */
+	public static void main(final String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PathImprintBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -18,6 +18,7 @@
 
 import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
 import static java.nio.file.Files.*;
+import static java.util.concurrent.Executors.*;
 import static java.util.stream.Collectors.*;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -124,6 +125,172 @@ void testProduceImprintSmokeTest(@TempDir final Path tempDir) throws IOException
 						level3DirectoryImprint, level3ThatFileImprint));
 	}
 
+	/**
+	 * Tests that limiting the number of in-flight path tasks, which forces traversal to wait for permits at every level, produces the same imprints.
+	 * @see PathImprintGenerator.Builder#withMaxInFlightPathTasks(int)
+	 */
+	@Test
+	void verifyProduceImprintAsyncWithMaxInFlightPathTasksProducesSameImprints(@TempDir final Path tempDir) throws IOException {
+		final Path foobarDirectory = createDirectory(tempDir.resolve("foobar"));
+		writeString(foobarDirectory.resolve("foo.txt"), "foo");
+		writeString(foobarDirectory.resolve("bar.txt"), "bar");
+		createDirectory(tempDir.resolve("empty"));
+		final Path level1Directory = createDirectory(tempDir.resolve("level-1"));
+		writeString(level1Directory.resolve("this.txt"), "level-1-this");
+		final Path level2Directory = createDirectory(level1Directory.resolve("level-2"));
+		writeString(level2Directory.resolve("that.txt"), "level-2-that");
+
+		final PathImprint imprint = testImprintGenerator.produceImprintAsync(tempDir).join();
+		final List<PathImprint> limitedProducedImprints = new CopyOnWriteArrayList<>();
+		try (final PathImprintGenerator limitedImprintGenerator = PathImprintGenerator.builder().withExecutor(newFixedThreadPool(4))
+				.withImprintConsumer(limitedProducedImprints::add).withMaxInFlightPathTasks(1).build()) {
+			assertThat(limitedImprintGenerator.produceImprintAsync(tempDir).join(), is(imprint));
+		}
+		assertThat(limitedProducedImprints, containsInAnyOrder(testProducedImprints.toArray()));
+	}
+
+	/**
+	 * Verifies that spilling the child fingerprints of large directories to run files produces the same imprints as combining them in memory.
+	 * @see PathImprintGenerator.Builder#withDirectorySpillThreshold(int)
+	 */
+	@Test
+	void verifyProduceImprintAsyncWithDirectorySpillThresholdProducesSameImprints(@TempDir final Path tempDir) throws IOException {
+		final Path treeDirectory = createDirectory(tempDir.resolve("tree"));
+		final Path manyDirectory = createDirectory(treeDirectory.resolve("many"));
+		for(int i = 0; i < 50; i++) {
+			writeString(manyDirectory.resolve("file-%d.txt".formatted(i)), "contents %d".formatted(i));
+		}
+		writeString(treeDirectory.resolve("other.txt"), "other");
+		final Path spillDirectory = createDirectory(tempDir.resolve("spill"));
+
+		final PathImprint imprint = testImprintGenerator.produceImprintAsync(treeDirectory).join();
+		final List<PathImprint> spillingProducedImprints = new CopyOnWriteArrayList<>();
+		try (final PathImprintGenerator spillingImprintGenerator = PathImprintGenerator.builder().withExecutor(newFixedThreadPool(4))
+				.withImprintConsumer(spillingProducedImprints::add).withDirectorySpillThreshold(7).withSpillDirectory(spillDirectory).build()) {
+			assertThat(spillingImprintGenerator.produceImprintAsync(treeDirectory).join(), is(imprint));
+		}
+		assertThat(spillingProducedImprints, containsInAnyOrder(testProducedImprints.toArray()));
+		try (final var spillDirectoryFiles = list(spillDirectory)) {
+			assertThat("Run files are deleted.", spillDirectoryFiles.count(), is(0L));
+		}
+	}
+
+	/**
+	 * Verifies that ordered production produces the same imprints, in tree order, regardless of the order in which they are generated; including when the
+	 * reorder window overflows.
+	 * @see PathImprintGenerator.Builder#withOrderedProduction(int)
+	 */
+	@Test
+	void verifyProduceImprintAsyncWithOrderedProductionProducesImprintsInTreeOrder(@TempDir final Path tempDir) throws IOException {
+		final Path treeDirectory = createDirectory(tempDir.resolve("tree"));
+		for(int i = 0; i < 5; i++) {
+			final Path directory = createDirectory(treeDirectory.resolve("dir-%d".formatted(i)));
+			for(int j = 0; j < 10; j++) {
+				writeString(directory.resolve("file-%d.txt".formatted(j)), "contents %d %d".formatted(i, j));
+			}
+		}
+		writeString(treeDirectory.resolve("other.txt"), "other");
+		final Path spillDirectory = createDirectory(tempDir.resolve("spill"));
+
+		final PathImprint imprint = testImprintGenerator.produceImprintAsync(treeDirectory).join();
+		final List<PathImprint> expectedImprints = new ArrayList<>(testProducedImprints);
+		expectedImprints.sort(Comparator.comparing(PathImprint::path, TreeOrder.pathComparator()));
+		for(final int reorderWindowSize : new int[] {1_000, 3}) {
+			final List<PathImprint> orderedProducedImprints = new CopyOnWriteArrayList<>();
+			try (final PathImprintGenerator orderedImprintGenerator = PathImprintGenerator.builder().withExecutor(newFixedThreadPool(4))
+					.withImprintConsumer(orderedProducedImprints::add).withOrderedProduction(reorderWindowSize).withSpillDirectory(spillDirectory).build()) {
+				assertThat(orderedImprintGenerator.produceImprintAsync(treeDirectory).join(), is(imprint));
+			}
+			assertThat("Reorder window size %d.".formatted(reorderWindowSize), orderedProducedImprints, contains(expectedImprints.toArray()));
+		}
+		assertThat(expectedImprints.get(expectedImprints.size() - 1), is(imprint));
+		try (final var spillDirectoryFiles = list(spillDirectory)) {
+			assertThat("Run files are deleted.", spillDirectoryFiles.count(), is(0L));
+		}
+	}
+
+	/**
+	 * Verifies that producing imprints of several roots at the same time produces each root base path followed by the same imprints as producing the root by
+	 * itself, as a contiguous section in the order of the roots, both for separate roots and for roots inside other roots.
+	 * @see PathImprintGenerator#produceImprintsAsync(List, java.util.function.Consumer)
+	 */
+	@Test
+	void verifyProduceImprintsAsyncProducesContiguousRootSections(@TempDir final Path tempDir) throws IOException {
+		final List<Path> treeDirectories = new ArrayList<>();
+		for(int t = 0; t < 3; t++) {
+			final Path treeDirectory = createDirectory(tempDir.toRealPath().resolve("tree-%d".formatted(t)));
+			for(int i = 0; i < 4; i++) {
+				final Path directory = createDirectory(treeDirectory.resolve("dir-%d".formatted(i)));
+				for(int j = 0; j < 10; j++) {
+					writeString(directory.resolve("file-%d.txt".formatted(j)), "contents %d %d %d".formatted(t, i, j));
+				}
+			}
+			treeDirectories.add(treeDirectory);
+		}
+		final Path spillDirectory = createDirectory(tempDir.resolve("spill"));
+		final List<List<Path>> rootLists = List.of(List.of(treeDirectories.get(2), treeDirectories.get(0), treeDirectories.get(1)),
+				List.of(treeDirectories.get(1).resolve("dir-3"), treeDirectories.get(0), treeDirectories.get(1)));
+		for(final List<Path> roots : rootLists) {
+			final Map<Path, Set<PathImprint>> expectedImprintsByRoot = new HashMap<>();
+			for(final Path root : roots) {
+				testProducedImprints.clear();
+				testImprintGenerator.produceImprintAsync(root).join();
+				expectedImprintsByRoot.put(root, Set.copyOf(testProducedImprints));
+			}
+			final List<Object> producedRecords = new CopyOnWriteArrayList<>(); //base paths and imprints
+			try (final PathImprintGenerator imprintGenerator = PathImprintGenerator.builder().withExecutor(newFixedThreadPool(4))
+					.withImprintConsumer(producedRecords::add).withOrderedProduction(3).withSpillDirectory(spillDirectory).build()) {
+				final List<PathImprint> rootImprints = imprintGenerator.produceImprintsAsync(roots, producedRecords::add).join();
+				assertThat(rootImprints.stream().map(PathImprint::path).collect(toList()), is(roots));
+			}
+			int recordIndex = 0;
+			for(final Path root : roots) {
+				assertThat("Section begins with base path.", producedRecords.get(recordIndex++), is(root));
+				final Set<PathImprint> expectedImprints = expectedImprintsByRoot.get(root);
+				final List<Object> sectionRecords = producedRecords.subList(recordIndex, recordIndex + expectedImprints.size());
+				assertThat("Section of root `%s`.".formatted(root), Set.copyOf(sectionRecords), is(expectedImprints));
+				assertThat("Section ends with root imprint.", ((PathImprint)sectionRecords.get(sectionRecords.size() - 1)).path(), is(root));
+				recordIndex += expectedImprints.size();
+			}
+			assertThat(recordIndex, is(producedRecords.size()));
+		}
+		try (final var spillDirectoryFiles = list(spillDirectory)) {
+			assertThat("Spool files are deleted.", spillDirectoryFiles.count(), is(0L));
+		}
+	}
+
+	/**
+	 * Verifies that a prepared imprint consumer receives each imprint along with its preparation, whether imprints of several roots are produced at the same
+	 * time or in order.
+	 * @see PathImprintGenerator.PreparedImprintConsumer
+	 */
+	@Test
+	void verifyPreparedImprintConsumerReceivesPreparedImprints(@TempDir final Path tempDir) throws IOException {
+		final List<Path> roots = new ArrayList<>();
+		for(int t = 0; t < 2; t++) {
+			final Path treeDirectory = createDirectory(tempDir.toRealPath().resolve("tree-%d".formatted(t)));
+			for(int i = 0; i < 10; i++) {
+				writeString(treeDirectory.resolve("file-%d.txt".formatted(i)), "contents %d %d".formatted(t, i));
+			}
+			roots.add(treeDirectory);
+		}
+		for(final boolean isOrdered : new boolean[] {false, true}) {
+			final List<PathImprint> producedImprints = new CopyOnWriteArrayList<>();
+			final PathImprintGenerator.Builder builder = PathImprintGenerator.builder().withExecutor(newFixedThreadPool(4))
+					.withImprintConsumer(PathImprintGenerator.PreparedImprintConsumer.of(imprint -> imprint.path().toString(), (imprint, prepared) -> {
+						assertThat(prepared, is(imprint.path().toString()));
+						producedImprints.add(imprint);
+					}));
+			if(isOrdered) {
+				builder.withOrderedProduction();
+			}
+			try (final PathImprintGenerator imprintGenerator = builder.build()) {
+				imprintGenerator.produceImprintsAsync(roots, root -> {}).join();
+			}
+			assertThat(producedImprints.stream().map(PathImprint::path).collect(toSet()), hasSize(22));
+		}
+	}
+
 	//files
 
 	/** @see PathImprintGenerator#generateFileContentFingerprintAsync(Path) */
@@ -182,6 +349,41 @@ void testProduceImprintAsyncFile(@TempDir final Path tempDir) throws IOException
 		assertThat(testProducedImprints, containsInAnyOrder(imprint));
 	}
 
+	/**
+	 * @see PathImprintGenerator#generateImprintAsync(Path)
+	 * @see PathImprintGenerator.Builder#withBaselineImprint(PathImprint)
+	 */
+	@Test
+	void verifyGenerateImprintAsyncReusesBaselineContentFingerprintForUnmodifiedFile(@TempDir final Path tempDir) throws IOException {
+		final Path file = writeString(tempDir.resolve("foo.bar"), "fooBar");
+		final FileTime contentModifiedAt = getLastModifiedTime(file);
+		final Hash baselineContentFingerprint = FINGERPRINT_ALGORITHM.hash("not the real contents"); //proves the file was not read again
+		final PathImprint baselineImprint = PathImprint.forFile(file, contentModifiedAt, baselineContentFingerprint, FINGERPRINT_ALGORITHM);
+
+		try (final PathImprintGenerator baselineImprintGenerator = PathImprintGenerator.builder().withExecutor(Runnable::run)
+				.withBaselineImprint(baselineImprint).build()) {
+			assertThat(baselineImprintGenerator.generateImprintAsync(file).join(), is(baselineImprint));
+		}
+	}
+
+	/**
+	 * @see PathImprintGenerator#generateImprintAsync(Path)
+	 * @see PathImprintGenerator.Builder#withBaselineImprint(PathImprint)
+	 */
+	@Test
+	void verifyGenerateImprintAsyncIgnoresBaselineContentFingerprintForModifiedFile(@TempDir final Path tempDir) throws IOException {
+		final Path file = writeString(tempDir.resolve("foo.bar"), "fooBar");
+		final FileTime contentModifiedAt = getLastModifiedTime(file);
+		final FileTime baselineContentModifiedAt = FileTime.from(contentModifiedAt.toInstant().minusSeconds(60 * 60));
+		final PathImprint baselineImprint = PathImprint.forFile(file, baselineContentModifiedAt, FINGERPRINT_ALGORITHM.hash("not the real contents"),
+				FINGERPRINT_ALGORITHM);
+
+		try (final PathImprintGenerator baselineImprintGenerator = PathImprintGenerator.builder().withExecutor(Runnable::run)
+				.withBaselineImprint(baselineImprint).build()) {
+			assertThat(baselineImprintGenerator.generateImprintAsync(file).join().contentFingerprint(), is(FINGERPRINT_ALGORITHM.hash("fooBar")));
+		}
+	}
+
 	//directories
 
 	/** @see PathImprintGenerator#generateDirectoryContentChildrenFingerprintsAsync(Path) */
@@ -68,6 +68,49 @@ void verifyForFileWithNoFilenameThrowsIllegalArgumentException() throws IOExcept
 		assertThrows(IllegalArgumentException.class, () -> PathImprint.forFile(mockFilePath, contentModifiedAt, contentFingerprint, FINGERPRINT_ALGORITHM));
 	}
 
+	/**
+	 * Tests that generating an imprint for a file already known to be real does not access the file system to determine the real path.
+	 * @see PathImprint#forRealFile(Path, FileTime, Hash, com.globalmentor.security.MessageDigests.Algorithm)
+	 */
+	@Test
+	void testForRealFile() throws IOException {
+		final Path mockFilePath = mock(Path.class);
+		final Path mockFileNamePath = mock(Path.class);
+		when(mockFileNamePath.toString()).thenReturn("foo.bar");
+		when(mockFilePath.getFileName()).thenReturn(mockFileNamePath);
+		final FileTime contentModifiedAt = FileTime.from(Instant.ofEpochSecond(1653252496, 751214600));
+		final Hash contentFingerprint = FINGERPRINT_ALGORITHM.hash("foobar");
+
+		final PathImprint imprint = PathImprint.forRealFile(mockFilePath, contentModifiedAt, contentFingerprint, FINGERPRINT_ALGORITHM);
+		assertThat(imprint.path(), is(mockFilePath));
+		assertThat(imprint.contentModifiedAt(), is(contentModifiedAt));
+		assertThat(imprint.contentFingerprint(), is(contentFingerprint));
+		assertThat(imprint.fingerprint(), is(PathImprint.generateFingerprint(mockFilePath, contentModifiedAt, contentFingerprint, null, FINGERPRINT_ALGORITHM)));
+		verify(mockFilePath, never()).toRealPath(any());
+	}
+
+	/**
+	 * Tests that generating an imprint for a directory already known to be real does not access the file system to determine the real path.
+	 * @see PathImprint#forRealDirectory(Path, FileTime, Hash, Hash, com.globalmentor.security.MessageDigests.Algorithm)
+	 */
+	@Test
+	void testForRealDirectory() throws IOException {
+		final Path mockDirectoryPath = mock(Path.class);
+		final Path mockDirectoryFileNamePath = mock(Path.class);
+		when(mockDirectoryFileNamePath.toString()).thenReturn("foobar");
+		when(mockDirectoryPath.getFileName()).thenReturn(mockDirectoryFileNamePath);
+		final FileTime directoryContentModifiedAt = FileTime.from(Instant.ofEpochSecond(1653252496, 751214600));
+		final Hash directoryContentFingerprint = FINGERPRINT_ALGORITHM.emptyHash();
+		final Hash directoryChildrenFingerprint = FINGERPRINT_ALGORITHM.emptyHash();
+
+		final PathImprint imprint = PathImprint.forRealDirectory(mockDirectoryPath, directoryContentModifiedAt, directoryContentFingerprint,
+				directoryChildrenFingerprint, FINGERPRINT_ALGORITHM);
+		assertThat(imprint.path(), is(mockDirectoryPath));
+		assertThat(imprint.fingerprint(), is(PathImprint.generateFingerprint(mockDirectoryPath, directoryContentModifiedAt, directoryContentFingerprint,
+				directoryChildrenFingerprint, FINGERPRINT_ALGORITHM)));
+		verify(mockDirectoryPath, never()).toRealPath(any());
+	}
+
 	/** @see PathImprint#forDirectory(Path, FileTime, Hash, Hash, com.globalmentor.security.MessageDigests.Algorithm) */
 	@Test
 	void testForEmptyDirectory() throws IOException {
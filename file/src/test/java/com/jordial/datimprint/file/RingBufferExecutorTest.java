@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link RingBufferExecutor}.
+ * @author Garret Wilson
+ */
+public class RingBufferExecutorTest {
+
+	/**
+	 * Verifies that tasks submitted by several threads at the same time through a small ring buffer are all run, one at a time, in the order each thread
+	 * submitted them, using each wait strategy.
+	 */
+	@Test
+	void verifyTasksFromMultipleProducersAllRunInSubmissionOrder() throws InterruptedException {
+		final int producerCount = 4;
+		final int taskCount = 10_000;
+		for(final RingBufferExecutor.WaitStrategy waitStrategy : RingBufferExecutor.WaitStrategy.values()) {
+			final List<List<Integer>> runTasksByProducer = new ArrayList<>();
+			for(int p = 0; p < producerCount; p++) {
+				runTasksByProducer.add(new ArrayList<>()); //only accessed by the consumer thread
+			}
+			final AtomicInteger runningCount = new AtomicInteger(0);
+			final AtomicInteger maxRunningCount = new AtomicInteger(0);
+			final RingBufferExecutor executor = new RingBufferExecutor(16, waitStrategy, Executors.defaultThreadFactory());
+			final ExecutorService producerExecutor = Executors.newFixedThreadPool(producerCount);
+			for(int p = 0; p < producerCount; p++) {
+				final List<Integer> runTasks = runTasksByProducer.get(p);
+				producerExecutor.execute(() -> {
+					for(int t = 0; t < taskCount; t++) {
+						final int task = t;
+						executor.execute(() -> {
+							maxRunningCount.accumulateAndGet(runningCount.incrementAndGet(), Math::max);
+							runTasks.add(task);
+							runningCount.decrementAndGet();
+						});
+					}
+				});
+			}
+			producerExecutor.shutdown();
+			assertThat(producerExecutor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+			executor.shutdown();
+			assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+			assertThat(executor.isTerminated(), is(true));
+			assertThat(maxRunningCount.get(), is(1));
+			for(final List<Integer> runTasks : runTasksByProducer) {
+				assertThat("Wait strategy %s.".formatted(waitStrategy), runTasks.size(), is(taskCount));
+				for(int t = 0; t < taskCount; t++) {
+					assertThat(runTasks.get(t), is(t));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies that a task running in the consumer thread may submit more tasks than the ring buffer holds without waiting for itself, and that the submitted
+	 * tasks run in order only after the submitting task has completed, including those submitted by a submitted task.
+	 */
+	@Test
+	void verifyConsumerThreadSubmittingToFullRingBufferDoesNotDeadlock() throws InterruptedException {
+		final RingBufferExecutor executor = new RingBufferExecutor(4, RingBufferExecutor.WaitStrategy.park, Executors.defaultThreadFactory());
+		final List<Integer> runTasks = new ArrayList<>(); //only accessed by the consumer thread
+		final AtomicBoolean isSubmittingTaskRunning = new AtomicBoolean(false);
+		final AtomicBoolean isNested = new AtomicBoolean(false);
+		final CountDownLatch ranLatch = new CountDownLatch(1);
+		executor.execute(() -> {
+			isSubmittingTaskRunning.set(true);
+			for(int t = 0; t < 100; t++) {
+				final int task = t;
+				executor.execute(() -> {
+					if(isSubmittingTaskRunning.get()) {
+						isNested.set(true);
+					}
+					runTasks.add(task);
+					if(task == 50) {
+						executor.execute(() -> {
+							runTasks.add(100);
+							ranLatch.countDown();
+						});
+					}
+				});
+			}
+			isSubmittingTaskRunning.set(false);
+		});
+		assertThat(ranLatch.await(1, TimeUnit.MINUTES), is(true));
+		executor.shutdown();
+		assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+		assertThat("Submitted tasks not run within the submitting task.", isNested.get(), is(false));
+		assertThat(runTasks.size(), is(101));
+		for(int t = 0; t <= 100; t++) {
+			assertThat(runTasks.get(t), is(t));
+		}
+	}
+
+	/** Verifies that a thread waiting for room in a full ring buffer is rejected if the executor is shut down immediately, rather than waiting forever. */
+	@Test
+	void verifyShutdownNowRejectsSubmitterWaitingForRoom() throws Exception {
+		final RingBufferExecutor executor = new RingBufferExecutor(2, RingBufferExecutor.WaitStrategy.park, Executors.defaultThreadFactory());
+		final CountDownLatch startedLatch = new CountDownLatch(1);
+		final CountDownLatch releaseLatch = new CountDownLatch(1);
+		executor.execute(() -> {
+			startedLatch.countDown();
+			while(releaseLatch.getCount() > 0) { //keep the ring buffer full even when interrupted
+				try {
+					releaseLatch.await();
+				} catch(final InterruptedException interruptedException) {
+					//keep waiting
+				}
+			}
+		});
+		assertThat(startedLatch.await(1, TimeUnit.MINUTES), is(true));
+		executor.execute(() -> {});
+		final ExecutorService submitterExecutor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<?> futureSubmitted = submitterExecutor.submit(() -> executor.execute(() -> {}));
+			assertThrows(TimeoutException.class, () -> futureSubmitted.get(100, TimeUnit.MILLISECONDS), "Submitter waits while the ring buffer is full.");
+			executor.shutdownNow();
+			final ExecutionException executionException = assertThrows(ExecutionException.class, () -> futureSubmitted.get(1, TimeUnit.MINUTES));
+			assertThat(executionException.getCause(), is(instanceOf(RejectedExecutionException.class)));
+		} finally {
+			releaseLatch.countDown();
+			submitterExecutor.shutdownNow();
+		}
+		assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+	}
+
+	/** Verifies that tasks are rejected after shutdown. */
+	@Test
+	void verifyExecuteAfterShutdownRejected() throws InterruptedException {
+		final RingBufferExecutor executor = new RingBufferExecutor(Executors.defaultThreadFactory());
+		executor.shutdown();
+		assertThat(executor.isShutdown(), is(true));
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+		assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+	}
+
+	/** Verifies that a capacity that is not a power of two is rejected. */
+	@Test
+	void verifyCapacityNotPowerOfTwoRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new RingBufferExecutor(100, RingBufferExecutor.WaitStrategy.park, Executors.defaultThreadFactory()));
+	}
+
+}
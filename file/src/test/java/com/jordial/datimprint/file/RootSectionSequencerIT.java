@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+import static com.jordial.datimprint.file.TestImprints.*;
+import static java.nio.file.Files.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * Integration tests of {@link RootSectionSequencer}.
+ * @author Garret Wilson
+ */
+public class RootSectionSequencerIT {
+
+	/**
+	 * Verifies that imprints of several roots arriving interleaved are passed along as contiguous sections in root order, each beginning with the root path, and
+	 * that imprints held for later roots are spooled to files when they exceed the memory limit.
+	 * @see RootSectionSequencer#accept(PathImprint)
+	 */
+	@Test
+	void verifyInterleavedImprintsConsumedInContiguousSections(@TempDir final Path tempDir) throws IOException {
+		final List<Path> roots = List.of(tempDir.resolve("root-a"), tempDir.resolve("root-b"), tempDir.resolve("root-c"));
+		final Map<Path, List<Path>> pathsByRoot = new HashMap<>();
+		for(final Path root : roots) {
+			final List<Path> paths = new ArrayList<>();
+			for(int i = 0; i < 10; i++) {
+				paths.add(root.resolve("file-%d.txt".formatted(i)));
+			}
+			paths.add(root); //a directory imprint is produced after those of its children
+			pathsByRoot.put(root, paths);
+		}
+		final List<Path> arrivalOrder = new ArrayList<>(); //interleave the roots in reverse, so that root C is finished first and root A last
+		for(int i = 0; i <= 10; i++) {
+			for(int r = roots.size() - 1; r >= 0; r--) {
+				arrivalOrder.add(pathsByRoot.get(roots.get(r)).get(i));
+			}
+		}
+		final Path spoolDirectory = createDirectory(tempDir.resolve("spool"));
+		final List<Object> consumedRecords = new ArrayList<>();
+		try (final RootSectionSequencer sequencer = new RootSectionSequencer(roots, consumedRecords::add, consumedRecords::add, FINGERPRINT_ALGORITHM, 3,
+				Optional.of(spoolDirectory))) {
+			sequencer.begin();
+			for(final Path path : arrivalOrder) {
+				sequencer.accept(imprint(path));
+				if(path.equals(roots.get(2))) {
+					assertThat("Spool files are used beyond the memory limit.", list(spoolDirectory).count(), is(2L));
+				}
+			}
+			assertThat(sequencer.getAllSectionsFinishedFuture().isDone(), is(true));
+		}
+		final List<Object> expectedRecords = new ArrayList<>();
+		for(final Path root : roots) {
+			expectedRecords.add(root);
+			pathsByRoot.get(root).stream().map(TestImprints::imprint).forEach(expectedRecords::add);
+		}
+		assertThat(consumedRecords, is(expectedRecords));
+		try (final var spoolDirectoryFiles = list(spoolDirectory)) {
+			assertThat("Spool files are deleted.", spoolDirectoryFiles.count(), is(0L));
+		}
+	}
+
+	/**
+	 * Verifies that aborting completes the futures of unfinished sections exceptionally while leaving finished sections complete.
+	 * @see RootSectionSequencer#abort(Throwable)
+	 */
+	@Test
+	void verifyAbortCompletesUnfinishedSectionsExceptionally(@TempDir final Path tempDir) throws IOException {
+		final List<Path> roots = List.of(tempDir.resolve("root-a"), tempDir.resolve("root-b"));
+		try (final RootSectionSequencer sequencer = new RootSectionSequencer(roots, root -> {}, imprint -> {}, FINGERPRINT_ALGORITHM, 10, Optional.empty())) {
+			sequencer.begin();
+			sequencer.accept(imprint(roots.get(0)));
+			sequencer.abort(new IOException("test"));
+			assertThat(sequencer.getSectionFinishedFuture(0).isCompletedExceptionally(), is(false));
+			assertThat(sequencer.getSectionFinishedFuture(1).isCompletedExceptionally(), is(true));
+		}
+	}
+
+}
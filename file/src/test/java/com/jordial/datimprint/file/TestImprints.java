@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static com.jordial.datimprint.file.PathImprintGenerator.FINGERPRINT_ALGORITHM;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+/**
+ * Test fixtures for creating imprints.
+ * @author Garret Wilson
+ */
+final class TestImprints {
+
+	/** The default content modification timestamp of test imprints. */
+	static final Instant CONTENT_MODIFIED_AT = Instant.ofEpochSecond(1653252496, 751214600);
+
+	/** This class cannot be publicly instantiated. */
+	private TestImprints() {
+	}
+
+	/**
+	 * Creates a test imprint for a path with the default content modification timestamp.
+	 * @param path The path of the imprint.
+	 * @return An imprint with fingerprints derived from the path.
+	 * @see #CONTENT_MODIFIED_AT
+	 */
+	static PathImprint imprint(final Path path) {
+		return imprint(path, CONTENT_MODIFIED_AT);
+	}
+
+	/**
+	 * Creates a test imprint for a path.
+	 * @param path The path of the imprint.
+	 * @param contentModifiedAt The content modification timestamp.
+	 * @return An imprint with fingerprints derived from the path.
+	 */
+	static PathImprint imprint(final Path path, final Instant contentModifiedAt) {
+		return new PathImprint(path, FileTime.from(contentModifiedAt), FINGERPRINT_ALGORITHM.hash("content " + path), FINGERPRINT_ALGORITHM.hash(path.toString()));
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link TraversalLimiter}.
+ * @author Garret Wilson
+ */
+public class TraversalLimiterTest {
+
+	@Test
+	void testConstructorRequiresPositiveMaxInFlightTasks() {
+		assertThrows(IllegalArgumentException.class, () -> new TraversalLimiter(0));
+	}
+
+	/** @see TraversalLimiter#acquireAsync() */
+	@Test
+	void testAcquireAsyncGrantsAvailablePermitsImmediately() {
+		final TraversalLimiter limiter = new TraversalLimiter(2);
+		assertThat(limiter.acquireAsync().isDone(), is(true));
+		assertThat(limiter.acquireAsync().isDone(), is(true));
+		assertThat(limiter.acquireAsync().isDone(), is(false));
+		assertThat(limiter.getWaitingTaskCount(), is(1));
+	}
+
+	/** @see TraversalLimiter#acquireAsync() */
+	@Test
+	void testReleasedPermitGoesToMostRecentWaiter() {
+		final TraversalLimiter limiter = new TraversalLimiter(1);
+		final ConcurrencyLimiter.Permit permit = limiter.acquireAsync().join();
+		final CompletableFuture<ConcurrencyLimiter.Permit> firstWaiter = limiter.acquireAsync();
+		final CompletableFuture<ConcurrencyLimiter.Permit> secondWaiter = limiter.acquireAsync();
+		permit.close();
+		assertThat(secondWaiter.isDone(), is(true));
+		assertThat(firstWaiter.isDone(), is(false));
+		secondWaiter.join().close();
+		assertThat(firstWaiter.isDone(), is(true));
+		firstWaiter.join().close();
+		assertThat("Permit returned once there are no waiters.", limiter.acquireAsync().isDone(), is(true));
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2022 Jordial Corporation <https://www.jordial.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jordial.datimprint.file;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link TreeOrder}.
+ * @author Garret Wilson
+ */
+public class TreeOrderTest {
+
+	/**
+	 * Verifies that distinct filenames considered equal by {@link com.globalmentor.io.Paths#filenameComparator()} are not considered equal.
+	 * @see TreeOrder#filenameComparator()
+	 */
+	@Test
+	void testFilenameComparatorBreaksTies() {
+		assertThat(TreeOrder.filenameComparator().compare("example.jar.sha1", "example.jar.sha1"), is(0));
+		final int result = TreeOrder.filenameComparator().compare("example.jar.sha1", "example.pom.sha1");
+		assertThat(result, is(not(0)));
+		assertThat(Integer.signum(TreeOrder.filenameComparator().compare("example.pom.sha1", "example.jar.sha1")), is(-Integer.signum(result)));
+	}
+
+	/** @see TreeOrder#pathComparator() */
+	@Test
+	void testPathComparator() {
+		final Path foo = Path.of("foo");
+		final Path fooBar = foo.resolve("bar");
+		final Path fooBarExample = fooBar.resolve("example.txt");
+		final Path fooExample = foo.resolve("example.txt");
+		final Path other = Path.of("other.txt");
+		final List<Path> paths = new ArrayList<>(List.of(other, foo, fooExample, fooBar, fooBarExample));
+		Collections.shuffle(paths, new Random(123));
+		paths.sort(TreeOrder.pathComparator());
+		assertThat("Descendants come before their ancestors.", paths, contains(fooBarExample, fooBar, fooExample, foo, other));
+		assertThat(TreeOrder.pathComparator().compare(fooBar, Path.of("foo", "bar")), is(0));
+	}
+
+}